@@ -414,6 +414,7 @@ class AddonManager(
 	 */
 	fun shutdown() {
 		unloadAllAddons()
+		eventHandler.close()
 	}
 
 	/**
@@ -21,25 +21,58 @@
  */
 package org.openecard.addon
 
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType
 import org.openecard.common.event.EventObject
 import org.openecard.common.event.EventType
 import org.openecard.common.interfaces.EventCallback
 import org.openecard.ws.schema.StatusChange
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
-import java.util.concurrent.LinkedBlockingQueue
+import java.lang.ref.WeakReference
+import java.util.ArrayDeque
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
 
 /**
+ * Queues the events of the event system for the sessions of the status interface, until they are fetched with
+ * WaitForChange.
+ *
+ * Each event is converted to one [StatusChange] which is shared by all sessions. The queue of a session is bounded.
+ * An event superseding the last queued event for the same slot replaces it, and if the queue is full, the oldest event
+ * is discarded. Sessions which have not been polled for some time are removed by a scheduler shared by all sessions.
+ *
+ * @param deleteDelay Time in milliseconds of inactivity after which the queue of a session is deleted.
+ * @param queueCapacity Maximum number of events kept for a session.
  *
  * @author Johannes Schmölz
  * @author Benedikt Biallowons
  * @author Dirk Petrautzki
  * @author Tobias Wich
  */
-class EventHandler : EventCallback {
-	private val eventQueues: MutableMap<String?, LinkedBlockingQueue<StatusChange?>?> = mutableMapOf()
-	private val timers: MutableMap<String?, ReschedulableTimer?> = mutableMapOf()
+class EventHandler(
+	private val deleteDelay: Long = DEFAULT_DELETE_DELAY,
+	private val queueCapacity: Int = DEFAULT_QUEUE_CAPACITY,
+) : EventCallback,
+	AutoCloseable {
+	private val eventQueues = ConcurrentHashMap<String, SessionQueue>()
+	private val expiryTask = ExpiryTask(this)
+
+	init {
+		val period = maxOf(deleteDelay / 4, 1)
+		expiryTask.schedule(period)
+	}
+
+	/**
+	 * Stops the removal of inactive sessions. Queued events can still be fetched afterwards.
+	 */
+	override fun close() {
+		expiryTask.cancel()
+	}
 
 	/**
 	 *
@@ -48,40 +81,33 @@ class EventHandler : EventCallback {
 	 * interrupted
 	 */
 	fun next(session: String?): StatusChange? {
-		// String session = statusChangeRequest.getSessionIdentifier();
-		var handle: StatusChange?
-		val queue = eventQueues[session]
+		val queue = session?.let { eventQueues[it] }
 		if (queue == null) {
 			LOG.error("No queue found for session {}", session)
 			return null
 		}
-		do {
-			try {
-				timers[session]!!.reschedule(deleteDelay.toLong())
-				handle = eventQueues[session]!!.poll(30, TimeUnit.SECONDS)
-				LOG.debug("WaitForChange event pulled from event queue.")
-			} catch (ex: InterruptedException) {
-				return null
-			}
-		} while (handle == null)
-		return handle
+		try {
+			val handle = queue.take()
+			LOG.debug("WaitForChange event pulled from event queue.")
+			return handle
+		} catch (ex: InterruptedException) {
+			return null
+		}
 	}
 
 	override fun signalEvent(
 		eventType: EventType,
 		eventData: EventObject,
 	) {
-		val connectionHandle = eventData.handle
-
-		for (entry in eventQueues.entries) {
-			try {
-				val queue: LinkedBlockingQueue<StatusChange?> = entry.value!!
-				val statusChange = StatusChange()
-				statusChange.setAction(eventType.eventTypeIdentifier)
-				statusChange.setConnectionHandle(connectionHandle)
-				queue.put(statusChange)
-			} catch (ignore: InterruptedException) {
-			}
+		if (eventQueues.isEmpty()) {
+			return
+		}
+
+		val statusChange = StatusChange()
+		statusChange.setAction(eventType.eventTypeIdentifier)
+		statusChange.setConnectionHandle(eventData.handle)
+		for (queue in eventQueues.values) {
+			queue.offer(statusChange)
 		}
 	}
 
@@ -91,29 +117,150 @@ class EventHandler : EventCallback {
 	 * @param sessionIdentifier session identifier
 	 */
 	fun addQueue(sessionIdentifier: String?) {
-		if (eventQueues[sessionIdentifier] == null) {
-			eventQueues.put(sessionIdentifier, LinkedBlockingQueue<StatusChange?>())
-			val timer = ReschedulableTimer()
-			timer.schedule(this.DeleteTask(sessionIdentifier), deleteDelay.toLong())
-			timers.put(sessionIdentifier, timer)
-		} else {
-			timers[sessionIdentifier]!!.reschedule(deleteDelay.toLong())
+		if (sessionIdentifier == null) {
+			LOG.warn("Not creating an event queue without session identifier.")
+			return
 		}
+		eventQueues.computeIfAbsent(sessionIdentifier) { SessionQueue() }.touch()
 	}
 
-	private inner class DeleteTask(
-		private val sessionIdentifier: String?,
+	private fun removeExpiredQueues() {
+		val now = System.nanoTime()
+		val maxIdle = TimeUnit.MILLISECONDS.toNanos(deleteDelay)
+		for ((session, queue) in eventQueues) {
+			if (queue.isExpired(now, maxIdle) && eventQueues.remove(session, queue)) {
+				LOG.debug("Removed event queue of inactive session {}.", session)
+			}
+		}
+	}
+
+	/**
+	 * Bounded queue of the status changes of one session.
+	 */
+	private inner class SessionQueue {
+		private val lock = ReentrantLock()
+		private val notEmpty = lock.newCondition()
+		private val events = ArrayDeque<StatusChange>()
+		private var waiters = 0
+		private var lastAccess = System.nanoTime()
+
+		fun touch() {
+			lock.withLock {
+				lastAccess = System.nanoTime()
+			}
+		}
+
+		fun isExpired(
+			now: Long,
+			maxIdle: Long,
+		): Boolean =
+			lock.withLock {
+				waiters == 0 && now - lastAccess > maxIdle
+			}
+
+		fun offer(statusChange: StatusChange) {
+			lock.withLock {
+				val last = events.peekLast()
+				if (last != null && supersedes(statusChange, last)) {
+					events.pollLast()
+				} else if (events.size >= queueCapacity) {
+					LOG.debug("Event queue is full, discarding oldest event.")
+					events.pollFirst()
+				}
+				events.offerLast(statusChange)
+				notEmpty.signal()
+			}
+		}
+
+		@Throws(InterruptedException::class)
+		fun take(): StatusChange {
+			lock.withLock {
+				waiters++
+				try {
+					while (events.isEmpty()) {
+						notEmpty.await(POLL_TIMEOUT, TimeUnit.SECONDS)
+						// keep the session alive while the client is waiting
+						lastAccess = System.nanoTime()
+					}
+					return events.pollFirst()
+				} finally {
+					waiters--
+					lastAccess = System.nanoTime()
+				}
+			}
+		}
+	}
+
+	/**
+	 * Task removing inactive sessions. It references the handler weakly, so that the shared scheduler does not keep
+	 * handlers alive which are not used anymore. Once the handler is collected, the task cancels its own schedule.
+	 */
+	private class ExpiryTask(
+		handler: EventHandler,
 	) : Runnable {
+		private val ref = WeakReference(handler)
+
+		@Volatile
+		private var future: ScheduledFuture<*>? = null
+
+		fun schedule(period: Long) {
+			future = expiryScheduler.scheduleWithFixedDelay(this, period, period, TimeUnit.MILLISECONDS)
+		}
+
+		fun cancel() {
+			future?.cancel(false)
+		}
+
 		override fun run() {
-			eventQueues.remove(sessionIdentifier)
-			timers.remove(sessionIdentifier)
+			val handler = ref.get()
+			if (handler == null) {
+				cancel()
+			} else {
+				handler.removeExpiredQueues()
+			}
 		}
 	}
 
 	companion object {
 		private val LOG: Logger = LoggerFactory.getLogger(EventHandler::class.java)
 
-		// after this delay of inactivity an event queue (and it's timer) will be deleted
-		private val deleteDelay = 60 * 1000
+		// after this delay of inactivity an event queue will be deleted
+		private const val DEFAULT_DELETE_DELAY = 60 * 1000L
+		private const val DEFAULT_QUEUE_CAPACITY = 64
+		private const val POLL_TIMEOUT = 30L
+
+		private val expiryScheduler: ScheduledExecutorService =
+			Executors.newSingleThreadScheduledExecutor { r ->
+				Thread(r, "EventHandler Session Expiry").apply { isDaemon = true }
+			}
+
+		/**
+		 * Checks whether the new status change makes the old one obsolete. This is the case when both report the same
+		 * action for the same slot, then the client only needs the most recent state.
+		 */
+		private fun supersedes(
+			new: StatusChange,
+			old: StatusChange,
+		): Boolean {
+			if (new === old) {
+				return true
+			}
+			if (new.action != old.action) {
+				return false
+			}
+			return sameSlot(new.connectionHandle, old.connectionHandle)
+		}
+
+		private fun sameSlot(
+			a: ConnectionHandleType?,
+			b: ConnectionHandleType?,
+		): Boolean {
+			if (a == null || b == null) {
+				return a == null && b == null
+			}
+			return a.ifdName == b.ifdName &&
+				a.slotIndex == b.slotIndex &&
+				a.contextHandle.contentEquals(b.contextHandle)
+		}
 	}
 }
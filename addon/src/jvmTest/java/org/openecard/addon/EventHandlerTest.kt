@@ -0,0 +1,107 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.addon
+
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType
+import org.openecard.common.event.EventType
+import org.openecard.common.event.IfdEventObject
+import org.testng.Assert
+import org.testng.annotations.Test
+import java.math.BigInteger
+
+/**
+ * Test the queueing of status changes in the EventHandler.
+ */
+class EventHandlerTest {
+	private fun event(ifdName: String): IfdEventObject {
+		val handle = ConnectionHandleType()
+		handle.ifdName = ifdName
+		handle.slotIndex = BigInteger.ZERO
+		return IfdEventObject(handle)
+	}
+
+	@Test
+	fun testSharedStatusChange() {
+		val handler = EventHandler()
+		handler.addQueue("s1")
+		handler.addQueue("s2")
+		handler.signalEvent(EventType.CARD_INSERTED, event("Reader 1"))
+
+		val c1 = handler.next("s1")
+		val c2 = handler.next("s2")
+		Assert.assertEquals(c1!!.action, EventType.CARD_INSERTED.eventTypeIdentifier)
+		Assert.assertSame(c1, c2)
+	}
+
+	@Test
+	fun testCoalescing() {
+		val handler = EventHandler()
+		handler.addQueue("s")
+		handler.signalEvent(EventType.CARD_RECOGNIZED, event("Reader 1"))
+		handler.signalEvent(EventType.CARD_RECOGNIZED, event("Reader 1"))
+		handler.signalEvent(EventType.CARD_RECOGNIZED, event("Reader 2"))
+		handler.signalEvent(EventType.CARD_REMOVED, event("Reader 2"))
+
+		Assert.assertEquals(handler.next("s")!!.connectionHandle.ifdName, "Reader 1")
+		Assert.assertEquals(handler.next("s")!!.connectionHandle.ifdName, "Reader 2")
+		Assert.assertEquals(handler.next("s")!!.action, EventType.CARD_REMOVED.eventTypeIdentifier)
+	}
+
+	@Test
+	fun testBoundedQueue() {
+		val handler = EventHandler(queueCapacity = 2)
+		handler.addQueue("s")
+		for (i in 1..3) {
+			handler.signalEvent(EventType.CARD_INSERTED, event("Reader $i"))
+		}
+
+		// the oldest event has been discarded
+		Assert.assertEquals(handler.next("s")!!.connectionHandle.ifdName, "Reader 2")
+		Assert.assertEquals(handler.next("s")!!.connectionHandle.ifdName, "Reader 3")
+	}
+
+	@Test
+	fun testExpiry() {
+		val handler = EventHandler(deleteDelay = 20)
+		handler.addQueue("s")
+		Thread.sleep(200)
+		Assert.assertNull(handler.next("s"))
+		handler.close()
+	}
+
+	@Test
+	fun testClose() {
+		val handler = EventHandler(deleteDelay = 20)
+		handler.close()
+		handler.addQueue("s")
+		Thread.sleep(200)
+		// the session is not removed anymore
+		handler.signalEvent(EventType.CARD_INSERTED, event("Reader 1"))
+		Assert.assertNotNull(handler.next("s"))
+	}
+
+	@Test
+	fun testUnknownSession() {
+		Assert.assertNull(EventHandler().next("unknown"))
+	}
+}
@@ -50,6 +50,7 @@ class RedirectCertificateValidator(
 
 	private var certDescExists = false
 	private var lastURL: URL? = null
+	private var sopCheckURL: URL? = null
 
 	/**
 	 * Creates an object of this class bound to the values in the current dynamic context.
@@ -95,12 +96,14 @@ class RedirectCertificateValidator(
 				}
 				// determine the URL that has to be SOP checked (TR-03124 Determine refreshURL)
 				// on th efirst invocation this is the current URL, on the following invocations this is the last used
-				if (lastURL == null) {
-					lastURL = url
+				// the same URL object is validated again when its connection has been reestablished, then the URL
+				// checked before is checked again
+				if (url !== lastURL || sopCheckURL == null) {
+					sopCheckURL = lastURL ?: url
 				}
 
 				// check SOP for last URL and update the URL
-				val sop = TR03112Utils.checkSameOriginPolicy(lastURL!!, sopUrl)
+				val sop = TR03112Utils.checkSameOriginPolicy(sopCheckURL!!, sopUrl)
 				lastURL = url
 				return if (!sop) {
 					// there is more to come
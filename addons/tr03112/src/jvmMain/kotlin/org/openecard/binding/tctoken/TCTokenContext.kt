@@ -51,7 +51,7 @@ private val logger = KotlinLogging.logger { }
 class TCTokenContext private constructor(
 	val token: TCToken,
 	base: ResourceContext,
-) : ResourceContext(base.tlsClient, base.tlsClientProto, base.certs) {
+) : ResourceContext(base.tlsClient, base.tlsClientProto, base.certs, null, base.pooledConnection) {
 	companion object {
 		fun generateTCToken(tcTokenURL: URL): TCTokenContext {
 			// Get TCToken from the given url
@@ -81,6 +81,7 @@ import java.util.concurrent.Callable
 import java.util.concurrent.ExecutionException
 import java.util.concurrent.Future
 import java.util.concurrent.FutureTask
+import javax.xml.stream.XMLStreamReader
 import javax.xml.transform.TransformerException
 
 /**
@@ -134,6 +135,9 @@ class TCTokenHandler(
 
 					override fun validate(doc: Element) {
 					}
+
+					override fun validate(reader: XMLStreamReader) {
+					}
 				}
 			},
 		)
@@ -42,7 +42,9 @@ import org.openecard.crypto.tls.auth.DynamicAuthentication
 import org.openecard.crypto.tls.proxy.ProxySettings.Companion.default
 import org.openecard.crypto.tls.verify.JavaSecVerifier
 import org.openecard.crypto.tls.verify.SameCertVerifier
+import org.openecard.httpcore.HttpConnectionPool
 import org.openecard.i18n.I18N
+import java.io.IOException
 import java.lang.Boolean
 import java.net.MalformedURLException
 import java.net.URL
@@ -65,6 +67,7 @@ class TlsConnectionHandler(
 	private var tlsClient: ClientCertTlsClient? = null
 	private var verifyCertificates = true
 	private var credentialFactory: CredentialFactory? = null
+	private var tlsAuth: DynamicAuthentication? = null
 
 	fun setSmartCardCredential(credentialFactory: CredentialFactory?) {
 		this.credentialFactory = credentialFactory
@@ -98,7 +101,8 @@ class TlsConnectionHandler(
 				val dynCtx = DynamicContext.getInstance(TR03112Keys.INSTANCE_KEY)!!
 				dynCtx.put(TR03112Keys.SAME_CHANNEL, Boolean.TRUE)
 			} else {
-				// kill open channel in tctoken request, it is not needed anymore
+				// release open channel in tctoken request, it is not needed anymore
+				// the connection is kept if the server allows it, so a PAOS endpoint on the same server can use it
 				tokenRequest.tokenContext.closeStream()
 
 				// Set up TLS connection
@@ -115,7 +119,14 @@ class TlsConnectionHandler(
 					PATH_SEC_PROTO_MTLS -> {
 						// use a smartcard for client authentication if one is set
 						tlsAuth.setCredentialFactory(credentialFactory)
-						tlsClient = ClientCertDefaultTlsClient(crypto, serverHost, true)
+						val mtlsClient = ClientCertDefaultTlsClient(crypto, serverHost, true)
+						// a resumed session or a pooled connection would reuse the client authentication of an earlier
+						// connection
+						if (credentialFactory == null) {
+							mtlsClient.setSessionCache(port)
+							this.tlsAuth = tlsAuth
+						}
+						tlsClient = mtlsClient
 						// add PKIX verifier
 						if (verifyCertificates) {
 							tlsAuth.addCertificateVerifier(JavaSecVerifier())
@@ -176,6 +187,11 @@ class TlsConnectionHandler(
 	}
 
 	private fun createNewTlsConnection(tlsVersion: ProtocolVersion): TlsClientProtocol {
+		val pooled = takePooledConnection()
+		if (pooled != null) {
+			return pooled
+		}
+
 		val socket = default.getSocket("https", hostname!!, port)
 		tlsClient!!.clientVersion = tlsVersion
 		// TLS
@@ -186,4 +202,20 @@ class TlsConnectionHandler(
 
 		return handler
 	}
+
+	/**
+	 * Takes over an idle connection to the PAOS endpoint, if connections without client authentication are used.
+	 * The certificate of the connection is checked by the verifiers of this handler as if a handshake was performed.
+	 */
+	private fun takePooledConnection(): TlsClientProtocol? {
+		val auth = tlsAuth ?: return null
+		val connection = HttpConnectionPool.acquire(HttpConnectionPool.key("https", hostname!!, port)) ?: return null
+		try {
+			auth.notifyServerCertificate(connection.serverCertificate)
+		} catch (ex: IOException) {
+			connection.close()
+			throw ex
+		}
+		return connection.protocol
+	}
 }
@@ -23,6 +23,7 @@ package org.openecard.sal.protocol.eac
 
 import iso.std.iso_iec._24727.tech.schema.DestroyChannel
 import org.openecard.common.apdu.GeneralAuthenticate
+import org.openecard.common.apdu.ReadBinary
 import org.openecard.common.apdu.common.CardCommandAPDU
 import org.openecard.common.apdu.exception.APDUException
 import org.openecard.common.apdu.utils.CardUtils
@@ -34,6 +35,7 @@ import org.openecard.common.tlv.TLVException
 import org.openecard.common.tlv.iso7816.FCP
 import org.openecard.common.util.ByteUtils
 import org.openecard.common.util.ShortUtils
+import org.openecard.crypto.common.asn1.eac.ef.EACFileCache
 import org.openecard.sal.protocol.eac.apdu.MSESetATCA
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
@@ -105,6 +107,8 @@ class ChipAuthentication
 
 		/**
 		 * Reads the EFCardSecurity from the card.
+		 * If the file has been read before, only its last bytes are read and the content is taken from the
+		 * [EACFileCache].
 		 *
 		 * @return EFCardSecurtiy
 		 * @throws ProtocolException Thrown in case there is a problem reading the file.
@@ -115,7 +119,24 @@ class ChipAuthentication
 				val file = ShortUtils.toByteArray(EACConstants.EF_CARDSECURITY_FID)
 				val resp = CardUtils.selectFileWithOptions(dispatcher, slotHandle, file, null, FileControlParameters.FCP)
 				val efCardSecurityFCP = FCP(TLV.fromBER(resp.data))
+
+				val size = efCardSecurityFCP.numBytes?.toInt()
+				val tail = size?.let { readTail(it) }
+				val identifier =
+					if (size != null && tail != null) EACFileCache.cardSecurityIdentifier(size, tail) else null
+				if (identifier != null) {
+					val cached = EACFileCache.getCardSecurity(identifier)
+					if (cached != null) {
+						LOG?.debug("Using EF.CardSecurity from cache.")
+						return cached
+					}
+				}
+
 				val efCardSecurity = CardUtils.readFile(efCardSecurityFCP, dispatcher, slotHandle, false)
+				// the cache only saves the file if it matches the probed size and end
+				if (identifier != null) {
+					EACFileCache.saveCardSecurity(identifier, efCardSecurity)
+				}
 				return efCardSecurity
 			} catch (ex: APDUException) {
 				throw ProtocolException(ex.result)
@@ -124,6 +145,27 @@ class ChipAuthentication
 			}
 		}
 
+		/**
+		 * Reads the last bytes of the selected EF.CardSecurity, which contain the signature of the file.
+		 *
+		 * @param size Size of the file.
+		 * @return The last bytes of the file, or `null` if reading them saves no time or they could not be read.
+		 */
+		private fun readTail(size: Int): ByteArray? {
+			// offsets must fit into P1-P2, and smaller files are read with a single command anyway
+			if (size <= TAIL_LENGTH || size > EACFileCache.MAX_CARD_SECURITY_SIZE) {
+				return null
+			}
+			try {
+				val readBinary: CardCommandAPDU = ReadBinary((size - TAIL_LENGTH).toShort(), TAIL_LENGTH.toShort())
+				val tail = readBinary.transmit(dispatcher, slotHandle).data
+				return if (tail.size == TAIL_LENGTH) tail else null
+			} catch (ex: APDUException) {
+				LOG?.debug("Failed to read the end of EF.CardSecurity, reading the complete file.", ex)
+				return null
+			}
+		}
+
 		/**
 		 * Destroys a previously established PACE channel.
 		 */
@@ -134,6 +176,8 @@ class ChipAuthentication
 		}
 
 		companion object {
+			private const val TAIL_LENGTH = EACFileCache.CARD_SECURITY_TAIL_LENGTH
+
 			private val LOG: Logger? = LoggerFactory.getLogger(ChipAuthentication::class.java)
 		}
 	}
@@ -53,7 +53,7 @@ import org.openecard.crypto.common.asn1.cvc.CardVerifiableCertificateChain
 import org.openecard.crypto.common.asn1.cvc.CardVerifiableCertificateVerifier
 import org.openecard.crypto.common.asn1.cvc.CertificateDescription
 import org.openecard.crypto.common.asn1.eac.AuthenticatedAuxiliaryData
-import org.openecard.crypto.common.asn1.eac.SecurityInfos
+import org.openecard.crypto.common.asn1.eac.ef.EACFileCache
 import org.openecard.gui.ResultStatus
 import org.openecard.gui.UserConsent
 import org.openecard.gui.definition.UserConsentDescription
@@ -331,7 +331,7 @@ class PACEStep(
 			val idpicc = paceOutputMap.getContentAsBytes(PACEOutputType.ID_PICC)
 
 			// Store SecurityInfos
-			val securityInfos = SecurityInfos.getInstance(efCardAccess)
+			val securityInfos = EACFileCache.getCardAccess(efCardAccess).securityInfos
 			internalData.put(EACConstants.IDATA_SECURITY_INFOS, securityInfos)
 			// Store additional data
 			internalData.put(EACConstants.IDATA_AUTHENTICATED_AUXILIARY_DATA, aad)
@@ -33,8 +33,8 @@ import iso.std.iso_iec._24727.tech.schema.StartPAOSResponse
 import iso.std.iso_iec._24727.tech.schema.Transmit
 import oasis.names.tc.dss._1_0.core.schema.ResponseBaseType
 import org.apache.http.HttpException
+import org.apache.http.entity.ByteArrayEntity
 import org.apache.http.entity.ContentType
-import org.apache.http.entity.StringEntity
 import org.apache.http.impl.DefaultConnectionReuseStrategy
 import org.apache.http.message.BasicHttpEntityEnclosingRequest
 import org.apache.http.protocol.BasicHttpContext
@@ -62,20 +62,16 @@ import org.openecard.httpcore.StreamHttpClientConnection
 import org.openecard.i18n.I18N
 import org.openecard.sal.protocol.eac.transport.paos.MessageIdGenerator
 import org.openecard.ws.marshal.MarshallingTypeException
-import org.openecard.ws.marshal.WSMarshaller
 import org.openecard.ws.marshal.WSMarshallerException
 import org.openecard.ws.marshal.WSMarshallerFactory.Companion.createInstance
 import org.openecard.ws.soap.SOAPException
-import org.openecard.ws.soap.SOAPMessage
-import org.w3c.dom.Element
-import org.xml.sax.SAXException
 import java.io.ByteArrayInputStream
 import java.io.IOException
-import java.io.InputStream
 import java.lang.reflect.InvocationTargetException
 import java.net.URISyntaxException
 import javax.xml.namespace.QName
-import javax.xml.transform.TransformerException
+import javax.xml.stream.XMLStreamException
+import javax.xml.validation.Schema
 
 private val logger = KotlinLogging.logger { }
 
@@ -96,9 +92,12 @@ class PAOS(
 ) {
 	private val headerValuePaos: String
 	private val idGenerator: MessageIdGenerator
-	private val m: WSMarshaller
+	private val codec: PAOSCodec
 	private val dispatcher: Dispatcher = dispatcher.filter
 
+	// validators without a schema are not applied to the streamed messages
+	private val schema: Schema? = schemaValidator.schema
+
 	private val serviceString: String
 	private val validationError: Promise<DocumentValidatorException?> = Promise<DocumentValidatorException?>()
 
@@ -109,7 +108,7 @@ class PAOS(
 	 * @param dispatcher The dispatcher instance capable of dispatching the received messages.
 	 * @param tlsHandler The TlsClient containing the configuration of the yet to be established TLS channel, or
 	 * `null` if TLS should not be used.
-	 * @param schemaValidator Schema Validator used to validate incoming messages.
+	 * @param schemaValidator Schema Validator whose schema is used to validate the messages.
 	 * @throws PAOSException In case the PAOS module could not be initialized.
 	 */
 	init {
@@ -118,127 +117,41 @@ class PAOS(
 
 		try {
 			this.idGenerator = MessageIdGenerator()
-			this.m = createInstance()
+			this.codec = PAOSCodec(createInstance())
 		} catch (ex: WSMarshallerException) {
 			logger.error(ex) { "${ex.message}" }
 			throw PAOSException(cause = ex)
 		}
 	}
 
-	private fun getRelatesTo(msg: SOAPMessage): String? = getHeaderElement(msg, RELATES_TO)
-
-	private fun setRelatesTo(
-		msg: SOAPMessage,
-		value: String?,
-	) {
-		val elem = getHeaderElement(msg, RELATES_TO, true)!!
-		elem.textContent = value
-	}
-
-	private fun getHeaderElement(
-		msg: SOAPMessage,
-		elem: QName,
-	): String? {
-		val headerElem = getHeaderElement(msg, elem, false)
-		return headerElem?.textContent?.trim { it <= ' ' }
-	}
-
-	private fun getHeaderElement(
-		msg: SOAPMessage,
-		elem: QName,
-		create: Boolean,
-	): Element? {
-		var result: Element? = null
-		val h = msg.soapHeader
-		// try to find a header
-		for (e in h.childElements) {
-			if (e.localName == elem.localPart && e.namespaceURI == elem.namespaceURI) {
-				result = e
-				break
-			}
+	private fun updateMessageID(id: String?) {
+		if (id == null) {
+			throw PAOSException(msg = I18N.strings.tr03112_paos_exception_no_message_id.localized())
 		}
-		// if no such element in header, create new
-		if (result == null && create) {
-			result = h.addHeaderElement(elem)
+		if (!idGenerator.setRemoteID(id)) {
+			// IDs don't match throw exception
+			throw PAOSException(msg = I18N.strings.tr03112_paos_exception_message_id_mismatch.localized())
 		}
-		return result
 	}
 
-	private fun addMessageIDs(msg: SOAPMessage) {
-		val otherID = idGenerator.remoteID
-		val newID = idGenerator.createNewID() // also swaps messages in
-		// MessageIdGenerator
-		if (otherID != null) {
-			// add relatesTo element
-			setRelatesTo(msg, otherID)
-		}
-		// add MessageID element
-		setMessageID(msg, newID)
-	}
+	private fun processPAOSRequest(content: ByteArray): Any {
+		logger.debug { "Message received:\n${String(content, Charsets.UTF_8)}" }
 
-	private fun updateMessageID(msg: SOAPMessage) {
 		try {
-			val id = getMessageID(msg)
-			if (id == null) {
-				throw PAOSException(msg = I18N.strings.tr03112_paos_exception_no_message_id.localized())
-			}
-			if (!idGenerator.setRemoteID(id)) {
-				// IDs don't match throw exception
-				throw PAOSException(msg = I18N.strings.tr03112_paos_exception_message_id_mismatch.localized())
-			}
-		} catch (e: SOAPException) {
-			logger.error(e) { "${e.message}" }
-			throw PAOSException(msg = e.message, cause = e)
-		}
-	}
-
-	private fun getMessageID(msg: SOAPMessage): String? = getHeaderElement(msg, MESSAGE_ID)
-
-	private fun setMessageID(
-		msg: SOAPMessage,
-		value: String?,
-	) {
-		val elem = getHeaderElement(msg, MESSAGE_ID, true)!!
-		elem.textContent = value
-	}
-
-	private fun processPAOSRequest(content: InputStream): Any {
-		try {
-			val doc = m.str2doc(content)
-			val msg = m.doc2soap(doc)
-			var body = msg.soapBody.childElements.get(0)
-			updateMessageID(msg)
-
-			if (logger.isDebugEnabled()) {
+			val msg =
 				try {
-					logger.debug { "${"Message received:\n${m.doc2str(doc)}"} " }
-				} catch (ex: TransformerException) {
-					logger.warn(ex) { "Failed to log PAOS request message." }
-				}
-			}
-
-			// fix profile attribute if it is not present
-			// while there are the eID-Servers to blame, some don't get it right and actually Profile is a useless attribute anyway
-			if (body.localName == "StartPAOSResponse" && !body.hasAttribute("Profile")) {
-				logger.warn { "Received message without Profile attribute, adding one for proper validation." }
-				body.setAttribute("Profile", ECardConstants.Profile.ECARD_1_1)
-
-				try {
-					// copy or the validation produces strange errors
-					val docStr = m.doc2str(body)
-					val newDoc = m.str2doc(docStr)
-					body = newDoc.documentElement
-				} catch (ex: SAXException) {
-					throw PAOSException(msg = "Failed to copy document.", cause = ex)
-				} catch (ex: TransformerException) {
-					throw PAOSException(msg = "Failed to copy document.", cause = ex)
+					codec.decode(ByteArrayInputStream(content), schema)
+				} catch (ex: MarshallingTypeException) {
+					if (schema == null) {
+						throw ex
+					}
+					// read the message again to find out whether it is only invalid or can not be read at all
+					val unvalidated = codec.decode(ByteArrayInputStream(content), null)
+					updateMessageID(unvalidated.messageId)
+					throw DocumentValidatorException("Failed to validate eCard message.", ex)
 				}
-			}
-
-			// validate input message
-			schemaValidator.validate(body)
-
-			return m.unmarshal(body)
+			updateMessageID(msg.messageId)
+			return msg.content
 		} catch (ex: MarshallingTypeException) {
 			logger.error(ex) { "${ex.message}" }
 			throw PAOSException(msg = ex.message, cause = ex)
@@ -249,14 +162,7 @@ class PAOS(
 				msg = I18N.strings.tr03112_dispatcher_exception_failed_jaxb_object_marshaling.localized(),
 				cause = ex,
 			)
-		} catch (ex: IOException) {
-			val msg = "Failed to read/process message from PAOS server."
-			logger.error(ex) { msg }
-			throw PAOSException(
-				msg = I18N.strings.tr03112_paos_exception_soap_message_creation_failed.localized(),
-				cause = ex,
-			)
-		} catch (ex: SAXException) {
+		} catch (ex: XMLStreamException) {
 			val msg = "Failed to read/process message from PAOS server."
 			logger.error(ex) { msg }
 			throw PAOSException(
@@ -266,57 +172,16 @@ class PAOS(
 		}
 	}
 
-	private fun createPAOSResponse(obj: Any): String {
-		val msg = createSOAPMessage(obj)
-		val result = m.doc2str(msg.document)
+	private fun createPAOSResponse(obj: Any): ByteArray {
+		val otherID = idGenerator.remoteID
+		val newID = idGenerator.createNewID() // also swaps messages in MessageIdGenerator
+		val result = codec.encode(obj, newID, otherID, schema)
 
-		logger.debug { "Message sent:\n$result" }
+		logger.debug { "Message sent:\n${String(result, Charsets.UTF_8)}" }
 
 		return result
 	}
 
-	private fun createSOAPMessage(content: Any): SOAPMessage {
-		val contentDoc = m.marshal(content)
-
-		try {
-			val docStr = m.doc2str(contentDoc)
-			val newDoc = m.str2doc(docStr)
-			schemaValidator.validate(newDoc)
-		} catch (ex: DocumentValidatorException) {
-			logger.warn(ex) { "Schema validation of outgoing message failed." }
-		} catch (ex: SAXException) {
-			throw MarshallingTypeException("Failed to copy document.", ex)
-		} catch (ex: TransformerException) {
-			throw MarshallingTypeException("Failed to copy document.", ex)
-		}
-
-		val msg = m.add2soap(contentDoc)
-		val header = msg.soapHeader
-
-		// fill header with paos stuff
-		val paos = header.addHeaderElement(PAOS_PAOS)
-		paos.setAttributeNS(ECardConstants.SOAP_ENVELOPE, "actor", ECardConstants.ACTOR_NEXT)
-		paos.setAttributeNS(ECardConstants.SOAP_ENVELOPE, "mustUnderstand", "1")
-
-		val version = header.addChildElement(paos, PAOS_VERSION)
-		version.textContent = ECardConstants.PAOS_VERSION_20
-
-		val endpointReference = header.addChildElement(paos, PAOS_ENDPOINTREF)
-		var address = header.addChildElement(endpointReference, PAOS_ADDRESS)
-		address.textContent = "http://www.projectliberty.org/2006/01/role/paos"
-		val metaData = header.addChildElement(endpointReference, PAOS_METADATA)
-		val serviceType = header.addChildElement(metaData, PAOS_SERVICETYPE)
-		serviceType.textContent = ECardConstants.PAOS_NEXT
-
-		val replyTo = header.addHeaderElement(REPLY_TO)
-		address = header.addChildElement(replyTo, ADDRESS)
-		address.textContent = "http://www.projectliberty.org/2006/02/role/paos"
-
-		// add message IDs
-		addMessageIDs(msg)
-		return msg
-	}
-
 	/**
 	 * Sends start PAOS and answers all successor messages to the server associated with this instance.
 	 * Messages are exchanged until the server replies with a `StartPAOSResponse` message.
@@ -393,8 +258,8 @@ class PAOS(
 
 						val reqContentType = ContentType.create("application/vnd.paos+xml", "UTF-8")
 						dumpHttpRequest(logger, "before adding content", req)
-						val reqMsgStr = createPAOSResponse(msg!!)
-						val reqMsg = StringEntity(reqMsgStr, reqContentType)
+						val reqMsgData = createPAOSResponse(msg!!)
+						val reqMsg = ByteArrayEntity(reqMsgData, reqContentType)
 						req.entity = reqMsg
 						req.setHeader(reqMsg.getContentType())
 						req.setHeader("Content-Length", reqMsg.contentLength.toString())
@@ -421,7 +286,7 @@ class PAOS(
 						dumpHttpResponse(logger, response, entityData)
 						try {
 							// consume entity
-							val requestObj = processPAOSRequest(ByteArrayInputStream(entityData))
+							val requestObj = processPAOSRequest(entityData)
 
 							// break when message is startpaosresponse
 							if (requestObj is StartPAOSResponse) {
@@ -516,8 +381,11 @@ class PAOS(
 			)
 		} catch (ex: InvocationTargetException) {
 			throw PAOSDispatcherException(I18N.strings.tr03112_dispatcher_exception_dispatched_method_exception.localized(), ex)
-		} catch (ex: TransformerException) {
-			throw DispatcherException(ex.message, ex)
+		} catch (ex: XMLStreamException) {
+			throw PAOSException(
+				msg = I18N.strings.tr03112_paos_exception_soap_message_creation_failed.localized(),
+				cause = ex,
+			)
 		} catch (ex: WSHelper.WSException) {
 			val newEx = PAOSException(cause = ex)
 			if (firstOecMinorError != null) {
@@ -610,10 +478,7 @@ class PAOS(
 		cause: DocumentValidatorException,
 	): Any? {
 		try {
-			val doc = m.str2doc(content)
-			val msg = m.doc2soap(doc)
-			val body = msg.soapBody.childElements.get(0)
-			val obj = m.unmarshal(body)
+			val obj = codec.decode(content, null).content
 
 			if (obj is DIDAuthenticate) {
 				val didAuth = obj
@@ -636,10 +501,10 @@ class PAOS(
 
 			// no special case needed
 			return null
-		} catch (_: IOException) {
+		} catch (_: XMLStreamException) {
 			// in case of error, just quit
 			return null
-		} catch (_: SAXException) {
+		} catch (_: SOAPException) {
 			return null
 		} catch (_: WSMarshallerException) {
 			return null
@@ -0,0 +1,294 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.transport.paos
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import org.openecard.common.ECardConstants
+import org.openecard.ws.marshal.MarshallingTypeException
+import org.openecard.ws.marshal.WSMarshaller
+import org.openecard.ws.soap.SOAPConstants
+import org.openecard.ws.soap.SOAPException
+import java.io.ByteArrayOutputStream
+import java.io.InputStream
+import javax.xml.XMLConstants
+import javax.xml.namespace.QName
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLOutputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamException
+import javax.xml.stream.XMLStreamReader
+import javax.xml.stream.XMLStreamWriter
+import javax.xml.stream.util.StreamReaderDelegate
+import javax.xml.validation.Schema
+
+private val logger = KotlinLogging.logger { }
+
+private const val SOAP_PREFIX = "soap"
+private const val PAOS_PREFIX = "paos"
+private const val WSA_PREFIX = "wsa"
+
+/**
+ * Message exchanged with the PAOS server.
+ *
+ * @property messageId Value of the WS-Addressing MessageID header, or `null` if the header is missing.
+ * @property relatesTo Value of the WS-Addressing RelatesTo header, or `null` if the header is missing.
+ * @property content JAXB object contained in the SOAP body.
+ */
+class PAOSMessage(
+	val messageId: String?,
+	val relatesTo: String?,
+	val content: Any,
+)
+
+/**
+ * Reads and writes PAOS messages directly between streams and JAXB objects.
+ *
+ * The SOAP envelope and the PAOS and WS-Addressing headers are processed with StAX, the content of the SOAP body is
+ * handed to the marshaller as a stream. No DOM of the message is created. When a schema is given, the body content is
+ * validated while it is read or written.
+ *
+ * @param m Marshaller converting the body content.
+ */
+class PAOSCodec(
+	private val m: WSMarshaller,
+) {
+	/**
+	 * Reads a PAOS message from the given stream.
+	 *
+	 * @param input Stream containing the SOAP envelope.
+	 * @param schema Schema the body content is validated against, or `null` if no validation shall be performed.
+	 * @return The message with its headers and the unmarshalled body content.
+	 * @throws XMLStreamException Thrown in case the stream does not contain a well-formed XML document.
+	 * @throws SOAPException Thrown in case the document is not a SOAP message.
+	 * @throws MarshallingTypeException Thrown in case the body content can not be unmarshalled or violates the schema.
+	 */
+	@Throws(XMLStreamException::class, SOAPException::class, MarshallingTypeException::class)
+	fun decode(
+		input: InputStream,
+		schema: Schema?,
+	): PAOSMessage {
+		val reader = inputFactory.createXMLStreamReader(input)
+		try {
+			reader.nextTag()
+			val soapNs = reader.namespaceURI
+			if (reader.localName != "Envelope" ||
+				(soapNs != SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE && soapNs != SOAPConstants.URI_NS_SOAP_1_2_ENVELOPE)
+			) {
+				throw SOAPException("No Envelope element in SOAP message.")
+			}
+
+			var messageId: String? = null
+			var relatesTo: String? = null
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				if (reader.namespaceURI != soapNs) {
+					throw SOAPException("Undefined namespace (${reader.namespaceURI}) in SOAP message.")
+				}
+				when (reader.localName) {
+					"Header" -> {
+						while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+							when (reader.name) {
+								PAOS.MESSAGE_ID -> messageId = reader.elementText.trim()
+								PAOS.RELATES_TO -> relatesTo = reader.elementText.trim()
+								else -> skipElement(reader)
+							}
+						}
+					}
+					"Body" -> {
+						if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+							throw SOAPException("No content in SOAP body.")
+						}
+						val content = m.unmarshal(fixProfile(reader), schema)
+						return PAOSMessage(messageId, relatesTo, content)
+					}
+					else -> {
+						throw SOAPException("Undefined element (${reader.localName}) in SOAP message.")
+					}
+				}
+			}
+			throw SOAPException("No Body element present in SOAP message.")
+		} finally {
+			reader.close()
+		}
+	}
+
+	/**
+	 * Writes a PAOS message containing the given content and the PAOS and WS-Addressing headers.
+	 *
+	 * @param content JAXB object written into the SOAP body.
+	 * @param messageId Value of the MessageID header.
+	 * @param relatesTo Value of the RelatesTo header, or `null` if the header shall be omitted.
+	 * @param schema Schema the body content is validated against, or `null` if no validation shall be performed.
+	 * Violations are only logged.
+	 * @return The UTF-8 encoded SOAP envelope.
+	 * @throws XMLStreamException Thrown in case the message could not be written.
+	 * @throws MarshallingTypeException Thrown in case the content can not be marshalled.
+	 */
+	@Throws(XMLStreamException::class, MarshallingTypeException::class)
+	fun encode(
+		content: Any,
+		messageId: String,
+		relatesTo: String?,
+		schema: Schema?,
+	): ByteArray {
+		val out = ByteArrayOutputStream()
+		val w = outputFactory.createXMLStreamWriter(out, "UTF-8")
+		w.writeStartDocument("UTF-8", "1.0")
+		w.writeStartElement(SOAP_PREFIX, "Envelope", ECardConstants.SOAP_ENVELOPE)
+		w.writeNamespace(SOAP_PREFIX, ECardConstants.SOAP_ENVELOPE)
+		w.writeNamespace(PAOS_PREFIX, ECardConstants.PAOS_VERSION_20)
+		w.writeNamespace(WSA_PREFIX, ECardConstants.WS_ADDRESSING)
+		w.writeStartElement(SOAP_PREFIX, "Header", ECardConstants.SOAP_ENVELOPE)
+
+		// fill header with paos stuff
+		w.writeStart(PAOS.PAOS_PAOS)
+		w.writeAttribute(SOAP_PREFIX, ECardConstants.SOAP_ENVELOPE, "actor", ECardConstants.ACTOR_NEXT)
+		w.writeAttribute(SOAP_PREFIX, ECardConstants.SOAP_ENVELOPE, "mustUnderstand", "1")
+		w.writeTextElement(PAOS.PAOS_VERSION, ECardConstants.PAOS_VERSION_20)
+		w.writeStart(PAOS.PAOS_ENDPOINTREF)
+		w.writeTextElement(PAOS.PAOS_ADDRESS, "http://www.projectliberty.org/2006/01/role/paos")
+		w.writeStart(PAOS.PAOS_METADATA)
+		w.writeTextElement(PAOS.PAOS_SERVICETYPE, ECardConstants.PAOS_NEXT)
+		w.writeEndElement()
+		w.writeEndElement()
+		w.writeEndElement()
+
+		w.writeStart(PAOS.REPLY_TO)
+		w.writeTextElement(PAOS.ADDRESS, "http://www.projectliberty.org/2006/02/role/paos")
+		w.writeEndElement()
+
+		// add message IDs
+		if (relatesTo != null) {
+			w.writeTextElement(PAOS.RELATES_TO, relatesTo)
+		}
+		w.writeTextElement(PAOS.MESSAGE_ID, messageId)
+		w.writeEndElement()
+
+		w.writeStartElement(SOAP_PREFIX, "Body", ECardConstants.SOAP_ENVELOPE)
+		m.marshal(content, w, schema)
+		w.writeEndElement()
+		w.writeEndElement()
+		w.writeEndDocument()
+		w.close()
+
+		return out.toByteArray()
+	}
+
+	private fun XMLStreamWriter.writeStart(name: QName) {
+		val prefix = if (name.namespaceURI == ECardConstants.PAOS_VERSION_20) PAOS_PREFIX else WSA_PREFIX
+		writeStartElement(prefix, name.localPart, name.namespaceURI)
+	}
+
+	private fun XMLStreamWriter.writeTextElement(
+		name: QName,
+		value: String,
+	) {
+		writeStart(name)
+		writeCharacters(value)
+		writeEndElement()
+	}
+
+	private fun skipElement(reader: XMLStreamReader) {
+		var depth = 1
+		while (depth > 0) {
+			when (reader.next()) {
+				XMLStreamConstants.START_ELEMENT -> depth++
+				XMLStreamConstants.END_ELEMENT -> depth--
+			}
+		}
+	}
+
+	private fun fixProfile(reader: XMLStreamReader): XMLStreamReader {
+		// while there are the eID-Servers to blame, some don't get it right and actually Profile is a useless attribute
+		// anyway
+		if (reader.localName == "StartPAOSResponse" && reader.getAttributeValue(null, PROFILE) == null) {
+			logger.warn { "Received message without Profile attribute, adding one for proper validation." }
+			return ProfileAddingReader(reader)
+		}
+		return reader
+	}
+
+	companion object {
+		private val inputFactory: XMLInputFactory =
+			XMLInputFactory.newInstance().apply {
+				setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true)
+				// XXE countermeasures
+				setProperty(XMLInputFactory.SUPPORT_DTD, false)
+				setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false)
+			}
+		private val outputFactory: XMLOutputFactory = XMLOutputFactory.newInstance()
+	}
+}
+
+private const val PROFILE = "Profile"
+
+/**
+ * Reader adding the Profile attribute to the element at the current position of the wrapped reader.
+ */
+private class ProfileAddingReader(
+	reader: XMLStreamReader,
+) : StreamReaderDelegate(reader) {
+	private var atRoot = true
+
+	override fun next(): Int {
+		atRoot = false
+		return super.next()
+	}
+
+	override fun nextTag(): Int {
+		atRoot = false
+		return super.nextTag()
+	}
+
+	private fun isAdded(index: Int): Boolean = atRoot && index == super.getAttributeCount()
+
+	override fun getAttributeCount(): Int = super.getAttributeCount() + if (atRoot) 1 else 0
+
+	override fun getAttributeName(index: Int): QName =
+		if (isAdded(index)) QName(PROFILE) else super.getAttributeName(index)
+
+	override fun getAttributeLocalName(index: Int): String =
+		if (isAdded(index)) PROFILE else super.getAttributeLocalName(index)
+
+	override fun getAttributeNamespace(index: Int): String? =
+		if (isAdded(index)) null else super.getAttributeNamespace(index)
+
+	override fun getAttributePrefix(index: Int): String? =
+		if (isAdded(index)) XMLConstants.DEFAULT_NS_PREFIX else super.getAttributePrefix(index)
+
+	override fun getAttributeType(index: Int): String = if (isAdded(index)) "CDATA" else super.getAttributeType(index)
+
+	override fun getAttributeValue(index: Int): String =
+		if (isAdded(index)) ECardConstants.Profile.ECARD_1_1 else super.getAttributeValue(index)
+
+	override fun isAttributeSpecified(index: Int): Boolean = isAdded(index) || super.isAttributeSpecified(index)
+
+	override fun getAttributeValue(
+		namespaceURI: String?,
+		localName: String,
+	): String? =
+		if (atRoot && namespaceURI.isNullOrEmpty() && localName == PROFILE) {
+			ECardConstants.Profile.ECARD_1_1
+		} else {
+			super.getAttributeValue(namespaceURI, localName)
+		}
+}
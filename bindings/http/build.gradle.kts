@@ -47,15 +47,29 @@ kotlin {
 
 tasks.named("jvmProcessResources", ProcessResources::class).configure {
 	doLast {
-		// build file listing of www files in resources dir, separated with :
-		val files =
+		val wwwFiles =
 			destinationDir
 				.resolve("www")
 				.walk()
-				.filter { it.isFile }
+				.filter { it.isFile && it.extension != "gz" }
+				.toList()
+
+		// build file listing of www files in resources dir, separated with :
+		val files =
+			wwwFiles
 				.map { it.relativeTo(destinationDir).path }
 				.map { "/$it" }
 				.joinToString(":")
 		destinationDir.resolve("www-files").writeText(files)
+
+		// precompress text files, the binding serves them to clients accepting gzip
+		val compressible = setOf("html", "css", "js", "txt", "xml")
+		wwwFiles
+			.filter { it.extension in compressible }
+			.forEach { f ->
+				java.util.zip.GZIPOutputStream(f.resolveSibling("${f.name}.gz").outputStream()).use { out ->
+					f.inputStream().use { it.copyTo(out) }
+				}
+			}
 	}
 }
@@ -25,6 +25,7 @@ import org.apache.http.HttpRequestInterceptor
 import org.apache.http.HttpResponseInterceptor
 import org.openecard.addon.AddonManager
 import org.openecard.control.binding.http.common.DocumentRoot
+import org.openecard.control.binding.http.handler.FileHandler
 import org.openecard.control.binding.http.handler.HttpAppPluginActionHandler
 import org.openecard.control.binding.http.interceptor.CacheControlHeaderResponseInterceptor
 import org.openecard.control.binding.http.interceptor.ErrorResponseInterceptor
@@ -43,6 +44,7 @@ class HttpBinding(
 	private val _port: Int,
 	documentRootPath: String = "/www",
 	listFile: String = "/www-files",
+	private val config: HttpServiceConfig = HttpServiceConfig(),
 ) {
 	// Create document root
 	private val documentRoot = DocumentRoot(documentRootPath, listFile)
@@ -61,6 +63,7 @@ class HttpBinding(
 	 * @param _port Port used for the binding. If the port is 0, then chose a port randomly.
 	 * @param documentRootPath Path of the document root
 	 * @param listFile
+	 * @param config Limits of the connection handling.
 	 * @throws java.io.IOException If the document root cannot be read
 	 * @throws Exception
 	 */
@@ -90,8 +93,8 @@ class HttpBinding(
 		if (currentAddonManager == null) {
 			throw HttpServiceError("Trying to use uninitialized HttpBinding instance.")
 		} else {
-			val handler = HttpAppPluginActionHandler(currentAddonManager)
-			service = HttpService(_port, handler, actualRequestInterceptor, actualResponseInterceptor)
+			val handler = HttpAppPluginActionHandler(currentAddonManager, FileHandler(documentRoot))
+			service = HttpService(_port, handler, actualRequestInterceptor, actualResponseInterceptor, config)
 			service!!.start()
 		}
 	}
@@ -25,13 +25,19 @@ import io.github.oshai.kotlinlogging.KotlinLogging
 import org.apache.http.ConnectionClosedException
 import org.apache.http.ConnectionReuseStrategy
 import org.apache.http.HttpException
+import org.apache.http.HttpRequest
 import org.apache.http.HttpRequestInterceptor
+import org.apache.http.HttpResponse
 import org.apache.http.HttpResponseFactory
 import org.apache.http.HttpResponseInterceptor
+import org.apache.http.HttpStatus
+import org.apache.http.config.ConnectionConfig
 import org.apache.http.impl.DefaultBHttpServerConnection
+import org.apache.http.impl.DefaultBHttpServerConnectionFactory
 import org.apache.http.impl.DefaultConnectionReuseStrategy
 import org.apache.http.impl.DefaultHttpResponseFactory
 import org.apache.http.protocol.BasicHttpContext
+import org.apache.http.protocol.HttpContext
 import org.apache.http.protocol.HttpProcessor
 import org.apache.http.protocol.HttpRequestHandler
 import org.apache.http.protocol.ImmutableHttpProcessor
@@ -41,11 +47,27 @@ import java.lang.Exception
 import java.net.InetAddress
 import java.net.ServerSocket
 import java.net.Socket
-import java.nio.charset.Charset
+import java.net.SocketTimeoutException
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 private val logger = KotlinLogging.logger {}
 
+private val SERVICE_UNAVAILABLE =
+	"HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+		.toByteArray(StandardCharsets.US_ASCII)
+
 /**
+ * HTTP server of the localhost binding.
+ *
+ * Connections are accepted by a dedicated thread and served by a bounded pool of worker threads, see
+ * [HttpServiceConfig] for the limits. The pool grows by one worker for each long-poll request in progress, so that
+ * long-polls do not occupy the workers needed for other requests.
  *
  * @author Moritz Horsch
  * @author Tobias Wich
@@ -55,10 +77,14 @@ class HttpService(
 	handler: HttpRequestHandler,
 	reqInterceptors: List<HttpRequestInterceptor>,
 	respInterceptors: List<HttpResponseInterceptor>,
+	private val config: HttpServiceConfig = HttpServiceConfig(),
 ) : Runnable {
 	private val thread: Thread
 	private val service: org.apache.http.protocol.HttpService
-	protected val server: ServerSocket = ServerSocket(port, BACKLOG, InetAddress.getByName("127.0.0.1"))
+	private val connectionFactory: DefaultBHttpServerConnectionFactory
+	private val workers: ThreadPoolExecutor
+	private var numLongPolls = 0
+	protected val server: ServerSocket = ServerSocket(port, config.backlog, InetAddress.getByName("127.0.0.1"))
 
 	/**
 	 * Creates a new HTTPService.
@@ -67,6 +93,7 @@ class HttpService(
 	 * @param handler Handler
 	 * @param reqInterceptors
 	 * @param respInterceptors
+	 * @param config Limits of the connection handling.
 	 * @throws Exception
 	 */
 	init {
@@ -85,12 +112,31 @@ class HttpService(
 		// Set up handler registry
 		val handlerRegistry = UriHttpRequestHandlerMapper()
 		logger.debug { "Add handler [${handler.javaClass.canonicalName}] for ID[*]" }
-		handlerRegistry.register("*", handler)
+		handlerRegistry.register("*", LongPollHandler(handler))
 
 		// create service instance
 		service =
 			org.apache.http.protocol
 				.HttpService(httpProcessor, connectionReuseStrategy, responseFactory, handlerRegistry)
+
+		val connConfig =
+			ConnectionConfig
+				.custom()
+				.setBufferSize(8192)
+				.setCharset(StandardCharsets.UTF_8)
+				.build()
+		connectionFactory = DefaultBHttpServerConnectionFactory(connConfig)
+
+		workers =
+			ThreadPoolExecutor(
+				config.maxWorkers,
+				config.maxWorkers,
+				60,
+				TimeUnit.SECONDS,
+				ArrayBlockingQueue(config.maxQueuedConnections),
+				WorkerThreadFactory(this.port),
+			)
+		workers.allowCoreThreadTimeOut(true)
 	}
 
 	/**
@@ -109,6 +155,7 @@ class HttpService(
 			server.close()
 		} catch (ignore: Exception) {
 		}
+		workers.shutdownNow()
 	}
 
 	@Throws(IOException::class, HttpServiceError::class)
@@ -117,32 +164,16 @@ class HttpService(
 	override fun run() {
 		while (!Thread.interrupted()) {
 			try {
-				val connection: DefaultBHttpServerConnection
-				val dec = Charset.forName("UTF-8").newDecoder()
-				val enc = Charset.forName("UTF-8").newEncoder()
-				connection = DefaultBHttpServerConnection(8192, dec, enc, null)
-				connection.bind(accept())
-
-				object : Thread() {
-					override fun run() {
-						try {
-							while (connection.isOpen) {
-								service.handleRequest(connection, BasicHttpContext())
-							}
-						} catch (ex: ConnectionClosedException) {
-							// connection closed by client, this is the expected outcome
-						} catch (ex: HttpException) {
-							logger.error(ex) { "Error processing HTTP request or response." }
-						} catch (ex: IOException) {
-							logger.error(ex) { "IO Error while processing HTTP request or response." }
-						} finally {
-							try {
-								connection.shutdown()
-							} catch (ignore: IOException) {
-							}
-						}
-					}
-				}.start()
+				val socket = accept()
+				// close idle keep-alive connections, so they do not block a worker forever
+				socket.soTimeout = config.keepAliveTimeout
+				val connection = connectionFactory.createConnection(socket)
+				try {
+					workers.execute { serve(connection) }
+				} catch (ex: RejectedExecutionException) {
+					logger.warn { "Too many connections to the HTTP binding, rejecting connection." }
+					reject(socket)
+				}
 			} catch (ex: IOException) {
 				// if interrupted the error is intentionally (SocketClosedException)
 				if (!Thread.interrupted()) {
@@ -161,6 +192,98 @@ class HttpService(
 		}
 	}
 
+	private fun serve(connection: DefaultBHttpServerConnection) {
+		try {
+			while (connection.isOpen) {
+				service.handleRequest(connection, BasicHttpContext())
+				if (workers.queue.isNotEmpty()) {
+					// free the worker for waiting connections instead of keeping this one alive
+					logger.debug { "Closing keep-alive HTTP connection, other connections are waiting." }
+					break
+				}
+			}
+		} catch (ex: ConnectionClosedException) {
+			// connection closed by client, this is the expected outcome
+		} catch (ex: SocketTimeoutException) {
+			logger.debug { "Closing idle HTTP connection." }
+		} catch (ex: HttpException) {
+			logger.error(ex) { "Error processing HTTP request or response." }
+		} catch (ex: IOException) {
+			logger.error(ex) { "IO Error while processing HTTP request or response." }
+		} finally {
+			try {
+				connection.shutdown()
+			} catch (ignore: IOException) {
+			}
+		}
+	}
+
+	/**
+	 * Registers a long-poll request and adds a worker to the pool for the time it is processed.
+	 *
+	 * @return `true` if the request may be processed, `false` if the long-poll limit is reached.
+	 */
+	private fun beginLongPoll(): Boolean =
+		synchronized(workers) {
+			if (numLongPolls >= config.maxLongPolls) {
+				false
+			} else {
+				numLongPolls++
+				// the maximum must be raised first, the core size may not exceed it
+				workers.maximumPoolSize = config.maxWorkers + numLongPolls
+				workers.corePoolSize = config.maxWorkers + numLongPolls
+				true
+			}
+		}
+
+	private fun endLongPoll() {
+		synchronized(workers) {
+			numLongPolls--
+			workers.corePoolSize = config.maxWorkers + numLongPolls
+			workers.maximumPoolSize = config.maxWorkers + numLongPolls
+		}
+	}
+
+	private fun isLongPoll(request: HttpRequest): Boolean {
+		val path = request.requestLine.uri.substringBefore('?')
+		return config.longPollPaths.contains(path)
+	}
+
+	/**
+	 * Handler taking the workers of long-poll requests out of the worker limit.
+	 */
+	private inner class LongPollHandler(
+		private val delegate: HttpRequestHandler,
+	) : HttpRequestHandler {
+		override fun handle(
+			request: HttpRequest,
+			response: HttpResponse,
+			context: HttpContext,
+		) {
+			if (!isLongPoll(request)) {
+				delegate.handle(request, response, context)
+			} else if (!beginLongPoll()) {
+				logger.warn { "Too many long-poll requests to the HTTP binding, rejecting request." }
+				response.setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE)
+			} else {
+				try {
+					delegate.handle(request, response, context)
+				} finally {
+					endLongPoll()
+				}
+			}
+		}
+	}
+
+	private fun reject(socket: Socket) {
+		try {
+			socket.use {
+				it.getOutputStream().write(SERVICE_UNAVAILABLE)
+			}
+		} catch (ignore: IOException) {
+		}
+	}
+
 	val port: Int
 		/**
 		 * Returns the port number on which the HTTP binding is listening.
@@ -169,7 +292,16 @@ class HttpService(
 		 */
 		get() = server.localPort
 
-	companion object {
-		private const val BACKLOG = 10
+	private class WorkerThreadFactory(
+		port: Int,
+	) : ThreadFactory {
+		private val num = AtomicInteger(0)
+		private val prefix = "Open-eCard Localhost-Binding-$port-Worker-"
+
+		override fun newThread(r: Runnable): Thread {
+			val t = Thread(r, prefix + num.getAndIncrement())
+			t.isDaemon = true
+			return t
+		}
 	}
 }
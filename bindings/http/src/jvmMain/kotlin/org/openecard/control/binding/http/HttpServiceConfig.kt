@@ -0,0 +1,96 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.control.binding.http
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import org.openecard.common.OpenecardProperties
+
+private val logger = KotlinLogging.logger {}
+
+/**
+ * Limits of the connection handling in the [HttpService].
+ *
+ * Each open connection is served by one worker thread. Connections exceeding the number of workers wait until a
+ * worker becomes free, connections exceeding the waiting limit as well are answered with status 503.
+ *
+ * Requests to one of the long-poll paths may block for an unlimited time. While such a request is processed, its
+ * worker does not count towards [maxWorkers], so long-polls can not starve other requests. Their number is limited by
+ * [maxLongPolls] instead, further long-polls are answered with status 503.
+ *
+ * @property backlog Number of connections the operating system queues before they are accepted.
+ * @property maxWorkers Maximum number of connections served at the same time.
+ * @property maxQueuedConnections Maximum number of accepted connections waiting for a worker.
+ * @property keepAliveTimeout Time in milliseconds an idle keep-alive connection is kept open.
+ * @property maxLongPolls Maximum number of long-poll requests processed at the same time.
+ * @property longPollPaths Paths of the requests which are treated as long-polls.
+ */
+class HttpServiceConfig(
+	val backlog: Int = DEFAULT_BACKLOG,
+	val maxWorkers: Int = DEFAULT_MAX_WORKERS,
+	val maxQueuedConnections: Int = DEFAULT_MAX_QUEUED_CONNECTIONS,
+	val keepAliveTimeout: Int = DEFAULT_KEEP_ALIVE_TIMEOUT,
+	val maxLongPolls: Int = DEFAULT_MAX_LONG_POLLS,
+	val longPollPaths: Set<String> = DEFAULT_LONG_POLL_PATHS,
+) {
+	companion object {
+		const val DEFAULT_BACKLOG = 128
+		const val DEFAULT_MAX_WORKERS = 64
+		const val DEFAULT_MAX_QUEUED_CONNECTIONS = 512
+		const val DEFAULT_KEEP_ALIVE_TIMEOUT = 5000
+		const val DEFAULT_MAX_LONG_POLLS = 64
+
+		// WaitForChange of the status add-on blocks until an event occurs
+		@JvmField
+		val DEFAULT_LONG_POLL_PATHS = setOf("/waitForChange")
+
+		/**
+		 * Creates a configuration from the `http-binding.*` entries of the [OpenecardProperties].
+		 * Missing or malformed entries are replaced by their default values.
+		 *
+		 * @return The configuration.
+		 */
+		@JvmStatic
+		fun fromProperties(): HttpServiceConfig =
+			HttpServiceConfig(
+				backlog = intProperty("http-binding.backlog", DEFAULT_BACKLOG),
+				maxWorkers = intProperty("http-binding.max-workers", DEFAULT_MAX_WORKERS),
+				maxQueuedConnections =
+					intProperty("http-binding.max-queued-connections", DEFAULT_MAX_QUEUED_CONNECTIONS),
+				keepAliveTimeout = intProperty("http-binding.keep-alive-timeout", DEFAULT_KEEP_ALIVE_TIMEOUT),
+				maxLongPolls = intProperty("http-binding.max-long-polls", DEFAULT_MAX_LONG_POLLS),
+			)
+
+		private fun intProperty(
+			key: String,
+			default: Int,
+		): Int {
+			val value = OpenecardProperties.getProperty(key) ?: return default
+			val intValue = value.trim().toIntOrNull()
+			if (intValue == null || intValue <= 0) {
+				logger.warn { "Error in config file, value of $key is malformed." }
+				return default
+			}
+			return intValue
+		}
+	}
+}
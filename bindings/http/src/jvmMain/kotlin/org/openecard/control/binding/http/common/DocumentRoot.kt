@@ -33,7 +33,7 @@ private val logger = KotlinLogging.logger { }
  * @author Moritz Horsch
  */
 class DocumentRoot(
-	rootPath: String,
+	val rootPath: String,
 	listFile: String,
 ) {
 	private var files: Map<String, URL>
@@ -63,6 +63,12 @@ class DocumentRoot(
 	 */
 	fun contains(file: String): Boolean = files.containsKey(file)
 
+	/**
+	 * Paths of all files in the document root.
+	 */
+	val fileNames: Set<String>
+		get() = files.keys
+
 	/**
 	 * Returns files and directories in the document root.
 	 * The list is an immutable copy of the internal file list.
@@ -0,0 +1,139 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.control.binding.http.common
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import org.openecard.common.util.ByteUtils
+import org.openecard.common.util.FileUtils.resolveResourceAsURL
+import org.openecard.common.util.FileUtils.toByteArray
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.net.URL
+import java.security.MessageDigest
+import java.time.Instant
+import java.time.ZoneOffset
+import java.time.format.DateTimeFormatter
+import java.util.zip.GZIPOutputStream
+
+private val logger = KotlinLogging.logger { }
+
+/**
+ * Static file of the document root with its content and the values needed for conditional requests.
+ *
+ * @property content Content of the file.
+ * @property gzipContent Gzip compressed content of the file, or `null` if compression does not pay off.
+ * @property contentType Value of the Content-Type header.
+ * @property etag Strong entity tag of the uncompressed content.
+ * @property gzipEtag Strong entity tag of the compressed content.
+ * @property lastModified Modification time of the file in milliseconds since the epoch, truncated to seconds.
+ */
+class StaticResource(
+	val content: ByteArray,
+	val gzipContent: ByteArray?,
+	val contentType: String,
+	val etag: String,
+	val gzipEtag: String,
+	val lastModified: Long,
+) {
+	/**
+	 * Modification time formatted as HTTP date.
+	 */
+	val lastModifiedHeader: String =
+		DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(lastModified).atOffset(ZoneOffset.UTC))
+}
+
+/**
+ * Immutable index of all files of a document root.
+ *
+ * The files are read once when the index is created. The gzip variants are precomputed by the build next to the
+ * files with the suffix `.gz`. If a variant is missing, it is computed when the index is created.
+ */
+class StaticResources(
+	documentRoot: DocumentRoot,
+) {
+	private val resources: Map<String, StaticResource>
+
+	init {
+		val startTime = System.currentTimeMillis()
+		val result = HashMap<String, StaticResource>()
+		for (fileName in documentRoot.fileNames) {
+			val url = documentRoot.getFile(fileName) ?: continue
+			try {
+				result[fileName] = load(documentRoot.rootPath + fileName, url, startTime)
+			} catch (ex: IOException) {
+				logger.error(ex) { "Failed to read static resource $fileName." }
+			}
+		}
+		resources = result
+	}
+
+	/**
+	 * Returns the resource with the given path in the document root.
+	 *
+	 * @param fileName Path of the resource, starting with a slash.
+	 * @return The resource, or `null` if the document root does not contain it.
+	 */
+	operator fun get(fileName: String): StaticResource? = resources[fileName]
+
+	private fun load(
+		resourcePath: String,
+		url: URL,
+		startTime: Long,
+	): StaticResource {
+		val conn = url.openConnection()
+		val modified = conn.lastModified.takeIf { it > 0 } ?: startTime
+		val content = conn.getInputStream().use { toByteArray(it) }
+
+		val ext = resourcePath.substring(resourcePath.lastIndexOf(".") + 1)
+		val mimeType = MimeType.fromFilenameExtension(ext)?.mimeType ?: MimeType.TEXT_PLAIN.mimeType
+		val contentType = if (mimeType.startsWith("text/")) "$mimeType; charset=UTF-8" else mimeType
+
+		var gzipContent: ByteArray? = null
+		if (isCompressible(mimeType)) {
+			val precompressed = resolveResourceAsURL(StaticResources::class.java, "$resourcePath.gz")
+			val compressed = precompressed?.openStream()?.use { toByteArray(it) } ?: gzip(content)
+			if (compressed.size < content.size) {
+				gzipContent = compressed
+			}
+		}
+
+		val hash = ByteUtils.toHexString(MessageDigest.getInstance("SHA-256").digest(content))!!.substring(0, 32)
+		return StaticResource(
+			content = content,
+			gzipContent = gzipContent,
+			contentType = contentType,
+			etag = "\"$hash\"",
+			gzipEtag = "\"$hash-gz\"",
+			lastModified = modified / 1000 * 1000,
+		)
+	}
+
+	private fun isCompressible(mimeType: String): Boolean =
+		mimeType.startsWith("text/") || mimeType == MimeType.APPLICATION_JS.mimeType
+
+	private fun gzip(content: ByteArray): ByteArray {
+		val out = ByteArrayOutputStream()
+		GZIPOutputStream(out).use { it.write(content) }
+		return out.toByteArray()
+	}
+}
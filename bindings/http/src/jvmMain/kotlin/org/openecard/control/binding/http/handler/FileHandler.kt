@@ -25,24 +25,34 @@ import io.github.oshai.kotlinlogging.KotlinLogging
 import org.apache.http.HttpRequest
 import org.apache.http.HttpResponse
 import org.apache.http.HttpStatus
-import org.apache.http.entity.BasicHttpEntity
-import org.apache.http.entity.ContentType
+import org.apache.http.entity.ByteArrayEntity
 import org.openecard.control.binding.http.common.DocumentRoot
+import org.openecard.control.binding.http.common.HeaderTypes
 import org.openecard.control.binding.http.common.Http11Response
-import org.openecard.control.binding.http.common.MimeType
+import org.openecard.control.binding.http.common.StaticResource
+import org.openecard.control.binding.http.common.StaticResources
 import java.net.URI
-import java.net.URL
 import java.net.URLDecoder
+import java.time.ZonedDateTime
+import java.time.format.DateTimeFormatter
+import java.time.format.DateTimeParseException
 
 private val logger = KotlinLogging.logger { }
 
 /**
+ * Handler serving the static files of the document root.
+ *
+ * The files are served from the in-memory [StaticResources] index. Responses carry an entity tag and the modification
+ * time, so that clients can revalidate their copy with a conditional request which is answered with 304 Not Modified.
+ * Clients accepting gzip get the precompressed variant of the file.
  *
  * @author Moritz Horsch
  */
 class FileHandler(
-	private val documentRoot: DocumentRoot,
+	private val resources: StaticResources,
 ) : ControlCommonHandler("/*") {
+	constructor(documentRoot: DocumentRoot) : this(StaticResources(documentRoot))
+
 	override fun handle(httpRequest: HttpRequest): HttpResponse {
 		// Return 404 Not Found in the default case
 		val httpResponse = Http11Response(HttpStatus.SC_NOT_FOUND)
@@ -51,11 +61,11 @@ class FileHandler(
 		if (requestLine.method == "GET") {
 			val requestURI = URI.create(requestLine.uri)
 
-			val filePath = documentRoot.getFile(URLDecoder.decode(requestURI.path, "UTF-8"))
-			if (filePath != null) {
+			val resource = resources[URLDecoder.decode(requestURI.path, "UTF-8")]
+			if (resource != null) {
 				// Handle file
 				logger.debug { "Handle file request" }
-				handleFile(httpResponse, filePath)
+				handleFile(httpRequest, httpResponse, resource)
 			} else {
 				logger.debug { "The DocumentRoot does not contain the URI: ${requestURI.path}" }
 			}
@@ -68,18 +78,64 @@ class FileHandler(
 	}
 
 	private fun handleFile(
+		httpRequest: HttpRequest,
 		httpResponse: Http11Response,
-		file: URL,
+		resource: StaticResource,
 	) {
-		val fileName = file.toString()
-		val fileExtension = fileName.substring(fileName.lastIndexOf(".") + 1)
-		val mimeType: MimeType? = MimeType.fromFilenameExtension(fileExtension)
-		val typeName = mimeType?.mimeType ?: MimeType.TEXT_PLAIN.mimeType
+		val gzipContent = resource.gzipContent?.takeIf { acceptsGzip(httpRequest) }
+		val etag = if (gzipContent != null) resource.gzipEtag else resource.etag
+
+		httpResponse.setHeader(HeaderTypes.ETAG.fieldName(), etag)
+		httpResponse.setHeader(HeaderTypes.LAST_MODIFIED.fieldName(), resource.lastModifiedHeader)
+		// the client may store the file, but has to revalidate it before using it
+		httpResponse.setHeader(HeaderTypes.CACHE_CONTROL.fieldName(), "no-cache")
+		if (resource.gzipContent != null) {
+			httpResponse.setHeader(HeaderTypes.VARY.fieldName(), HeaderTypes.ACCEPT_ENCODING.fieldName())
+		}
+
+		if (isNotModified(httpRequest, etag, resource.lastModified)) {
+			httpResponse.setStatusCode(HttpStatus.SC_NOT_MODIFIED)
+			return
+		}
 
 		httpResponse.setStatusCode(HttpStatus.SC_OK)
-		val entity = BasicHttpEntity()
-		entity.content = file.openStream()
-		entity.setContentType(ContentType.create(typeName, "UTF-8").toString())
+		val entity = ByteArrayEntity(gzipContent ?: resource.content)
+		entity.setContentType(resource.contentType)
+		if (gzipContent != null) {
+			entity.setContentEncoding("gzip")
+		}
 		httpResponse.entity = entity
 	}
+
+	private fun acceptsGzip(httpRequest: HttpRequest): Boolean =
+		httpRequest.getHeaders(HeaderTypes.ACCEPT_ENCODING.fieldName()).any { header ->
+			header.elements.any {
+				it.name.equals("gzip", ignoreCase = true) && !isZeroQuality(it.getParameterByName("q")?.value)
+			}
+		}
+
+	private fun isZeroQuality(q: String?): Boolean = q?.toDoubleOrNull() == 0.0
+
+	private fun isNotModified(
+		httpRequest: HttpRequest,
+		etag: String,
+		lastModified: Long,
+	): Boolean {
+		val ifNoneMatch = httpRequest.getHeaders(HeaderTypes.IF_NONE_MATCH.fieldName())
+		if (ifNoneMatch.isNotEmpty()) {
+			// If-None-Match takes precedence over If-Modified-Since and uses the weak comparison
+			return ifNoneMatch
+				.flatMap { it.value.split(",") }
+				.map { it.trim().removePrefix("W/") }
+				.any { it == "*" || it == etag }
+		}
+
+		val ifModifiedSince = httpRequest.getFirstHeader(HeaderTypes.IF_MODIFIED_SINCE.fieldName()) ?: return false
+		return try {
+			val since = ZonedDateTime.parse(ifModifiedSince.value, DateTimeFormatter.RFC_1123_DATE_TIME)
+			lastModified <= since.toInstant().toEpochMilli()
+		} catch (ex: DateTimeParseException) {
+			false
+		}
+	}
 }
@@ -62,6 +62,7 @@ private const val METHOD_HDR: String = "X-OeC-Method"
  */
 class HttpAppPluginActionHandler(
 	addonManager: AddonManager,
+	private val fileHandler: FileHandler = FileHandler(DocumentRoot("/www", "/www-files")),
 ) : HttpControlHandler("*") {
 	private val selector = AddonSelector(addonManager)
 
@@ -122,7 +123,7 @@ class HttpAppPluginActionHandler(
 			if (path == "/") {
 				IndexHandler().handle(httpRequest, httpResponse, context)
 			} else if (path.startsWith("/")) {
-				FileHandler(DocumentRoot("/www", "/www-files")).handle(httpRequest, httpResponse, context)
+				fileHandler.handle(httpRequest, httpResponse, context)
 			} else {
 				DefaultHandler().handle(httpRequest, httpResponse, context)
 			}
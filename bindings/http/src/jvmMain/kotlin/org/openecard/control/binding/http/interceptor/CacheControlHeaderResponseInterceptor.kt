@@ -29,7 +29,8 @@ import org.apache.http.protocol.HttpContext
  * HttpResponseInterceptor implementation which adds a `Cache-Control` header to the response.
  * <br></br>
  * <br></br>
- * The header sets the directive `no-store` to advise the user agent to do not cache the response.
+ * The header sets the directive `no-store` to advise the user agent to do not cache the response. Responses which
+ * already contain a `Cache-Control` header, such as the static files, are not modified.
  *
  * @author Hans-Martin Haase
  */
@@ -38,6 +39,8 @@ class CacheControlHeaderResponseInterceptor : HttpResponseInterceptor {
 		hr: HttpResponse,
 		hc: HttpContext,
 	) {
-		hr.addHeader("Cache-Control", "no-store")
+		if (!hr.containsHeader("Cache-Control")) {
+			hr.addHeader("Cache-Control", "no-store")
+		}
 	}
 }
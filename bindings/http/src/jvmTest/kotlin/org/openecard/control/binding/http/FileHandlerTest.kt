@@ -0,0 +1,82 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.control.binding.http
+
+import org.apache.http.HttpStatus
+import org.apache.http.message.BasicHttpRequest
+import org.apache.http.util.EntityUtils
+import org.openecard.control.binding.http.common.DocumentRoot
+import org.openecard.control.binding.http.handler.FileHandler
+import org.testng.Assert
+import org.testng.annotations.Test
+import java.util.zip.GZIPInputStream
+
+/**
+ * Tests the caching related behaviour of the FileHandler.
+ */
+class FileHandlerTest {
+	private val handler = FileHandler(DocumentRoot("/www", "/www-files"))
+
+	@Test
+	fun testConditionalRequest() {
+		val first = handler.handle(BasicHttpRequest("GET", "/index.html"))
+		Assert.assertEquals(first.statusLine.statusCode, HttpStatus.SC_OK)
+		val etag = first.getFirstHeader("ETag").value
+		val lastModified = first.getFirstHeader("Last-Modified").value
+		Assert.assertTrue(etag.startsWith("\""))
+
+		val byEtag = BasicHttpRequest("GET", "/index.html")
+		byEtag.addHeader("If-None-Match", "\"other\", $etag")
+		val second = handler.handle(byEtag)
+		Assert.assertEquals(second.statusLine.statusCode, HttpStatus.SC_NOT_MODIFIED)
+		Assert.assertNull(second.entity)
+
+		val byDate = BasicHttpRequest("GET", "/index.html")
+		byDate.addHeader("If-Modified-Since", lastModified)
+		Assert.assertEquals(handler.handle(byDate).statusLine.statusCode, HttpStatus.SC_NOT_MODIFIED)
+
+		val changed = BasicHttpRequest("GET", "/index.html")
+		changed.addHeader("If-None-Match", "\"other\"")
+		Assert.assertEquals(handler.handle(changed).statusLine.statusCode, HttpStatus.SC_OK)
+	}
+
+	@Test
+	fun testGzipVariant() {
+		val plain = handler.handle(BasicHttpRequest("GET", "/css/style.css"))
+		val plainContent = EntityUtils.toByteArray(plain.entity)
+
+		val req = BasicHttpRequest("GET", "/css/style.css")
+		req.addHeader("Accept-Encoding", "gzip, deflate")
+		val compressed = handler.handle(req)
+		Assert.assertEquals(compressed.entity.contentEncoding.value, "gzip")
+		Assert.assertNotEquals(compressed.getFirstHeader("ETag").value, plain.getFirstHeader("ETag").value)
+		val content = GZIPInputStream(compressed.entity.content).use { it.readBytes() }
+		Assert.assertEquals(content, plainContent)
+	}
+
+	@Test
+	fun testUnknownFile() {
+		val resp = handler.handle(BasicHttpRequest("GET", "/does-not-exist.html"))
+		Assert.assertEquals(resp.statusLine.statusCode, HttpStatus.SC_NOT_FOUND)
+	}
+}
@@ -0,0 +1,167 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.control.binding.http
+
+import org.apache.http.entity.StringEntity
+import org.apache.http.protocol.HttpRequestHandler
+import org.testng.Assert
+import org.testng.annotations.Test
+import java.io.BufferedReader
+import java.io.InputStreamReader
+import java.net.InetAddress
+import java.net.Socket
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs many concurrent clients against the HTTP server of the binding.
+ */
+class HttpServiceLoadTest {
+	private val okHandler =
+		HttpRequestHandler { _, response, _ ->
+			response.entity = StringEntity("ok")
+		}
+
+	@Test
+	fun testConcurrentClients() {
+		val service = HttpService(0, okHandler, emptyList(), emptyList())
+		service.start()
+		val numClients = 500
+		val clients = Executors.newFixedThreadPool(numClients)
+		try {
+			val startSignal = CountDownLatch(1)
+			val results =
+				(0 until numClients).map {
+					clients.submit(
+						Callable {
+							startSignal.await()
+							request(service.port)
+						},
+					)
+				}
+			startSignal.countDown()
+
+			for (r in results) {
+				Assert.assertEquals(r.get(30, TimeUnit.SECONDS), "HTTP/1.1 200 OK")
+			}
+		} finally {
+			clients.shutdownNow()
+			service.interrupt()
+		}
+	}
+
+	@Test
+	fun testConnectionLimit() {
+		val release = CountDownLatch(1)
+		val entered = CountDownLatch(1)
+		val blockingHandler =
+			HttpRequestHandler { _, response, _ ->
+				entered.countDown()
+				release.await()
+				response.entity = StringEntity("ok")
+			}
+		val config = HttpServiceConfig(maxWorkers = 1, maxQueuedConnections = 1)
+		val service = HttpService(0, blockingHandler, emptyList(), emptyList(), config)
+		service.start()
+		val clients = Executors.newFixedThreadPool(2)
+		try {
+			// first connection occupies the worker, second one waits in the queue
+			val first = clients.submit(Callable { request(service.port) })
+			Assert.assertTrue(entered.await(10, TimeUnit.SECONDS))
+			val second = clients.submit(Callable { request(service.port) })
+			Thread.sleep(500)
+
+			// the rejection is sent right after accepting the connection, so there is no need to send a request
+			Assert.assertEquals(request(service.port, false), "HTTP/1.1 503 Service Unavailable")
+
+			release.countDown()
+			Assert.assertEquals(first.get(10, TimeUnit.SECONDS), "HTTP/1.1 200 OK")
+			Assert.assertEquals(second.get(10, TimeUnit.SECONDS), "HTTP/1.1 200 OK")
+		} finally {
+			clients.shutdownNow()
+			service.interrupt()
+		}
+	}
+
+	@Test
+	fun testLongPollsDoNotBlockWorkers() {
+		val release = CountDownLatch(1)
+		val config = HttpServiceConfig(maxWorkers = 2, maxLongPolls = 3)
+		val entered = CountDownLatch(config.maxWorkers)
+		val handler =
+			HttpRequestHandler { request, response, _ ->
+				if (request.requestLine.uri.startsWith("/waitForChange")) {
+					entered.countDown()
+					release.await()
+				}
+				response.entity = StringEntity("ok")
+			}
+		val service = HttpService(0, handler, emptyList(), emptyList(), config)
+		service.start()
+		val clients = Executors.newFixedThreadPool(config.maxLongPolls + 1)
+		try {
+			// long-polls for all workers
+			val polls =
+				(0 until config.maxWorkers).map {
+					clients.submit(Callable { request(service.port, path = "/waitForChange?session=$it") })
+				}
+			Assert.assertTrue(entered.await(10, TimeUnit.SECONDS))
+
+			// activations are still served
+			val activation = clients.submit(Callable { request(service.port, path = "/eID-Client?tcTokenURL=x") })
+			Assert.assertEquals(activation.get(10, TimeUnit.SECONDS), "HTTP/1.1 200 OK")
+
+			// one more long-poll is allowed, the next one exceeds the limit
+			val lastPoll = clients.submit(Callable { request(service.port, path = "/waitForChange") })
+			Thread.sleep(500)
+			Assert.assertEquals(request(service.port, path = "/waitForChange"), "HTTP/1.1 503 Service Unavailable")
+
+			release.countDown()
+			for (p in polls + lastPoll) {
+				Assert.assertEquals(p.get(10, TimeUnit.SECONDS), "HTTP/1.1 200 OK")
+			}
+		} finally {
+			clients.shutdownNow()
+			service.interrupt()
+		}
+	}
+
+	private fun request(
+		port: Int,
+		send: Boolean = true,
+		path: String = "/",
+	): String =
+		Socket(InetAddress.getByName("127.0.0.1"), port).use { s ->
+			s.soTimeout = 30_000
+			if (send) {
+				val req = "GET $path HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: close\r\n\r\n"
+				s.getOutputStream().write(req.toByteArray(StandardCharsets.US_ASCII))
+				s.getOutputStream().flush()
+			}
+			val reader = BufferedReader(InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII))
+			reader.readLine()
+		}
+}
@@ -5,6 +5,40 @@ plugins {
 }
 
 kotlin {
+	jvm {
+		compilations {
+			// validates the CIFs and the recognition tree and converts them to binary snapshots
+			val generator by creating {
+				defaultSourceSet {
+					dependencies {
+						implementation(project(":wsdef:wsdef-client"))
+						implementation(project(":wsdef:jaxb-marshaller"))
+					}
+				}
+
+				val resDir = projectDir.resolve("src/jvmMain/resources")
+				val outDir = layout.buildDirectory.dir("generated/cifSnapshot")
+				tasks.register<JavaExec>("generateCifSnapshot") {
+					group = "build"
+					description = "Validates the CIFs and the recognition tree and writes their binary snapshots."
+					classpath = output.allOutputs + runtimeDependencyFiles
+					mainClass.set("org.openecard.cif.CifSnapshotGeneratorKt")
+					inputs.files(
+						fileTree(resDir) {
+							include("cif-repo/**", "StaticTree.xml")
+						},
+					)
+					outputs.dir(outDir)
+					argumentProviders.add(
+						CommandLineArgumentProvider {
+							listOf(resDir.absolutePath, outDir.get().asFile.absolutePath)
+						},
+					)
+				}
+			}
+		}
+	}
+
 	sourceSets {
 		val commonMain by getting {
 			dependencies {
@@ -18,6 +52,7 @@ kotlin {
 		}
 		val jvmMain by getting {
 			dependencies {}
+			resources.srcDir(tasks.named("generateCifSnapshot"))
 		}
 		val jvmTest by getting {
 			dependencies {
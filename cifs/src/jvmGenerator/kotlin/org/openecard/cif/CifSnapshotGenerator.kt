@@ -0,0 +1,221 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.cif
+
+import iso.std.iso_iec._24727.tech.schema.CardCall
+import iso.std.iso_iec._24727.tech.schema.CardInfoType
+import iso.std.iso_iec._24727.tech.schema.GetRecognitionTreeResponse
+import org.openecard.ws.jaxb.JAXBMarshaller
+import org.xml.sax.ErrorHandler
+import org.xml.sax.SAXException
+import org.xml.sax.SAXParseException
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.ObjectOutputStream
+import java.util.Properties
+import javax.xml.XMLConstants
+import javax.xml.transform.stream.StreamSource
+import javax.xml.validation.Schema
+import javax.xml.validation.SchemaFactory
+import kotlin.system.exitProcess
+
+// The format constants must be kept in sync with the readers in LocalCifRepo and LocalFileTree.
+private const val CIF_MAGIC = 0x4F454353 // OECS
+private const val TREE_MAGIC = 0x4F454354 // OECT
+private const val FORMAT_VERSION = 1
+
+/**
+ * Validates the CIFs and the recognition tree of this module and writes their binary snapshots.
+ *
+ * The documents are unmarshalled with the same marshaller as at runtime and written with Java serialization, so
+ * that the runtime can restore the objects without parsing and unmarshalling the XML documents. The build fails if a
+ * document can not be read, a CIF has no or a duplicate card type, or the tree can not be unmarshalled. Violations of
+ * the schema are only reported, as several of the existing CIFs do not adhere to it strictly.
+ *
+ * Arguments: resource directory of the module, output directory of the snapshots.
+ */
+fun main(args: Array<String>) {
+	if (args.size != 2) {
+		System.err.println("Usage: CifSnapshotGenerator <resource dir> <output dir>")
+		exitProcess(2)
+	}
+	val generator = CifSnapshotGenerator(File(args[0]), File(args[1]))
+	generator.generate()
+	if (generator.errors.isNotEmpty()) {
+		generator.errors.forEach { System.err.println("error: $it") }
+		exitProcess(1)
+	}
+}
+
+private class CifSnapshotGenerator(
+	private val resDir: File,
+	private val outDir: File,
+) {
+	private val m = JAXBMarshaller()
+	val errors = mutableListOf<String>()
+
+	fun generate() {
+		val cardTypes = writeCifs()
+		writeTree(cardTypes)
+	}
+
+	private fun writeCifs(): Set<String> {
+		val conf = Properties()
+		FileInputStream(File(resDir, "cif-repo/repo-config.properties")).use { conf.load(it) }
+		val files = conf.getProperty("cifFiles").split(",").map { it.trim() }.filter { it.isNotEmpty() }
+
+		val schema = loadSchema("CardInfo.xsd")
+		val cardTypes = mutableMapOf<String, String>()
+		val entries = mutableListOf<Triple<String, String, ByteArray>>()
+		for (fileName in files) {
+			val file = File(resDir, "cif-repo/$fileName")
+			if (!file.isFile) {
+				errors.add("CIF file $fileName listed in repo-config.properties does not exist.")
+				continue
+			}
+			validate(schema, file)
+			val cif =
+				try {
+					FileInputStream(file).use { m.unmarshal(m.str2doc(it)) }
+				} catch (ex: Exception) {
+					errors.add("Failed to unmarshal CIF $fileName: ${ex.message}")
+					continue
+				}
+			if (cif !is CardInfoType) {
+				errors.add("CIF $fileName does not contain a CardInfo element.")
+				continue
+			}
+			val cardType = cif.cardType?.objectIdentifier
+			if (cardType.isNullOrBlank()) {
+				errors.add("CIF $fileName does not define a card type.")
+				continue
+			}
+			val other = cardTypes.put(cardType, fileName)
+			if (other != null) {
+				errors.add("CIFs $other and $fileName define the same card type $cardType.")
+				continue
+			}
+			entries.add(Triple(fileName, cardType, serialize(cif)))
+		}
+
+		writeFile(File(outDir, "cif-repo/cifs.bin")) { out ->
+			out.writeInt(CIF_MAGIC)
+			out.writeInt(FORMAT_VERSION)
+			out.writeInt(entries.size)
+			for ((fileName, cardType, data) in entries) {
+				out.writeUTF(fileName)
+				out.writeUTF(cardType)
+				out.writeInt(data.size)
+				out.write(data)
+			}
+		}
+		return cardTypes.keys
+	}
+
+	private fun writeTree(cardTypes: Set<String>) {
+		val file = File(resDir, "StaticTree.xml")
+		validate(loadSchema("RecognitionTreeRepository.xsd"), file)
+		val tree =
+			try {
+				FileInputStream(file).use { m.unmarshal(m.str2doc(it)) }
+			} catch (ex: Exception) {
+				errors.add("Failed to unmarshal recognition tree: ${ex.message}")
+				return
+			}
+		if (tree !is GetRecognitionTreeResponse || tree.recognitionTree == null) {
+			errors.add("StaticTree.xml does not contain a recognition tree.")
+			return
+		}
+		checkConclusions(tree.recognitionTree.cardCall, cardTypes)
+
+		val data = serialize(tree)
+		writeFile(File(outDir, "StaticTree.bin")) { out ->
+			out.writeInt(TREE_MAGIC)
+			out.writeInt(FORMAT_VERSION)
+			out.writeInt(data.size)
+			out.write(data)
+		}
+	}
+
+	private fun checkConclusions(
+		calls: List<CardCall>,
+		cardTypes: Set<String>,
+	) {
+		for (call in calls) {
+			for (response in call.responseAPDU) {
+				val conclusion = response.conclusion ?: continue
+				val type = conclusion.recognizedCardType
+				if (type != null && type !in cardTypes) {
+					warn("Recognition tree concludes card type $type which has no CIF.")
+				}
+				checkConclusions(conclusion.cardCall, cardTypes)
+			}
+		}
+	}
+
+	private fun loadSchema(name: String): Schema {
+		val url = CardInfoType::class.java.classLoader.getResource(name) ?: error("Schema $name not found.")
+		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(url)
+	}
+
+	private fun validate(
+		schema: Schema,
+		file: File,
+	) {
+		val validator = schema.newValidator()
+		validator.errorHandler =
+			object : ErrorHandler {
+				override fun warning(ex: SAXParseException) = report(ex)
+
+				override fun error(ex: SAXParseException) = report(ex)
+
+				override fun fatalError(ex: SAXParseException) = throw ex
+
+				private fun report(ex: SAXParseException) = warn("${file.name}:${ex.lineNumber}: ${ex.message}")
+			}
+		try {
+			validator.validate(StreamSource(file))
+		} catch (ex: SAXException) {
+			errors.add("${file.name} is not well-formed: ${ex.message}")
+		}
+	}
+
+	private fun serialize(obj: Any): ByteArray {
+		val out = ByteArrayOutputStream()
+		ObjectOutputStream(out).use { it.writeObject(obj) }
+		return out.toByteArray()
+	}
+
+	private fun writeFile(
+		file: File,
+		writer: (DataOutputStream) -> Unit,
+	) {
+		file.parentFile.mkdirs()
+		DataOutputStream(FileOutputStream(file).buffered()).use(writer)
+	}
+
+	private fun warn(msg: String) = System.err.println("warning: $msg")
+}
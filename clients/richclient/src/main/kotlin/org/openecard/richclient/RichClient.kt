@@ -51,6 +51,7 @@ import org.openecard.common.event.EventDispatcherImpl
 import org.openecard.common.event.EventType
 import org.openecard.common.sal.CombinedCIFProvider
 import org.openecard.control.binding.http.HttpBinding
+import org.openecard.control.binding.http.HttpServiceConfig
 import org.openecard.gui.message.DialogType
 import org.openecard.gui.swing.SwingDialogWrapper
 import org.openecard.gui.swing.SwingUserConsent
@@ -217,7 +218,7 @@ class RichClient {
 				}
 
 				// start HTTP server
-				httpBinding = HttpBinding(port)
+				httpBinding = HttpBinding(port, config = HttpServiceConfig.fromProperties())
 				httpBinding!!.setAddonManager(manager!!)
 				httpBinding!!.start()
 
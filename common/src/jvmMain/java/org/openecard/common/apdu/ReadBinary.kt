@@ -21,10 +21,10 @@
  */
 package org.openecard.common.apdu
 
-import iso.std.iso_iec._24727.tech.schema.Transmit
 import org.openecard.common.apdu.common.CardCommandAPDU
 import org.openecard.common.tlv.TLV
 import org.openecard.common.tlv.TLVException
+import org.openecard.common.util.LongUtils
 import org.openecard.common.util.ShortUtils
 
 /**
@@ -122,18 +122,41 @@ class ReadBinary : CardCommandAPDU {
 	}
 
 	/**
-	 * Creates a new Transmit message.
+	 * Creates a new READ BINARY APDU with an offset beyond the range of the even instruction byte.
+	 * P1-P2 identifies the EF, '0000' the current EF. The offset data object with tag '54' is encoded in the command
+	 * data field and the response data is encapsulated in a discretionary data object with tag '53'.
 	 *
-	 * @param slotHandle Slot handle
-	 * @return Transmit
+	 * @param fileID File identifier or short EF identifier
+	 * @param offset Offset from zero to 16 777 215
+	 * @param length Expected length from 1 to 65 536
 	 */
-	override fun makeTransmit(slotHandle: ByteArray?): Transmit =
-		makeTransmit(
-			slotHandle,
-			listOf(
-				byteArrayOf(0x90.toByte(), 0x00.toByte()),
-				byteArrayOf(0x62.toByte(), 0x82.toByte()),
-			),
+	constructor(fileID: Short, offset: Int, length: Int) : super(x00, READ_BINARY_INS_2, x00, x00) {
+		require(offset in 0..0xFFFFFF) { "Offset must be between 0 and 16777215." }
+		try {
+			val offsetDo = TLV()
+			offsetDo.setTagNumWithClass(0x54.toByte())
+			offsetDo.value = LongUtils.toByteArray(offset.toLong())
+			val discretionaryData = TLV()
+			discretionaryData.setTagNumWithClass(0x53.toByte())
+			discretionaryData.value = offsetDo.toBER()
+
+			p1P2 = ShortUtils.toByteArray(fileID, true)
+			data = discretionaryData.toBER()
+			setLE(length)
+		} catch (ex: TLVException) {
+			throw RuntimeException("Error encoding offset DO.", ex)
+		}
+	}
+
+	/**
+	 * Accepts the warning that the end of the file or record has been reached.
+	 *
+	 * @return List of positive responses
+	 */
+	override fun defaultResponses(): List<ByteArray> =
+		listOf(
+			byteArrayOf(0x90.toByte(), 0x00.toByte()),
+			byteArrayOf(0x62.toByte(), 0x82.toByte()),
 		)
 
 	companion object {
@@ -21,7 +21,6 @@
  */
 package org.openecard.common.apdu
 
-import iso.std.iso_iec._24727.tech.schema.Transmit
 import org.openecard.common.apdu.common.CardCommandAPDU
 import org.openecard.common.util.ByteUtils
 import org.openecard.common.util.ShortUtils
@@ -112,18 +111,14 @@ class ReadRecord : CardCommandAPDU {
 	}
 
 	/**
-	 * Creates a new Transmit message.
+	 * Accepts the warning that the end of the file or record has been reached.
 	 *
-	 * @param slotHandle Slot handle
-	 * @return Transmit
+	 * @return List of positive responses
 	 */
-	override fun makeTransmit(slotHandle: ByteArray?): Transmit =
-		makeTransmit(
-			slotHandle,
-			listOf(
-				byteArrayOf(0x90.toByte(), 0x00.toByte()),
-				byteArrayOf(0x62.toByte(), 0x82.toByte()),
-			),
+	override fun defaultResponses(): List<ByteArray> =
+		listOf(
+			byteArrayOf(0x90.toByte(), 0x00.toByte()),
+			byteArrayOf(0x62.toByte(), 0x82.toByte()),
 		)
 
 	companion object {
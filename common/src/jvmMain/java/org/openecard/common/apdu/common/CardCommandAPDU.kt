@@ -27,7 +27,10 @@ import iso.std.iso_iec._24727.tech.schema.Transmit
 import iso.std.iso_iec._24727.tech.schema.TransmitResponse
 import org.openecard.common.WSHelper.WSException
 import org.openecard.common.WSHelper.checkResult
+import org.openecard.common.WSHelper.createException
 import org.openecard.common.apdu.exception.APDUException
+import org.openecard.common.interfaces.ApduTransport
+import org.openecard.common.interfaces.ApduTransportException
 import org.openecard.common.interfaces.Dispatcher
 import org.openecard.common.util.ByteUtils
 import java.io.ByteArrayInputStream
@@ -597,13 +600,20 @@ open class CardCommandAPDU : CardAPDU {
 	 */
 	override fun toString(): String = ByteUtils.toHexString(toByteArray(), true)!!
 
+	/**
+	 * Gets the status codes which are accepted when no explicit list is given for the transmission.
+	 *
+	 * @return List of positive responses, an empty list accepts every response.
+	 */
+	protected open fun defaultResponses(): List<ByteArray> = listOf()
+
 	/**
 	 * Creates a new Transmit message.
 	 *
 	 * @param slotHandle Slot handle
 	 * @return Transmit
 	 */
-	open fun makeTransmit(slotHandle: ByteArray?): Transmit = makeTransmit(slotHandle, listOf())
+	open fun makeTransmit(slotHandle: ByteArray?): Transmit = makeTransmit(slotHandle, defaultResponses())
 
 	/**
 	 * Creates a new Transmit message.
@@ -645,6 +655,8 @@ open class CardCommandAPDU : CardAPDU {
 
 	/**
 	 * Transmit the APDU.
+	 * If the dispatcher provides a direct [ApduTransport] for the slot handle, the APDU is sent through it, otherwise a
+	 * Transmit message is delivered by the dispatcher.
 	 *
 	 * @param dispatcher Dispatcher
 	 * @param slotHandle Slot handle
@@ -658,6 +670,11 @@ open class CardCommandAPDU : CardAPDU {
 		slotHandle: ByteArray?,
 		responses: List<ByteArray>?,
 	): CardResponseAPDU {
+		val transport = slotHandle?.let { dispatcher.getApduTransport(it) }
+		if (transport != null && slotHandle != null) {
+			return transmit(transport, slotHandle, responses ?: defaultResponses())
+		}
+
 		val t: Transmit
 		var tr: TransmitResponse? = null
 
@@ -681,6 +698,23 @@ open class CardCommandAPDU : CardAPDU {
 		}
 	}
 
+	@Throws(APDUException::class)
+	private fun transmit(
+		transport: ApduTransport,
+		slotHandle: ByteArray,
+		responses: List<ByteArray>,
+	): CardResponseAPDU {
+		try {
+			val rapdu = transport.transmit(slotHandle, toByteArray(), responses)
+			return CardResponseAPDU(rapdu)
+		} catch (ex: ApduTransportException) {
+			// same error as if the result of a Transmit message was evaluated
+			throw APDUException(createException(ex.result), ex.responseAPDU?.let { CardResponseAPDU(it) })
+		} catch (ex: Exception) {
+			throw APDUException(ex)
+		}
+	}
+
 	companion object {
 		/**
 		 * Returns the header of the APDU.
@@ -110,6 +110,16 @@ class APDUException : ECardException {
 		}
 	}
 
+	/**
+	 * Creates a new APDUException.
+	 *
+	 * @param ex WSException
+	 * @param responseAPDU ResponseAPDU, if available
+	 */
+	constructor(ex: WSException?, responseAPDU: CardResponseAPDU?) : this(ex) {
+		this.responseAPDU = responseAPDU
+	}
+
 	companion object {
 		private const val serialVersionUID = 1L
 	}
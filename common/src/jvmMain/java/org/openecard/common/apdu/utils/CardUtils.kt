@@ -22,6 +22,9 @@
 package org.openecard.common.apdu.utils
 
 import io.github.oshai.kotlinlogging.KotlinLogging
+import iso.std.iso_iec._24727.tech.schema.InputAPDUInfoType
+import iso.std.iso_iec._24727.tech.schema.Transmit
+import iso.std.iso_iec._24727.tech.schema.TransmitResponse
 import org.openecard.common.apdu.ReadBinary
 import org.openecard.common.apdu.ReadRecord
 import org.openecard.common.apdu.Select
@@ -31,7 +34,10 @@ import org.openecard.common.apdu.common.CardCommandStatus
 import org.openecard.common.apdu.common.CardResponseAPDU
 import org.openecard.common.apdu.common.TrailerConstants
 import org.openecard.common.apdu.exception.APDUException
+import org.openecard.common.interfaces.ApduTransport
+import org.openecard.common.interfaces.ApduTransportException
 import org.openecard.common.interfaces.Dispatcher
+import org.openecard.common.tlv.TLV
 import org.openecard.common.tlv.TLVException
 import org.openecard.common.tlv.iso7816.FCP
 import org.openecard.common.util.ShortUtils.toByteArray
@@ -41,6 +47,9 @@ import kotlin.jvm.Throws
 
 private val LOG = KotlinLogging.logger { }
 
+// the offset DO of the odd READ BINARY is limited to three bytes here
+private const val MAX_BATCH_FILE_SIZE = 0xFFFFFFL
+
 /**
  * Utility class for elementary file operations with smart cards.
  *
@@ -280,11 +289,17 @@ object CardUtils {
 
 	/**
 	 * Reads a file.
+	 * If the size of a transparent file is known from the FCP, all READ BINARY commands are planned in advance and sent
+	 * in a single Transmit request, or one after the other when the dispatcher offers a direct APDU transport. Parts
+	 * which could not be read this way are read one by one afterwards. Offsets beyond 0x7FFF can only be addressed in
+	 * the planned commands.
 	 *
 	 * @param dispatcher Dispatcher
 	 * @param slotHandle Slot handle
 	 * @param fcp File Control Parameters, may be null
 	 * @param shortEf Short EF identifier, may be null
+	 * @param readWithExtendedLength `true` if the card and reader can handle extended length APDUs, which are then
+	 * used to read as much as possible per command.
 	 * @return File content
 	 * @throws APDUException
 	 */
@@ -301,11 +316,16 @@ object CardUtils {
 		// Read as much bytes per APDU as possible
 		var length = (if (readWithExtendedLength) 0xFFFF else 0xFF).toShort()
 		var numToRead: Short = -1 // -1 indicates I don't know
+		var fileSize = -1
 		if (fcp != null) {
 			val fcpNumBytes = fcp.numBytes
 			if (fcpNumBytes != null) {
-				// more than short is not possible and besides that very unrealistic
-				numToRead = fcpNumBytes.toShort()
+				if (fcpNumBytes > MAX_BATCH_FILE_SIZE) {
+					throw APDUException("File size of $fcpNumBytes bytes exceeds the addressable range of READ BINARY.")
+				}
+				fileSize = fcpNumBytes.toInt()
+				// the loop below only addresses offsets up to 0x7FFF, larger files are read in one batch
+				numToRead = minOf(fcpNumBytes, 0x7FFFL).toShort()
 				// reduce readout size
 				if (numToRead < 255) {
 					length = numToRead.toByte().toShort()
@@ -317,6 +337,21 @@ object CardUtils {
 		var i = (if (isRecord) 1 else 0).toByte() // records start at index 1
 		var numRead: Short = 0
 
+		val chunkSize = if (readWithExtendedLength) 0xFFFF else 0xFF
+		if (!isRecord && (fileSize > chunkSize || fileSize > 0x7FFF)) {
+			val numBatchRead = readBinaryBatch(dispatcher, slotHandle, shortEf, fileSize, chunkSize, baos)
+			if (numBatchRead >= fileSize) {
+				return baos.toByteArray()
+			} else if (numBatchRead >= numToRead) {
+				throw APDUException("Failed to read file beyond offset $numBatchRead of $fileSize bytes.")
+			}
+			numRead = numBatchRead.toShort()
+			val remainingBytes = (numToRead - numRead).toShort()
+			if (remainingBytes < 255) {
+				length = remainingBytes
+			}
+		}
+
 		try {
 			var response: CardResponseAPDU
 			var trailer: ByteArray?
@@ -324,16 +359,7 @@ object CardUtils {
 			var goAgain: Boolean
 			do {
 				if (!isRecord) {
-					val readBinary: CardCommandAPDU =
-						if (shortEf != null) {
-							if (numRead > 0xFF) {
-								ReadBinary(shortEf.toShort(), numRead, length)
-							} else {
-								ReadBinary(shortEf, numRead.toByte(), length)
-							}
-						} else {
-							ReadBinary(numRead, length)
-						}
+					val readBinary = makeReadBinary(shortEf, numRead, length)
 					// 0x6A84 code for the estonian identity card. The card returns this code
 					// after the last read process.
 					response =
@@ -407,6 +433,169 @@ object CardUtils {
 		return baos.toByteArray()
 	}
 
+	private fun makeReadBinary(
+		shortEf: Byte?,
+		offset: Short,
+		length: Short,
+	): CardCommandAPDU =
+		if (shortEf != null) {
+			if (offset > 0xFF) {
+				ReadBinary(shortEf.toShort(), offset, length)
+			} else {
+				ReadBinary(shortEf, offset.toByte(), length)
+			}
+		} else {
+			ReadBinary(offset, length)
+		}
+
+	private fun makeReadBinary(
+		shortEf: Byte?,
+		offset: Int,
+		length: Int,
+	): CardCommandAPDU =
+		if (offset <= 0x7FFF) {
+			makeReadBinary(shortEf, offset.toShort(), length.toShort())
+		} else {
+			// offsets beyond 15 bits are only reachable with the odd instruction byte, '0000' is the current EF
+			ReadBinary((shortEf?.toInt()?.and(0x1F) ?: 0).toShort(), offset, length)
+		}
+
+	/**
+	 * Reads a transparent file of known size by sending all READ BINARY commands in one Transmit request.
+	 * The IFD stops processing the APDUs at the first unexpected status word, so only the successfully read prefix of
+	 * the file is written to the output. Offsets beyond 0x7FFF are read with the odd instruction byte and an offset DO.
+	 * With a direct APDU transport there is no message overhead to save, so the commands are sent one by one with the
+	 * same stop condition.
+	 *
+	 * @return Number of bytes which have been read and written to the output.
+	 */
+	private fun readBinaryBatch(
+		dispatcher: Dispatcher,
+		slotHandle: ByteArray?,
+		shortEf: Byte?,
+		fileSize: Int,
+		chunkSize: Int,
+		out: ByteArrayOutputStream,
+	): Int {
+		val t = Transmit()
+		t.slotHandle = slotHandle
+		val chunkLengths = ArrayList<Int>()
+		val chunkOffsets = ArrayList<Int>()
+		var offset = 0
+		while (offset < fileSize) {
+			val apdu = InputAPDUInfoType()
+			val len: Int
+			if (offset <= 0x7FFF) {
+				len = minOf(chunkSize, fileSize - offset)
+				apdu.inputAPDU = makeReadBinary(shortEf, offset, len).toByteArray()
+			} else {
+				// the response is wrapped in DO'53', so Le must cover its header as well
+				len = minOf(maxDiscretionaryDataLength(chunkSize), fileSize - offset)
+				apdu.inputAPDU = makeReadBinary(shortEf, offset, len + discretionaryDataHeaderLength(len)).toByteArray()
+			}
+			apdu.acceptableStatusCode.addAll(CardCommandStatus.response(0x9000, 0x6282))
+			t.inputAPDUInfo.add(apdu)
+			chunkLengths.add(len)
+			chunkOffsets.add(offset)
+			offset += len
+		}
+
+		val transport = slotHandle?.let { dispatcher.getApduTransport(it) }
+		val rapdus: Sequence<ByteArray>
+		if (transport != null && slotHandle != null) {
+			rapdus = transmitEach(transport, slotHandle, t.inputAPDUInfo)
+		} else {
+			try {
+				val tr = dispatcher.safeDeliver(t) as TransmitResponse
+				rapdus = tr.outputAPDU.asSequence()
+			} catch (ex: RuntimeException) {
+				LOG.warn(ex) { "Pipelined READ BINARY failed, falling back to reading chunk by chunk." }
+				return 0
+			}
+		}
+
+		var numRead = 0
+		for ((idx, rapdu) in rapdus.withIndex()) {
+			val response = CardResponseAPDU(rapdu)
+			val isWarningEof = response.trailer.contentEquals(byteArrayOf(0x62.toByte(), 0x82.toByte()))
+			if (!response.isNormalProcessed && !isWarningEof) {
+				break
+			}
+			val data =
+				if (chunkOffsets[idx] > 0x7FFF) {
+					unwrapDiscretionaryData(response.data) ?: break
+				} else {
+					response.data
+				}
+			out.write(data, 0, data.size)
+			numRead += data.size
+			// the following commands used offsets which do not fit anymore
+			if (data.size != chunkLengths[idx]) {
+				break
+			}
+		}
+		LOG.debug { "Read $numRead of $fileSize bytes with ${chunkLengths.size} pipelined READ BINARY commands." }
+		return numRead
+	}
+
+	/**
+	 * Sends the APDUs lazily through the transport and ends with the first response which is not acceptable.
+	 */
+	private fun transmitEach(
+		transport: ApduTransport,
+		slotHandle: ByteArray,
+		apdus: List<InputAPDUInfoType>,
+	): Sequence<ByteArray> =
+		sequence {
+			for (apdu in apdus) {
+				try {
+					yield(transport.transmit(slotHandle, apdu.inputAPDU, apdu.acceptableStatusCode))
+				} catch (ex: ApduTransportException) {
+					ex.responseAPDU?.let { yield(it) }
+					break
+				}
+			}
+		}
+
+	/**
+	 * Number of bytes used by tag and length of a DO'53' with the given content length.
+	 */
+	private fun discretionaryDataHeaderLength(contentLength: Int): Int =
+		when {
+			contentLength < 0x80 -> 2
+			contentLength <= 0xFF -> 3
+			else -> 4
+		}
+
+	/**
+	 * Largest content length of a DO'53' which fits into a response of at most `le` bytes.
+	 */
+	private fun maxDiscretionaryDataLength(le: Int): Int {
+		var contentLength = le - 2
+		while (contentLength + discretionaryDataHeaderLength(contentLength) > le) {
+			contentLength--
+		}
+		return contentLength
+	}
+
+	/**
+	 * Extracts the file content from the discretionary data object with tag '53' returned by the odd READ BINARY.
+	 *
+	 * @return The content, or `null` if the response is not encoded as expected.
+	 */
+	private fun unwrapDiscretionaryData(data: ByteArray): ByteArray? {
+		if (data.isEmpty()) {
+			return data
+		}
+		return try {
+			val tlv = TLV.fromBER(data)
+			if (tlv.tagNumWithClass == 0x53L) tlv.value else null
+		} catch (ex: TLVException) {
+			LOG.warn(ex) { "Malformed response to READ BINARY with offset DO." }
+			null
+		}
+	}
+
 	/**
 	 * Selects and reads a file.
 	 *
@@ -25,24 +25,44 @@ import io.github.oshai.kotlinlogging.KotlinLogging
 import org.openecard.common.interfaces.EventCallback
 import org.openecard.common.interfaces.EventDispatcher
 import org.openecard.common.interfaces.EventFilter
-import java.util.Collections
-import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.ExecutorService
-import java.util.concurrent.Executors
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.RejectedExecutionException
 import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * EventDispatcherImpl class distributing the events to all registered listeners.
  * Filtering is applied as requested at registration of the listener.
  *
+ * The listeners are indexed by the event types they are interested in, so that notifying an event only visits the
+ * matching listeners and needs no lock. The events are delivered by a shared pool of daemon threads. Each listener
+ * has a bounded queue of pending events which are delivered one after the other in the order of notification. When
+ * the queue of a listener is full, further events for this listener are dropped and counted in [droppedEvents].
+ *
+ * @param maxThreads Maximum number of threads delivering events.
+ * @param queueCapacity Maximum number of pending events per listener.
+ *
  * @author Tobias Wich
  * @author René Lottes
  */
 
 private val LOG = KotlinLogging.logger { }
 
-class EventDispatcherImpl : EventDispatcher {
+private const val DEFAULT_QUEUE_CAPACITY = 1024
+
+// number of events delivered to one listener before the thread is handed to the next listener
+private const val DRAIN_BATCH_SIZE = 32
+
+class EventDispatcherImpl(
+	private val maxThreads: Int = maxOf(4, Runtime.getRuntime().availableProcessors()),
+	private val queueCapacity: Int = DEFAULT_QUEUE_CAPACITY,
+) : EventDispatcher {
 	private val threadFactory: ThreadFactory =
 		object : ThreadFactory {
 			private val num = AtomicInteger(0)
@@ -52,36 +72,60 @@ class EventDispatcherImpl : EventDispatcher {
 			override fun newThread(r: Runnable): Thread {
 				val name = String.format("Dispatcher Event %d", num.getAndIncrement())
 				val t = Thread(group, r, name)
-				t.isDaemon = false
+				t.isDaemon = true
 				return t
 			}
 		}
 
-	private var eventFilter: ConcurrentHashMap<EventCallback, ArrayList<EventFilter>>? = null
-	private var threadPools: HashMap<EventCallback, ExecutorService>? = null
-	private var initialized = false
+	private val subscribers = LinkedHashMap<EventCallback, Subscriber>()
+
+	// subscribers per event type ordinal, replaced as a whole whenever a subscriber is added or removed
+	@Volatile
+	private var index: Array<Array<Subscriber>> = emptyIndex()
+
+	@Volatile
+	private var executor: ThreadPoolExecutor? = null
+
+	private val numDelivered = AtomicLong()
+	private val numDropped = AtomicLong()
+
+	/**
+	 * Number of events delivered to listeners since the dispatcher has been created.
+	 */
+	val deliveredEvents: Long
+		get() = numDelivered.get()
+
+	/**
+	 * Number of events which have not been delivered to a listener, because its queue was full.
+	 */
+	val droppedEvents: Long
+		get() = numDropped.get()
+
+	/**
+	 * Number of events waiting for delivery over all listeners.
+	 */
+	val pendingEvents: Int
+		get() = synchronized(this) { subscribers.values.sumOf { it.pending } }
 
 	@Synchronized
 	override fun start() {
-		this.eventFilter = ConcurrentHashMap()
-		this.threadPools = HashMap()
-
-		this.initialized = true
+		val exec =
+			ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, LinkedBlockingQueue(), threadFactory)
+		exec.allowCoreThreadTimeOut(true)
+		this.executor = exec
 	}
 
 	@Synchronized
 	override fun terminate() {
-		if (initialized) {
-			// remove everything and thereby shutdown thread pools
-			for (entry in Collections.list(
-				eventFilter!!.keys(),
-			)) {
-				del(entry)
-			}
+		val exec = executor
+		if (exec != null) {
+			// remove everything and thereby discard pending events
+			subscribers.values.forEach { it.close() }
+			subscribers.clear()
+			index = emptyIndex()
 
-			initialized = false
-			eventFilter = null
-			threadPools = null
+			executor = null
+			exec.shutdownNow()
 		}
 	}
 
@@ -103,49 +147,143 @@ class EventDispatcherImpl : EventDispatcher {
 		cb: EventCallback,
 		filter: EventFilter,
 	): EventCallback {
-		if (initialized) {
-			if (!eventFilter!!.containsKey(cb)) {
-				eventFilter!![cb] = ArrayList()
-			}
-			eventFilter!![cb]!!.add(filter)
-			// create an executor service for each callback
-			createExecutorService(cb)
+		val exec = executor
+		if (exec != null) {
+			val sub = subscribers.getOrPut(cb) { Subscriber(cb, exec) }
+			sub.filters.add(filter)
+			rebuildIndex()
 		}
 		return cb
 	}
 
 	@Synchronized
 	override fun del(cb: EventCallback): EventCallback {
-		if (initialized && eventFilter!!.containsKey(cb)) {
-			eventFilter!!.remove(cb)
-			val exec = threadPools!!.remove(cb)
-			exec!!.shutdownNow()
+		val sub = subscribers.remove(cb)
+		if (sub != null) {
+			sub.close()
+			rebuildIndex()
 		}
 		return cb
 	}
 
-	@Synchronized
 	override fun notify(
 		t: EventType,
 		o: EventObject,
 	) {
-		if (initialized) {
-			for ((cb, value) in eventFilter!!) {
-				for (filter in value) {
-					// when there is a filter match, then fire out the event (only once!)
-					if (filter.matches(t, o)) {
-						LOG.debug { "Sending event notification $t to EventCallback $cb." }
-						val executor = threadPools!![cb]
-						executor!!.execute { cb.signalEvent(t, o) }
+		for (sub in index[t.ordinal]) {
+			// when there is a filter match, then fire out the event (only once!)
+			if (sub.matches(t, o)) {
+				LOG.debug { "Sending event notification $t to EventCallback ${sub.cb}." }
+				if (!sub.offer(t, o)) {
+					numDropped.incrementAndGet()
+					LOG.warn { "Event queue of EventCallback ${sub.cb} is full, dropping event $t." }
+				}
+			}
+		}
+	}
+
+	private fun rebuildIndex() {
+		val byType = Array(EventType.entries.size) { ArrayList<Subscriber>() }
+		for (sub in subscribers.values) {
+			for (type in sub.eventTypes()) {
+				byType[type.ordinal].add(sub)
+			}
+		}
+		index = Array(byType.size) { byType[it].toTypedArray() }
+	}
+
+	/**
+	 * Registered callback with its filters and its queue of pending events.
+	 */
+	private inner class Subscriber(
+		val cb: EventCallback,
+		private val exec: ThreadPoolExecutor,
+	) {
+		val filters = CopyOnWriteArrayList<EventFilter>()
+		private val queue = ArrayBlockingQueue<Pair<EventType, EventObject>>(queueCapacity)
+		private val scheduled = AtomicBoolean(false)
+
+		@Volatile
+		private var closed = false
+
+		val pending: Int
+			get() = queue.size
+
+		/**
+		 * Event types this subscriber may be interested in. Filters other than [EventTypeFilter] can match any type.
+		 */
+		fun eventTypes(): Set<EventType> {
+			val types = mutableSetOf<EventType>()
+			for (filter in filters) {
+				if (filter is EventTypeFilter) {
+					types.addAll(filter.eventTypes)
+				} else {
+					return EventType.entries.toSet()
+				}
+			}
+			return types
+		}
+
+		fun matches(
+			t: EventType,
+			o: EventObject,
+		): Boolean = filters.any { it.matches(t, o) }
+
+		fun offer(
+			t: EventType,
+			o: EventObject,
+		): Boolean {
+			if (closed) {
+				return true
+			}
+			if (!queue.offer(Pair(t, o))) {
+				return false
+			}
+			schedule()
+			return true
+		}
+
+		fun close() {
+			closed = true
+			queue.clear()
+		}
+
+		private fun schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				try {
+					exec.execute { drain() }
+				} catch (ex: RejectedExecutionException) {
+					// dispatcher is terminated
+					scheduled.set(false)
+				}
+			}
+		}
+
+		private fun drain() {
+			try {
+				for (i in 0 until DRAIN_BATCH_SIZE) {
+					val (t, o) = queue.poll() ?: break
+					if (closed) {
 						break
 					}
+					try {
+						cb.signalEvent(t, o)
+						numDelivered.incrementAndGet()
+					} catch (ex: RuntimeException) {
+						LOG.error(ex) { "EventCallback $cb failed to process event $t." }
+					}
+				}
+			} finally {
+				scheduled.set(false)
+				// continue with events added in the meantime, after giving other subscribers the chance to run
+				if (!closed && queue.isNotEmpty()) {
+					schedule()
 				}
 			}
 		}
 	}
 
-	private fun createExecutorService(cb: EventCallback) {
-		val executor = Executors.newSingleThreadExecutor(threadFactory)
-		threadPools!![cb] = executor
+	private companion object {
+		fun emptyIndex(): Array<Array<Subscriber>> = Array(EventType.entries.size) { emptyArray() }
 	}
 }
@@ -22,7 +22,7 @@
 package org.openecard.common.event
 
 import org.openecard.common.interfaces.EventFilter
-import java.util.ArrayList
+import java.util.EnumSet
 
 /**
  *
@@ -31,25 +31,18 @@ import java.util.ArrayList
 class EventTypeFilter(
 	vararg eventType: EventType?,
 ) : EventFilter {
-	private var eventType: ArrayList<EventType>? = null
-
-	init {
+	/**
+	 * Event types matched by this filter.
+	 */
+	val eventTypes: Set<EventType> =
 		if (eventType.isEmpty()) {
-			this.eventType = ArrayList(listOf(*EventType.entries.toTypedArray()))
+			EnumSet.allOf(EventType::class.java)
 		} else {
-			this.eventType = ArrayList(listOf(*eventType))
+			EnumSet.noneOf(EventType::class.java).apply { eventType.filterNotNullTo(this) }
 		}
-	}
 
 	override fun matches(
 		t: EventType,
 		o: EventObject,
-	): Boolean {
-		for (next in eventType!!) {
-			if (t == next) {
-				return true
-			}
-		}
-		return false
-	}
+	): Boolean = t in eventTypes
 }
@@ -145,10 +145,7 @@ open class TLV {
 
 		var nextTag: TLV? = this
 		while (nextTag != null) {
-			val toAdd = TLV(nextTag)
-			toAdd.next = null // delete reference to next
-			result.add(toAdd)
-
+			result.add(nextTag.copyWithoutNext())
 			nextTag = nextTag.next
 		}
 
@@ -156,18 +153,30 @@ open class TLV {
 	}
 
 	fun findNextTags(num: Long): List<TLV> {
-		val all = asList()
 		val result = LinkedList<TLV>()
 
-		for (nextTLV in all) {
-			if (nextTLV.tagNumWithClass == num) {
-				result.add(nextTLV)
+		var nextTag: TLV? = this
+		while (nextTag != null) {
+			if (nextTag.tagNumWithClass == num) {
+				result.add(nextTag.copyWithoutNext())
 			}
+			nextTag = nextTag.next
 		}
 
 		return result
 	}
 
+	/**
+	 * Copy this node and its children, but without the reference to the following siblings.
+	 * Copying the siblings as well would make the traversal of a sequence quadratic.
+	 */
+	private fun copyWithoutNext(): TLV {
+		val copy = TLV()
+		copy._tag = this._tag
+		copy.child = if (this.child != null) TLV(this.child!!) else null
+		return copy
+	}
+
 	fun findChildTags(num: Long): List<TLV> =
 		if (hasChild()) {
 			child!!.findNextTags(num)
@@ -229,18 +238,30 @@ open class TLV {
 
 	companion object {
 		/**
-		 * TLV construction from and to different encodings
+		 * TLV construction from and to different encodings.
+		 * Values are referenced from the input until they are accessed, so the input must not be modified afterwards.
 		 */
 		@JvmStatic
 		@Throws(TLVException::class)
-		fun fromBER(input: ByteArray): TLV {
-			var rest = input
+		fun fromBER(input: ByteArray): TLV = fromBER(input, 0, input.size)
+
+		/**
+		 * Parses the TLV sequence located in the given window of the input.
+		 * Only cursors into the input are moved, values are copied when they are accessed.
+		 */
+		@Throws(TLVException::class)
+		private fun fromBER(
+			input: ByteArray,
+			offset: Int,
+			limit: Int,
+		): TLV {
+			var pos = offset
 
 			val first = TLV()
 			var isFirst = true
 			var last = first
 			// build as long as there is input left
-			while (rest.isNotEmpty()) {
+			while (pos < limit) {
 				val next: TLV
 				next =
 					if (isFirst) {
@@ -250,14 +271,15 @@ open class TLV {
 					}
 
 				// break execution when 0 tag encountered
-				if (rest[0] == 0.toByte()) {
+				if (input[pos] == 0.toByte()) {
 					return first
 				}
 				// convert bytes to flat TLV data
-				next._tag = TagLengthValue.fromBER(rest)
+				next._tag = TagLengthValue.fromBER(input, pos, limit)
 				// if constructed build child structure
 				if (!next._tag.isPrimitive && next._tag.valueLength > 0) {
-					next.child = fromBER(next._tag.value)
+					val valueStart = pos + next._tag.headerLength
+					next.child = fromBER(input, valueStart, valueStart + next._tag.valueLength)
 				}
 
 				// set next as sibling in last
@@ -268,8 +290,8 @@ open class TLV {
 				}
 				last = next
 
-				// get rest of the bytes for next iteration
-				rest = last._tag.extractRest(rest)
+				// advance to the next sibling
+				pos += last._tag.rawLength
 			}
 
 			return first
@@ -152,16 +152,35 @@ class Tag( // char strings 18-22, 25-30
 		val SET_TAG: Tag = Tag(TagClass.UNIVERSAL, false, 17)
 
 		@Throws(TLVException::class)
-		fun fromBER(data: ByteArray): Tag {
+		fun fromBER(data: ByteArray): Tag = fromBER(data, 0, data.size)
+
+		/**
+		 * Reads a tag from the given buffer without copying it.
+		 *
+		 * @param data Buffer containing the encoded tag.
+		 * @param offset Position of the first tag octet in the buffer.
+		 * @param limit Position after the last octet which may be read.
+		 * @return The tag with [numOctets] set to the number of octets consumed.
+		 */
+		@Throws(TLVException::class)
+		internal fun fromBER(
+			data: ByteArray,
+			offset: Int,
+			limit: Int,
+		): Tag {
+			if (offset >= limit) {
+				throw TLVException("Not enough bytes in input bytes to build TLV tag.")
+			}
 			// how many octets made up this tag?
 			var numOctets = 1
 			// get common values independed from encoding type
-			val tagClass: TagClass = TagClass.getTagClass(data[0])
-			val primitive = ((data[0].toInt() shr 5) and 0x01) == 0x00
+			val first = data[offset]
+			val tagClass: TagClass = TagClass.getTagClass(first)
+			val primitive = ((first.toInt() shr 5) and 0x01) == 0x00
 
 			// get value so it can be seen if short or long form is present
 			var tagNum: Long = 0
-			val tmpTagNum = (data[0].toInt() and 0x1F).toByte()
+			val tmpTagNum = (first.toInt() and 0x1F).toByte()
 			if (tmpTagNum <= 30) {
 				// short form
 				tagNum = tmpTagNum.toLong()
@@ -173,11 +192,11 @@ class Tag( // char strings 18-22, 25-30
 					// terminate if there are no bytes left or the number is larger than 64 bits
 					if (numOctets * 7 > 64) {
 						throw TLVException("Tag number doesn't fit into a 64 bit word.")
-					} else if (data.size < numOctets) {
+					} else if (limit <= offset + numOctets) {
 						throw TLVException("Not enough bytes in input bytes to build TLV tag.")
 					}
 					// get next number
-					next = data[numOctets]
+					next = data[offset + numOctets]
 					numOctets++
 					// get next bytes and merge them into result
 					val nextValue = (next.toInt() and 0x7F).toByte()
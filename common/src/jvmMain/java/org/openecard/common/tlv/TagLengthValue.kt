@@ -38,8 +38,43 @@ internal class TagLengthValue private constructor(
 	 */
 	val rawLength: Int,
 	private var tag: Tag,
-	var value: ByteArray,
+	value: ByteArray,
 ) {
+	private var _value: ByteArray = value
+
+	/**
+	 * Buffer this TLV was parsed from, as long as the value has not been copied out of it.
+	 * The value is materialised on first access, so that parsing a tree does not copy every nested level.
+	 */
+	private var source: ByteArray? = null
+	private var sourceLength: Int = 0
+
+	/**
+	 * Offset of the value relative to the start of the encoded TLV.<br></br>
+	 * Only makes sense if created from bytes.
+	 */
+	var headerLength: Int = 0
+		private set
+
+	/**
+	 * Absolute offset of the value in the buffer this TLV was parsed from.
+	 */
+	private var valueOffset: Int = 0
+
+	var value: ByteArray
+		get() {
+			val src = source
+			if (src != null) {
+				_value = src.copyOfRange(valueOffset, valueOffset + sourceLength)
+				source = null
+			}
+			return _value
+		}
+		set(value) {
+			_value = value
+			source = null
+		}
+
 	private constructor(numOctets: Int, tagClass: TagClass, primitive: Boolean, tagNum: Long, value: ByteArray) : this(
 		numOctets,
 		Tag(tagClass, primitive, tagNum),
@@ -96,7 +131,7 @@ internal class TagLengthValue private constructor(
 	}
 
 	val valueLength: Int
-		get() = value.size
+		get() = if (source != null) sourceLength else _value.size
 
 	/**
 	 * When fed with a large input stream, cut off the portion which makes up this TLV.
@@ -148,21 +183,42 @@ internal class TagLengthValue private constructor(
 	override fun toString(): String = "[TagLengthValue $tag ${valueLength.toHexString()} ${value.toHexString()}]"
 
 	companion object {
-		fun fromBER(data: ByteArray): TagLengthValue {
-			val tag: Tag = Tag.fromBER(data)
+		private val EMPTY = byteArrayOf()
+
+		fun fromBER(data: ByteArray): TagLengthValue = fromBER(data, 0, data.size)
+
+		/**
+		 * Reads one TLV from the given buffer window.
+		 * The value is not copied, but referenced until it is accessed for the first time.
+		 *
+		 * @param data Buffer containing the encoded TLV.
+		 * @param offset Position of the first tag octet in the buffer.
+		 * @param limit Position after the last octet belonging to the enclosing structure.
+		 * @return The TLV with [rawLength] set to the number of octets consumed.
+		 */
+		@Throws(TLVException::class)
+		fun fromBER(
+			data: ByteArray,
+			offset: Int,
+			limit: Int,
+		): TagLengthValue {
+			val tag: Tag = Tag.fromBER(data, offset, limit)
 			// how many octets made up this tag?
 			var numOctets = tag.numOctets
 
 			// get length
 			var dataLength = 0
 			var endOfLine = false
-			if (((data[numOctets].toInt() shr 7) and 0x01) == 0) {
+			if (limit <= offset + numOctets) {
+				throw TLVException("Not enough bytes in input to read TLV length.")
+			}
+			if (((data[offset + numOctets].toInt() shr 7) and 0x01) == 0) {
 				// short form
-				dataLength = data[numOctets].toInt()
+				dataLength = data[offset + numOctets].toInt()
 				numOctets++
 			} else {
 				// has end-of-line octets
-				if ((data[numOctets].toInt() and 0x7F) == 0x00) {
+				if ((data[offset + numOctets].toInt() and 0x7F) == 0x00) {
 					endOfLine = true
 					numOctets++
 					// loop through content to find termination point
@@ -170,10 +226,10 @@ internal class TagLengthValue private constructor(
 					var endFound = false
 					var zeroFound = false
 					do {
-						if (data.size <= numOctets + i) {
+						if (limit <= offset + numOctets + i) {
 							throw TLVException("Not enough bytes in input to read TLV length.")
 						}
-						val next = data[numOctets + i]
+						val next = data[offset + numOctets + i]
 						if (next.toInt() == 0x00) {
 							if (zeroFound) {
 								endFound = true
@@ -190,22 +246,22 @@ internal class TagLengthValue private constructor(
 				} else {
 					// long form
 					// first byte indicates number of length bytes
-					val numLengthBytes = data[numOctets].toInt() and 0x7F
+					val numLengthBytes = data[offset + numOctets].toInt() and 0x7F
 					numOctets++
 
 					var i = 0
 					while (i < numLengthBytes) {
 						if (i * 8 > 32) {
 							throw TLVException("Length doesn't fit into a 32 bit word.")
-						} else if (data.size < numOctets + i + 1) {
+						} else if (limit < offset + numOctets + i + 1) {
 							throw TLVException("Not enough bytes in input to read TLV length.")
 						}
 						dataLength =
-							if (data[numOctets + i] < 0) {
+							if (data[offset + numOctets + i] < 0) {
 								// correct bytes wich are interpreted as negative numbers by java
-								(dataLength shl 8) or (256 + data[numOctets + i])
+								(dataLength shl 8) or (256 + data[offset + numOctets + i])
 							} else {
-								(dataLength shl 8) or data[numOctets + i].toInt()
+								(dataLength shl 8) or data[offset + numOctets + i].toInt()
 							}
 						i++
 					}
@@ -213,13 +269,12 @@ internal class TagLengthValue private constructor(
 				}
 			}
 
-			val dataField: ByteArray
-			try {
-				// extract data based on calculated length
-				dataField = data.copyOfRange(numOctets, numOctets + dataLength)
-			} catch (ex: IndexOutOfBoundsException) {
-				throw TLVException("Data length and claimed length do not match.", ex)
+			// check data based on calculated length, the value itself is extracted on demand
+			val valueStart = offset + numOctets
+			if (dataLength < 0 || limit - valueStart < dataLength) {
+				throw TLVException("Data length and claimed length do not match.")
 			}
+			val headerLength = numOctets
 
 			// recalculate total length of datablock
 			numOctets = numOctets + dataLength
@@ -228,7 +283,11 @@ internal class TagLengthValue private constructor(
 			}
 
 			// we have all values, build Tag object and return
-			val result = TagLengthValue(numOctets, tag, dataField)
+			val result = TagLengthValue(numOctets, tag, EMPTY)
+			result.source = data
+			result.sourceLength = dataLength
+			result.valueOffset = valueStart
+			result.headerLength = headerLength
 			return result
 		}
 	}
@@ -33,23 +33,35 @@ import org.xml.sax.SAXException
 import org.xml.sax.SAXParseException
 import java.io.IOException
 import java.net.URL
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
 import javax.xml.XMLConstants
+import javax.xml.stream.XMLStreamReader
 import javax.xml.transform.Source
 import javax.xml.transform.dom.DOMSource
+import javax.xml.transform.stax.StAXSource
 import javax.xml.transform.stream.StreamSource
 import javax.xml.validation.Schema
 import javax.xml.validation.SchemaFactory
+import javax.xml.validation.Validator
 
 private val LOG = KotlinLogging.logger { }
 
 /**
  * Utility class which allows to validate documents against the eCard schemas.
  *
+ * Instances are shared per set of schemas, see [load]. The compiled schema is immutable and the validators created
+ * from it are reused, so an instance can be used from several threads at once.
+ *
  * @author Hans-Martin Haase
  * @author Tobias Wich
  */
 class JAXPSchemaValidator : DocumentSchemaValidator {
-	private val schema: Schema
+	override val schema: Schema
+
+	private val idleValidators = ConcurrentLinkedQueue<Validator>()
+	private val numIdleValidators = AtomicInteger()
 
 	private constructor(schemaURL: URL) {
 		schema = schemaFactory.newSchema(schemaURL)
@@ -67,21 +79,49 @@ class JAXPSchemaValidator : DocumentSchemaValidator {
 		validateNode(doc)
 	}
 
+	override fun validate(reader: XMLStreamReader) {
+		validateSource(StAXSource(reader))
+	}
+
 	private fun validateNode(doc: Node) {
+		validateSource(DOMSource(doc))
+	}
+
+	private fun validateSource(source: Source) {
+		val validator = borrowValidator()
 		try {
-			val source: Source = DOMSource(doc)
-			val validator = schema.newValidator()
-			validator.errorHandler = CustomErrorHandler()
 			validator.validate(source)
 		} catch (ex: SAXException) {
 			LOG.error(ex) { "Validation of the input object failed." }
 			throw DocumentValidatorException("Failed to validate eCard message.", ex)
 		} catch (ex: IOException) {
 			throw IllegalArgumentException("Given object contains errors.", ex)
+		} finally {
+			releaseValidator(validator)
 		}
 	}
 
-	private class CustomErrorHandler : ErrorHandler {
+	private fun borrowValidator(): Validator {
+		val validator = idleValidators.poll()
+		if (validator != null) {
+			numIdleValidators.decrementAndGet()
+			return validator
+		}
+		return schema.newValidator().apply { errorHandler = CustomErrorHandler }
+	}
+
+	private fun releaseValidator(validator: Validator) {
+		// reset removes the error handler as well
+		validator.reset()
+		validator.errorHandler = CustomErrorHandler
+		if (numIdleValidators.incrementAndGet() <= MAX_IDLE_VALIDATORS) {
+			idleValidators.offer(validator)
+		} else {
+			numIdleValidators.decrementAndGet()
+		}
+	}
+
+	private object CustomErrorHandler : ErrorHandler {
 		override fun warning(exception: SAXParseException) {
 			LOG.warn { exception.localizedMessage }
 		}
@@ -93,9 +133,14 @@ class JAXPSchemaValidator : DocumentSchemaValidator {
 
 	companion object {
 		private const val XERCES_FACTORY = "org.apache.xerces.jaxp.validation.XMLSchemaFactory"
+		private val MAX_IDLE_VALIDATORS = Runtime.getRuntime().availableProcessors()
+
+		private val loadedValidators = ConcurrentHashMap<List<String>, JAXPSchemaValidator>()
 
 		/**
 		 * Loads a ECardSchemaValidator instance based on the given schemas.
+		 * The schemas are compiled only once per process, subsequent calls with the same schema names return the same
+		 * instance.
 		 *
 		 * @param schemaNames Resource names of the schemas which shall be used in the validation process.
 		 * @return Instance if the schema validator capable of verificating the given schema.
@@ -109,8 +154,12 @@ class JAXPSchemaValidator : DocumentSchemaValidator {
 				if (schemaNames.isEmpty()) {
 					throw IOException("No schemas given to validate the object.")
 				} else {
+					val key = schemaNames.toList()
+					loadedValidators[key]?.let { return it }
+					// compiling the same schemas concurrently is harmless, only one of the results is kept
 					val schemaDocuments = convertSchemaStrings2StreamSources(*schemaNames)
-					return JAXPSchemaValidator(schemaDocuments)
+					val validator = JAXPSchemaValidator(schemaDocuments)
+					return loadedValidators.putIfAbsent(key, validator) ?: validator
 				}
 			} catch (ex: IOException) {
 				LOG.error(ex) { "Not all schemas could not be found or loaded." }
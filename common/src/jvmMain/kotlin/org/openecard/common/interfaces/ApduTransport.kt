@@ -0,0 +1,72 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+package org.openecard.common.interfaces
+
+import oasis.names.tc.dss._1_0.core.schema.Result
+import org.openecard.common.ECardException
+
+/**
+ * Transport for command APDUs which talks directly to the channel of a card in the local IFD.
+ * It is an in-process shortcut for the `Transmit` function of the IFD, which avoids the creation of the webservice
+ * messages and their delivery through the [Dispatcher]. Secure messaging and the checking of the acceptable status
+ * codes are performed the same way as in the `Transmit` function.
+ *
+ * @see Dispatcher.getApduTransport
+ */
+interface ApduTransport {
+	/**
+	 * Checks whether the given slot handle refers to a channel of this transport.
+	 *
+	 * @param slotHandle Slot handle to check.
+	 * @return `true` if APDUs for the slot handle can be sent with this transport, `false` otherwise.
+	 */
+	fun isResponsible(slotHandle: ByteArray): Boolean
+
+	/**
+	 * Transmits the command APDU to the card identified by the given slot handle.
+	 *
+	 * @param slotHandle Slot handle of the card to send the command to.
+	 * @param commandApdu The command APDU.
+	 * @param acceptableStatusCodes Status codes which are not treated as errors. If the list is empty, all status codes
+	 * are accepted. One byte codes match all status codes starting with this byte.
+	 * @return The response APDU including the status bytes.
+	 * @throws ApduTransportException Thrown in case the APDU could not be transmitted or the card returned a status
+	 * code which is not acceptable.
+	 */
+	@Throws(ApduTransportException::class)
+	fun transmit(
+		slotHandle: ByteArray,
+		commandApdu: ByteArray,
+		acceptableStatusCodes: List<ByteArray>,
+	): ByteArray
+}
+
+/**
+ * Error in the [ApduTransport] carrying the same result the `Transmit` function would have returned.
+ *
+ * @param result Result describing the error.
+ * @property responseAPDU The response APDU, if the error is caused by an unexpected status code.
+ */
+class ApduTransportException(
+	result: Result,
+	val responseAPDU: ByteArray? = null,
+) : ECardException(makeOasisResultTraitImpl(result))
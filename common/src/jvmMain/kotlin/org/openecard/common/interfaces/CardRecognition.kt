@@ -31,6 +31,10 @@ import java.math.BigInteger
  * @author Tobias Wich
  */
 interface CardRecognition {
+	/**
+	 * All CIFs known to the recognition.
+	 * The returned objects are shared and must not be modified, use [getCardInfo] to obtain a modifiable copy.
+	 */
 	val cardInfos: List<CardInfoType>
 
 	// TODO: get rid of these functions, they should be in the SAL propably
@@ -77,4 +77,16 @@ interface Dispatcher {
 	 * @return A Dispatcher which provides implementation specific range of services.
 	 */
 	val filter: Dispatcher
+
+	/**
+	 * Get a transport which sends APDUs directly to the local IFD holding the channel of the given slot handle,
+	 * bypassing the message delivery of this dispatcher.
+	 * Dispatchers which only provide a restricted range of services, or which deliver the messages to a remote party,
+	 * return `null`, as well as dispatchers whose IFD does not know the slot handle. In this case APDUs must be sent as
+	 * `Transmit` messages.
+	 *
+	 * @param slotHandle Slot handle of the card the APDUs are sent to.
+	 * @return The direct APDU transport, or `null` if none is available for the slot handle.
+	 */
+	fun getApduTransport(slotHandle: ByteArray): ApduTransport? = null
 }
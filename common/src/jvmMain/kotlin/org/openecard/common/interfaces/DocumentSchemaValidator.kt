@@ -23,6 +23,8 @@ package org.openecard.common.interfaces
 
 import org.w3c.dom.Document
 import org.w3c.dom.Element
+import javax.xml.stream.XMLStreamReader
+import javax.xml.validation.Schema
 
 /**
  * Interface for schema based document validations.
@@ -30,6 +32,14 @@ import org.w3c.dom.Element
  * @author Tobias Wich
  */
 interface DocumentSchemaValidator {
+	/**
+	 * Schema definition of the instance, or `null` if the instance does not validate against a schema.
+	 * The schema can be applied while reading or writing a document as a stream, so no DOM needs to be created only for
+	 * the validation.
+	 */
+	val schema: Schema?
+		get() = null
+
 	/**
 	 * Validates the given document against the schema definition of the instance.
 	 *
@@ -47,4 +57,14 @@ interface DocumentSchemaValidator {
 	 */
 	@Throws(DocumentValidatorException::class)
 	fun validate(doc: Element)
+
+	/**
+	 * Validates the document read from the given stream against the schema definition of the instance.
+	 * The reader must be positioned at the start of the document or of an element, it is consumed by the validation.
+	 *
+	 * @param reader The stream containing the document to verify.
+	 * @throws DocumentValidatorException Indicates a failed document validation.
+	 */
+	@Throws(DocumentValidatorException::class)
+	fun validate(reader: XMLStreamReader)
 }
@@ -26,6 +26,7 @@ import iso.std.iso_iec._24727.tech.schema.RequestType
 import iso.std.iso_iec._24727.tech.schema.ResponseType
 import org.openecard.common.event.ApiCallEventObject
 import org.openecard.common.event.EventType
+import org.openecard.common.interfaces.ApduTransport
 import org.openecard.common.interfaces.Dispatchable
 import org.openecard.common.interfaces.Dispatcher
 import org.openecard.common.interfaces.DispatcherException
@@ -33,9 +34,12 @@ import org.openecard.common.interfaces.DispatcherExceptionUnchecked
 import org.openecard.common.interfaces.Environment
 import org.openecard.common.interfaces.InvocationTargetExceptionUnchecked
 import org.openecard.common.util.HandlerUtils
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
 import java.lang.reflect.InvocationTargetException
-import java.lang.reflect.Method
 import java.lang.reflect.Modifier
+import java.util.IdentityHashMap
 import java.util.TreeMap
 import java.util.TreeSet
 
@@ -43,7 +47,9 @@ private val logger = KotlinLogging.logger { }
 
 /**
  * Implementation of the `Dispatcher` interface.
- * This implementation defers its actual reflection work to the [Service] class.
+ * This implementation defers its actual reflection work to the [Service] class. All lookups are performed when the
+ * dispatcher is created, so that delivering a message only needs an identity lookup of the request class and method
+ * handle invocations.
  *
  * @author Tobias Wich
  * @author Hans-Martin Haase
@@ -54,8 +60,11 @@ class MessageDispatcher : Dispatcher {
 	/** Key is parameter classname  */
 	private val serviceMap: TreeMap<String, Service>
 
-	/** Key is service interface classname  */
-	private val serviceInstMap: TreeMap<String, Method>
+	/** Key is service interface classname, value is the bound accessor of the service instance in the environment  */
+	private val serviceInstMap: TreeMap<String, MethodHandle>
+
+	/** Key is parameter class, it is not modified after the initialization  */
+	private val dispatchTable: IdentityHashMap<Class<*>, DispatchEntry>
 
 	private val availableServiceNames: MutableList<String>
 
@@ -72,6 +81,7 @@ class MessageDispatcher : Dispatcher {
 		isFilter = false
 		serviceMap = TreeMap()
 		serviceInstMap = TreeMap()
+		dispatchTable = IdentityHashMap()
 		initDefinitions()
 		availableServiceNames = ArrayList()
 		createServiceList()
@@ -82,6 +92,7 @@ class MessageDispatcher : Dispatcher {
 		this.isFilter = isFilter
 		serviceMap = TreeMap()
 		serviceInstMap = TreeMap()
+		dispatchTable = IdentityHashMap()
 		initDefinitions()
 		availableServiceNames = ArrayList()
 		createServiceList()
@@ -99,13 +110,12 @@ class MessageDispatcher : Dispatcher {
 		}
 
 		try {
-			val reqClass: Class<*> = req.javaClass
-			val s = getService(reqClass)
-			val serviceImpl = getServiceImpl(s)
+			val entry = getDispatchEntry(req.javaClass)
+			val serviceImpl = getServiceImpl(entry)
 
 			logger.debug { "Delivering message of type: ${req.javaClass.getName()}" }
 
-			val result = s.invoke(serviceImpl, req)
+			val result = entry.service.invoke(serviceImpl, req)
 
 			// send API CALL FINISHED event
 			if (disp != null && req is RequestType && result is ResponseType) {
@@ -135,22 +145,31 @@ class MessageDispatcher : Dispatcher {
 	}
 
 	@Throws(IllegalAccessException::class)
-	private fun getService(reqClass: Class<*>): Service {
-		if (!serviceMap.containsKey(reqClass.getName())) {
+	private fun getDispatchEntry(reqClass: Class<*>): DispatchEntry {
+		val entry = dispatchTable[reqClass]
+		if (entry == null) {
 			val msg = "No service with a method containing parameter type " + reqClass.getName() + " present."
 			throw IllegalAccessException(msg)
 		}
-		return serviceMap.get(reqClass.getName())!!
+		return entry
 	}
 
-	@Throws(IllegalAccessException::class, InvocationTargetException::class)
-	private fun getServiceImpl(s: Service): Any {
-		val m = serviceInstMap.get(s.serviceInterface.getName())
-		if (m == null) {
-			val msg = "The environment does not contain a service for class " + s.serviceInterface.getName()
+	@Throws(IllegalAccessException::class, DispatcherException::class)
+	private fun getServiceImpl(entry: DispatchEntry): Any {
+		// the instance is fetched on each call, as the environment may be updated after creating the dispatcher
+		val impl =
+			try {
+				entry.serviceAccessor.invoke()
+			} catch (ex: RuntimeException) {
+				val msg =
+					"Failed to get service for class " + entry.service.serviceInterface.getName() +
+						" from the environment."
+				throw DispatcherException(msg, ex)
+			}
+		if (impl == null) {
+			val msg = "The environment does not contain a service for class " + entry.service.serviceInterface.getName()
 			throw IllegalAccessException(msg)
 		}
-		val impl = m.invoke(environment)
 		return impl
 	}
 
@@ -187,7 +206,18 @@ class MessageDispatcher : Dispatcher {
 				}
 
 				// add env method mapping
-				this.serviceInstMap.put(returnType.getName(), nextAccessor)
+				val accessor: MethodHandle
+				try {
+					accessor =
+						LOOKUP
+							.unreflect(nextAccessor)
+							.bindTo(environment)
+							.asType(ACCESSOR_TYPE)
+				} catch (ex: IllegalAccessException) {
+					logger.error(ex) { "No access to the environment method $nextAccessor." }
+					continue
+				}
+				this.serviceInstMap.put(returnType.getName(), accessor)
 
 				// update type mentioned in Dispatchable annotation to the actual type returned by the function
 				var returnTypeImpl = returnType
@@ -219,6 +249,7 @@ class MessageDispatcher : Dispatcher {
 						}
 					} else {
 						serviceMap.put(reqClass.getName(), service)
+						dispatchTable.put(reqClass, DispatchEntry(service, accessor))
 					}
 				}
 			}
@@ -238,6 +269,14 @@ class MessageDispatcher : Dispatcher {
 			return MessageDispatcher(this.environment, true)
 		}
 
+	override fun getApduTransport(slotHandle: ByteArray): ApduTransport? {
+		if (isFilter) {
+			return null
+		}
+		val transport = environment.ifd as? ApduTransport
+		return transport?.takeIf { it.isResponsible(slotHandle) }
+	}
+
 	private fun createServiceList() {
 		val services = TreeSet<Service>()
 		services.addAll(serviceMap.values)
@@ -245,4 +284,17 @@ class MessageDispatcher : Dispatcher {
 			availableServiceNames.addAll(service.actionList)
 		}
 	}
+
+	/**
+	 * Precomputed target of a request class.
+	 */
+	private class DispatchEntry(
+		val service: Service,
+		val serviceAccessor: MethodHandle,
+	)
+
+	companion object {
+		private val LOOKUP: MethodHandles.Lookup = MethodHandles.publicLookup()
+		private val ACCESSOR_TYPE: MethodType = MethodType.methodType(Any::class.java)
+	}
 }
@@ -28,16 +28,22 @@ import org.openecard.common.interfaces.Publish
 import org.openecard.ws.ECardApiMethod
 import org.openecard.ws.marshal.WSMarshallerException
 import org.openecard.ws.marshal.WSMarshallerFactory.Companion.createInstance
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
 import java.lang.reflect.InvocationTargetException
 import java.lang.reflect.Method
+import java.util.IdentityHashMap
 import java.util.TreeMap
+import java.util.concurrent.ConcurrentHashMap
 import javax.xml.transform.TransformerException
 
 private val LOG = KotlinLogging.logger { }
 
 /**
  * Service class encapsulating one webservice for the [MessageDispatcher].
- * This class takes care of the actual interface analysis and reflection part.
+ * This class takes care of the actual interface analysis and reflection part. The webservice methods are converted to
+ * method handles when the instance is created.
  *
  * @author Tobias Wich
  */
@@ -55,7 +61,8 @@ internal class Service
 	) : Comparable<Service?> {
 		private val requestClasses: ArrayList<Class<*>> = ArrayList()
 		private val requestMethods: TreeMap<String, Method> = TreeMap()
-		private val objectLoggers: HashMap<Class<*>, MessageLogger> = HashMap()
+		private val requestHandles: IdentityHashMap<Class<*>, MethodHandle> = IdentityHashMap()
+		private val objectLoggers: ConcurrentHashMap<Class<*>, MessageLogger> = ConcurrentHashMap()
 		private val actions: MutableList<String> = ArrayList()
 
 		/**
@@ -79,15 +86,20 @@ internal class Service
 						LOG.warn { msg }
 					} else {
 						val action = webAnnotation.action
-						if (isFilter) {
-							if (getAnnotation(m, Publish::class.java) != null) {
-								requestClasses.add(reqClass)
-								requestMethods.put(reqClass.getName(), m)
-								actions.add(action)
+						if (!isFilter || getAnnotation(m, Publish::class.java) != null) {
+							val handle: MethodHandle
+							try {
+								handle = wrapTargetExceptions(LOOKUP.unreflect(m)).asType(METHOD_TYPE)
+							} catch (ex: IllegalAccessException) {
+								LOG.warn(ex) {
+									"Omitting method ${m.name} in service interface ${impl.getName()}, " +
+										"because it is not accessible."
+								}
+								continue
 							}
-						} else {
 							requestClasses.add(reqClass)
 							requestMethods.put(reqClass.getName(), m)
+							requestHandles.put(reqClass, handle)
 							actions.add(action)
 						}
 					}
@@ -103,18 +115,10 @@ internal class Service
 		 * @param ifaceImpl Implementation for which the logger is requested.
 		 * @return The requested logger.
 		 */
-		private fun getLogger(ifaceImpl: Any): MessageLogger {
-			val implClass: Class<*> = ifaceImpl.javaClass
-			if (objectLoggers.containsKey(implClass)) {
-				return objectLoggers.get(implClass)!!
-			} else {
-				synchronized(this) {
-					val implLogger = MessageLogger(ifaceImpl.javaClass)
-					objectLoggers.put(implClass, implLogger)
-					return implLogger
-				}
+		private fun getLogger(ifaceImpl: Any): MessageLogger =
+			objectLoggers.computeIfAbsent(ifaceImpl.javaClass) { implClass ->
+				MessageLogger(implClass)
 			}
-		}
 
 		/**
 		 * Invokes the webservice method related to the request object in the given webservice class instance.
@@ -132,15 +136,20 @@ internal class Service
 		): Any {
 			try {
 				val l = getLogger(ifaceImpl)
-				val reqClass: Class<*> = req.javaClass
-				val m = getMethod(reqClass.getName())
+				val m = getMethodHandle(req.javaClass)
 				// invoke method
 				l.logRequest(req)
-				val res = m.invoke(ifaceImpl, req)
-				l.logResponse(res)
+				// exceptions of the target arrive wrapped, everything else comes from the handle itself
+				val res =
+					try {
+						m.invoke(ifaceImpl, req)
+					} catch (ex: InvocationTargetException) {
+						throw ex
+					} catch (ex: RuntimeException) {
+						throw DispatcherException("Failed to call method handle: ${ex.message}", ex)
+					}
+				l.logResponse(res!!)
 				return res
-			} catch (ex: IllegalAccessException) {
-				throw DispatcherException(ex.message, ex)
 			} catch (ex: NoSuchMethodException) {
 				throw DispatcherException(ex.message, ex)
 			} catch (ex: IllegalArgumentException) {
@@ -165,10 +174,10 @@ internal class Service
 		fun getRequestClasses(): List<Class<*>> = requestClasses.toList()
 
 		@Throws(NoSuchMethodException::class)
-		private fun getMethod(paramClass: String?): Method {
-			val m = requestMethods.get(paramClass)
+		private fun getMethodHandle(paramClass: Class<*>): MethodHandle {
+			val m = requestHandles.get(paramClass)
 			if (m == null) {
-				var msg = "Method containing parameter with class '" + paramClass + "' does not exist in interface '"
+				var msg = "Method containing parameter with class '${paramClass.getName()}' does not exist in interface '"
 				msg += serviceInterface.getName() + "'."
 				throw NoSuchMethodException(msg)
 			}
@@ -186,6 +195,30 @@ internal class Service
 		override fun compareTo(o: Service?): Int = this.serviceInterface.toString().compareTo(o?.serviceInterface.toString())
 
 		companion object {
+			private val LOOKUP: MethodHandles.Lookup = MethodHandles.publicLookup()
+			private val METHOD_TYPE: MethodType =
+				MethodType.methodType(Any::class.java, Any::class.java, Any::class.java)
+			private val WRAP_EXCEPTION: MethodHandle =
+				LOOKUP.findConstructor(
+					InvocationTargetException::class.java,
+					MethodType.methodType(Void.TYPE, Throwable::class.java),
+				)
+
+			/**
+			 * Wraps everything thrown by the given method in an [InvocationTargetException] like reflective calls do.
+			 * Errors of the type adaptations applied afterwards are not wrapped and can be told apart this way.
+			 */
+			private fun wrapTargetExceptions(target: MethodHandle): MethodHandle {
+				val type = target.type()
+				val thrower = MethodHandles.throwException(type.returnType(), InvocationTargetException::class.java)
+				val handler = MethodHandles.filterArguments(thrower, 0, WRAP_EXCEPTION)
+				return MethodHandles.catchException(
+					target,
+					Throwable::class.java,
+					MethodHandles.dropArguments(handler, 1, type.parameterList()),
+				)
+			}
+
 			private fun <A : Annotation> getAnnotation(
 				m: Method,
 				aClass: Class<out A>,
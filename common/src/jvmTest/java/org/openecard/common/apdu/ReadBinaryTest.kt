@@ -0,0 +1,43 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.apdu
+
+import org.openecard.common.util.StringUtils.toByteArray
+import org.testng.Assert
+import org.testng.annotations.Test
+
+/**
+ * Test if the READ BINARY commands with an offset DO are constructed as expected.
+ */
+class ReadBinaryTest {
+	@Test
+	fun testOffsetDo() {
+		var readBinary = ReadBinary(0x0000.toShort(), 0x8000, 0xFFFF)
+		var expected = toByteArray("00 B1 00 00 00 00 06 53 04 54 02 80 00 FF FF", true)
+		Assert.assertEquals(readBinary.toByteArray(), expected)
+
+		readBinary = ReadBinary(0x0001.toShort(), 0x030100, 0xFF)
+		expected = toByteArray("00 B1 00 01 07 53 05 54 03 03 01 00 FF", true)
+		Assert.assertEquals(readBinary.toByteArray(), expected)
+	}
+}
@@ -0,0 +1,99 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+package org.openecard.common.apdu.utils
+
+import iso.std.iso_iec._24727.tech.schema.Transmit
+import iso.std.iso_iec._24727.tech.schema.TransmitResponse
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.mock
+import org.openecard.common.apdu.exception.APDUException
+import org.openecard.common.interfaces.Dispatcher
+import org.openecard.common.tlv.iso7816.FCP
+import org.openecard.common.util.StringUtils.toByteArray
+import org.testng.Assert
+import org.testng.annotations.Test
+
+/**
+ * Test reading transparent files with offsets beyond the range of the even READ BINARY.
+ */
+class CardUtilsTest {
+	@Test
+	fun testReadLargeFile() {
+		val file = ByteArray(0x8300) { it.toByte() }
+		val leValues = ArrayList<Int>()
+		val dispatcher =
+			mock<Dispatcher> {
+				on { safeDeliver(any()) } doAnswer {
+					val t = it.getArgument<Transmit>(0)
+					val response = TransmitResponse()
+					for (apdu in t.inputAPDUInfo) {
+						leValues.add(apdu.inputAPDU.last().toInt() and 0xFF)
+						response.outputAPDU.add(respond(file, apdu.inputAPDU))
+					}
+					response
+				}
+			}
+		val fcp = FCP(toByteArray("62 07 80 02 83 00 82 01 01", true))
+
+		val result = CardUtils.readFile(fcp, null, dispatcher, byteArrayOf(0), false)
+		Assert.assertEquals(result, file)
+		Assert.assertTrue(leValues.all { it <= 0xFF })
+	}
+
+	@Test(expectedExceptions = [APDUException::class])
+	fun testFileTooLarge() {
+		val dispatcher = mock<Dispatcher>()
+		val fcp = FCP(toByteArray("62 09 80 04 01 00 00 00 82 01 01", true))
+		CardUtils.readFile(fcp, null, dispatcher, byteArrayOf(0), true)
+	}
+
+	/**
+	 * Emulates a card answering READ BINARY, wrapping the content in DO'53' for the odd instruction byte.
+	 */
+	private fun respond(
+		file: ByteArray,
+		command: ByteArray,
+	): ByteArray {
+		val le = command.last().toInt() and 0xFF
+		if (command[1] == 0xB0.toByte()) {
+			val offset = ((command[2].toInt() and 0x7F) shl 8) or (command[3].toInt() and 0xFF)
+			return file.copyOfRange(offset, minOf(offset + le, file.size)) + byteArrayOf(0x90.toByte(), 0x00)
+		}
+		// 00 B1 00 00 Lc 53 L 54 L offset Le
+		var offset = 0
+		for (i in 9 until 9 + command[8]) {
+			offset = (offset shl 8) or (command[i].toInt() and 0xFF)
+		}
+		var length = minOf(file.size - offset, le - 2)
+		if (length >= 0x80) {
+			length = minOf(file.size - offset, le - 3)
+		}
+		val header =
+			if (length < 0x80) {
+				byteArrayOf(0x53, length.toByte())
+			} else {
+				byteArrayOf(0x53, 0x81.toByte(), length.toByte())
+			}
+		return header + file.copyOfRange(offset, offset + length) + byteArrayOf(0x90.toByte(), 0x00)
+	}
+}
@@ -0,0 +1,139 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.event
+
+import org.openecard.common.interfaces.EventCallback
+import org.openecard.common.interfaces.EventFilter
+import org.testng.Assert
+import org.testng.annotations.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class EventDispatcherImplTest {
+	private class NumberedEvent(
+		val num: Int,
+	) : EventObject(null)
+
+	private class RecordingCallback(
+		expected: Int,
+	) : EventCallback {
+		val received: MutableList<Pair<EventType, Int>> = Collections.synchronizedList(ArrayList())
+		val done = CountDownLatch(expected)
+
+		override fun signalEvent(
+			eventType: EventType,
+			eventData: EventObject,
+		) {
+			received.add(Pair(eventType, (eventData as NumberedEvent).num))
+			done.countDown()
+		}
+	}
+
+	@Test
+	fun testOrderPerCallback() {
+		val dispatcher = EventDispatcherImpl()
+		dispatcher.start()
+		try {
+			val callbacks = (0 until 8).map { RecordingCallback(500) }
+			callbacks.forEach { dispatcher.add(it, EventType.CARD_INSERTED) }
+
+			for (i in 0 until 500) {
+				dispatcher.notify(EventType.CARD_INSERTED, NumberedEvent(i))
+			}
+
+			for (cb in callbacks) {
+				Assert.assertTrue(cb.done.await(10, TimeUnit.SECONDS))
+				Assert.assertEquals(cb.received.map { it.second }, (0 until 500).toList())
+			}
+			Assert.assertEquals(dispatcher.deliveredEvents, 8 * 500L)
+			Assert.assertEquals(dispatcher.droppedEvents, 0L)
+		} finally {
+			dispatcher.terminate()
+		}
+	}
+
+	@Test
+	fun testFiltering() {
+		val dispatcher = EventDispatcherImpl()
+		dispatcher.start()
+		try {
+			val typed = RecordingCallback(2)
+			dispatcher.add(typed, EventType.CARD_INSERTED, EventType.CARD_REMOVED)
+			val custom = RecordingCallback(1)
+			dispatcher.add(
+				custom,
+				object : EventFilter {
+					override fun matches(
+						t: EventType,
+						o: EventObject,
+					): Boolean = (o as NumberedEvent).num == 2
+				},
+			)
+
+			dispatcher.notify(EventType.CARD_INSERTED, NumberedEvent(1))
+			dispatcher.notify(EventType.TERMINAL_ADDED, NumberedEvent(2))
+			dispatcher.notify(EventType.CARD_REMOVED, NumberedEvent(3))
+
+			Assert.assertTrue(typed.done.await(10, TimeUnit.SECONDS))
+			Assert.assertTrue(custom.done.await(10, TimeUnit.SECONDS))
+			Assert.assertEquals(typed.received, listOf(EventType.CARD_INSERTED to 1, EventType.CARD_REMOVED to 3))
+			Assert.assertEquals(custom.received, listOf(EventType.TERMINAL_ADDED to 2))
+		} finally {
+			dispatcher.terminate()
+		}
+	}
+
+	@Test
+	fun testDropWhenQueueIsFull() {
+		val dispatcher = EventDispatcherImpl(queueCapacity = 2)
+		dispatcher.start()
+		try {
+			val blocked = CountDownLatch(1)
+			val entered = CountDownLatch(1)
+			val cb =
+				object : EventCallback {
+					override fun signalEvent(
+						eventType: EventType,
+						eventData: EventObject,
+					) {
+						entered.countDown()
+						blocked.await()
+					}
+				}
+			dispatcher.add(cb)
+
+			dispatcher.notify(EventType.CARD_INSERTED, NumberedEvent(0))
+			Assert.assertTrue(entered.await(10, TimeUnit.SECONDS))
+			// first event is being processed, two fit into the queue, the last one is dropped
+			for (i in 1..3) {
+				dispatcher.notify(EventType.CARD_INSERTED, NumberedEvent(i))
+			}
+			Assert.assertEquals(dispatcher.pendingEvents, 2)
+			Assert.assertEquals(dispatcher.droppedEvents, 1L)
+			blocked.countDown()
+		} finally {
+			dispatcher.terminate()
+		}
+	}
+}
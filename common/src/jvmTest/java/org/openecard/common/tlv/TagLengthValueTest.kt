@@ -239,4 +239,53 @@ class TagLengthValueTest {
 			result,
 		)
 	}
+
+	@Test
+	fun testWindowedParse() {
+		// leading and trailing garbage must not be touched
+		val input = byteArrayOf(0x7F, 0x00, 0x81.toByte(), 0x02, 0x01, 0x02, 0x7F)
+
+		val t = TagLengthValue.fromBER(input, 2, 6)
+
+		Assert.assertEquals(4, t.rawLength)
+		Assert.assertEquals(2, t.headerLength)
+		Assert.assertEquals(2, t.valueLength)
+		Assert.assertEquals(byteArrayOf(0x01, 0x02), t.value)
+	}
+
+	@Test(expectedExceptions = [TLVException::class])
+	fun testWindowedParseExceedsLimit() {
+		val input = byteArrayOf(0x81.toByte(), 0x02, 0x01, 0x02)
+
+		TagLengthValue.fromBER(input, 0, 3)
+	}
+
+	@Test
+	fun testNestedSiblings() {
+		val input =
+			byteArrayOf(
+				0x7C.toByte(),
+				0x08,
+				0x81.toByte(),
+				0x02,
+				0x01,
+				0x02,
+				0x82.toByte(),
+				0x02,
+				0x03,
+				0x04,
+				0x83.toByte(),
+				0x01,
+				0x05,
+			)
+
+		val t = fromBER(input)
+
+		Assert.assertEquals(t.asList().size, 2)
+		Assert.assertEquals(t.findChildTags(0x81)[0].value, byteArrayOf(0x01, 0x02))
+		Assert.assertEquals(t.findChildTags(0x82)[0].value, byteArrayOf(0x03, 0x04))
+		Assert.assertNull(t.findChildTags(0x82)[0].next)
+		Assert.assertEquals(t.findNextTags(0x83)[0].value, byteArrayOf(0x05))
+		Assert.assertEquals(t.toBER(true), input)
+	}
 }
@@ -26,10 +26,12 @@ import jakarta.xml.bind.JAXBContext
 import org.openecard.common.interfaces.DocumentSchemaValidator
 import org.openecard.common.interfaces.DocumentValidatorException
 import org.openecard.common.util.FileUtils.resolveResourceAsStream
+import org.testng.Assert
 import org.testng.annotations.Test
 import javax.xml.XMLConstants
 import javax.xml.parsers.DocumentBuilder
 import javax.xml.parsers.DocumentBuilderFactory
+import javax.xml.stream.XMLInputFactory
 
 /**
  *
@@ -115,4 +117,31 @@ class SchemaValidationTest {
 		val initFrame = builder.parse(dataStream)
 		validator.validate(initFrame)
 	}
+
+	@Test
+	fun testStreamValidation() {
+		val dataStream =
+			resolveResourceAsStream(
+				SchemaValidationTest::class.java,
+				"DIDAuthenticate.xml",
+			)
+		val reader = XMLInputFactory.newInstance().createXMLStreamReader(dataStream)
+		validator.validate(reader)
+	}
+
+	@Test(expectedExceptions = [DocumentValidatorException::class])
+	fun testStreamValidationNoCert() {
+		val dataStream =
+			resolveResourceAsStream(
+				SchemaValidationTest::class.java,
+				"DIDAuthenticate_EACInput1_nocert.xml",
+			)
+		val reader = XMLInputFactory.newInstance().createXMLStreamReader(dataStream)
+		validator.validate(reader)
+	}
+
+	@Test
+	fun testSchemaIsCompiledOnce() {
+		Assert.assertSame(JAXPSchemaValidator.load("Management.xsd"), validator)
+	}
 }
@@ -23,6 +23,8 @@ package org.openecard.transport.dispatcher
 
 import iso.std.iso_iec._24727.tech.schema.EstablishContext
 import iso.std.iso_iec._24727.tech.schema.EstablishContextResponse
+import org.openecard.common.interfaces.Dispatchable
+import org.openecard.common.interfaces.DispatcherException
 import org.openecard.common.interfaces.Environment
 import org.openecard.ws.IFD
 import org.testng.Assert
@@ -74,4 +76,32 @@ class TestDispatcher {
 
 		Assert.assertTrue(res is EstablishContextResponse)
 	}
+
+	/**
+	 * Test that an error of the environment accessor is reported as dispatcher error.
+	 */
+	@Test
+	fun testAccessorFailure() {
+		val env = FailingEnv()
+		env.ifd = TestIFD()
+		val disp = MessageDispatcher(env)
+
+		env.fail = true
+		val ex = Assert.expectThrows(DispatcherException::class.java) { disp.deliver(EstablishContext()) }
+		Assert.assertTrue(ex.cause is IllegalStateException)
+	}
+
+	/**
+	 * Test environment whose IFD accessor can be switched to fail.
+	 */
+	class FailingEnv : TestEnv1() {
+		var fail = false
+
+		@get:Dispatchable(interfaceClass = IFD::class)
+		override var ifd: IFD?
+			get() = if (fail) throw IllegalStateException("IFD not available.") else super.ifd
+			set(value) {
+				super.ifd = value
+			}
+	}
 }
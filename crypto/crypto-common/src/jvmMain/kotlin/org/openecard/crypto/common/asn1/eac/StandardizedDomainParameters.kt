@@ -37,6 +37,12 @@ class StandardizedDomainParameters(
 	companion object {
 		private val curves: Map<Int, Any>
 
+		/**
+		 * Indices of the standardized domain parameters which are elliptic curves.
+		 */
+		@JvmField
+		val EC_INDICES: IntRange = 8..18
+
 		/**
 		 * Instantiates a new standardized domain parameters.
 		 *
@@ -47,7 +53,7 @@ class StandardizedDomainParameters(
 
 			return if (index >= 0 && index <= 2) {
 				value as AlgorithmParameterSpec
-			} else if (index >= 8 && index <= 18) {
+			} else if (index in EC_INDICES) {
 				ECNamedCurveTable.getParameterSpec(value.toString())
 			} else {
 				throw IllegalArgumentException("Wrong index for standardized domain parameter")
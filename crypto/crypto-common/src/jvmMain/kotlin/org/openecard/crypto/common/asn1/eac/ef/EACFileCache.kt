@@ -0,0 +1,260 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.crypto.common.asn1.eac.ef
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import org.openecard.common.OpenecardProperties
+import org.openecard.common.util.ByteUtils
+import org.openecard.common.util.FileUtils
+import org.openecard.common.util.IntegerUtils
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+
+private val LOG = KotlinLogging.logger { }
+
+/**
+ * Cache of the files EF.CardAccess and EF.CardSecurity of eID cards.
+ *
+ * Both files are written when the card is personalised and never change afterwards, while an eID card is usually used
+ * over and over again with the same client.
+ *
+ * EF.CardAccess is small and read in any case, because it is needed to recognise the card. The decoded
+ * [EFCardAccess] is cached with the digest of the file content as key, so that the ASN.1 structures are only parsed
+ * for files which have not been seen before.
+ *
+ * EF.CardSecurity is considerably larger. Its entries are identified by the size of the file and its last bytes,
+ * which contain the signature over the file content. Reading these bytes takes a single READ BINARY command, the
+ * remaining content is taken from the cache. The entries are kept in memory and, unless disabled with the property
+ * `cache-card-security`, on disk. Entries whose content does not match their identifier are discarded.
+ */
+object EACFileCache {
+	/**
+	 * Number of bytes at the end of EF.CardSecurity which are used in its identifier.
+	 */
+	const val CARD_SECURITY_TAIL_LENGTH = 0xFF
+
+	/**
+	 * Maximum size of an EF.CardSecurity file kept in the cache.
+	 */
+	const val MAX_CARD_SECURITY_SIZE = 0x7FFF
+
+	private const val MAX_CARD_ACCESS = 16
+	private const val MAX_CARD_SECURITY = 32
+	private const val PREFIX = "V1_"
+	private const val SUFFIX = ".bin"
+
+	private val cardAccess = lruMap<EFCardAccess>(MAX_CARD_ACCESS)
+	private val cardSecurity = lruMap<ByteArray>(MAX_CARD_SECURITY)
+
+	private val cacheDir: File? by lazy {
+		try {
+			val dir = File(FileUtils.homeConfigDir, "eac-cache")
+			if (!dir.exists() && !dir.mkdirs()) {
+				throw SecurityException("Failed to create cache directory.")
+			}
+			dir
+		} catch (ex: IOException) {
+			LOG.error { "Failed to obtain or create cache directory, disabling persistent EAC file cache." }
+			null
+		} catch (ex: SecurityException) {
+			LOG.error { "Failed to obtain or create cache directory, disabling persistent EAC file cache." }
+			null
+		}
+	}
+
+	/**
+	 * Gets the decoded content of an EF.CardAccess file.
+	 *
+	 * @param efCardAccess Content of the file as read from the card.
+	 * @return The decoded file, which is shared between all callers and must not be modified.
+	 * @throws IllegalArgumentException Thrown in case the file can not be decoded.
+	 */
+	fun getCardAccess(efCardAccess: ByteArray): EFCardAccess {
+		val identifier = digest(efCardAccess)
+		synchronized(cardAccess) {
+			cardAccess[identifier]
+		}?.let { return it }
+
+		val efca = EFCardAccess.getInstance(efCardAccess)
+		synchronized(cardAccess) {
+			cardAccess[identifier] = efca
+		}
+		return efca
+	}
+
+	/**
+	 * Creates the identifier of an EF.CardSecurity file.
+	 *
+	 * @param size Size of the file as given in its FCP.
+	 * @param tail The last bytes of the file. They must contain the signature of the file.
+	 * @return The identifier.
+	 */
+	fun cardSecurityIdentifier(
+		size: Int,
+		tail: ByteArray,
+	): String = digest(IntegerUtils.toByteArray(size, true), tail)
+
+	/**
+	 * Gets the content of an EF.CardSecurity file.
+	 *
+	 * @param identifier Identifier of the file, see [cardSecurityIdentifier].
+	 * @return The content of the file, or `null` if it is not in the cache.
+	 */
+	fun getCardSecurity(identifier: String): ByteArray? {
+		val cached =
+			synchronized(cardSecurity) {
+				cardSecurity[identifier]
+			} ?: readFile(identifier)?.also { data ->
+				synchronized(cardSecurity) {
+					cardSecurity[identifier] = data
+				}
+			}
+		return cached?.clone()
+	}
+
+	/**
+	 * Saves the content of an EF.CardSecurity file.
+	 * The content is not saved, if it does not match the identifier.
+	 *
+	 * @param identifier Identifier of the file, see [cardSecurityIdentifier].
+	 * @param efCardSecurity The complete content of the file.
+	 */
+	fun saveCardSecurity(
+		identifier: String,
+		efCardSecurity: ByteArray,
+	) {
+		if (!matchesIdentifier(identifier, efCardSecurity)) {
+			LOG.warn { "EF.CardSecurity does not match its identifier, not saving it in the cache." }
+			return
+		}
+		val copy = efCardSecurity.clone()
+		synchronized(cardSecurity) {
+			cardSecurity[identifier] = copy
+		}
+		writeFile(identifier, copy)
+	}
+
+	/**
+	 * Removes all entries from the memory cache.
+	 */
+	fun clear() {
+		synchronized(cardAccess) {
+			cardAccess.clear()
+		}
+		synchronized(cardSecurity) {
+			cardSecurity.clear()
+		}
+	}
+
+	private fun <T> lruMap(maxEntries: Int): MutableMap<String, T> =
+		object : LinkedHashMap<String, T>(16, 0.75f, true) {
+			override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, T>): Boolean = size > maxEntries
+		}
+
+	private fun matchesIdentifier(
+		identifier: String,
+		data: ByteArray,
+	): Boolean {
+		if (data.size <= CARD_SECURITY_TAIL_LENGTH || data.size > MAX_CARD_SECURITY_SIZE) {
+			return false
+		}
+		val tail = data.copyOfRange(data.size - CARD_SECURITY_TAIL_LENGTH, data.size)
+		return cardSecurityIdentifier(data.size, tail) == identifier
+	}
+
+	private fun digest(vararg parts: ByteArray): String {
+		val digest = MessageDigest.getInstance("SHA-256")
+		parts.forEach { digest.update(it) }
+		return ByteUtils.toHexString(digest.digest())!!
+	}
+
+	private fun hasPersistentCache(): Boolean =
+		OpenecardProperties.getProperty("cache-card-security").toBoolean()
+
+	private fun getFile(identifier: String): File? {
+		if (!hasPersistentCache()) {
+			return null
+		}
+		return cacheDir?.let { File(it, "$PREFIX$identifier$SUFFIX") }
+	}
+
+	private fun readFile(identifier: String): ByteArray? {
+		val file = getFile(identifier) ?: return null
+		if (!file.isFile) {
+			return null
+		}
+		try {
+			if (file.length() <= MAX_CARD_SECURITY_SIZE) {
+				val data = file.readBytes()
+				if (matchesIdentifier(identifier, data)) {
+					// keep recently used files when the cache directory is trimmed
+					file.setLastModified(System.currentTimeMillis())
+					return data
+				}
+			}
+			LOG.warn { "Cached EF.CardSecurity does not match its identifier, deleting the file." }
+		} catch (ex: IOException) {
+			LOG.warn(ex) { "Failed to read EF.CardSecurity from cache, deleting the file." }
+		}
+		deleteFile(file)
+		return null
+	}
+
+	private fun deleteFile(file: File) {
+		if (!file.delete()) {
+			LOG.error { "Failed to delete cache file ${file.name}." }
+		}
+	}
+
+	/**
+	 * Deletes the least recently used files, so that at most [MAX_CARD_SECURITY] files remain in the cache directory.
+	 */
+	private fun trimFiles(dir: File) {
+		val files = dir.listFiles { f -> f.name.startsWith(PREFIX) && f.name.endsWith(SUFFIX) } ?: return
+		if (files.size > MAX_CARD_SECURITY) {
+			files
+				.sortedBy { it.lastModified() }
+				.take(files.size - MAX_CARD_SECURITY)
+				.forEach { deleteFile(it) }
+		}
+	}
+
+	private fun writeFile(
+		identifier: String,
+		data: ByteArray,
+	) {
+		val file = getFile(identifier) ?: return
+		try {
+			// write to a temporary file first, so readers never see a partially written file
+			val tmp = File.createTempFile(PREFIX, ".tmp", file.parentFile)
+			tmp.writeBytes(data)
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+			trimFiles(file.parentFile)
+		} catch (ex: IOException) {
+			LOG.warn(ex) { "Failed to write EF.CardSecurity to disk." }
+		}
+	}
+}
@@ -45,7 +45,12 @@ private val LOG = KotlinLogging.logger { }
  * @author Moritz Horsch
  */
 class EFCardAccess(
-	private val sis: SecurityInfos,
+	/**
+	 * Gets the SecurityInfos the file has been decoded from.
+	 *
+	 * @return SecurityInfos
+	 */
+	val securityInfos: SecurityInfos,
 	/**
 	 * Gets the PACESecurityInfos.
 	 *
@@ -0,0 +1,328 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.crypto.common.sal.did
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType
+import org.openecard.common.OpenecardProperties
+import org.openecard.common.util.ByteUtils
+import org.openecard.common.util.FileUtils
+import org.openecard.common.util.IntegerUtils
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.security.cert.CertificateException
+import java.security.cert.CertificateFactory
+import java.security.cert.X509Certificate
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+
+private val LOG = KotlinLogging.logger {}
+
+/**
+ * Cache of the certificate data sets of crypto DIDs, kept in memory and if possible on disk.
+ *
+ * Reading a complete certificate chain from a signature card takes seconds, while the chain stays the same for the
+ * lifetime of the card. Entries are identified by the card type, the ATR, the DID name and the content of the first
+ * certificate data set of the DID. The first data set still has to be read from the card, it serves as indicator
+ * that the card is the same and has not been personalised again. The remaining data sets are taken from the cache.
+ * Only public certificates are stored.
+ *
+ * The first data set is not necessarily card specific, it may as well contain a CA certificate shared by all cards of
+ * the type. A cached chain is therefore only used, if its end-entity certificate is the indicator or equals the
+ * certificate read from the card, see [readCertificates].
+ *
+ * The number and size of the entries is limited. Files on disk carry a digest of their content and are discarded if
+ * it does not match.
+ *
+ * The cache can be disabled with the property `cache-card-certificates`.
+ */
+object CardCertificateCache {
+	private const val PREFIX = "V2_"
+	private const val SUFFIX = ".bin"
+	private const val MAX_ENTRIES = 32
+	private const val MAX_CERTIFICATES = 16
+	private const val MAX_CERTIFICATE_SIZE = 0x10000
+	private const val DIGEST_LENGTH = 32
+	private const val MAX_FILE_SIZE =
+		Int.SIZE_BYTES + MAX_CERTIFICATES * (Int.SIZE_BYTES + MAX_CERTIFICATE_SIZE) + DIGEST_LENGTH
+
+	private val memCache =
+		object : LinkedHashMap<String, List<ByteArray>>(16, 0.75f, true) {
+			override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, List<ByteArray>>): Boolean =
+				size > MAX_ENTRIES
+		}
+	private val cacheDir: File? by lazy {
+		try {
+			val dir = File(FileUtils.homeConfigDir, "cert-cache")
+			if (!dir.exists() && !dir.mkdirs()) {
+				throw SecurityException("Failed to create cache directory.")
+			}
+			dir
+		} catch (ex: IOException) {
+			LOG.error { "Failed to obtain or create cache directory, disabling persistent certificate cache." }
+			null
+		} catch (ex: SecurityException) {
+			LOG.error { "Failed to obtain or create cache directory, disabling persistent certificate cache." }
+			null
+		}
+	}
+
+	/**
+	 * Reads the certificate data sets of a DID, taking the data sets from the cache where possible.
+	 *
+	 * The first data set is always read from the card. If a cached chain exists for it, the data set containing the
+	 * end-entity certificate of the chain is read from the card as well, unless it is the first one. The cached chain
+	 * is only used, if that data set is identical to the cached one.
+	 *
+	 * @param handle Connection handle of the card.
+	 * @param didName Name of the crypto DID.
+	 * @param numDataSets Number of certificate data sets of the DID.
+	 * @param read Function reading the data set with the given index from the card.
+	 * @return The content of all data sets in the order of their indices.
+	 */
+	fun readCertificates(
+		handle: ConnectionHandleType,
+		didName: String,
+		numDataSets: Int,
+		read: (Int) -> ByteArray,
+	): List<ByteArray> {
+		if (numDataSets == 0) {
+			return listOf()
+		}
+		// data sets are read at most once
+		val fromCard = HashMap<Int, ByteArray>()
+		val readOnce = { idx: Int -> fromCard.getOrPut(idx) { read(idx) } }
+
+		val indicator = readOnce(0)
+		val cacheId = identifier(handle, didName, indicator)
+		val cached = cacheId?.let { getCertificates(it) }
+		if (cached != null && cached.size == numDataSets - 1) {
+			val chain = listOf(indicator) + cached
+			val endEntity = endEntityIndex(chain)
+			if (endEntity != null && readOnce(endEntity).contentEquals(chain[endEntity])) {
+				LOG.debug { "Using cached certificates of DID $didName." }
+				return chain
+			}
+			LOG.debug { "Cached certificates of DID $didName belong to a different card." }
+		}
+
+		val remaining = (1 until numDataSets).map { readOnce(it) }
+		cacheId?.let { saveCertificates(it, remaining) }
+		return listOf(indicator) + remaining
+	}
+
+	/**
+	 * Finds the data set containing the end-entity certificate of a chain.
+	 *
+	 * @param dataSets Content of the certificate data sets.
+	 * @return Index of the only data set containing a certificate which is no CA certificate, or `null` if there is
+	 * no such data set.
+	 */
+	internal fun endEntityIndex(dataSets: List<ByteArray>): Int? =
+		try {
+			val factory = CertificateFactory.getInstance("X.509")
+			dataSets.indices
+				.filter { idx ->
+					factory
+						.generateCertificates(dataSets[idx].inputStream())
+						.any { it is X509Certificate && it.basicConstraints == -1 }
+				}.singleOrNull()
+		} catch (ex: CertificateException) {
+			LOG.debug(ex) { "Failed to parse cached certificates." }
+			null
+		}
+
+	/**
+	 * Creates the identifier of the certificates of a DID.
+	 *
+	 * @param handle Connection handle of the card.
+	 * @param didName Name of the crypto DID.
+	 * @param indicator Content of the first certificate data set of the DID.
+	 * @return The identifier, or `null` if the card is not recognized.
+	 */
+	fun identifier(
+		handle: ConnectionHandleType,
+		didName: String,
+		indicator: ByteArray,
+	): String? {
+		val recInfo = handle.recognitionInfo ?: return null
+		val cardType = recInfo.cardType ?: return null
+		val digest = MessageDigest.getInstance("SHA-256")
+		val atr = recInfo.cardIdentifier ?: ByteArray(0)
+		for (next in listOf(cardType.toByteArray(), atr, didName.toByteArray())) {
+			digest.update(IntegerUtils.toByteArray(next.size, true))
+			digest.update(next)
+		}
+		digest.update(indicator)
+		return ByteUtils.toHexString(digest.digest())!!
+	}
+
+	/**
+	 * Gets the remaining certificate data sets of a DID.
+	 *
+	 * @param identifier Identifier of the certificates.
+	 * @return Content of the data sets following the indicator, or `null` if they are not in the cache.
+	 */
+	fun getCertificates(identifier: String): List<ByteArray>? {
+		if (!hasCache()) {
+			return null
+		}
+
+		val cached =
+			synchronized(memCache) {
+				memCache[identifier]
+			} ?: readFile(identifier)?.also { data ->
+				synchronized(memCache) {
+					memCache[identifier] = data
+				}
+			}
+		return cached?.map { it.clone() }
+	}
+
+	/**
+	 * Saves the remaining certificate data sets of a DID.
+	 * Data sets exceeding the size limits of the cache are not saved.
+	 *
+	 * @param identifier Identifier of the certificates.
+	 * @param certificates Content of the data sets following the indicator.
+	 */
+	fun saveCertificates(
+		identifier: String,
+		certificates: List<ByteArray>,
+	) {
+		if (!hasCache()) {
+			return
+		}
+		if (certificates.size > MAX_CERTIFICATES || certificates.any { it.size > MAX_CERTIFICATE_SIZE }) {
+			LOG.debug { "Certificates exceed the limits of the cache, not saving them." }
+			return
+		}
+
+		val copy = certificates.map { it.clone() }
+		synchronized(memCache) {
+			memCache[identifier] = copy
+		}
+		writeFile(identifier, copy)
+	}
+
+	private fun hasCache(): Boolean = OpenecardProperties.getProperty("cache-card-certificates").toBoolean()
+
+	private fun getFile(identifier: String): File? = cacheDir?.let { File(it, "$PREFIX$identifier$SUFFIX") }
+
+	private fun digest(data: ByteArray): ByteArray = MessageDigest.getInstance("SHA-256").digest(data)
+
+	private fun readFile(identifier: String): List<ByteArray>? {
+		val file = getFile(identifier) ?: return null
+		if (!file.isFile) {
+			return null
+		}
+		try {
+			if (file.length() in DIGEST_LENGTH..MAX_FILE_SIZE) {
+				val bytes = file.readBytes()
+				val content = bytes.copyOfRange(0, bytes.size - DIGEST_LENGTH)
+				val storedDigest = bytes.copyOfRange(bytes.size - DIGEST_LENGTH, bytes.size)
+				if (MessageDigest.isEqual(digest(content), storedDigest)) {
+					val certificates = parseCertificates(content)
+					if (certificates != null) {
+						// keep recently used files when the cache directory is trimmed
+						file.setLastModified(System.currentTimeMillis())
+						return certificates
+					}
+				}
+			}
+			LOG.warn { "Cached certificates are corrupted, deleting the file." }
+		} catch (ex: IOException) {
+			LOG.warn(ex) { "Failed to read certificates from cache, deleting the corrupted file." }
+		}
+		deleteFile(file)
+		return null
+	}
+
+	private fun parseCertificates(content: ByteArray): List<ByteArray>? {
+		val input = DataInputStream(ByteArrayInputStream(content))
+		val num = input.readInt()
+		if (num !in 0..MAX_CERTIFICATES) {
+			return null
+		}
+		val result = ArrayList<ByteArray>(num)
+		repeat(num) {
+			val size = input.readInt()
+			if (size !in 0..minOf(MAX_CERTIFICATE_SIZE, input.available())) {
+				return null
+			}
+			val data = ByteArray(size)
+			input.readFully(data)
+			result.add(data)
+		}
+		return if (input.available() == 0) result else null
+	}
+
+	private fun deleteFile(file: File) {
+		if (!file.delete()) {
+			LOG.error { "Failed to delete cache file ${file.name}." }
+		}
+	}
+
+	/**
+	 * Deletes the least recently used files, so that at most [MAX_ENTRIES] files remain in the cache directory.
+	 */
+	private fun trimFiles(dir: File) {
+		val files = dir.listFiles { f -> f.name.startsWith(PREFIX) && f.name.endsWith(SUFFIX) } ?: return
+		if (files.size > MAX_ENTRIES) {
+			files
+				.sortedBy { it.lastModified() }
+				.take(files.size - MAX_ENTRIES)
+				.forEach { deleteFile(it) }
+		}
+	}
+
+	private fun writeFile(
+		identifier: String,
+		certificates: List<ByteArray>,
+	) {
+		val file = getFile(identifier) ?: return
+		try {
+			// write to a temporary file first, so readers never see a partially written file
+			val content = ByteArrayOutputStream()
+			DataOutputStream(content).use { out ->
+				out.writeInt(certificates.size)
+				for (next in certificates) {
+					out.writeInt(next.size)
+					out.write(next)
+				}
+			}
+			val contentBytes = content.toByteArray()
+			val tmp = File.createTempFile(PREFIX, ".tmp", file.parentFile)
+			tmp.writeBytes(contentBytes + digest(contentBytes))
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+			trimFiles(file.parentFile)
+		} catch (ex: IOException) {
+			LOG.warn(ex) { "Failed to write certificates to disk." }
+		}
+	}
+}
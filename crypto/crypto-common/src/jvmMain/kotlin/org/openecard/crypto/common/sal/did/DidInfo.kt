@@ -153,7 +153,8 @@ class DidInfo {
 	val protocol = this.DID.getDIDMarker().getProtocol()
 
 	@get:Throws(WSHelper.WSException::class)
-	val isAuthenticated = this.DID.isAuthenticated
+	val isAuthenticated: Boolean
+		get() = this.DID.isAuthenticated
 
 	@get:Throws(
 		WSHelper.WSException::class,
@@ -373,33 +374,31 @@ class DidInfo {
 	val relatedCertificateChain: List<X509Certificate> by lazy {
 		if (this.isCryptoDid) {
 			// read certs from card
-			var allCertsRead = true
-			val rawCerts = ArrayList<ByteArray>()
-			for (dsi in this.relatedDataSets) {
-				if (dsi.isPinSufficient) {
-					dsi.connectApplication()
-					dsi.authenticate()
-					val data = dsi.read()
-					rawCerts.add(data)
-				} else {
-					allCertsRead = false
-					break
-				}
+			val dataSets = this.relatedDataSets
+			if (dataSets.any { !it.isPinSufficient }) {
+				throw CertificateException("No readable certificates available.")
 			}
+			val rawCerts =
+				CardCertificateCache.readCertificates(didInfos.getHandle(), didName, dataSets.size) {
+					readCertificate(dataSets[it])
+				}
 
 			// convert certs
-			if (allCertsRead) {
-				parseCerts(rawCerts)
-			} else {
-				throw CertificateException("No readable certificates available.")
-			}
+			parseCerts(rawCerts)
 		} else {
 			listOf()
 		}
 	}
 
+	@Throws(WSHelper.WSException::class, SecurityConditionUnsatisfiable::class, NoSuchDid::class)
+	private fun readCertificate(dsi: DataSetInfo): ByteArray {
+		dsi.connectApplication()
+		dsi.authenticate()
+		return dsi.read()
+	}
+
 	@Throws(CertificateException::class)
-	private fun parseCerts(certsData: MutableList<ByteArray>): List<X509Certificate> {
+	private fun parseCerts(certsData: List<ByteArray>): List<X509Certificate> {
 		val allCerts: MutableList<Certificate> = ArrayList<Certificate>()
 
 		for (nextBlob in certsData) {
@@ -299,12 +299,13 @@ class DidInfos(
 	}
 
 	fun clearPin(slotHandle: ByteArray) {
+		if (!ByteUtils.compare(slotHandle, handle.getSlotHandle())) {
+			return
+		}
 		setPin(null)
 		for (e1 in cachedDids.entries) {
-			if (ByteUtils.compare(slotHandle, e1.key)) {
-				for (e2 in e1.value.entries) {
-					e2.value.setPin(null)
-				}
+			for (e2 in e1.value.entries) {
+				e2.value.setPin(null)
 			}
 		}
 	}
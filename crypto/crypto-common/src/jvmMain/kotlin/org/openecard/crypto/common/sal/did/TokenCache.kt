@@ -28,6 +28,8 @@ import java.util.TreeMap
 
 /**
  * Simple cache for the DIDInfos entry point to card data.
+ * The DIDInfos of a card are kept per slot handle, so the DID metadata and the certificates read from the card are
+ * only loaded once per connection. Certificates are additionally kept in the [CardCertificateCache].
  *
  * @author Tobias Wich
  */
@@ -36,14 +38,19 @@ class TokenCache(
 ) {
 	private val cachedInfos: MutableMap<ByteArray, DidInfos> = TreeMap<ByteArray, DidInfos>(ByteComparator())
 
+	@Synchronized
 	fun getInfo(
 		pin: CharArray?,
 		handle: ConnectionHandleType,
 	): DidInfos {
-		var result = cachedInfos[handle.getSlotHandle()]
+		val slotHandle = handle.getSlotHandle()
+		var result = cachedInfos[slotHandle]
 
 		if (result == null) {
 			result = DidInfos(dispatcher, pin, handle)
+			if (slotHandle != null) {
+				cachedInfos[slotHandle.clone()] = result
+			}
 		} else if (pin != null) {
 			result.setPin(pin)
 		}
@@ -51,6 +58,7 @@ class TokenCache(
 		return result
 	}
 
+	@Synchronized
 	fun clearPins() {
 		val it = cachedInfos.entries.iterator()
 		while (it.hasNext()) {
@@ -0,0 +1,75 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.crypto.common.asn1.eac.ef
+
+import org.testng.Assert
+import org.testng.annotations.BeforeMethod
+import org.testng.annotations.Test
+
+class EACFileCacheTest {
+	@BeforeMethod
+	fun clearCache() {
+		EACFileCache.clear()
+	}
+
+	@Test
+	fun testCardAccessDecodedOnce() {
+		val data = loadTestFile("EF_CardAccess.bin")
+		val first = EACFileCache.getCardAccess(data)
+		val second = EACFileCache.getCardAccess(data.clone())
+		Assert.assertSame(second, first)
+		Assert.assertEquals(first.pACESecurityInfos.pACEInfos[0].parameterID, 13)
+
+		val other = EACFileCache.getCardAccess(loadTestFile("EF_CardAccess_pdp.bin"))
+		Assert.assertNotSame(other, first)
+		Assert.assertEquals(other.pACESecurityInfos.pACEInfos[0].parameterID, -1)
+	}
+
+	@Test(expectedExceptions = [IllegalArgumentException::class])
+	fun testCardAccessInvalid() {
+		EACFileCache.getCardAccess(byteArrayOf(0x04, 0x01, 0x00))
+	}
+
+	@Test
+	fun testCardSecurityIdentifier() {
+		val tail = ByteArray(0xFF) { it.toByte() }
+		val id = EACFileCache.cardSecurityIdentifier(1024, tail)
+		Assert.assertEquals(EACFileCache.cardSecurityIdentifier(1024, tail.clone()), id)
+		Assert.assertNotEquals(EACFileCache.cardSecurityIdentifier(1025, tail), id)
+		tail[0] = 0x42
+		Assert.assertNotEquals(EACFileCache.cardSecurityIdentifier(1024, tail), id)
+	}
+
+	@Test
+	fun testCardSecurityMismatchNotSaved() {
+		val data = ByteArray(1024) { it.toByte() }
+		val tail = data.copyOfRange(data.size - EACFileCache.CARD_SECURITY_TAIL_LENGTH, data.size)
+		// identifier of a file with a different size
+		val id = EACFileCache.cardSecurityIdentifier(1025, tail)
+		EACFileCache.saveCardSecurity(id, data)
+		Assert.assertNull(EACFileCache.getCardSecurity(id))
+	}
+
+	private fun loadTestFile(file: String): ByteArray =
+		EACFileCacheTest::class.java.getResourceAsStream("/$file")!!.use { it.readBytes() }
+}
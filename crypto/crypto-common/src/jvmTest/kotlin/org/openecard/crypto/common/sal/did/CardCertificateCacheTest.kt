@@ -0,0 +1,84 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+package org.openecard.crypto.common.sal.did
+
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType
+import org.testng.Assert
+import org.testng.annotations.Test
+
+class CardCertificateCacheTest {
+	private val caCert = loadTestFile("TestCertQSCAeCard.cer")
+	private val firstCardCert = loadTestFile("TestCertQSeCard.cer")
+	private val secondCardCert = loadTestFile("TestCertSecondCard.cer")
+
+	@Test
+	fun testEndEntityIndex() {
+		Assert.assertEquals(CardCertificateCache.endEntityIndex(listOf(caCert, firstCardCert)), 1)
+		Assert.assertEquals(CardCertificateCache.endEntityIndex(listOf(secondCardCert, caCert)), 0)
+		Assert.assertNull(CardCertificateCache.endEntityIndex(listOf(caCert)))
+		Assert.assertNull(CardCertificateCache.endEntityIndex(listOf(firstCardCert, secondCardCert)))
+	}
+
+	@Test
+	fun testCardsSharingFirstCertificate() {
+		// both cards start with the same CA certificate
+		val firstCard = listOf(caCert, firstCardCert, caCert)
+		val secondCard = listOf(caCert, secondCardCert, caCert)
+
+		assertChain(readCertificates(firstCard, mutableListOf()), firstCard)
+		assertChain(readCertificates(secondCard, mutableListOf()), secondCard)
+		assertChain(readCertificates(firstCard, mutableListOf()), firstCard)
+
+		// the cached chain is used after checking the end-entity certificate
+		val reads = mutableListOf<Int>()
+		assertChain(readCertificates(firstCard, reads), firstCard)
+		Assert.assertEquals(reads, listOf(0, 1))
+	}
+
+	private fun readCertificates(
+		card: List<ByteArray>,
+		reads: MutableList<Int>,
+	): List<ByteArray> =
+		CardCertificateCache.readCertificates(handle(), "SIG", card.size) { idx ->
+			reads.add(idx)
+			card[idx]
+		}
+
+	private fun assertChain(
+		actual: List<ByteArray>,
+		expected: List<ByteArray>,
+	) {
+		Assert.assertEquals(actual.map { it.toList() }, expected.map { it.toList() })
+	}
+
+	private fun handle(): ConnectionHandleType {
+		val recInfo = ConnectionHandleType.RecognitionInfo()
+		recInfo.cardType = "http://openecard.org/test/certificate-cache"
+		recInfo.cardIdentifier = byteArrayOf(0x3B, 0x00)
+		val handle = ConnectionHandleType()
+		handle.recognitionInfo = recInfo
+		return handle
+	}
+
+	private fun loadTestFile(file: String): ByteArray =
+		CardCertificateCacheTest::class.java.getResourceAsStream("/$file")!!.use { it.readBytes() }
+}
@@ -0,0 +1,50 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.crypto.common.sal.did
+
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.verifyNoInteractions
+import org.openecard.common.interfaces.Dispatcher
+import org.testng.Assert
+import org.testng.annotations.Test
+
+class TokenCacheTest {
+	@Test
+	fun testInfosAreKeptPerSlotHandle() {
+		val dispatcher = mock<Dispatcher>()
+		val cache = TokenCache(dispatcher)
+
+		val first = cache.getInfo(null, handle(byteArrayOf(1, 2, 3)))
+		Assert.assertSame(cache.getInfo(null, handle(byteArrayOf(1, 2, 3))), first)
+		Assert.assertNotSame(cache.getInfo(null, handle(byteArrayOf(4, 5, 6))), first)
+		// nothing is requested from the card before the data is needed
+		verifyNoInteractions(dispatcher)
+	}
+
+	private fun handle(slotHandle: ByteArray): ConnectionHandleType {
+		val handle = ConnectionHandleType()
+		handle.setSlotHandle(slotHandle)
+		return handle
+	}
+}
@@ -66,6 +66,10 @@ open class ClientCertDefaultTlsClient(
 	private var enforceSameSession = false
 	private var firstSession: TlsSession? = null
 	private var lastSession: TlsSession? = null
+	private var sessionCachePort: Int? = null
+	private var cacheKey: TlsSessionCache.Key? = null
+	private var offeredEntry: TlsSessionCache.Entry? = null
+	private var resumedEntry: TlsSessionCache.Entry? = null
 
 	@JvmField
 	protected val serverNames: MutableList<ServerName> = mutableListOf()
@@ -130,6 +134,22 @@ open class ClientCertDefaultTlsClient(
 		this.enforceSameSession = enforceSameSession
 	}
 
+	/**
+	 * Enables the resumption of sessions from the process wide [TlsSessionCache].
+	 * Sessions established with a full handshake are stored in the cache and later connections to the same server with
+	 * the same parameters try to resume them. As a resumed handshake contains no server certificate, the certificate of
+	 * the original handshake is passed to the [TlsAuthentication] instead, so all certificate verifiers are applied as
+	 * in a full handshake.
+	 *
+	 * The cache must not be used when the client authenticates itself with a certificate, as a resumed session would
+	 * reuse the client authentication of the original handshake.
+	 *
+	 * @param port Port of the server, used together with the host name to identify the server.
+	 */
+	fun setSessionCache(port: Int) {
+		this.sessionCachePort = port
+	}
+
 	@Synchronized
 	@Throws(IOException::class)
 	override fun getAuthentication(): TlsAuthentication? {
@@ -152,6 +172,8 @@ open class ClientCertDefaultTlsClient(
 		if (enforceSameSession && firstSession == null && lastSession != null) {
 			this.firstSession = lastSession
 		}
+		offeredEntry = null
+		resumedEntry = null
 
 		super.init(context)
 	}
@@ -277,14 +299,36 @@ open class ClientCertDefaultTlsClient(
 		super.notifyAlertReceived(alertLevel, alertDescription)
 	}
 
-	override fun getSessionToResume(): TlsSession? =
+	override fun getSessionToResume(): TlsSession? {
 		if (firstSession != null) {
-			firstSession
-		} else {
-			super.getSessionToResume()
+			return firstSession
+		}
+		val key = createCacheKey()
+		cacheKey = key
+		if (key != null) {
+			val entry = TlsSessionCache.get(key)
+			if (entry != null) {
+				LOG.debug { "Offering cached TLS session for ${key.host}:${key.port}." }
+				offeredEntry = entry
+				return entry.session
+			}
 		}
+		return super.getSessionToResume()
+	}
+
+	private fun createCacheKey(): TlsSessionCache.Key? {
+		val port = sessionCachePort ?: return null
+		val names = serverNames.joinToString(",") { String(it.nameData, StandardCharsets.US_ASCII) }
+		val params = "$clientVersion;$minClientVersion;${getCipherSuites().joinToString(",")};$names"
+		return TlsSessionCache.Key(host, port, params)
+	}
 
 	override fun notifySessionID(sessionID: ByteArray?) {
+		val entry = offeredEntry
+		if (entry != null && ByteUtils.compare(entry.session.sessionID, sessionID)) {
+			resumedEntry = entry
+		}
+
 		if (enforceSameSession) {
 			// check if someone tries to resume and raise error
 			val s = sessionToResume
@@ -312,6 +356,25 @@ open class ClientCertDefaultTlsClient(
 			lastSession = TlsUtils.importSession(it.sessionID, it.exportSessionParameters())
 		}
 
+		val key = cacheKey
+		val resumed = resumedEntry
+		if (key != null && resumed != null) {
+			// no certificate has been sent, verify the one of the original handshake
+			LOG.debug { "Resumed cached TLS session for ${key.host}:${key.port}." }
+			try {
+				authentication?.notifyServerCertificate(resumed.serverCertificate)
+			} catch (ex: IOException) {
+				TlsSessionCache.remove(key, resumed)
+				throw ex
+			}
+		} else if (key != null) {
+			val session = lastSession
+			val serverCert = (authentication as? DynamicAuthentication)?.serverCertificate
+			if (session != null && serverCert != null) {
+				TlsSessionCache.put(key, session, serverCert)
+			}
+		}
+
 		super.notifyHandshakeComplete()
 	}
 
@@ -0,0 +1,133 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.crypto.tls
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import org.openecard.bouncycastle.tls.TlsServerCertificate
+import org.openecard.bouncycastle.tls.TlsSession
+import java.util.concurrent.TimeUnit
+
+private val LOG = KotlinLogging.logger { }
+
+/**
+ * Process wide cache of resumable TLS sessions.
+ *
+ * The sessions are stored together with the server certificate of the full handshake which established them. A
+ * resumed handshake does not transmit the certificate, so the client passes the stored certificate to its
+ * verifiers again, see [ClientCertDefaultTlsClient.setSessionCache]. The cache is bounded and evicts the least
+ * recently used entry. Entries expire after [MAX_AGE_MILLIS], which is below the lifetime commonly configured in
+ * servers.
+ */
+object TlsSessionCache {
+	internal const val MAX_ENTRIES = 64
+	internal val MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10)
+
+	/**
+	 * Source of the current time in milliseconds, replaceable in tests.
+	 */
+	internal var clock: () -> Long = System::currentTimeMillis
+
+	/**
+	 * Identifies the connection parameters a session may be resumed with.
+	 *
+	 * @property host Host name or IP address of the server.
+	 * @property port Port of the server.
+	 * @property parameters Further parameters of the client which must match, such as versions and cipher suites.
+	 */
+	data class Key(
+		val host: String,
+		val port: Int,
+		val parameters: String,
+	)
+
+	/**
+	 * Cached session with the certificate the server has authenticated itself with.
+	 */
+	class Entry(
+		val session: TlsSession,
+		val serverCertificate: TlsServerCertificate,
+		val created: Long,
+	)
+
+	private val entries =
+		object : LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Entry>): Boolean = size > MAX_ENTRIES
+		}
+
+	/**
+	 * Gets the resumable session for the given key.
+	 *
+	 * @param key Connection parameters.
+	 * @return The cache entry, or `null` if there is no valid session.
+	 */
+	@Synchronized
+	fun get(key: Key): Entry? {
+		val entry = entries[key] ?: return null
+		if (clock() - entry.created > MAX_AGE_MILLIS || !entry.session.isResumable) {
+			entries.remove(key)
+			return null
+		}
+		return entry
+	}
+
+	/**
+	 * Saves a session established with a full handshake.
+	 *
+	 * @param key Connection parameters.
+	 * @param session The session to resume later.
+	 * @param serverCertificate The certificate the server has presented in the handshake.
+	 */
+	@Synchronized
+	fun put(
+		key: Key,
+		session: TlsSession,
+		serverCertificate: TlsServerCertificate,
+	) {
+		LOG.debug { "Saving TLS session for ${key.host}:${key.port}." }
+		entries[key] = Entry(session, serverCertificate, clock())
+	}
+
+	/**
+	 * Removes the session for the given key, e.g. when the resumption failed.
+	 *
+	 * @param key Connection parameters.
+	 * @param entry The entry to remove. A different entry stored under the key in the meantime is kept.
+	 */
+	@Synchronized
+	fun remove(
+		key: Key,
+		entry: Entry,
+	) {
+		if (entries[key] === entry) {
+			entries.remove(key)
+		}
+	}
+
+	/**
+	 * Removes all sessions.
+	 */
+	@Synchronized
+	fun clear() {
+		entries.clear()
+	}
+}
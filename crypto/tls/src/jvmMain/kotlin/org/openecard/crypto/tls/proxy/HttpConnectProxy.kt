@@ -108,8 +108,8 @@ class HttpConnectProxy(
 		val addr: SocketAddress = InetSocketAddress(proxyHost, proxyPort)
 		sock.setKeepAlive(true)
 		// this is pretty much, but not a problem, as this only shifts the responsibility to the server
-		sock.setSoTimeout(5 * 60 * 1000)
-		sock.connect(addr, 60 * 1000)
+		sock.setSoTimeout(ProxySettings.readTimeout)
+		sock.connect(addr, ProxySettings.connectTimeout)
 
 		// evaluate scheme
 		if ("HTTPS" == proxyScheme) {
@@ -22,6 +22,7 @@
 package org.openecard.crypto.tls.proxy
 
 import io.github.oshai.kotlinlogging.KotlinLogging
+import org.openecard.common.OpenecardProperties
 import org.openecard.common.util.SysUtils
 import java.io.IOException
 import java.net.InetSocketAddress
@@ -42,6 +43,9 @@ private val LOG = KotlinLogging.logger { }
  *  * proxy.host
  *  * proxy.port
  *
+ * The timeouts of the created sockets are taken from the entries `http-client.connect-timeout` and
+ * `http-client.read-timeout`, both in milliseconds.
+ *
  * @param selector Currently active proxy selector.
  *
  * @author Tobias Wich
@@ -64,7 +68,7 @@ class ProxySettings(
 	 * @throws URISyntaxException If host and/or port are invalid.
 	 */
 	@Throws(URISyntaxException::class)
-	private fun getProxy(
+	fun getProxy(
 		protocol: String,
 		hostname: String,
 		port: Int,
@@ -132,13 +136,41 @@ class ProxySettings(
 			}
 			sock.setKeepAlive(true)
 			// this is pretty much, but not a problem, as this only shifts the responsibility to the server
-			sock.setSoTimeout(5 * 60 * 1000)
-			sock.connect(addr, 60 * 1000)
+			sock.setSoTimeout(readTimeout)
+			sock.connect(addr, connectTimeout)
 			return sock
 		}
 	}
 
 	companion object {
+		private const val DEFAULT_CONNECT_TIMEOUT = 60 * 1000
+		private const val DEFAULT_READ_TIMEOUT = 5 * 60 * 1000
+
+		/**
+		 * Time in milliseconds to wait for a connection to be established.
+		 */
+		@JvmStatic
+		val connectTimeout: Int by lazy { intProperty("http-client.connect-timeout", DEFAULT_CONNECT_TIMEOUT) }
+
+		/**
+		 * Time in milliseconds a read on an established connection may block.
+		 */
+		@JvmStatic
+		val readTimeout: Int by lazy { intProperty("http-client.read-timeout", DEFAULT_READ_TIMEOUT) }
+
+		private fun intProperty(
+			key: String,
+			default: Int,
+		): Int {
+			val value = OpenecardProperties.getProperty(key) ?: return default
+			val intValue = value.trim().toIntOrNull()
+			if (intValue == null || intValue <= 0) {
+				LOG.warn { "Error in config file, value of $key is malformed." }
+				return default
+			}
+			return intValue
+		}
+
 		init {
 			if (!SysUtils.isAndroid && !SysUtils.isIOS) {
 				val psl = ProxySettingsLoader()
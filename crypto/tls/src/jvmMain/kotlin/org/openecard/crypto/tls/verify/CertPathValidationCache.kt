@@ -0,0 +1,159 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.crypto.tls.verify
+
+import org.openecard.bouncycastle.tls.TlsServerCertificate
+import java.io.IOException
+import java.security.MessageDigest
+import java.security.cert.CertPathBuilderResult
+import java.security.cert.PKIXCertPathBuilderResult
+import java.security.cert.TrustAnchor
+import java.security.cert.X509Certificate
+import java.util.concurrent.TimeUnit
+
+/**
+ * Process wide cache of successful certificate path validations performed by the [JavaSecVerifier].
+ *
+ * Redirects and the connections of a PAOS conversation present the same certificate chain several times within a few
+ * seconds. The result of the first validation is reused until the earliest expiry date of the certificates in the
+ * path, but no longer than [MAX_AGE_MILLIS]. When revocation is checked, entries expire after
+ * [MAX_AGE_REVOCATION_MILLIS] instead, which is well below the update interval of common OCSP responders and CRLs.
+ * Entries are bound to the trust anchor set they were validated against, so reloading the trust store invalidates
+ * them. The cache is bounded and evicts the least recently used entry.
+ */
+internal object CertPathValidationCache {
+	private const val MAX_ENTRIES = 128
+	private val MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(1)
+	private val MAX_AGE_REVOCATION_MILLIS = TimeUnit.MINUTES.toMillis(5)
+
+	/**
+	 * Identifies a validation.
+	 *
+	 * @property chainHash SHA-256 hash over the encoded certificates of the chain sent by the server.
+	 * @property trustStoreId Identity of the trust anchor set used in the validation.
+	 * @property checkRevocation Whether the revocation status has been checked.
+	 */
+	data class Key(
+		val chainHash: String,
+		val trustStoreId: Int,
+		val checkRevocation: Boolean,
+	)
+
+	private class Entry(
+		val result: CertPathBuilderResult,
+		val trustAnchors: Set<TrustAnchor>,
+		val expires: Long,
+	)
+
+	private val entries =
+		object : LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Entry>): Boolean = size > MAX_ENTRIES
+		}
+
+	/**
+	 * Creates the key for the validation of the given chain.
+	 *
+	 * @param chain Certificate chain sent by the server.
+	 * @param trustAnchors Trust anchors the chain is validated against.
+	 * @param checkRevocation Whether the revocation status is checked.
+	 * @return The key of the validation.
+	 * @throws IOException Thrown in case a certificate can not be encoded.
+	 */
+	@Throws(IOException::class)
+	fun key(
+		chain: TlsServerCertificate,
+		trustAnchors: Set<TrustAnchor>,
+		checkRevocation: Boolean,
+	): Key {
+		val digest = MessageDigest.getInstance("SHA-256")
+		for (next in chain.certificate.getCertificateList()) {
+			val encoded = next.encoded
+			digest.update(
+				byteArrayOf(
+					(encoded.size ushr 24).toByte(),
+					(encoded.size ushr 16).toByte(),
+					(encoded.size ushr 8).toByte(),
+					encoded.size.toByte(),
+				),
+			)
+			digest.update(encoded)
+		}
+		val hash = digest.digest().joinToString("") { "%02x".format(it) }
+		return Key(hash, System.identityHashCode(trustAnchors), checkRevocation)
+	}
+
+	/**
+	 * Gets the result of an earlier successful validation.
+	 *
+	 * @param key Key of the validation.
+	 * @param trustAnchors Trust anchors the chain is validated against.
+	 * @return The result, or `null` if the chain has not been validated against these anchors or the result expired.
+	 */
+	@Synchronized
+	fun get(
+		key: Key,
+		trustAnchors: Set<TrustAnchor>,
+	): CertPathBuilderResult? {
+		val entry = entries[key] ?: return null
+		if (entry.trustAnchors !== trustAnchors || System.currentTimeMillis() >= entry.expires) {
+			entries.remove(key)
+			return null
+		}
+		return entry.result
+	}
+
+	/**
+	 * Saves the result of a successful validation.
+	 *
+	 * @param key Key of the validation.
+	 * @param trustAnchors Trust anchors the chain has been validated against.
+	 * @param result Result of the path builder.
+	 */
+	@Synchronized
+	fun put(
+		key: Key,
+		trustAnchors: Set<TrustAnchor>,
+		result: CertPathBuilderResult,
+	) {
+		val now = System.currentTimeMillis()
+		var expires = now + if (key.checkRevocation) MAX_AGE_REVOCATION_MILLIS else MAX_AGE_MILLIS
+		val certs = result.certPath.certificates.filterIsInstance<X509Certificate>().toMutableList()
+		if (result is PKIXCertPathBuilderResult) {
+			result.trustAnchor.trustedCert?.let { certs.add(it) }
+		}
+		for (cert in certs) {
+			expires = minOf(expires, cert.notAfter.time)
+		}
+		if (expires > now) {
+			entries[key] = Entry(result, trustAnchors, expires)
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	@Synchronized
+	fun clear() {
+		entries.clear()
+	}
+}
@@ -50,6 +50,8 @@ import java.security.cert.X509Certificate
  * Java Security based certificate verifier.
  * This implementation converts the BouncyCastle certificates to java.security certificates and uses the Java-bundled
  * PKIX mechanism to verify the certificate chain.
+ * Successful validations are kept in the [CertPathValidationCache], so a chain presented again, e.g. after a redirect
+ * or a reconnect, is not validated again.
  *
  * @author Tobias Wich
  */
@@ -91,6 +93,11 @@ open class JavaSecVerifier
 		): CertPathBuilderResult? {
 			try {
 				val trustStore = this.trustStore
+				val cacheKey = CertPathValidationCache.key(chain, trustStore, checkRevocation)
+				val cached = CertPathValidationCache.get(cacheKey, trustStore)
+				if (cached != null) {
+					return cached
+				}
 				val path = buildChain(chain)
 
 				val cpb = certPathValidator
@@ -100,11 +107,12 @@ open class JavaSecVerifier
 				// create the parameters for the validator
 				val cpp = PKIXBuilderParameters(trustStore, targetSelector)
 				cpp.addCertStore(path.p2)
+				var revChecker: PKIXRevocationChecker? = null
 				if (checkRevocation) {
 					// 				cpp.setRevocationEnabled(true);
 					// 				System.setProperty("com.sun.security.enableCRLDP", "true");
 					cpp.isRevocationEnabled = false
-					val revChecker = cpb.revocationChecker as PKIXRevocationChecker
+					revChecker = cpb.revocationChecker as PKIXRevocationChecker
 					val revOpts = mutableSetOf<PKIXRevocationChecker.Option>()
 					// revOpts.add(PKIXRevocationChecker.Option.ONLY_END_ENTITY);
 					revChecker.setOptions(revOpts)
@@ -119,6 +127,10 @@ open class JavaSecVerifier
 
 				// build path performs the validation - exception marks failure
 				val result = cpb.build(cpp)
+				// a status which could not be determined must be checked again next time
+				if (revChecker == null || revChecker.softFailExceptions.isEmpty()) {
+					CertPathValidationCache.put(cacheKey, trustStore, result)
+				}
 				return result
 			} catch (ex: CertPathBuilderException) {
 				throw CertificateVerificationException(ex.message)
@@ -32,6 +32,8 @@ import java.security.NoSuchAlgorithmException
 import java.security.cert.CertificateException
 import java.security.cert.CertificateFactory
 import java.security.cert.TrustAnchor
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
 import java.util.zip.ZipEntry
 import java.util.zip.ZipInputStream
 import javax.net.ssl.TrustManagerFactory
@@ -91,9 +93,10 @@ open class TrustStoreLoader {
 
 			synchronized(TrustStoreLoader::class.java) {
 				TRUST_STORES.put(storeFileName, ks)
+				// the set is an immutable snapshot, it is only replaced when the store is loaded again
 				TRUST_ANCHORS.put(
 					storeFileName,
-					anchors.toSet(),
+					Collections.unmodifiableSet(anchors.toSet()),
 				)
 			}
 		} catch (ex: IOException) {
@@ -202,13 +205,14 @@ open class TrustStoreLoader {
 		}
 
 	companion object {
-		private val TRUST_STORES = mutableMapOf<String, KeyStore>()
-		private val TRUST_ANCHORS = mutableMapOf<String, Set<TrustAnchor>>()
+		private val TRUST_STORES = ConcurrentHashMap<String, KeyStore>()
+		private val TRUST_ANCHORS = ConcurrentHashMap<String, Set<TrustAnchor>>()
 
 		fun reset() {
 			synchronized(TrustStoreLoader::class.java) {
 				TRUST_STORES.clear()
 				TRUST_ANCHORS.clear()
+				CertPathValidationCache.clear()
 			}
 		}
 	}
@@ -43,6 +43,7 @@ interface CertificateValidator {
 
 	/**
 	 * Validate the given tuple.
+	 * The function is called again with the same URL instance, if the connection to the URL had to be reestablished.
 	 *
 	 * @param url Url of the last connection.
 	 * @param cert Certificate chain of the last connection.
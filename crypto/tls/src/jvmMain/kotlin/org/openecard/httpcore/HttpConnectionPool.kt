@@ -0,0 +1,246 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.httpcore
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import org.openecard.bouncycastle.tls.TlsClientProtocol
+import org.openecard.bouncycastle.tls.TlsServerCertificate
+import org.openecard.common.OpenecardProperties
+import org.openecard.crypto.tls.ClientCertTlsClient
+import org.openecard.crypto.tls.proxy.ProxySettings
+import java.io.IOException
+import java.net.Proxy
+import java.net.Socket
+import java.net.URISyntaxException
+import java.util.ArrayDeque
+import java.util.Locale
+
+private val LOG = KotlinLogging.logger { }
+
+/**
+ * TLS connection which may be kept open and used for further HTTP requests to the same server.
+ *
+ * @property key Origin the connection is established to.
+ * @property tlsClient TLS client which performed the handshake.
+ * @property protocol TLS protocol instance carrying the HTTP messages.
+ * @property serverCertificate Certificate the server presented in the handshake.
+ */
+class PooledConnection internal constructor(
+	val key: HttpConnectionPool.Key,
+	val tlsClient: ClientCertTlsClient,
+	val protocol: TlsClientProtocol,
+	private val socket: Socket,
+	val serverCertificate: TlsServerCertificate,
+) {
+	internal var idleSince = 0L
+
+	/**
+	 * Checks whether the connection can carry another request.
+	 * Data waiting on an idle connection is either an alert or a response nobody asked for, in both cases the
+	 * connection must not be used anymore.
+	 */
+	internal val isUsable: Boolean
+		get() {
+			if (protocol.isClosed || socket.isClosed || socket.isInputShutdown || socket.isOutputShutdown) {
+				return false
+			}
+			return try {
+				socket.getInputStream().available() == 0
+			} catch (ex: IOException) {
+				false
+			}
+		}
+
+	/**
+	 * Closes the TLS channel and the underlying socket.
+	 */
+	fun close() {
+		try {
+			protocol.close()
+		} catch (ex: IOException) {
+			LOG.debug(ex) { "Failed to close connection." }
+		}
+		try {
+			socket.close()
+		} catch (ex: IOException) {
+			LOG.debug(ex) { "Failed to close socket." }
+		}
+	}
+}
+
+/**
+ * Pool of idle HTTPS connections shared by all HTTP clients of the app.
+ *
+ * Redirects, the TCToken retrieval and the following PAOS conversation often talk to the same server. Instead of
+ * closing a connection the server allows to keep alive, it is returned to this pool and the next request to the same
+ * origin through the same proxy takes it over, saving the TCP and TLS setup. Only connections without client
+ * authentication are added to the pool. The new owner of a connection must validate the stored server certificate
+ * with its own verifiers before sending data.
+ *
+ * At most `http-client.max-idle-connections` connections are kept, each for at most `http-client.idle-timeout`
+ * milliseconds, a maximum of 0 disables the pool. Connections are checked before they are handed out, but the server
+ * may still have closed a connection without notice, so users should retry a request on a new connection if the
+ * reused one fails.
+ */
+object HttpConnectionPool {
+	private const val DEFAULT_MAX_IDLE = 8
+	private const val DEFAULT_IDLE_TIMEOUT = 15 * 1000
+
+	private val maxIdle: Int by lazy { intProperty("http-client.max-idle-connections", DEFAULT_MAX_IDLE) }
+	private val idleTimeout: Long by lazy {
+		intProperty("http-client.idle-timeout", DEFAULT_IDLE_TIMEOUT).toLong()
+	}
+
+	// most recently released connection is at the end
+	private val idle = ArrayDeque<PooledConnection>()
+
+	/**
+	 * Identifies the endpoint of a connection.
+	 *
+	 * @property host Lower case name of the server.
+	 * @property port Port of the server.
+	 * @property proxy Proxy the connection is tunneled through.
+	 */
+	data class Key(
+		val host: String,
+		val port: Int,
+		val proxy: Proxy,
+	)
+
+	/**
+	 * Creates the key for a connection to the given server, using the proxy selected by the default [ProxySettings].
+	 *
+	 * @param protocol Application protocol spoken over the connection.
+	 * @param hostname Name of the server.
+	 * @param port Port of the server.
+	 * @return Key of the connection.
+	 * @throws URISyntaxException If the proxy could not be determined for the host-port combination.
+	 */
+	@JvmStatic
+	@Throws(URISyntaxException::class)
+	fun key(
+		protocol: String,
+		hostname: String,
+		port: Int,
+	): Key {
+		val proxy = ProxySettings.default.getProxy(protocol, hostname, port)
+		return Key(hostname.lowercase(Locale.ROOT), port, proxy)
+	}
+
+	/**
+	 * Takes an idle connection to the given endpoint out of the pool.
+	 *
+	 * @param key Endpoint of the connection.
+	 * @return The most recently used connection which is still usable, or `null` if there is none.
+	 */
+	@JvmStatic
+	fun acquire(key: Key): PooledConnection? {
+		while (true) {
+			val stale = mutableListOf<PooledConnection>()
+			val candidate =
+				synchronized(this) {
+					evictExpired(stale)
+					val it = idle.descendingIterator()
+					var found: PooledConnection? = null
+					while (found == null && it.hasNext()) {
+						val next = it.next()
+						if (next.key == key) {
+							it.remove()
+							found = next
+						}
+					}
+					found
+				}
+			stale.forEach { it.close() }
+
+			if (candidate == null) {
+				return null
+			} else if (candidate.isUsable) {
+				LOG.debug { "Reusing idle connection to ${key.host}:${key.port}." }
+				return candidate
+			} else {
+				candidate.close()
+			}
+		}
+	}
+
+	/**
+	 * Returns a connection to the pool.
+	 * The connection must be positioned at the end of a complete HTTP response. If it is not usable anymore or the
+	 * pool is full, the connection, or the one idle for the longest time, is closed.
+	 *
+	 * @param connection Connection which is not used by the caller anymore.
+	 */
+	@JvmStatic
+	fun release(connection: PooledConnection) {
+		if (!connection.isUsable) {
+			connection.close()
+			return
+		}
+
+		val stale = mutableListOf<PooledConnection>()
+		synchronized(this) {
+			evictExpired(stale)
+			connection.idleSince = System.currentTimeMillis()
+			idle.addLast(connection)
+			while (idle.size > maxIdle) {
+				stale.add(idle.removeFirst())
+			}
+		}
+		stale.forEach { it.close() }
+	}
+
+	/**
+	 * Closes all idle connections.
+	 */
+	@JvmStatic
+	fun clear() {
+		val stale =
+			synchronized(this) {
+				val all = idle.toList()
+				idle.clear()
+				all
+			}
+		stale.forEach { it.close() }
+	}
+
+	private fun evictExpired(stale: MutableList<PooledConnection>) {
+		val deadline = System.currentTimeMillis() - idleTimeout
+		while (idle.isNotEmpty() && idle.peekFirst().idleSince < deadline) {
+			stale.add(idle.removeFirst())
+		}
+	}
+
+	private fun intProperty(
+		key: String,
+		default: Int,
+	): Int {
+		val value = OpenecardProperties.getProperty(key) ?: return default
+		val intValue = value.trim().toIntOrNull()
+		if (intValue == null || intValue < 0) {
+			LOG.warn { "Error in config file, value of $key is malformed." }
+			return default
+		}
+		return intValue
+	}
+}
@@ -36,6 +36,9 @@ private val LOG = KotlinLogging.logger { }
 /**
  * Implements a grabber to fetch TCTokens from a URL.
  *
+ * When the server allows to keep the connection alive, [closeStream] returns it to the [HttpConnectionPool] instead
+ * of closing it, provided the response has been read completely.
+ *
  * @author Moritz Horsch
  * @author Johannes Schmölz
  * @author Tobias Wich
@@ -45,7 +48,11 @@ open class ResourceContext(
 	val tlsClientProto: TlsClientProtocol?,
 	val certs: List<Pair<URL, TlsServerCertificate>>,
 	val stream: InputStream?,
+	val pooledConnection: PooledConnection? = null,
 ) {
+	private var consumed = false
+	private var closed = false
+
 	@get:Throws(IOException::class)
 	@get:Synchronized
 	var data: String? = null
@@ -54,6 +61,7 @@ open class ResourceContext(
 			if (field == null) {
 				try {
 					field = stream?.let { FileUtils.toString(it) }
+					consumed = true
 				} finally {
 					stream?.let {
 						try {
@@ -74,7 +82,13 @@ open class ResourceContext(
 		certs: List<Pair<URL, TlsServerCertificate>>,
 	) : this(tlsClient, tlsClientProto, certs, null)
 
+	@Synchronized
 	fun closeStream() {
+		if (closed) {
+			return
+		}
+		closed = true
+
 		if (stream != null) {
 			try {
 				stream.close()
@@ -82,7 +96,9 @@ open class ResourceContext(
 				LOG.debug(ex) { "Failed to close stream." }
 			}
 		}
-		if (tlsClientProto != null) {
+		if (pooledConnection != null && (stream == null || consumed)) {
+			HttpConnectionPool.release(pooledConnection)
+		} else if (tlsClientProto != null) {
 			try {
 				tlsClientProto.close()
 			} catch (ex: IOException) {
@@ -13,11 +13,13 @@ import io.github.oshai.kotlinlogging.KotlinLogging
 import org.apache.http.HttpEntity
 import org.apache.http.HttpException
 import org.apache.http.HttpResponse
+import org.apache.http.impl.DefaultConnectionReuseStrategy
 import org.apache.http.message.BasicHttpEntityEnclosingRequest
 import org.apache.http.message.BasicHttpRequest
 import org.apache.http.protocol.BasicHttpContext
 import org.apache.http.protocol.HttpContext
 import org.apache.http.protocol.HttpRequestExecutor
+import org.apache.http.util.EntityUtils
 import org.openecard.bouncycastle.tls.ProtocolVersion
 import org.openecard.bouncycastle.tls.TlsClientProtocol
 import org.openecard.bouncycastle.tls.TlsServerCertificate
@@ -28,7 +30,6 @@ import org.openecard.common.util.Pair
 import org.openecard.common.util.TR03112Utils
 import org.openecard.crypto.common.ReusableSecureRandom
 import org.openecard.crypto.tls.ClientCertDefaultTlsClient
-import org.openecard.crypto.tls.ClientCertTlsClient
 import org.openecard.crypto.tls.auth.DynamicAuthentication
 import org.openecard.crypto.tls.proxy.ProxySettings
 import org.openecard.crypto.tls.verify.JavaSecVerifier
@@ -169,38 +170,36 @@ open class ResourceContextLoader {
 				throw InsecureUrlException("Non HTTPS based protocol requested.")
 			}
 
-			// open a TLS connection, retrieve the server certificate and save it
-			val h: TlsClientProtocol?
-			val tlsAuth = DynamicAuthentication(hostname)
-			// add PKIX validator if not doin nPA auth
-			if (this.isPKIXVerify) {
-				tlsAuth.addCertificateVerifier(JavaSecVerifier())
-			}
-			// FIXME: validate certificate chain as soon as a usable solution exists for the trust problem
-			// tlsAuth.setCertificateVerifier(new JavaSecVerifier());
-			val crypto: TlsCrypto = BcTlsCrypto(ReusableSecureRandom.instance)
-			val tlsClient: ClientCertTlsClient = ClientCertDefaultTlsClient(crypto, hostname, true)
-			tlsClient.setAuthentication(tlsAuth)
-
-			// connect tls client
-			tlsClient.clientVersion = ProtocolVersion.TLSv12
-			val socket: Socket = ProxySettings.Companion.default.getSocket(protocol, hostname, port)
-			h = TlsClientProtocol(socket.getInputStream(), socket.getOutputStream())
-			LOG.debug { "Performing TLS handshake." }
-			h.connect(tlsClient)
-			LOG.debug { "TLS handshake performed." }
-
-			serverCerts.add(Pair(url, tlsAuth.serverCertificate!!))
+			// open a TLS connection or take over an idle one, retrieve the server certificate and save it
+			val poolKey = HttpConnectionPool.key(protocol, hostname, port)
+			val pooled = HttpConnectionPool.acquire(poolKey)
+			val reused = pooled != null
+			var connection =
+				if (pooled != null) {
+					// the certificate must pass our verifiers, just as in a handshake
+					val tlsAuth = createAuthentication(hostname)
+					try {
+						tlsAuth.notifyServerCertificate(pooled.serverCertificate)
+					} catch (ex: IOException) {
+						pooled.close()
+						throw ex
+					}
+					pooled.tlsClient.setAuthentication(tlsAuth)
+					pooled
+				} else {
+					openConnection(poolKey, protocol)
+				}
+			serverCerts.add(Pair(url, connection.serverCertificate))
 			// check result
-			val verifyResult = v.validate(url, tlsAuth.serverCertificate!!)
+			var verifyResult = v.validate(url, connection.serverCertificate)
 			if (verifyResult == CertificateValidator.VerifierResult.FINISH) {
-				return ResourceContext(tlsClient, h, serverCerts.toList())
+				val certs = serverCerts.toList()
+				return ResourceContext(connection.tlsClient, connection.protocol, certs, null, connection)
 			}
 
-			val conn = StreamHttpClientConnection(h.inputStream, h.outputStream)
-
 			val ctx: HttpContext = BasicHttpContext()
 			val httpexecutor = HttpRequestExecutor()
+			val reuseStrategy = DefaultConnectionReuseStrategy.INSTANCE
 
 			val req = BasicHttpEntityEnclosingRequest("GET", resource)
 			HttpRequestHelper.setDefaultHeader(req, url)
@@ -209,7 +208,29 @@ open class ResourceContextLoader {
 			setCookieHeader(req, cManager, url)
 			KHttpUtils.dumpHttpRequest(LOG, req)
 			LOG.debug { "Sending HTTP request." }
-			val response = httpexecutor.execute(req, conn, ctx)
+			var conn = StreamHttpClientConnection(connection.protocol.inputStream, connection.protocol.outputStream)
+			val response =
+				try {
+					httpexecutor.execute(req, conn, ctx)
+				} catch (ex: IOException) {
+					if (!reused) {
+						throw ex
+					}
+					// the server closed the idle connection in the meantime, repeat the request on a new one
+					LOG.debug(ex) { "Reused connection failed, opening a new connection." }
+					connection.close()
+					// the new connection may end at a different server with its own certificate, validate it again
+					connection = openConnection(poolKey, protocol)
+					val newCert = connection.serverCertificate
+					serverCerts[serverCerts.lastIndex] = Pair(url, newCert)
+					verifyResult = v.validate(url, newCert)
+					if (verifyResult == CertificateValidator.VerifierResult.FINISH) {
+						val certs = serverCerts.toList()
+						return ResourceContext(connection.tlsClient, connection.protocol, certs, null, connection)
+					}
+					conn = StreamHttpClientConnection(connection.protocol.inputStream, connection.protocol.outputStream)
+					httpexecutor.execute(req, conn, ctx)
+				}
 			storeCookies(response, cManager, url)
 			LOG.debug { "HTTP response received." }
 			val status = response.statusLine
@@ -249,10 +270,23 @@ open class ResourceContextLoader {
 			if (finished) {
 				checkNotNull(entity)
 				val `is` = LimitedInputStream(entity.content)
-				val result = ResourceContext(tlsClient, h, serverCerts, `is`)
+				val reusable = if (reuseStrategy.keepAlive(response, ctx)) connection else null
+				val result = ResourceContext(connection.tlsClient, connection.protocol, serverCerts, `is`, reusable)
 				return result
 			} else {
-				h.close()
+				if (reuseStrategy.keepAlive(response, ctx)) {
+					// skip the body of the redirect, so the next request to this server can use the connection
+					try {
+						conn.receiveResponseEntity(response)
+						EntityUtils.consume(response.entity)
+						HttpConnectionPool.release(connection)
+					} catch (ex: IOException) {
+						LOG.debug(ex) { "Failed to read redirect response body." }
+						connection.close()
+					}
+				} else {
+					connection.close()
+				}
 				return getStreamInt(url, v, serverCerts, maxRedirects)
 			}
 		} catch (ex: URISyntaxException) {
@@ -263,6 +297,47 @@ open class ResourceContextLoader {
 		}
 	}
 
+	private fun createAuthentication(hostname: String): DynamicAuthentication {
+		val tlsAuth = DynamicAuthentication(hostname)
+		// add PKIX validator if not doin nPA auth
+		if (this.isPKIXVerify) {
+			tlsAuth.addCertificateVerifier(JavaSecVerifier())
+		}
+		// FIXME: validate certificate chain as soon as a usable solution exists for the trust problem
+		// tlsAuth.setCertificateVerifier(new JavaSecVerifier());
+		return tlsAuth
+	}
+
+	/**
+	 * Opens a new TLS connection to the endpoint described by the given key.
+	 *
+	 * @param key Endpoint of the connection.
+	 * @param protocol Application protocol spoken over the connection.
+	 * @return The established connection.
+	 */
+	@Throws(IOException::class, URISyntaxException::class)
+	private fun openConnection(
+		key: HttpConnectionPool.Key,
+		protocol: String,
+	): PooledConnection {
+		val tlsAuth = createAuthentication(key.host)
+		val crypto: TlsCrypto = BcTlsCrypto(ReusableSecureRandom.instance)
+		val tlsClient = ClientCertDefaultTlsClient(crypto, key.host, true)
+		tlsClient.setAuthentication(tlsAuth)
+		// redirects and the following connections often go to the same server, resume the session there
+		tlsClient.setSessionCache(key.port)
+
+		// connect tls client
+		tlsClient.clientVersion = ProtocolVersion.TLSv12
+		val socket: Socket = ProxySettings.Companion.default.getSocket(protocol, key.host, key.port)
+		val h = TlsClientProtocol(socket.getInputStream(), socket.getOutputStream())
+		LOG.debug { "Performing TLS handshake." }
+		h.connect(tlsClient)
+		LOG.debug { "TLS handshake performed." }
+
+		return PooledConnection(key, tlsClient, h, socket, tlsAuth.serverCertificate!!)
+	}
+
 	val acceptsHeader: String
 		get() = "text/xml, */*;q=0.8"
 
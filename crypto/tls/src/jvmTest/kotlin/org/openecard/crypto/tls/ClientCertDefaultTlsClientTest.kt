@@ -0,0 +1,146 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+package org.openecard.crypto.tls
+
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.openecard.bouncycastle.tls.Certificate
+import org.openecard.bouncycastle.tls.CertificateStatus
+import org.openecard.bouncycastle.tls.SessionParameters
+import org.openecard.bouncycastle.tls.TlsClientContext
+import org.openecard.bouncycastle.tls.TlsServerCertificate
+import org.openecard.bouncycastle.tls.TlsSession
+import org.openecard.bouncycastle.tls.crypto.TlsCertificate
+import org.openecard.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto
+import org.openecard.crypto.common.ReusableSecureRandom
+import org.openecard.crypto.tls.auth.DynamicAuthentication
+import org.testng.Assert
+import org.testng.annotations.AfterMethod
+import org.testng.annotations.Test
+
+/**
+ * Checks the handshake callbacks of the client which store and resume sessions in the [TlsSessionCache].
+ */
+class ClientCertDefaultTlsClientTest {
+	private val crypto = BcTlsCrypto(ReusableSecureRandom.instance)
+	private val verified = ArrayList<TlsServerCertificate>()
+	private var rejectCertificate = false
+
+	@AfterMethod
+	fun tearDown() {
+		TlsSessionCache.clear()
+	}
+
+	@Test
+	fun testResumedSessionIsVerified() {
+		val cert = certificate()
+		fullHandshake("example.com", 443, cert)
+		verified.clear()
+
+		val client = client("example.com", 443)
+		val session = client.sessionToResume
+		Assert.assertNotNull(session)
+		client.notifySessionID(session!!.sessionID)
+		client.notifyHandshakeComplete()
+
+		// the certificate of the original handshake has been checked by the verifiers again
+		Assert.assertEquals(verified.size, 1)
+		Assert.assertSame(verified[0], cert)
+	}
+
+	@Test
+	fun testRejectedCertificateRemovesSession() {
+		fullHandshake("example.com", 443, certificate())
+
+		rejectCertificate = true
+		val client = client("example.com", 443)
+		val session = client.sessionToResume
+		client.notifySessionID(session!!.sessionID)
+		Assert.expectThrows(CertificateVerificationException::class.java) { client.notifyHandshakeComplete() }
+
+		Assert.assertNull(client("example.com", 443).sessionToResume)
+	}
+
+	@Test
+	fun testNoResumptionWithOtherServer() {
+		fullHandshake("example.com", 443, certificate())
+
+		Assert.assertNull(client("example.com", 8443).sessionToResume)
+		Assert.assertNull(client("example.org", 443).sessionToResume)
+		Assert.assertNotNull(client("example.com", 443).sessionToResume)
+	}
+
+	/**
+	 * Performs the client callbacks of a full handshake, as the session ID chosen by the server is not offered.
+	 */
+	private fun fullHandshake(
+		host: String,
+		port: Int,
+		cert: TlsServerCertificate,
+	) {
+		val client = client(host, port)
+		Assert.assertNull(client.sessionToResume)
+		client.notifySessionID(byteArrayOf(1, 2, 3, 4))
+		client.authentication!!.notifyServerCertificate(cert)
+		client.notifyHandshakeComplete()
+	}
+
+	private fun client(
+		host: String,
+		port: Int,
+	): ClientCertDefaultTlsClient {
+		val params = mock<SessionParameters> { on { isExtendedMasterSecret } doReturn true }
+		val session =
+			mock<TlsSession> {
+				on { sessionID } doReturn byteArrayOf(1, 2, 3, 4)
+				on { exportSessionParameters() } doReturn params
+			}
+		val context = mock<TlsClientContext> { on { resumableSession } doReturn session }
+
+		val verifier =
+			object : CertificateVerifier {
+				override fun isValid(
+					chain: TlsServerCertificate,
+					hostOrIp: String,
+				) {
+					verified.add(chain)
+					if (rejectCertificate) {
+						throw CertificateVerificationException("Certificate rejected.")
+					}
+				}
+			}
+		val client = ClientCertDefaultTlsClient(crypto, host, true)
+		client.setSessionCache(port)
+		client.setAuthentication(DynamicAuthentication(host, verifier, null))
+		client.init(context)
+		return client
+	}
+
+	private fun certificate(): TlsServerCertificate {
+		val chain = Certificate(arrayOf(mock<TlsCertificate>()))
+		return object : TlsServerCertificate {
+			override fun getCertificate(): Certificate = chain
+
+			override fun getCertificateStatus(): CertificateStatus? = null
+		}
+	}
+}
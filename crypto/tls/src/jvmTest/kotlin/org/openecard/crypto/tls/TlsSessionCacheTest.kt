@@ -0,0 +1,100 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+package org.openecard.crypto.tls
+
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.openecard.bouncycastle.tls.Certificate
+import org.openecard.bouncycastle.tls.CertificateStatus
+import org.openecard.bouncycastle.tls.TlsServerCertificate
+import org.openecard.bouncycastle.tls.TlsSession
+import org.testng.Assert
+import org.testng.annotations.AfterMethod
+import org.testng.annotations.Test
+
+class TlsSessionCacheTest {
+	private var now = 1_000_000L
+
+	@AfterMethod
+	fun tearDown() {
+		TlsSessionCache.clear()
+		TlsSessionCache.clock = System::currentTimeMillis
+	}
+
+	@Test
+	fun testLeastRecentlyUsedIsEvicted() {
+		val keys = (0 until TlsSessionCache.MAX_ENTRIES).map { key("host$it", 443) }
+		keys.forEach { TlsSessionCache.put(it, session(), CERT) }
+		// the first entry is used again, so the second one is the oldest now
+		Assert.assertNotNull(TlsSessionCache.get(keys[0]))
+
+		TlsSessionCache.put(key("another", 443), session(), CERT)
+		Assert.assertNotNull(TlsSessionCache.get(keys[0]))
+		Assert.assertNull(TlsSessionCache.get(keys[1]))
+		Assert.assertNotNull(TlsSessionCache.get(keys[2]))
+	}
+
+	@Test
+	fun testEntryExpires() {
+		TlsSessionCache.clock = { now }
+		val key = key("example.com", 443)
+		TlsSessionCache.put(key, session(), CERT)
+
+		now += TlsSessionCache.MAX_AGE_MILLIS
+		Assert.assertNotNull(TlsSessionCache.get(key))
+		now += 1
+		Assert.assertNull(TlsSessionCache.get(key))
+	}
+
+	@Test
+	fun testNoReuseAcrossServers() {
+		val session = session()
+		TlsSessionCache.put(key("example.com", 443), session, CERT)
+
+		Assert.assertSame(TlsSessionCache.get(key("example.com", 443))?.session, session)
+		Assert.assertNull(TlsSessionCache.get(key("example.com", 8443)))
+		Assert.assertNull(TlsSessionCache.get(key("example.org", 443)))
+	}
+
+	@Test
+	fun testNonResumableSessionIsDropped() {
+		val key = key("example.com", 443)
+		TlsSessionCache.put(key, mock<TlsSession> { on { isResumable } doReturn false }, CERT)
+		Assert.assertNull(TlsSessionCache.get(key))
+	}
+
+	private fun key(
+		host: String,
+		port: Int,
+	) = TlsSessionCache.Key(host, port, "params")
+
+	private fun session(): TlsSession = mock { on { isResumable } doReturn true }
+
+	companion object {
+		private val CERT =
+			object : TlsServerCertificate {
+				override fun getCertificate(): Certificate = Certificate.EMPTY_CHAIN
+
+				override fun getCertificateStatus(): CertificateStatus? = null
+			}
+	}
+}
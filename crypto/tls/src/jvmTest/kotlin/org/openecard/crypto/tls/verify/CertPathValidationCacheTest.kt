@@ -0,0 +1,97 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.crypto.tls.verify
+
+import org.openecard.bouncycastle.tls.Certificate
+import org.openecard.bouncycastle.tls.CertificateStatus
+import org.openecard.bouncycastle.tls.TlsServerCertificate
+import org.testng.Assert
+import org.testng.annotations.AfterMethod
+import org.testng.annotations.Test
+import java.security.KeyPairGenerator
+import java.security.cert.CertificateFactory
+import java.security.cert.PKIXCertPathBuilderResult
+import java.security.cert.TrustAnchor
+import java.util.Collections
+
+/**
+ * Checks that cached validation results are only handed out for the trust anchors they were obtained with.
+ */
+class CertPathValidationCacheTest {
+	private val keyPair = KeyPairGenerator.getInstance("EC").apply { initialize(256) }.generateKeyPair()
+	private val anchor = TrustAnchor("CN=Test Root", keyPair.public, null)
+	private val result =
+		PKIXCertPathBuilderResult(
+			CertificateFactory.getInstance("X.509").generateCertPath(emptyList()),
+			anchor,
+			null,
+			keyPair.public,
+		)
+
+	@AfterMethod
+	fun tearDown() {
+		CertPathValidationCache.clear()
+	}
+
+	@Test
+	fun testResultIsReused() {
+		val anchors = Collections.unmodifiableSet(setOf(anchor))
+		val key = CertPathValidationCache.key(EMPTY_CHAIN, anchors, false)
+		Assert.assertNull(CertPathValidationCache.get(key, anchors))
+
+		CertPathValidationCache.put(key, anchors, result)
+		val sameKey = CertPathValidationCache.key(EMPTY_CHAIN, anchors, false)
+		Assert.assertSame(CertPathValidationCache.get(sameKey, anchors), result)
+	}
+
+	@Test
+	fun testReloadedTrustStoreInvalidatesResult() {
+		val anchors = Collections.unmodifiableSet(setOf(anchor))
+		val key = CertPathValidationCache.key(EMPTY_CHAIN, anchors, false)
+		CertPathValidationCache.put(key, anchors, result)
+
+		// same content, but a new snapshot of the trust store
+		val reloaded = Collections.unmodifiableSet(setOf(anchor))
+		Assert.assertNull(CertPathValidationCache.get(key, reloaded))
+		// the outdated entry has been dropped
+		Assert.assertNull(CertPathValidationCache.get(key, anchors))
+	}
+
+	@Test
+	fun testRevocationCheckIsPartOfKey() {
+		val anchors = Collections.unmodifiableSet(setOf(anchor))
+		CertPathValidationCache.put(CertPathValidationCache.key(EMPTY_CHAIN, anchors, false), anchors, result)
+
+		val revocationKey = CertPathValidationCache.key(EMPTY_CHAIN, anchors, true)
+		Assert.assertNull(CertPathValidationCache.get(revocationKey, anchors))
+	}
+
+	companion object {
+		private val EMPTY_CHAIN =
+			object : TlsServerCertificate {
+				override fun getCertificate(): Certificate = Certificate.EMPTY_CHAIN
+
+				override fun getCertificateStatus(): CertificateStatus? = null
+			}
+	}
+}
@@ -0,0 +1,127 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.transport.httpcore
+
+import org.openecard.bouncycastle.tls.Certificate
+import org.openecard.bouncycastle.tls.CertificateStatus
+import org.openecard.bouncycastle.tls.TlsClientProtocol
+import org.openecard.bouncycastle.tls.TlsServerCertificate
+import org.openecard.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto
+import org.openecard.crypto.tls.ClientCertDefaultTlsClient
+import org.openecard.httpcore.HttpConnectionPool
+import org.openecard.httpcore.PooledConnection
+import org.testng.Assert
+import org.testng.annotations.AfterMethod
+import org.testng.annotations.BeforeMethod
+import org.testng.annotations.Test
+import java.net.InetAddress
+import java.net.Proxy
+import java.net.ServerSocket
+import java.net.Socket
+import java.security.SecureRandom
+
+/**
+ * Checks the bookkeeping of the [HttpConnectionPool] with plain sockets standing in for established TLS channels.
+ */
+class HttpConnectionPoolTest {
+	private lateinit var server: ServerSocket
+	private val peers = mutableListOf<Socket>()
+
+	@BeforeMethod
+	fun setUp() {
+		server = ServerSocket(0, 50, InetAddress.getLoopbackAddress())
+		HttpConnectionPool.clear()
+	}
+
+	@AfterMethod
+	fun tearDown() {
+		HttpConnectionPool.clear()
+		peers.forEach { it.close() }
+		peers.clear()
+		server.close()
+	}
+
+	@Test
+	fun testReleasedConnectionIsReused() {
+		val key = HttpConnectionPool.Key("localhost", server.localPort, Proxy.NO_PROXY)
+		val connection = connect(key)
+
+		HttpConnectionPool.release(connection)
+		Assert.assertSame(HttpConnectionPool.acquire(key), connection)
+		// the connection is owned by the caller now
+		Assert.assertNull(HttpConnectionPool.acquire(key))
+	}
+
+	@Test
+	fun testConnectionIsOnlyUsedForSameEndpoint() {
+		val key = HttpConnectionPool.Key("localhost", server.localPort, Proxy.NO_PROXY)
+		val connection = connect(key)
+
+		HttpConnectionPool.release(connection)
+		Assert.assertNull(HttpConnectionPool.acquire(key.copy(host = "example.org")))
+		Assert.assertNull(HttpConnectionPool.acquire(key.copy(port = server.localPort + 1)))
+		Assert.assertSame(HttpConnectionPool.acquire(key), connection)
+	}
+
+	@Test
+	fun testConnectionWithPendingDataIsDiscarded() {
+		val key = HttpConnectionPool.Key("localhost", server.localPort, Proxy.NO_PROXY)
+		val connection = connect(key)
+		HttpConnectionPool.release(connection)
+
+		// a TLS alert sent by the server while the connection is idle
+		val peer = peers.last()
+		peer.getOutputStream().write(byteArrayOf(21, 3, 3, 0, 2, 1, 0))
+		peer.getOutputStream().flush()
+		Thread.sleep(200)
+
+		Assert.assertNull(HttpConnectionPool.acquire(key))
+	}
+
+	@Test
+	fun testClosedConnectionIsNotAdded() {
+		val key = HttpConnectionPool.Key("localhost", server.localPort, Proxy.NO_PROXY)
+		val connection = connect(key)
+		connection.close()
+
+		HttpConnectionPool.release(connection)
+		Assert.assertNull(HttpConnectionPool.acquire(key))
+	}
+
+	private fun connect(key: HttpConnectionPool.Key): PooledConnection {
+		val socket = Socket(server.inetAddress, server.localPort)
+		peers.add(server.accept())
+		val proto = TlsClientProtocol(socket.getInputStream(), socket.getOutputStream())
+		val tlsClient = ClientCertDefaultTlsClient(BcTlsCrypto(SecureRandom()), key.host, true)
+		return PooledConnection(key, tlsClient, proto, socket, NO_CERT)
+	}
+
+	companion object {
+		private val NO_CERT =
+			object : TlsServerCertificate {
+				override fun getCertificate(): Certificate = Certificate.EMPTY_CHAIN
+
+				override fun getCertificateStatus(): CertificateStatus? = null
+			}
+	}
+}
@@ -41,6 +41,16 @@ interface SCIOCard {
 	 */
 	val isContactless: Boolean
 
+	/**
+	 * Returns whether the card must always be accessed from the same thread.
+	 * Backends whose transactions or handles are bound to the calling thread (e.g. PC/SC) must return `true`. Backends
+	 * which can be used from any thread may return `false`, so that callers can execute commands directly.
+	 *
+	 * @return `true` if all calls must be issued from one thread, `false` otherwise.
+	 */
+	val isThreadBound: Boolean
+		get() = true
+
 	@get:Throws(IllegalStateException::class)
 	val basicChannel: SCIOChannel
 
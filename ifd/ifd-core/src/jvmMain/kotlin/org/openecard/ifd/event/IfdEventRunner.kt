@@ -55,7 +55,12 @@ class IfdEventRunner(
 	private val ctxHandle: ByteArray?,
 ) : Runnable {
 	private val initialState: MutableList<IFDStatusType> = ifdStatus()
-	private val currentState: MutableList<IFDStatusType> = mutableListOf()
+
+	// status of the known terminals indexed by their name, so that events can be matched without searching
+	private val currentState = LinkedHashMap<String, IFDStatusType>()
+
+	// capabilities only change when a reader is reconnected, so they are kept until the terminal is removed
+	private val capabilities = HashMap<String, IFDCapabilitiesType>()
 
 	private var stopped = false
 
@@ -96,7 +101,7 @@ class IfdEventRunner(
 			var failCount = 0
 			while (!stopped) {
 				try {
-					val diff = evtManager.wait(currentState)
+					val diff = evtManager.wait(currentState.values.toList())
 					fireEvents(diff) // also updates current status
 					failCount = 0
 				} catch (ex: WSHelper.WSException) {
@@ -123,30 +128,6 @@ class IfdEventRunner(
 		stopped = true
 	}
 
-	private fun getCorresponding(
-		ifdName: String,
-		statuses: List<IFDStatusType>,
-	): IFDStatusType? {
-		for (next in statuses) {
-			if (next.getIFDName() == ifdName) {
-				return next
-			}
-		}
-		return null
-	}
-
-	private fun getCorresponding(
-		idx: BigInteger,
-		statuses: List<SlotStatusType>,
-	): SlotStatusType? {
-		for (next in statuses) {
-			if (next.getIndex() == idx) {
-				return next
-			}
-		}
-		return null
-	}
-
 	private fun makeConnectionHandle(
 		ifdName: String,
 		slotIdx: BigInteger?,
@@ -182,9 +163,10 @@ class IfdEventRunner(
 			val ifdName = term.getIFDName()
 
 			// find out if the terminal is new, or only a slot got updated
-			var oldTerm = getCorresponding(ifdName, currentState)
+			var oldTerm = currentState[ifdName]
 			val terminalAdded = oldTerm == null
-			val slotCapabilities = getCapabilities(ifdName)
+			// only ask the IFD when a handle is actually created
+			val slotCapabilities by lazy { getCachedCapabilities(ifdName) }
 
 			if (terminalAdded) {
 				// TERMINAL ADDED
@@ -193,7 +175,7 @@ class IfdEventRunner(
 				oldTerm.setIFDName(ifdName)
 				oldTerm.isConnected = true
 				// add to current list
-				currentState.add(oldTerm)
+				currentState[ifdName] = oldTerm
 				// create event
 				val h = makeConnectionHandle(ifdName, null, slotCapabilities)
 				LOG.debug { "Found a terminal added event ($ifdName)." }
@@ -201,8 +183,9 @@ class IfdEventRunner(
 			}
 
 			// check each slot
+			val oldSlots = oldTerm.getSlotStatus().associateByTo(HashMap()) { it.getIndex() }
 			for (slot in term.getSlotStatus()) {
-				val oldSlot = getCorresponding(slot.getIndex(), oldTerm.getSlotStatus())
+				val oldSlot = oldSlots[slot.getIndex()]
 				val cardPresent = slot.isCardAvailable
 				val cardWasPresent = oldSlot != null && oldSlot.isCardAvailable
 
@@ -217,6 +200,7 @@ class IfdEventRunner(
 					if (newSlot == null) {
 						newSlot = SlotStatusType()
 						oldTerm.getSlotStatus().add(newSlot)
+						oldSlots[slot.getIndex()] = newSlot
 					}
 					newSlot.setIndex(slot.getIndex())
 					newSlot.isCardAvailable = true
@@ -231,14 +215,8 @@ class IfdEventRunner(
 					// CARD REMOVED
 					// remove slot entry
 					val idx = oldSlot.getIndex()
-					val it = oldTerm.getSlotStatus().iterator()
-					while (it.hasNext()) {
-						val next = it.next()
-						if (idx == next.getIndex()) {
-							it.remove()
-							break
-						}
-					}
+					oldTerm.getSlotStatus().remove(oldSlot)
+					oldSlots.remove(idx)
 					LOG.debug { "Found a card removed event ($ifdName)." }
 					val h = makeConnectionHandle(ifdName, idx, slotCapabilities)
 					env.eventDispatcher!!.notify(EventType.CARD_REMOVED, IfdEventObject(h))
@@ -249,20 +227,19 @@ class IfdEventRunner(
 			val terminalPresent = term.isConnected
 			if (!terminalPresent) {
 				// TERMINAL REMOVED
-				val it = currentState.iterator()
-				while (it.hasNext()) {
-					val toDel = it.next()
-					if (toDel.getIFDName() == term.getIFDName()) {
-						it.remove()
-					}
-				}
+				currentState.remove(ifdName)
 				val h = makeConnectionHandle(ifdName, null, slotCapabilities)
+				// a reader reconnected under the same name may have different capabilities
+				capabilities.remove(ifdName)
 				LOG.debug { "Found a terminal removed event ($ifdName)." }
 				env.eventDispatcher!!.notify(EventType.TERMINAL_REMOVED, IfdEventObject(h))
 			}
 		}
 	}
 
+	private fun getCachedCapabilities(ifdName: String): IFDCapabilitiesType? =
+		capabilities[ifdName] ?: getCapabilities(ifdName)?.also { capabilities[ifdName] = it }
+
 	private fun getCapabilities(ifdName: String): IFDCapabilitiesType? {
 		try {
 			val req = GetIFDCapabilities()
@@ -39,12 +39,14 @@ private val LOG = KotlinLogging.logger { }
 
 /**
  *
+ * @param onTerminalChanged Called with the name of each terminal which has been added or removed.
  * @author Tobias Wich
  */
 class EventWatcher(
 	private val cm: ChannelManager,
 	private val timeout: Long,
 	private val callback: ChannelHandleType?,
+	private val onTerminalChanged: (String) -> Unit = {},
 ) : Callable<List<IFDStatusType>> {
 	private val watcher: TerminalWatcher = cm.terminals.watcher
 
@@ -99,6 +101,7 @@ class EventWatcher(
 	private fun updateState(event: TerminalWatcher.StateChangeEvent) {
 		val name = event.getTerminal()
 		if (event.state == TerminalWatcher.EventType.TERMINAL_ADDED) {
+			onTerminalChanged(name)
 			currentState!!.add(createEmptyState(name))
 		} else {
 			val it = currentState!!.iterator()
@@ -130,6 +133,7 @@ class EventWatcher(
 						TerminalWatcher.EventType.TERMINAL_REMOVED -> {
 							slot.isCardAvailable = false // just in case
 							next.isConnected = false
+							onTerminalChanged(name)
 						}
 
 						else -> {
@@ -179,6 +183,7 @@ class EventWatcher(
 				removed.setIFDName(nextExpect.getIFDName())
 				removed.isConnected = false
 				remaining.add(removed)
+				onTerminalChanged(nextExpect.getIFDName())
 			}
 		}
 
@@ -87,6 +87,8 @@ import org.openecard.common.ifd.scio.SCIOErrorCode
 import org.openecard.common.ifd.scio.SCIOException
 import org.openecard.common.ifd.scio.SCIOTerminal
 import org.openecard.common.ifd.scio.TerminalFactory
+import org.openecard.common.interfaces.ApduTransport
+import org.openecard.common.interfaces.ApduTransportException
 import org.openecard.common.interfaces.Environment
 import org.openecard.common.interfaces.InvocationTargetExceptionUnchecked
 import org.openecard.common.interfaces.Publish
@@ -106,6 +108,7 @@ import org.openecard.ifd.scio.wrapper.TerminalInfo
 import org.openecard.ws.IFD
 import org.openecard.ws.common.GenericFactoryException
 import java.math.BigInteger
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentSkipListMap
 import java.util.concurrent.ExecutionException
 import java.util.concurrent.ExecutorService
@@ -119,10 +122,14 @@ private val LOG = KotlinLogging.logger { }
 
 /**
  * SCIO implementation of the IFD interface.
+ * Besides the webservice interface, the [ApduTransport] is implemented so that local protocol code can send APDUs to
+ * the channels without creating Transmit messages.
  *
  * @author Tobias Wich
  */
-class IFD : IFD {
+class IFD :
+	IFD,
+	ApduTransport {
 	private var ctxHandle: ByteArray? = null
 
 	// private SCWrapper scwrapper;
@@ -138,6 +145,9 @@ class IFD : IFD {
 	private var asyncWaitThreads: ConcurrentSkipListMap<String, Future<List<IFDStatusType>>>? = null
 	private var syncWaitThread: Future<List<IFDStatusType>>? = null
 
+	// reader capabilities only change on reconnect, so the control commands are not repeated for every request
+	private val capabilities = ConcurrentHashMap<String, CachedCapabilities>()
+
 	@get:Throws(IFDException::class)
 	var terminalFactoryBuilder: IFDTerminalFactory? = null
 		get() {
@@ -189,6 +199,7 @@ class IFD : IFD {
 			if (ctxHandle == null) {
 				val currentTermFactory = this.termFactory
 				cm = ChannelManager(currentTermFactory)
+				capabilities.clear()
 				ctxHandle = ChannelManager.Companion.createCtxHandle()
 				env!!.addIfdCtx(ctxHandle!!)
 				numClients = AtomicInteger(1)
@@ -246,6 +257,7 @@ class IFD : IFD {
 				// just assume it worked ... and don't wait
 				threadPool = null
 				asyncWaitThreads = null
+				capabilities.clear()
 			}
 			evManager!!.terminate()
 
@@ -341,6 +353,8 @@ class IFD : IFD {
 				for (next in terminals) {
 					ifds.add(next.name)
 				}
+				// forget readers which have disappeared in the meantime
+				capabilities.keys.retainAll(ifds.toSet())
 				response =
 					WSHelper.makeResponse(
 						iso.std.iso_iec._24727.tech.schema.ListIFDsResponse::class.java,
@@ -389,6 +403,20 @@ class IFD : IFD {
 					TerminalInfo(cm!!, term)
 				}
 
+			// the interface protocol depends on the card, everything else is a property of the reader
+			val ifaceProto = info.interfaceProtocol
+			val cached = capabilities[ifdName]
+			if (cached != null && cached.interfaceProtocol == ifaceProto) {
+				response =
+					WSHelper.makeResponse(
+						iso.std.iso_iec._24727.tech.schema.GetIFDCapabilitiesResponse::class.java,
+						org.openecard.common.WSHelper
+							.makeResultOK(),
+					)
+				response.setIFDCapabilities(cached.capabilities)
+				return response
+			}
+
 			val cap = IFDCapabilitiesType()
 
 			// slot capability
@@ -429,6 +457,11 @@ class IFD : IFD {
 			cap.isOpticalSignalUnit = info.isOpticalSignal
 			cap.isAcousticSignalUnit = info.isAcousticSignal
 
+			// without a channel no control commands could be sent, so the result is incomplete
+			if (info.isConnected) {
+				capabilities[ifdName] = CachedCapabilities(ifaceProto, cap)
+			}
+
 			// prepare response
 			response =
 				WSHelper.makeResponse(
@@ -643,7 +676,7 @@ class IFD : IFD {
 		}
 
 		try {
-			val watcher = EventWatcher(cm!!, timeoutL, callback)
+			val watcher = EventWatcher(cm!!, timeoutL, callback) { capabilities.remove(it) }
 			val initialState = watcher.start()
 
 			// get expected status or initial status for all if none specified
@@ -1309,107 +1342,124 @@ class IFD : IFD {
 	@Publish
 	override fun transmit(parameters: Transmit): TransmitResponse {
 		try {
-			var response: TransmitResponse
-			if (!hasContext()) {
-				val msg = "Context not initialized."
-				val r = makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg)
-				response =
-					WSHelper.makeResponse(
-						iso.std.iso_iec._24727.tech.schema.TransmitResponse::class.java,
-						r,
-					)
-				return response
+			val response =
+				WSHelper.makeResponse(
+					iso.std.iso_iec._24727.tech.schema.TransmitResponse::class.java,
+					org.openecard.common.WSHelper
+						.makeResultOK(),
+				)
+			val handle = parameters.getSlotHandle()
+			val apdus = parameters.getInputAPDUInfo()
+			val rapdus = response.getOutputAPDU()
+			try {
+				checkTransmitPreconditions(apdus.map { it.getAcceptableStatusCode() })
+				// transmit APDUs and stop if an error occurs or a not expected status is hit
+				for (capdu in apdus) {
+					val rapdu = transmitApdu(handle, capdu.getInputAPDU(), capdu.getAcceptableStatusCode())
+					rapdus.add(rapdu)
+				}
+			} catch (ex: ApduTransportException) {
+				ex.responseAPDU?.let { rapdus.add(it) }
+				response.setResult(ex.result)
 			}
+			return response
+		} catch (ex: Exception) {
+			LOG.warn(ex) { "${ex.message}" }
+			throwThreadKillException(ex)
+			return WSHelper.makeResponse(
+				iso.std.iso_iec._24727.tech.schema.TransmitResponse::class.java,
+				org.openecard.common.WSHelper
+					.makeResult(ex),
+			)
+		}
+	}
 
-			try {
-				val handle = parameters.getSlotHandle()
-				val ch = cm!!.getSlaveChannel(handle)
+	override fun isResponsible(slotHandle: ByteArray): Boolean {
+		val cm = cm
+		if (!hasContext() || cm == null) {
+			return false
+		}
+		return try {
+			cm.getSlaveChannel(slotHandle)
+			true
+		} catch (ex: NoSuchChannel) {
+			false
+		}
+	}
 
-				val apdus = parameters.getInputAPDUInfo()
-				// check that the apdus contain sane values
-				for (apdu in apdus) {
-					for (code in apdu.getAcceptableStatusCode()) {
-						if (code.size == 0 || code.size > 2) {
-							val msg = "Invalid accepted status code given."
-							val r = makeResultError(ECardConstants.Minor.App.PARM_ERROR, msg)
-							response =
-								WSHelper.makeResponse(
-									iso.std.iso_iec._24727.tech.schema.TransmitResponse::class.java,
-									r,
-								)
-							return response
-						}
-					}
-				}
+	@Throws(ApduTransportException::class)
+	override fun transmit(
+		slotHandle: ByteArray,
+		commandApdu: ByteArray,
+		acceptableStatusCodes: List<ByteArray>,
+	): ByteArray {
+		checkTransmitPreconditions(listOf(acceptableStatusCodes))
+		return transmitApdu(slotHandle, commandApdu, acceptableStatusCodes)
+	}
 
-				// transmit APDUs and stop if an error occurs or a not expected status is hit
-				response =
-					WSHelper.makeResponse(
-						iso.std.iso_iec._24727.tech.schema.TransmitResponse::class.java,
-						org.openecard.common.WSHelper
-							.makeResultOK(),
-					)
-				var result: Result?
-				val rapdus = response.getOutputAPDU()
-				try {
-					for (capdu in apdus) {
-						val rapdu = ch.transmit(capdu.getInputAPDU(), capdu.getAcceptableStatusCode())
-						rapdus.add(rapdu)
-					}
-					result = makeResultOK()
-				} catch (ex: TransmitException) {
-					rapdus.add(ex.responseAPDU)
-					result = ex.result
-				} catch (ex: SCIOException) {
-					val msg = "Error during transmit."
-					LOG.warn(ex) { msg }
-					result = makeResultUnknownIFDError(msg)
-				} catch (ex: IllegalStateException) {
-					val msg = "Card removed during transmit."
-					LOG.warn(ex) { msg }
-					result = makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg)
-				} catch (ex: IllegalArgumentException) {
-					val msg = "Given command contains a MANAGE CHANNEL APDU."
-					LOG.error(ex) { msg }
-					result = makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg)
-				} catch (ex: InterruptedException) {
-					val msg = String.format("Cancellation by user.")
-					LOG.error(ex) { msg }
-					result = makeResultError(ECardConstants.Minor.IFD.CANCELLATION_BY_USER, msg)
+	@Throws(ApduTransportException::class)
+	private fun checkTransmitPreconditions(acceptableStatusCodes: List<List<ByteArray>>) {
+		if (!hasContext()) {
+			val msg = "Context not initialized."
+			throw ApduTransportException(makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg))
+		}
+		// check that the apdus contain sane values
+		for (codes in acceptableStatusCodes) {
+			for (code in codes) {
+				if (code.size == 0 || code.size > 2) {
+					val msg = "Invalid accepted status code given."
+					throw ApduTransportException(makeResultError(ECardConstants.Minor.App.PARM_ERROR, msg))
 				}
+			}
+		}
+	}
 
-				response.setResult(result)
-
-				return response
+	/**
+	 * Transmits one APDU to the slave channel of the slot handle, after the preconditions have been checked.
+	 * Both the Transmit function and the [ApduTransport] end up here, so they produce the same results.
+	 */
+	@Throws(ApduTransportException::class)
+	private fun transmitApdu(
+		slotHandle: ByteArray?,
+		commandApdu: ByteArray,
+		acceptableStatusCodes: List<ByteArray>,
+	): ByteArray {
+		val ch =
+			try {
+				if (slotHandle == null) {
+					throw NoSuchChannel("No slot handle given.")
+				}
+				cm!!.getSlaveChannel(slotHandle)
 			} catch (ex: NoSuchChannel) {
 				val msg = "No card with transaction available in the requested terminal."
-				val r = makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg)
-				response =
-					WSHelper.makeResponse(
-						iso.std.iso_iec._24727.tech.schema.TransmitResponse::class.java,
-						r,
-					)
 				LOG.warn(ex) { msg }
-				return response
+				throw ApduTransportException(makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg))
 			} catch (ex: IllegalStateException) {
 				val msg = "No card with transaction available in the requested terminal."
-				val r = makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg)
-				response =
-					WSHelper.makeResponse(
-						iso.std.iso_iec._24727.tech.schema.TransmitResponse::class.java,
-						r,
-					)
 				LOG.warn(ex) { msg }
-				return response
+				throw ApduTransportException(makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg))
 			}
-		} catch (ex: Exception) {
-			LOG.warn(ex) { "${ex.message}" }
-			throwThreadKillException(ex)
-			return WSHelper.makeResponse(
-				iso.std.iso_iec._24727.tech.schema.TransmitResponse::class.java,
-				org.openecard.common.WSHelper
-					.makeResult(ex),
-			)
+
+		try {
+			return ch.transmit(commandApdu, acceptableStatusCodes)
+		} catch (ex: TransmitException) {
+			throw ApduTransportException(ex.result, ex.responseAPDU)
+		} catch (ex: SCIOException) {
+			val msg = "Error during transmit."
+			LOG.warn(ex) { msg }
+			throw ApduTransportException(makeResultUnknownIFDError(msg))
+		} catch (ex: IllegalStateException) {
+			val msg = "Card removed during transmit."
+			LOG.warn(ex) { msg }
+			throw ApduTransportException(makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg))
+		} catch (ex: IllegalArgumentException) {
+			val msg = "Given command contains a MANAGE CHANNEL APDU."
+			LOG.error(ex) { msg }
+			throw ApduTransportException(makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg))
+		} catch (ex: InterruptedException) {
+			val msg = "Cancellation by user."
+			LOG.error(ex) { msg }
+			throw ApduTransportException(makeResultError(ECardConstants.Minor.IFD.CANCELLATION_BY_USER, msg))
 		}
 	}
 
@@ -1653,3 +1703,12 @@ class IFD : IFD {
 
 	// TODO: make all commands cancellable
 }
+
+/**
+ * Capabilities of a reader together with the interface protocol of the card they have been determined with.
+ * The instances are handed out to all callers and must not be modified.
+ */
+private class CachedCapabilities(
+	val interfaceProtocol: String?,
+	val capabilities: IFDCapabilitiesType,
+)
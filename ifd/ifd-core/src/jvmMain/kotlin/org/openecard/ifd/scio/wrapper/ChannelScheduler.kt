@@ -0,0 +1,237 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+package org.openecard.ifd.scio.wrapper
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import java.util.concurrent.Callable
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.SynchronousQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantLock
+
+private val LOG = KotlinLogging.logger { }
+
+/**
+ * Serial command queue of a single channel.
+ *
+ * For thread bound cards the commands are queued and executed one after the other by a thread of a pool shared by
+ * all channels. The thread is only occupied while the queue is not empty, so idle channels do not keep a thread
+ * alive. While a transaction is active the thread stays with the channel, as the transaction is bound to the thread
+ * which started it.
+ * Cards which are not thread bound execute the commands directly in the calling thread, serialised by a lock.
+ *
+ * The time commands wait before they are executed is recorded in [ChannelQueueMetrics].
+ *
+ * @param name Name of the channel, which is used as thread name while commands of the channel are executed.
+ * @param threadBound `true` if the card must be accessed from a single thread, `false` otherwise.
+ */
+internal class ChannelScheduler(
+	private val name: String,
+	private val threadBound: Boolean,
+) {
+	private val queue = LinkedBlockingQueue<FutureTask<*>>()
+	private val lock = ReentrantLock()
+
+	// guarded by queue
+	private var draining = false
+	private var shutdown = false
+
+	@Volatile
+	private var pinned = false
+
+	/**
+	 * Executes the task in the queue of this channel.
+	 * The returned future behaves like the one of an [java.util.concurrent.ExecutorService], errors of the task are
+	 * reported as [java.util.concurrent.ExecutionException] when calling [Future.get].
+	 *
+	 * @param task Task to execute.
+	 * @return Future yielding the result of the task.
+	 * @throws InterruptedException Thrown in case the thread was interrupted while waiting for the channel.
+	 * @throws RejectedExecutionException Thrown in case the scheduler has been shut down.
+	 */
+	@Throws(InterruptedException::class)
+	fun <T> submit(task: Callable<T>): Future<T> {
+		val submitted = System.nanoTime()
+		val future =
+			FutureTask(
+				Callable {
+					ChannelQueueMetrics.record(System.nanoTime() - submitted)
+					task.call()
+				},
+			)
+
+		if (threadBound) {
+			synchronized(queue) {
+				if (shutdown) {
+					throw RejectedExecutionException("Channel $name has been shut down.")
+				}
+				queue.add(future)
+				if (!draining) {
+					draining = true
+					WORKERS.execute(::drain)
+				}
+			}
+		} else {
+			lock.lockInterruptibly()
+			try {
+				future.run()
+			} finally {
+				lock.unlock()
+			}
+		}
+		return future
+	}
+
+	/**
+	 * Executes the queued tasks in the current pool thread until the queue is empty and the channel is not pinned.
+	 */
+	private fun drain() {
+		val thread = Thread.currentThread()
+		val poolName = thread.name
+		thread.name = name
+		try {
+			while (true) {
+				var next = queue.poll()
+				if (next == null) {
+					if (pinned) {
+						next = pollPinned() ?: continue
+					} else {
+						synchronized(queue) {
+							if (queue.isEmpty()) {
+								draining = false
+								return
+							}
+						}
+						continue
+					}
+				}
+				// a cancelled task of this channel must not interrupt the following ones
+				Thread.interrupted()
+				next.run()
+			}
+		} finally {
+			thread.name = poolName
+		}
+	}
+
+	private fun pollPinned(): FutureTask<*>? =
+		try {
+			queue.poll(PIN_POLL_MILLIS, TimeUnit.MILLISECONDS)
+		} catch (ex: InterruptedException) {
+			null
+		}
+
+	/**
+	 * Keeps the pool thread with this channel until the pin is released again.
+	 * The pin must be set before submitting the task starting the transaction, so that the thread running that task
+	 * is the one executing all following commands.
+	 *
+	 * @param pinned `true` to keep the thread, `false` to return it to the pool when the queue is empty.
+	 */
+	fun pin(pinned: Boolean) {
+		this.pinned = pinned
+	}
+
+	/**
+	 * Stops accepting new tasks. Already queued tasks are still executed.
+	 */
+	fun shutdown() {
+		synchronized(queue) {
+			shutdown = true
+		}
+		pinned = false
+		LOG.debug {
+			"Channel queue wait after ${ChannelQueueMetrics.numCommands} commands: " +
+				"average ${ChannelQueueMetrics.averageWaitNanos} ns, maximum ${ChannelQueueMetrics.maxWaitNanos} ns."
+		}
+	}
+}
+
+/**
+ * Statistics about the time commands wait in the channel queues before they are executed.
+ * The values are accumulated over all channels of the process.
+ */
+object ChannelQueueMetrics {
+	private val count = AtomicLong()
+	private val totalWait = AtomicLong()
+	private val maxWait = AtomicLong()
+
+	/**
+	 * Number of commands executed since the last reset.
+	 */
+	val numCommands: Long
+		get() = count.get()
+
+	/**
+	 * Accumulated queue wait time of all commands in nanoseconds.
+	 */
+	val totalWaitNanos: Long
+		get() = totalWait.get()
+
+	/**
+	 * Longest queue wait time of a single command in nanoseconds.
+	 */
+	val maxWaitNanos: Long
+		get() = maxWait.get()
+
+	/**
+	 * Average queue wait time of a command in nanoseconds, or 0 if no command has been executed.
+	 */
+	val averageWaitNanos: Long
+		get() {
+			val n = count.get()
+			return if (n == 0L) 0 else totalWait.get() / n
+		}
+
+	fun reset() {
+		count.set(0)
+		totalWait.set(0)
+		maxWait.set(0)
+	}
+
+	internal fun record(waitNanos: Long) {
+		count.incrementAndGet()
+		totalWait.addAndGet(waitNanos)
+		maxWait.accumulateAndGet(waitNanos, Math::max)
+	}
+}
+
+private const val IDLE_TIMEOUT_SECONDS = 30L
+private const val PIN_POLL_MILLIS = 500L
+private val WORKER_NUM = AtomicInteger(1)
+
+/**
+ * Threads shared by the queues of all channels.
+ * A thread is only bound to a channel while its queue is processed, so the pool size follows the number of busy
+ * channels and idle threads are released after a while. The pool is not capped, as a pinned channel keeps its thread
+ * for the whole transaction and a cap would block the other channels.
+ */
+private val WORKERS =
+	ThreadPoolExecutor(0, Int.MAX_VALUE, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS, SynchronousQueue()) { r ->
+		Thread(r, "Channel-Worker-${WORKER_NUM.getAndIncrement()}").apply { isDaemon = true }
+	}
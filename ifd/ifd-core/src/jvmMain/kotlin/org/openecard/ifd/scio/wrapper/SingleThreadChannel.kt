@@ -37,9 +37,6 @@ import org.openecard.common.util.ByteUtils
 import org.openecard.ifd.scio.TransmitException
 import java.util.concurrent.Callable
 import java.util.concurrent.ExecutionException
-import java.util.concurrent.ExecutorService
-import java.util.concurrent.Executors
-import java.util.concurrent.ThreadFactory
 import java.util.concurrent.atomic.AtomicInteger
 
 private val LOG = KotlinLogging.logger { }
@@ -48,11 +45,12 @@ private val LOG = KotlinLogging.logger { }
  * Implementation of a channel executing all commands in the same thread.
  * Executing commands in the same thread has the effect, that transactions are not broken when the IFD is called from
  * different threads which is the case almost every time.
+ * The commands are executed by a shared thread which is only kept while the channel is in use, see [ChannelScheduler].
  *
  * @author Tobias Wich
  */
 class SingleThreadChannel : IfdChannel {
-	private val exec: ExecutorService
+	private val exec: ChannelScheduler
 	override var channel: SCIOChannel
 
 	/**
@@ -68,10 +66,10 @@ class SingleThreadChannel : IfdChannel {
 	 * @throws SCIOException Thrown in case the channel could not be established.
 	 */
 	constructor(term: SCIOTerminal) {
-		this.exec = createExecutor()
-
 		val card: SCIOCard = connectCard(term)
 		this.channel = card.basicChannel
+
+		this.exec = createExecutor(card)
 	}
 
 	/**
@@ -82,8 +80,6 @@ class SingleThreadChannel : IfdChannel {
 	 * @throws SCIOException Thrown in case the channel could not be established.
 	 */
 	constructor(master: SingleThreadChannel, isBasic: Boolean) {
-		this.exec = createExecutor()
-
 		val baseCard = master.channel.card
 		// connect with protocol that worked for the base card
 		val card = baseCard.terminal.connect(baseCard.protocol)
@@ -92,19 +88,16 @@ class SingleThreadChannel : IfdChannel {
 		} else {
 			this.channel = card.openLogicalChannel()
 		}
+
+		this.exec = createExecutor(card)
 	}
 
-	private fun createExecutor(): ExecutorService =
-		Executors.newSingleThreadExecutor(
-			ThreadFactory { r: Runnable? ->
-				val num = channel.channelNumber
-				val termName = channel.card.terminal.name
-				val name = "Channel-${THREAD_NUM.getAndIncrement()} $num '$termName'"
-				val t = Thread(r, name)
-				t.setDaemon(true)
-				t
-			},
-		)
+	private fun createExecutor(card: SCIOCard): ChannelScheduler {
+		val num = channel.channelNumber
+		val termName = channel.card.terminal.name
+		val name = "Channel-${THREAD_NUM.getAndIncrement()} $num '$termName'"
+		return ChannelScheduler(name, card.isThreadBound)
+	}
 
 	@Throws(SCIOException::class)
 	override fun shutdown() {
@@ -301,6 +294,26 @@ class SingleThreadChannel : IfdChannel {
 
 	@Throws(SCIOException::class, IllegalStateException::class, InterruptedException::class)
 	private fun submitTransaction(start: Boolean) {
+		// the transaction is bound to the worker thread, so it must not terminate before the transaction ends
+		if (start) {
+			exec.pin(true)
+		}
+		try {
+			submitTransactionTask(start)
+		} catch (ex: Exception) {
+			if (start) {
+				exec.pin(false)
+			}
+			throw ex
+		} finally {
+			if (!start) {
+				exec.pin(false)
+			}
+		}
+	}
+
+	@Throws(SCIOException::class, IllegalStateException::class, InterruptedException::class)
+	private fun submitTransactionTask(start: Boolean) {
 		// send command
 		val result =
 			exec.submit(
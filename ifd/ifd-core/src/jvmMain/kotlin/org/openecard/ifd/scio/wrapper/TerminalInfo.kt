@@ -282,7 +282,7 @@ class TerminalInfo {
 			return bioCap
 		}
 
-	private val interfaceProtocol: String?
+	internal val interfaceProtocol: String?
 		get() {
 			if (this.isConnected) {
 				val card = channel!!.channel.card
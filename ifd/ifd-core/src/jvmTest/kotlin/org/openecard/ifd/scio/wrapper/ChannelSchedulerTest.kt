@@ -0,0 +1,68 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+package org.openecard.ifd.scio.wrapper
+
+import org.testng.Assert
+import org.testng.annotations.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+class ChannelSchedulerTest {
+	@Test
+	fun testSerialExecution() {
+		val scheduler = ChannelScheduler("test", true)
+		val gate = CountDownLatch(1)
+		val order = ArrayList<Int>()
+		val first = scheduler.submit(Callable { gate.await(5, TimeUnit.SECONDS) })
+		val futures = (1..10).map { i -> scheduler.submit(Callable { synchronized(order) { order.add(i) } }) }
+		Assert.assertFalse(first.isDone)
+		gate.countDown()
+		futures.forEach { it.get(5, TimeUnit.SECONDS) }
+		Assert.assertEquals(order, (1..10).toList())
+		scheduler.shutdown()
+	}
+
+	@Test
+	fun testPinnedThread() {
+		val scheduler = ChannelScheduler("pinned", true)
+		scheduler.pin(true)
+		val first = scheduler.submit(Callable { Thread.currentThread() }).get(5, TimeUnit.SECONDS)
+		// give the worker the chance to leave the channel if it was not pinned
+		Thread.sleep(100)
+		val second = scheduler.submit(Callable { Thread.currentThread() }).get(5, TimeUnit.SECONDS)
+		Assert.assertSame(second, first)
+		Assert.assertEquals(first.name, "pinned")
+		scheduler.shutdown()
+	}
+
+	@Test
+	fun testQueueWaitRecorded() {
+		val scheduler = ChannelScheduler("metrics", false)
+		val before = ChannelQueueMetrics.numCommands
+		val result: Future<Int> = scheduler.submit(Callable { 42 })
+		Assert.assertEquals(result.get(), 42)
+		Assert.assertTrue(ChannelQueueMetrics.numCommands > before)
+		scheduler.shutdown()
+	}
+}
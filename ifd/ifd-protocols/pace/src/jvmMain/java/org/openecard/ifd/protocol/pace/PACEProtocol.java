@@ -35,7 +35,7 @@ import org.openecard.common.ifd.anytype.PACEInputType;
 import org.openecard.common.ifd.anytype.PACEOutputType;
 import org.openecard.common.interfaces.Dispatcher;
 import org.openecard.crypto.common.asn1.eac.PACESecurityInfos;
-import org.openecard.crypto.common.asn1.eac.SecurityInfos;
+import org.openecard.crypto.common.asn1.eac.ef.EACFileCache;
 import org.openecard.crypto.common.asn1.eac.ef.EFCardAccess;
 import org.openecard.gui.UserConsent;
 import org.openecard.ifd.protocol.pace.gui.GUIContentMap;
@@ -93,9 +93,8 @@ public class PACEProtocol implements Protocol {
 			efcadata = CardUtils.readFile(null, dispatcher, slotHandle, false);
 		}
 
-	    // Parse SecurityInfos and get PACESecurityInfos
-	    SecurityInfos sis = SecurityInfos.getInstance(efcadata);
-	    EFCardAccess efca = EFCardAccess.getInstance(sis);
+	    // Parse SecurityInfos and get PACESecurityInfos, known files are taken from the cache
+	    EFCardAccess efca = EACFileCache.INSTANCE.getCardAccess(efcadata);
 	    PACESecurityInfos psi = efca.getPACESecurityInfos();
 
 	    // Start PACE
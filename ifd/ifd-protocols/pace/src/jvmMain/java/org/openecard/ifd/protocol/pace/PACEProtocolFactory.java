@@ -25,6 +25,7 @@ package org.openecard.ifd.protocol.pace;
 import org.openecard.common.ECardConstants;
 import org.openecard.common.ifd.Protocol;
 import org.openecard.common.ifd.ProtocolFactory;
+import org.openecard.ifd.protocol.pace.crypto.PACEKeyPairPool;
 
 
 /**
@@ -34,6 +35,11 @@ import org.openecard.common.ifd.ProtocolFactory;
  */
 public class PACEProtocolFactory implements ProtocolFactory {
 
+    public PACEProtocolFactory() {
+	// key pairs for the first PACE run are generated in the background while waiting for a card
+	PACEKeyPairPool.prefillStandardizedCurves();
+    }
+
     @Override
     public String getProtocol() {
 	return ECardConstants.Protocol.PACE;
@@ -27,7 +27,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
-import org.openecard.bouncycastle.asn1.x9.ECNamedCurveTable;
+import org.openecard.bouncycastle.crypto.AsymmetricCipherKeyPair;
 import org.openecard.bouncycastle.crypto.generators.ECKeyPairGenerator;
 import org.openecard.bouncycastle.crypto.params.*;
 import org.openecard.bouncycastle.jce.spec.ECNamedCurveParameterSpec;
@@ -126,22 +126,19 @@ public final class PACEKey {
 	    pk = new ElGamalPublicKeyParameters(egp.getG().multiply(d), egp);
 
 	} else if (pdp.isECDH()) {
-		var gen = new ECKeyPairGenerator();
-
-		ECDomainParameters domainParams;
+		AsymmetricCipherKeyPair keyPair;
 		var p = (ECParameterSpec) pdp.getParameter();
 		if (p instanceof ECNamedCurveParameterSpec) {
-			var pn = (ECNamedCurveParameterSpec) p;
-			var curveOid = ECNamedCurveTable.getOID(pn.getName());
-			domainParams = new ECNamedDomainParameters(curveOid, p.getCurve(), p.getG(), p.getN(), p.getH(), p.getSeed());
+			// keys on standardized curves are precomputed, mapped domain parameters are only known now
+			keyPair = PACEKeyPairPool.take((ECNamedCurveParameterSpec) p);
 		} else {
-			domainParams = new ECDomainParameters(p.getCurve(), p.getG(), p.getN(), p.getH(), p.getSeed());
+			var gen = new ECKeyPairGenerator();
+			var domainParams = new ECDomainParameters(p.getCurve(), p.getG(), p.getN(), p.getH(), p.getSeed());
+			var genParams = new ECKeyGenerationParameters(domainParams, rand);
+			gen.init(genParams);
+			keyPair = gen.generateKeyPair();
 		}
 
-		var genParams = new ECKeyGenerationParameters(domainParams, rand);
-		gen.init(genParams);
-		var keyPair = gen.generateKeyPair();
-
 	    sk = keyPair.getPrivate();
 	    pk = keyPair.getPublic();
 	} else {
@@ -35,10 +35,8 @@ import org.openecard.common.ifd.SecureMessagingCryptoException
 import org.openecard.common.ifd.SecureMessagingParseException
 import org.openecard.common.ifd.SecureMessagingRejectedByIcc
 import org.openecard.common.ifd.UnsupportedSecureMessagingFeature
-import org.openecard.common.tlv.TLV
 import org.openecard.common.util.ByteUtils
 import java.io.ByteArrayOutputStream
-import java.math.BigInteger
 import java.security.Key
 import javax.crypto.Cipher
 import javax.crypto.spec.IvParameterSpec
@@ -47,17 +45,21 @@ import javax.crypto.spec.SecretKeySpec
 // ISO/IEC 7816-4 padding tag
 private const val PAD = 0x80.toByte()
 
-fun BigInteger.toSSCBytes(): ByteArray {
-	val ssc = this.toByteArray()
-	if (ssc.size < 16) {
-		val result = ByteArray(16)
-		ssc.copyInto(result, result.size - ssc.size)
-		return result
-	} else if (ssc.size == 16) {
-		return ssc
-	} else {
-		throw IllegalArgumentException("Send Sequence Counter overflow.")
-	}
+// AES block size
+private const val BLOCK_SIZE = 16
+
+// length of the truncated MAC in DO8E
+private const val MAC_SIZE = 8
+
+// padding block, sliced according to the number of bytes needed
+private val PADDING = ByteArray(BLOCK_SIZE).also { it[0] = PAD }
+
+/**
+ * Byte buffer which can be reused for every APDU and gives access to its content without copying it.
+ */
+private class ReusableBuffer : ByteArrayOutputStream(512) {
+	val buffer: ByteArray
+		get() = buf
 }
 
 enum class ReadState {
@@ -101,15 +103,41 @@ enum class ReadState {
 /**
  * Implements Secure Messaging according to ISO/IEC 7816-4.
  *
+ * The cipher and MAC primitives are initialised once for the whole session and only the IV is changed per APDU. The
+ * instance must therefore not be used for more than one channel.
+ *
  * @author Moritz Horsch
  */
 class SecureMessaging(
 	// Keys for encryption and message authentication.
-	private val keyMAC: ByteArray,
-	private val keyENC: ByteArray,
+	keyMAC: ByteArray,
+	keyENC: ByteArray,
 ) {
 	// Send Sequence Counter. See BSI-TR-03110 section F.3.
-	private var secureMessagingSSC = BigInteger.ZERO
+	private var secureMessagingSSC = 0L
+
+	private val encKey: Key = SecretKeySpec(keyENC, "AES")
+	private val cbcCipher: Cipher
+	private val ivCipher: Cipher
+	private val cmac: CMac
+
+	private val sscBytes = ByteArray(BLOCK_SIZE)
+	private val ivBytes = ByteArray(BLOCK_SIZE)
+	private val macBytes: ByteArray
+	private val secureData = ReusableBuffer()
+
+	init {
+		try {
+			cbcCipher = Cipher.getInstance("AES/CBC/NoPadding")
+			ivCipher = Cipher.getInstance("AES/ECB/NoPadding")
+			ivCipher.init(Cipher.ENCRYPT_MODE, encKey)
+			cmac = CMac(AESEngine())
+			cmac.init(KeyParameter(keyMAC))
+			macBytes = ByteArray(cmac.macSize)
+		} catch (ex: Exception) {
+			throw SecureMessagingCryptoException(ex.message ?: "Failed to initialize Secure Messaging primitives.", ex)
+		}
+	}
 
 	/**
 	 * Encrypt the APDU.
@@ -117,12 +145,13 @@ class SecureMessaging(
 	 * @param apdu APDU
 	 * @return Encrypted APDU
 	 */
+	@Synchronized
 	@Throws(InvalidInputApduInSecureMessaging::class, SecureMessagingCryptoException::class)
 	fun encrypt(apdu: ByteArray): ByteArray {
-		val encSSC = secureMessagingSSC.plus(BigInteger.ONE)
+		val encSSC = secureMessagingSSC + 1
 		val commandAPDU = encrypt(apdu, encSSC)
 		// update if the command is successful
-		secureMessagingSSC = encSSC.plus(BigInteger.ONE)
+		secureMessagingSSC = encSSC + 1
 
 		return commandAPDU
 	}
@@ -137,16 +166,15 @@ class SecureMessaging(
 	@OptIn(ExperimentalStdlibApi::class)
 	private fun encrypt(
 		apdu: ByteArray,
-		secureMessagingSSC: BigInteger,
+		secureMessagingSSC: Long,
 	): ByteArray {
-		val baos = ByteArrayOutputStream()
 		val cAPDU = CardCommandAPDU(apdu)
 
 		if (cAPDU.isSecureMessaging) {
 			throw InvalidInputApduInSecureMessaging("Input APDU already contains a SM CLA byte.", "6882".hexToByteArray())
 		}
 
-		var data = cAPDU.data
+		val data = cAPDU.data
 		val header = cAPDU.header
 		val leEncoded = cutLePrefix(cAPDU.encodeLeField())
 
@@ -169,55 +197,35 @@ class SecureMessaging(
 				}
 			}
 
+		secureData.reset()
+
 		if (data.isNotEmpty()) {
 			// Encrypt data
-			val c = getCipher(secureMessagingSSC, Cipher.ENCRYPT_MODE)
-			val paddedData = pad(data, 16)
-			val dataEncrypted = c.doFinal(paddedData)
+			val dataEncrypted = encryptPadded(data, secureMessagingSSC)
 
 			// Add padding indicator 0x01
-			val paddedEncryptedData = ByteUtils.concatenate(0x01.toByte(), dataEncrypted)
-
-			val dataObject = TLV()
-			dataObject.setTagNumWithClass(0x87.toByte())
-			dataObject.value = paddedEncryptedData
-			baos.write(dataObject.toBER())
+			writeDataObjectHeader(0x87, dataEncrypted.size + 1)
+			secureData.write(0x01)
+			secureData.write(dataEncrypted)
 		}
 
 		// Write protected LE
 		if (leEncoded.isNotEmpty()) {
-			val leObject = TLV()
-			leObject.setTagNumWithClass(0x97.toByte())
-			leObject.value = leEncoded
-			baos.write(leObject.toBER())
+			writeDataObjectHeader(0x97, leEncoded.size)
+			secureData.write(leEncoded)
 		}
 
 		//
 		// Calculate MAC
 		//
-		val cmac = getCMAC(secureMessagingSSC)
-		var mac = ByteArray(cmac.macSize)
-
-		val paddedHeader = pad(header, 16)
-		cmac.update(paddedHeader, 0, paddedHeader.size)
-
-		if (baos.size() > 0) {
-			val paddedData = pad(baos.toByteArray(), 16)
-			cmac.update(paddedData, 0, paddedData.size)
-		}
-
-		cmac.doFinal(mac, 0)
-		mac = ByteUtils.copy(mac, 0, 8)!!
+		val mac = calculateMAC(secureMessagingSSC, header, secureData.buffer, secureData.size())
 
 		//
 		// Build APDU
-		val macStructure = TLV()
-		macStructure.setTagNumWithClass(0x8E.toByte())
-		macStructure.value = mac
-		baos.write(macStructure.toBER())
-		val secureData = baos.toByteArray()
+		writeDataObjectHeader(0x8E, MAC_SIZE)
+		secureData.write(mac, 0, MAC_SIZE)
 
-		val secureCommand = CardCommandAPDU(header[0], header[1], header[2], header[3], secureData)
+		val secureCommand = CardCommandAPDU(header[0], header[1], header[2], header[3], secureData.toByteArray())
 		// set LE explicitly to 0x00 or in case of extended length 0x00 0x00
 		// always use extended length if there is an le field, as returned data can be longer due to encryption
 		if (secureCommand.lc <= 0xFF && leEncoded.isEmpty()) {
@@ -229,6 +237,24 @@ class SecureMessaging(
 		return secureCommand.toByteArray()
 	}
 
+	private fun writeDataObjectHeader(
+		tag: Int,
+		length: Int,
+	) {
+		secureData.write(tag)
+		// DER length encoding
+		if (length <= 0x7F) {
+			secureData.write(length)
+		} else if (length <= 0xFF) {
+			secureData.write(0x81)
+			secureData.write(length)
+		} else {
+			secureData.write(0x82)
+			secureData.write(length shr 8)
+			secureData.write(length)
+		}
+	}
+
 	@OptIn(ExperimentalStdlibApi::class)
 	private fun cutLePrefix(leEncoded: ByteArray): ByteArray {
 		// le in SM DO has no prefix, so cut it if we have an extended le field with 3 bytes
@@ -250,6 +276,7 @@ class SecureMessaging(
 	 * @param response the response
 	 * @return the byte[]
 	 */
+	@Synchronized
 	@Throws(
 		SecureMessagingParseException::class,
 		SecureMessagingCryptoException::class,
@@ -258,33 +285,36 @@ class SecureMessaging(
 	)
 	fun decrypt(response: ByteArray): ByteArray {
 		parseRequire(response.size >= 2) { "Secure Messaging Response APDU does not have a trailer." }
-		val trailer = response.sliceArray(response.size - 2 until response.size)
-
-		return when (ByteUtils.toHexString(trailer)) {
-			"6987" -> throw SecureMessagingRejectedByIcc("Secure Messaging of ICC reports missing SM DOs (6987).")
-			"6988" -> throw SecureMessagingRejectedByIcc("Secure Messaging of ICC reports invalid SM DOs (6988).")
-			else -> {
-				val responseNoTrailer = response.sliceArray(0 until response.size - 2)
-				decrypt(responseNoTrailer, secureMessagingSSC)
-			}
+		val sw1 = response[response.size - 2]
+		val sw2 = response[response.size - 1]
+
+		if (sw1 == 0x69.toByte() && sw2 == 0x87.toByte()) {
+			throw SecureMessagingRejectedByIcc("Secure Messaging of ICC reports missing SM DOs (6987).")
+		} else if (sw1 == 0x69.toByte() && sw2 == 0x88.toByte()) {
+			throw SecureMessagingRejectedByIcc("Secure Messaging of ICC reports invalid SM DOs (6988).")
+		} else {
+			return decrypt(response, response.size - 2, secureMessagingSSC)
 		}
 	}
 
 	private fun decrypt(
-		responseNoTrailer: ByteArray,
-		secureMessagingSSC: BigInteger,
+		response: ByteArray,
+		end: Int,
+		secureMessagingSSC: Long,
 	): ByteArray {
 		// Status bytes of the response APDU. MUST be 2 bytes.
-		val statusBytes = ByteArray(2)
+		var statusOffset = -1
 		// plain data 0x81
-		var plainDataObject: ByteArray? = null
+		var plainDataOffset = -1
+		var plainDataLength = 0
 		// Padding-content indicator followed by cryptogram 0x87.
 		var withPadding = false
-		var encDataObject: ByteArray? = null
+		var encDataOffset = -1
+		var encDataLength = 0
 		// Cryptographic checksum 0x8E. MUST be 8 bytes.
-		val macObject = ByteArray(8)
-
-		val tlv = TLV.fromBER(responseNoTrailer)
+		var macOffset = -1
+		// the MAC covers all DOs in front of DO8E
+		var macDataLength = 0
 
 		//
 		// Read APDU structure
@@ -295,84 +325,99 @@ class SecureMessaging(
 		//
 
 		var state = ReadState.INIT
-		for (nextTlv in tlv.asList()) {
-			state = state.selectNext(nextTlv.tag.tagNumWithClass)
+		var pos = 0
+		// a zero tag terminates the DOs like in the TLV parser
+		while (pos < end && response[pos] != 0x00.toByte()) {
+			val doOffset = pos
+			val tag = (response[pos++].toInt() and 0xFF).toLong()
+			state = state.selectNext(tag)
+
+			parseRequire(pos < end) { "Malformed Secure Messaging APDU" }
+			var length = response[pos++].toInt() and 0xFF
+			if (length > 0x80) {
+				val numLengthBytes = length and 0x7F
+				parseRequire(numLengthBytes <= 3 && pos + numLengthBytes <= end) { "Malformed Secure Messaging APDU" }
+				length = 0
+				repeat(numLengthBytes) {
+					length = (length shl 8) or (response[pos++].toInt() and 0xFF)
+				}
+			} else if (length == 0x80) {
+				throw UnsupportedSecureMessagingFeature("Indefinite length encoding in Secure Messaging APDU.")
+			}
+			parseRequire(end - pos >= length) { "Malformed Secure Messaging APDU" }
+
 			when (state) {
 				ReadState.INIT -> {
 					throw SecureMessagingParseException("Malformed Secure Messaging APDU")
 				}
 
 				ReadState.DATA -> {
-					if (nextTlv.tag.tagNumWithClass == 0x81L) {
-						plainDataObject = nextTlv.value
-					} else if (nextTlv.tag.tagNumWithClass == 0x87L) {
-						when (nextTlv.value.first()) {
+					if (tag == 0x81L) {
+						plainDataOffset = pos
+						plainDataLength = length
+					} else if (tag == 0x87L) {
+						parseRequire(length >= 1) { "Malformed Secure Messaging APDU" }
+						when (response[pos]) {
 							0x00.toByte(), 0x01.toByte() -> withPadding = true
 							0x02.toByte() -> withPadding = false
 							else -> throw UnsupportedSecureMessagingFeature(
 								"Unsupported padding indicator byte 0x${
-									nextTlv.value.first().toString(16)
+									response[pos].toString(16)
 								}",
 							)
 						}
-						encDataObject = nextTlv.value.sliceArray(1 until nextTlv.value.size)
+						encDataOffset = pos + 1
+						encDataLength = length - 1
 					}
 				}
 
 				ReadState.TRAILER -> {
-					parseRequire(nextTlv.value.size == 2) { "Malformed Secure Messaging APDU" }
-					nextTlv.value.copyInto(statusBytes)
+					parseRequire(length == 2) { "Malformed Secure Messaging APDU" }
+					statusOffset = pos
 				}
 
 				ReadState.MAC -> {
-					parseRequire(nextTlv.value.size == 8) { "Malformed Secure Messaging APDU" }
-					nextTlv.value.copyInto(macObject)
+					parseRequire(length == MAC_SIZE) { "Malformed Secure Messaging APDU" }
+					macOffset = pos
+					macDataLength = doOffset
 				}
 			}
+
+			pos += length
 		}
 
 		// after reading everything, the state must be MAC
 		parseRequire(state == ReadState.MAC) { "Malformed Secure Messaging APDU (parser state=$state)" }
 
 		// Calculate MAC for verification
-		val cmac = getCMAC(secureMessagingSSC)
-		var mac = ByteArray(cmac.macSize)
-
-		synchronized(cmac) {
-			val macData = ByteArrayOutputStream()
-
-			tlv.asList().dropLast(1).forEach { macData.write(it.toBER()) }
-
-			val paddedData = pad(macData.toByteArray(), 16)
-			cmac.update(paddedData, 0, paddedData.size)
-
-			cmac.doFinal(mac, 0)
-			mac = ByteUtils.copy(mac, 0, 8)!!
-		}
+		val mac = calculateMAC(secureMessagingSSC, null, response, macDataLength)
 
 		// Verify MAC
-		if (!ByteUtils.compare(mac, macObject)) {
+		var macDiff = 0
+		for (i in 0 until MAC_SIZE) {
+			macDiff = macDiff or (mac[i].toInt() xor response[macOffset + i].toInt())
+		}
+		if (macDiff != 0) {
 			throw SecureMessagingCryptoException("Secure Messaging MAC verification failed")
 		}
 
-		val baos = ByteArrayOutputStream(responseNoTrailer.size)
 		// Decrypt data
-		if (encDataObject != null) {
-			val c = getCipher(secureMessagingSSC, Cipher.DECRYPT_MODE)
-			val dataDecrypted = c.doFinal(encDataObject)
-			if (withPadding) {
-				baos.write(unpad(dataDecrypted))
-			} else {
-				baos.write(dataDecrypted)
-			}
-		} else if (plainDataObject != null) {
-			baos.write(plainDataObject)
+		val result: ByteArray
+		if (encDataOffset >= 0) {
+			val dataDecrypted = decryptData(response, encDataOffset, encDataLength, secureMessagingSSC)
+			val dataLength = if (withPadding) unpaddedLength(dataDecrypted) else dataDecrypted.size
+			result = dataDecrypted.copyOf(dataLength + 2)
+		} else if (plainDataOffset >= 0) {
+			result = ByteArray(plainDataLength + 2)
+			System.arraycopy(response, plainDataOffset, result, 0, plainDataLength)
+		} else {
+			result = ByteArray(2)
 		}
 
 		// Add status code
-		baos.write(statusBytes)
+		System.arraycopy(response, statusOffset, result, result.size - 2, 2)
 
-		return baos.toByteArray()
+		return result
 	}
 
 	//
@@ -380,109 +425,138 @@ class SecureMessaging(
 	//
 
 	/**
-	 * Gets the cipher for de/encryption.
+	 * Encrypts the data with ISO/IEC 7816-4 padding applied.
 	 *
+	 * @param data the unpadded data
 	 * @param smssc the Secure Messaging Send Sequence Counter
-	 * @param mode the mode indicating de/encryption
-	 * @return the cipher
-	 * @throws Exception the exception
+	 * @return the cryptogram
 	 */
-	@Throws(Exception::class)
-	private fun getCipher(
-		smssc: BigInteger,
-		mode: Int,
-	): Cipher {
+	private fun encryptPadded(
+		data: ByteArray,
+		smssc: Long,
+	): ByteArray {
 		try {
-			val c = Cipher.getInstance("AES/CBC/NoPadding")
-			val key: Key = SecretKeySpec(keyENC, "AES")
-			val iv = getCipherIV(smssc)
-			val algoPara = IvParameterSpec(iv)
-
-			c.init(mode, key, algoPara)
+			cbcCipher.init(Cipher.ENCRYPT_MODE, encKey, IvParameterSpec(getCipherIV(smssc)))
+			// as padding is mandatory, the result will contain an extra block if the data is a multiple of the block size
+			val padLength = BLOCK_SIZE - data.size % BLOCK_SIZE
+			val result = ByteArray(data.size + padLength)
+			val numWritten = cbcCipher.update(data, 0, data.size, result, 0)
+			cbcCipher.doFinal(PADDING, 0, padLength, result, numWritten)
+
+			return result
+		} catch (ex: Exception) {
+			throw SecureMessagingCryptoException(ex.message ?: "Failed to encrypt data.", ex)
+		}
+	}
 
-			return c
+	/**
+	 * Decrypts the cryptogram contained in the given buffer.
+	 *
+	 * @param smssc the Secure Messaging Send Sequence Counter
+	 * @return the decrypted data including padding
+	 */
+	private fun decryptData(
+		input: ByteArray,
+		offset: Int,
+		length: Int,
+		smssc: Long,
+	): ByteArray {
+		try {
+			cbcCipher.init(Cipher.DECRYPT_MODE, encKey, IvParameterSpec(getCipherIV(smssc)))
+			return cbcCipher.doFinal(input, offset, length)
 		} catch (ex: Exception) {
-			throw SecureMessagingCryptoException(ex.message ?: "Failed to get and initialize cipher.", ex)
+			throw SecureMessagingCryptoException(ex.message ?: "Failed to decrypt data.", ex)
 		}
 	}
 
 	/**
 	 * Gets the Initialization Vector (IV) for the cipher.
+	 * The returned array is reused for the next invocation.
 	 *
 	 * @param smssc Secure Messaging Send Sequence Counter
 	 * @return Initialization Vector
-	 * @throws Exception
 	 */
-	@Throws(Exception::class)
-	private fun getCipherIV(smssc: BigInteger): ByteArray {
+	private fun getCipherIV(smssc: Long): ByteArray {
 		try {
-			val c = Cipher.getInstance("AES/ECB/NoPadding")
-			val key: Key = SecretKeySpec(keyENC, "AES")
-
-			c.init(Cipher.ENCRYPT_MODE, key)
-
-			return c.doFinal(smssc.toSSCBytes())
+			ivCipher.doFinal(getSSCBytes(smssc), 0, BLOCK_SIZE, ivBytes, 0)
+			return ivBytes
 		} catch (ex: Exception) {
 			throw SecureMessagingCryptoException(ex.message ?: "Failed to get IV.", ex)
 		}
 	}
 
 	/**
-	 * Gets the CMAC.
+	 * Calculates the CMAC over the SSC and the padded header and data.
+	 * The returned array is reused for the next invocation.
 	 *
 	 * @param smssc Secure Messaging Send Sequence Counter
-	 * @return CMAC
+	 * @param header Header to authenticate, or `null` if there is none
+	 * @param data Buffer containing the data objects to authenticate
+	 * @param dataLength Number of bytes from the start of the buffer to authenticate
+	 * @return CMAC, of which the first 8 bytes are used
 	 */
-	private fun getCMAC(smssc: BigInteger): CMac {
+	private fun calculateMAC(
+		smssc: Long,
+		header: ByteArray?,
+		data: ByteArray,
+		dataLength: Int,
+	): ByteArray {
 		try {
-			val cmac = CMac(AESEngine())
-			cmac.init(KeyParameter(keyMAC))
-			val smsscBytes = smssc.toSSCBytes()
-			cmac.update(smsscBytes, 0, smsscBytes.size)
+			cmac.reset()
+			cmac.update(getSSCBytes(smssc), 0, BLOCK_SIZE)
+			if (header != null) {
+				updatePadded(header, header.size)
+			}
+			if (dataLength > 0) {
+				updatePadded(data, dataLength)
+			}
+			cmac.doFinal(macBytes, 0)
 
-			return cmac
+			return macBytes
 		} catch (ex: Exception) {
 			throw SecureMessagingCryptoException(ex.message ?: "Failed to calculate CMAC.", ex)
 		}
 	}
 
-	//
-	// ISO/IEC 7816-4 padding functions
-	//
+	private fun updatePadded(
+		data: ByteArray,
+		length: Int,
+	) {
+		cmac.update(data, 0, length)
+		cmac.update(PADDING, 0, BLOCK_SIZE - length % BLOCK_SIZE)
+	}
 
 	/**
-	 * Padding the data.
-	 *
-	 * @param data Unpadded data
-	 * @param blockSize Block size
-	 * @return Padded data
+	 * Encodes the SSC as 16 byte big endian number.
+	 * The returned array is reused for the next invocation.
 	 */
-	private fun pad(
-		data: ByteArray,
-		blockSize: Int,
-	): ByteArray {
-		// as padding is mandatory, the result will contain an extra empty block in case the data is already a multiple of the block size
-		val result = ByteArray(data.size + (blockSize - data.size % blockSize))
-		System.arraycopy(data, 0, result, 0, data.size)
-		result[data.size] = PAD
-
-		return result
+	private fun getSSCBytes(smssc: Long): ByteArray {
+		var value = smssc
+		for (i in BLOCK_SIZE - 1 downTo BLOCK_SIZE - 8) {
+			sscBytes[i] = value.toByte()
+			value = value ushr 8
+		}
+		return sscBytes
 	}
 
+	//
+	// ISO/IEC 7816-4 padding functions
+	//
+
 	/**
-	 * Unpadding the data.
+	 * Determines the length of the data without padding.
 	 *
 	 * @param data Padded data
-	 * @return Unpadded data
+	 * @return Length of the unpadded data
 	 */
-	private fun unpad(data: ByteArray): ByteArray {
+	private fun unpaddedLength(data: ByteArray): Int {
 		for (i in data.indices.reversed()) {
 			if (data[i] == PAD) {
-				return ByteUtils.copy(data, 0, i)!!
+				return i
 			}
 		}
 
-		return data
+		return data.size
 	}
 
 	private fun parseRequire(
@@ -0,0 +1,188 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.ifd.protocol.pace.crypto
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import org.openecard.bouncycastle.asn1.x9.ECNamedCurveTable
+import org.openecard.bouncycastle.crypto.AsymmetricCipherKeyPair
+import org.openecard.bouncycastle.crypto.generators.ECKeyPairGenerator
+import org.openecard.bouncycastle.crypto.params.ECKeyGenerationParameters
+import org.openecard.bouncycastle.crypto.params.ECNamedDomainParameters
+import org.openecard.bouncycastle.jce.spec.ECNamedCurveParameterSpec
+import org.openecard.common.OpenecardProperties
+import org.openecard.common.util.SecureRandomFactory
+import org.openecard.crypto.common.asn1.eac.StandardizedDomainParameters
+import java.security.SecureRandom
+import java.util.ArrayDeque
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicBoolean
+
+private val LOG = KotlinLogging.logger { }
+
+/**
+ * Pool of ephemeral EC key pairs on the standardized domain parameters of PACE.
+ *
+ * Generating a key pair costs a point multiplication, which is noticeable on slow machines while the user waits for
+ * the PACE run to complete. The pool keeps a few key pairs per curve, which are generated by a background thread of
+ * low priority. The pools of the standardized curves are filled when the PACE protocol is loaded, see
+ * [prefillStandardizedCurves], other curves are added when they are used for the first time. Each key pair is handed
+ * out only once. When the pool of a curve is empty, the key pair is generated by the caller.
+ *
+ * The number of key pairs per curve is configured with the property `pace.key-pool-size`, a value of 0 disables the
+ * pool.
+ */
+object PACEKeyPairPool {
+	private const val DEFAULT_SIZE = 2
+
+	private val rand: SecureRandom = SecureRandomFactory.create(32)
+	private val pools = ConcurrentHashMap<String, CurvePool>()
+	private val worker: ExecutorService =
+		Executors.newSingleThreadExecutor { r ->
+			Thread(r, "PACE Key Pool").apply {
+				isDaemon = true
+				priority = Thread.MIN_PRIORITY
+			}
+		}
+
+	private val maxKeys: Int by lazy {
+		val key = "pace.key-pool-size"
+		val value = OpenecardProperties.getProperty(key) ?: return@lazy DEFAULT_SIZE
+		val intValue = value.trim().toIntOrNull()
+		if (intValue == null || intValue < 0) {
+			LOG.warn { "Error in config file, value of $key is malformed." }
+			DEFAULT_SIZE
+		} else {
+			intValue
+		}
+	}
+
+	private class CurvePool(
+		val spec: ECNamedCurveParameterSpec,
+	) {
+		val keys = ArrayDeque<AsymmetricCipherKeyPair>()
+		val refilling = AtomicBoolean()
+	}
+
+	/**
+	 * Schedules the generation of key pairs for the given curve, so that the pool is filled before it is used.
+	 *
+	 * @param spec Named curve to generate key pairs for.
+	 */
+	@JvmStatic
+	fun prefill(spec: ECNamedCurveParameterSpec) {
+		if (maxKeys > 0) {
+			refill(pool(spec))
+		}
+	}
+
+	/**
+	 * Schedules the generation of key pairs for all elliptic curves of the standardized PACE domain parameters.
+	 */
+	@JvmStatic
+	fun prefillStandardizedCurves() {
+		for (index in StandardizedDomainParameters.EC_INDICES) {
+			val spec = StandardizedDomainParameters(index).parameter
+			if (spec is ECNamedCurveParameterSpec) {
+				prefill(spec)
+			}
+		}
+	}
+
+	/**
+	 * Takes a key pair for the given curve out of the pool and schedules the generation of a replacement.
+	 *
+	 * @param spec Named curve the key pair belongs to.
+	 * @return A key pair which has not been handed out before.
+	 */
+	@JvmStatic
+	fun take(spec: ECNamedCurveParameterSpec): AsymmetricCipherKeyPair {
+		if (maxKeys == 0) {
+			return generate(spec)
+		}
+
+		val pool = pool(spec)
+		val keyPair = synchronized(pool) { pool.keys.pollFirst() }
+		refill(pool)
+		return keyPair ?: generate(spec).also {
+			LOG.debug { "No precomputed key pair available for curve ${spec.name}." }
+		}
+	}
+
+	/**
+	 * Gets the number of precomputed key pairs for the given curve.
+	 */
+	internal fun available(spec: ECNamedCurveParameterSpec): Int {
+		val pool = pools[spec.name.lowercase()] ?: return 0
+		return synchronized(pool) { pool.keys.size }
+	}
+
+	/**
+	 * Removes all precomputed key pairs.
+	 */
+	@JvmStatic
+	fun clear() {
+		for (pool in pools.values) {
+			synchronized(pool) {
+				pool.keys.clear()
+			}
+		}
+	}
+
+	private fun pool(spec: ECNamedCurveParameterSpec): CurvePool =
+		pools.computeIfAbsent(spec.name.lowercase()) { CurvePool(spec) }
+
+	private fun refill(pool: CurvePool) {
+		if (!pool.refilling.compareAndSet(false, true)) {
+			return
+		}
+		try {
+			worker.execute {
+				try {
+					while (synchronized(pool) { pool.keys.size } < maxKeys) {
+						val keyPair = generate(pool.spec)
+						synchronized(pool) {
+							pool.keys.addLast(keyPair)
+						}
+					}
+				} catch (ex: RuntimeException) {
+					LOG.warn(ex) { "Failed to precompute key pair for curve ${pool.spec.name}." }
+				} finally {
+					pool.refilling.set(false)
+				}
+			}
+		} catch (ex: RejectedExecutionException) {
+			pool.refilling.set(false)
+		}
+	}
+
+	private fun generate(spec: ECNamedCurveParameterSpec): AsymmetricCipherKeyPair {
+		val curveOid = ECNamedCurveTable.getOID(spec.name)
+		val domainParams = ECNamedDomainParameters(curveOid, spec.curve, spec.g, spec.n, spec.h, spec.seed)
+		val gen = ECKeyPairGenerator()
+		gen.init(ECKeyGenerationParameters(domainParams, rand))
+		return gen.generateKeyPair()
+	}
+}
@@ -0,0 +1,122 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.ifd.protocol.pace
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import org.openecard.bouncycastle.crypto.engines.AESEngine
+import org.openecard.bouncycastle.crypto.macs.CMac
+import org.openecard.bouncycastle.crypto.params.KeyParameter
+import org.openecard.common.util.StringUtils
+import org.testng.Assert
+import org.testng.annotations.Test
+import java.io.ByteArrayOutputStream
+import javax.crypto.Cipher
+import javax.crypto.spec.IvParameterSpec
+import javax.crypto.spec.SecretKeySpec
+
+private val LOG = KotlinLogging.logger { }
+
+/**
+ * Measures how many APDUs per second can be protected and unprotected by [SecureMessaging].
+ * The test is disabled by default, as it is only meant to be run manually when working on the SM engine.
+ */
+class SecureMessagingThroughputTest {
+	private val keyEnc = StringUtils.toByteArray("68 40 6B 41 62 10 05 63 D9 C9 01 A6 15 4D 29 01", true)
+	private val keyMac = StringUtils.toByteArray("73 FF 26 87 84 F7 2A F8 33 FD C9 46 40 49 AF C9", true)
+
+	@Test(enabled = false)
+	fun measureReadBinaryRoundTrip() {
+		// READ BINARY with 223 bytes of response data, which is what fits into a short APDU after SM
+		val command = StringUtils.toByteArray("00B00000DF")
+		val responseData = ByteArray(0xDF) { it.toByte() }
+
+		val warmup = 20_000
+		val iterations = 200_000
+		val sm = SecureMessaging(keyMac, keyEnc)
+		var ssc = 0L
+
+		val start = System.nanoTime()
+		for (i in 0 until warmup + iterations) {
+			if (i == warmup) {
+				LOG.info { "Warmup finished." }
+			}
+			sm.encrypt(command)
+			ssc += 2
+			val result = sm.decrypt(protectResponse(responseData, ssc))
+			Assert.assertEquals(result.size, responseData.size + 2)
+		}
+		val duration = System.nanoTime() - start
+
+		val apdusPerSecond = (warmup + iterations) * 1_000_000_000.0 / duration
+		LOG.info { "Secure Messaging throughput: %.0f APDUs/s (encrypt + decrypt)".format(apdusPerSecond) }
+	}
+
+	/**
+	 * Creates a protected response the way the card does it, as the [SecureMessaging] class only implements the
+	 * terminal side.
+	 */
+	private fun protectResponse(
+		data: ByteArray,
+		ssc: Long,
+	): ByteArray {
+		val sscBytes = ByteArray(16)
+		for (i in 0 until 8) {
+			sscBytes[15 - i] = (ssc ushr (8 * i)).toByte()
+		}
+
+		val key = SecretKeySpec(keyEnc, "AES")
+		val ivCipher = Cipher.getInstance("AES/ECB/NoPadding")
+		ivCipher.init(Cipher.ENCRYPT_MODE, key)
+		val cipher = Cipher.getInstance("AES/CBC/NoPadding")
+		cipher.init(Cipher.ENCRYPT_MODE, key, IvParameterSpec(ivCipher.doFinal(sscBytes)))
+		val encrypted = cipher.doFinal(pad(data))
+
+		val dos = ByteArrayOutputStream()
+		dos.write(0x87)
+		dos.write(0x81)
+		dos.write(encrypted.size + 1)
+		dos.write(0x01)
+		dos.write(encrypted)
+		dos.write(byteArrayOf(0x99.toByte(), 0x02, 0x90.toByte(), 0x00))
+
+		val cmac = CMac(AESEngine())
+		cmac.init(KeyParameter(keyMac))
+		cmac.update(sscBytes, 0, sscBytes.size)
+		val macInput = pad(dos.toByteArray())
+		cmac.update(macInput, 0, macInput.size)
+		val mac = ByteArray(cmac.macSize)
+		cmac.doFinal(mac, 0)
+
+		dos.write(byteArrayOf(0x8E.toByte(), 0x08))
+		dos.write(mac, 0, 8)
+		dos.write(byteArrayOf(0x90.toByte(), 0x00))
+		return dos.toByteArray()
+	}
+
+	private fun pad(data: ByteArray): ByteArray {
+		val result = ByteArray(data.size + (16 - data.size % 16))
+		data.copyInto(result)
+		result[data.size] = 0x80.toByte()
+		return result
+	}
+}
@@ -0,0 +1,63 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.ifd.protocol.pace.crypto
+
+import org.openecard.bouncycastle.crypto.params.ECPrivateKeyParameters
+import org.openecard.bouncycastle.crypto.params.ECPublicKeyParameters
+import org.openecard.bouncycastle.jce.ECNamedCurveTable
+import org.testng.Assert
+import org.testng.annotations.Test
+import java.math.BigInteger
+
+class PACEKeyPairPoolTest {
+	@Test
+	fun testKeyPairsAreValidAndUnique() {
+		PACEKeyPairPool.clear()
+		val spec = ECNamedCurveTable.getParameterSpec("BrainpoolP256r1")
+
+		val seen = mutableSetOf<BigInteger>()
+		repeat(10) {
+			val keyPair = PACEKeyPairPool.take(spec)
+			val d = (keyPair.private as ECPrivateKeyParameters).d
+			val q = (keyPair.public as ECPublicKeyParameters).q
+			Assert.assertEquals(q, spec.g.multiply(d).normalize())
+			Assert.assertTrue(seen.add(d), "Key pair has been handed out twice.")
+		}
+	}
+
+	@Test
+	fun testStandardizedCurvesPrefilled() {
+		PACEKeyPairPool.clear()
+		// curve not used by the other tests, so no refill is running for it
+		val spec = ECNamedCurveTable.getParameterSpec("secp384r1")
+		Assert.assertEquals(PACEKeyPairPool.available(spec), 0)
+
+		PACEKeyPairPool.prefillStandardizedCurves()
+		// the pool is filled without any key pair being taken
+		val deadline = System.currentTimeMillis() + 30_000
+		while (PACEKeyPairPool.available(spec) < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20)
+		}
+		Assert.assertEquals(PACEKeyPairPool.available(spec), 2)
+	}
+}
@@ -72,6 +72,8 @@ abstract class AbstractNFCCard(
 
 	override val isContactless: Boolean = true
 
+	override val isThreadBound: Boolean = false
+
 	@Throws(SCIOException::class)
 	override fun openLogicalChannel(): SCIOChannel =
 		throw SCIOException("Logical channels are not supported.", SCIOErrorCode.SCARD_E_UNSUPPORTED_FEATURE)
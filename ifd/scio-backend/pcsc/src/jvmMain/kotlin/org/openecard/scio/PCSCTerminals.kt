@@ -354,8 +354,10 @@ class PCSCTerminals internal constructor(
 
 		/**
 		 * Wait for events in the system.
-		 * The SmartcardIO wait function only reacts on card events, new and removed terminals go unseen. in order to
-		 * fix this, we wait only a short time and check the terminal list periodically.
+		 * The wait blocks in `SCardGetStatusChange` on all readers and the PnP notification pseudo reader of the
+		 * watcher's own context, so that events are reported immediately and no requests are made while nothing
+		 * happens. As not every PC/SC stack reports new and removed terminals this way, the terminal list is
+		 * compared after each wait slice of [WAIT_DELTA] as well.
 		 *
 		 * @param timeout Timeout values as in [.waitForChange].
 		 * @return The first value is the changed flag . It is `true` if a change the terminals happened,
@@ -368,8 +370,6 @@ class PCSCTerminals internal constructor(
 		 */
 		@Throws(CardException::class, SCIOException::class)
 		fun internalWait(timeout: Long): Pair<Boolean, Boolean> {
-			// the SmartcardIO wait function only reacts on card events, new and removed terminals go unseen
-			// to fix this, we wait only a short time and check the terminal list periodically
 			var timeout = timeout
 			require(timeout >= 0) { "Negative timeout value given." }
 			if (timeout == 0L) {
@@ -392,18 +392,14 @@ class PCSCTerminals internal constructor(
 				}
 
 				try {
-					// check if there is something new on the card side
-					// due to the wait call blocking every other smartcard operation, we only wait for the actual events
-					// very shortly and sleep for the rest of the time
-					var change = own.terminals.waitForChange(1)
+					// the watcher has its own context, so blocking here does not delay other smartcard operations
+					val change = own.terminals.waitForChange(waitTime)
 					if (change) {
 						return Pair(true, false)
 					}
-					sleep(waitTime)
-					// try again after sleeping
-					change = own.terminals.waitForChange(1)
-					if (change) {
-						return Pair(true, false)
+					if (Thread.interrupted()) {
+						val msg = "Wait interrupted by another thread."
+						throw SCIOException(msg, SCIOErrorCode.SCARD_E_SERVICE_STOPPED)
 					}
 				} catch (ex: CardException) {
 					when (PCSCExceptionExtractor.getCode(ex)) {
@@ -457,12 +453,12 @@ class PCSCTerminals internal constructor(
 				}
 				val sizeBefore = newTermNames.size
 				if (sizeBefore != terminalList!!.size) {
-					return Pair(false, false)
+					return Pair(true, false)
 				}
 				newTermNames.addAll(terminalList!!)
 				val sizeAfter = newTermNames.size
 				if (sizeBefore != sizeAfter) {
-					return Pair(false, false)
+					return Pair(true, false)
 				}
 			}
 		}
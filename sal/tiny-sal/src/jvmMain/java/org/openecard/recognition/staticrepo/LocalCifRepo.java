@@ -24,17 +24,21 @@ package org.openecard.recognition.staticrepo;
 
 import iso.std.iso_iec._24727.tech.schema.CardInfoType;
 import iso.std.iso_iec._24727.tech.schema.GetCardInfoOrACDResponse;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
@@ -62,8 +66,17 @@ public class LocalCifRepo implements GetCardInfoOrACD {
 
     private static final Logger LOG = LoggerFactory.getLogger(LocalCifRepo.class);
 
+    // binary snapshot of the CIFs written by the cifs module at build time
+    private static final String SNAPSHOT_FILE = "cifs.bin";
+    private static final int SNAPSHOT_MAGIC = 0x4F454353; // OECS
+    private static final int SNAPSHOT_VERSION = 1;
+
     private final WSMarshaller m;
+    private final Set<String> cardTypes;
+    // documents and serialized CIFs which are not converted to a snapshot yet
     private final HashMap<String, Document> cifs = new HashMap<>();
+    private final HashMap<String, SerializedCif> serializedCifs = new HashMap<>();
+    private final ConcurrentHashMap<String, CifSnapshot> snapshots = new ConcurrentHashMap<>();
 
     public LocalCifRepo(final WSMarshaller m) throws IOException, WSMarshallerException, SAXException {
 	this.m = m;
@@ -75,26 +88,88 @@ public class LocalCifRepo implements GetCardInfoOrACD {
 	String fileNames = conf.getProperty("cifFiles");
 	String[] files = fileNames.split(",");
 
+	HashMap<String, SerializedCif> snapshot = loadSnapshot();
 	for (final String next : files) {
-	    // load and unmarshal
-	    InputStream cifStream = getStream(next.trim());
-	    Document cifDoc = m.str2doc(cifStream);
-            String cardType = getTypeFromCIF(cifDoc);
-            // add file
-            cifs.put(cardType, cifDoc);
+	    SerializedCif serialized = snapshot.get(next.trim());
+	    if (serialized != null) {
+		serializedCifs.put(serialized.cardType, serialized);
+	    }
+	}
+	// files which are not contained in the snapshot, e.g. user supplied CIFs, are parsed afterwards, so they replace
+	// snapshot entries with the same card type
+	for (final String next : files) {
+	    String fileName = next.trim();
+	    if (! snapshot.containsKey(fileName)) {
+		InputStream cifStream = getStream(fileName);
+		Document cifDoc = m.str2doc(cifStream);
+		String cardType = getTypeFromCIF(cifDoc);
+		// add file
+		serializedCifs.remove(cardType);
+		cifs.put(cardType, cifDoc);
+	    }
 	}
+	HashSet<String> types = new HashSet<>(cifs.keySet());
+	types.addAll(serializedCifs.keySet());
+	cardTypes = Collections.unmodifiableSet(types);
+	LOG.debug("Loaded {} CIFs from the snapshot and parsed {} CIF documents.", serializedCifs.size(), cifs.size());
     }
 
-    private static InputStream getStream(String res) throws FileNotFoundException {
+    /**
+     * Reads the binary snapshot of the CIFs created at build time.
+     * The CIFs are only deserialized when they are requested. Entries whose XML file is overridden by a file from a
+     * different classpath location than the snapshot are skipped.
+     *
+     * @return The serialized CIFs keyed by the name of their XML file, or an empty map if no usable snapshot exists.
+     */
+    private static HashMap<String, SerializedCif> loadSnapshot() {
+	HashMap<String, SerializedCif> result = new HashMap<>();
+	URL snapshotUrl;
+	try {
+	    snapshotUrl = getResource(SNAPSHOT_FILE);
+	} catch (FileNotFoundException ex) {
+	    LOG.info("No CIF snapshot available, parsing all CIF documents.");
+	    return result;
+	}
+	String snapshotRoot = CifSnapshotKt.resourceRoot(snapshotUrl, SNAPSHOT_FILE);
+
+	try (DataInputStream din = new DataInputStream(new BufferedInputStream(snapshotUrl.openStream()))) {
+	    if (din.readInt() != SNAPSHOT_MAGIC || din.readInt() != SNAPSHOT_VERSION) {
+		LOG.warn("CIF snapshot has an unsupported format, parsing all CIF documents.");
+		return result;
+	    }
+	    int numEntries = din.readInt();
+	    for (int i = 0; i < numEntries; i++) {
+		String fileName = din.readUTF();
+		String cardType = din.readUTF();
+		byte[] data = new byte[din.readInt()];
+		din.readFully(data);
+		if (snapshotRoot.equals(CifSnapshotKt.resourceRoot(getResource(fileName), fileName))) {
+		    result.put(fileName, new SerializedCif(fileName, cardType, data));
+		} else {
+		    LOG.debug("CIF {} is overridden, ignoring its snapshot entry.", fileName);
+		}
+	    }
+	} catch (IOException ex) {
+	    LOG.warn("Failed to read CIF snapshot, parsing all CIF documents.", ex);
+	    result.clear();
+	}
+	return result;
+    }
+
+    private static InputStream getStream(String res) throws IOException {
+	return getResource(res).openStream();
+    }
+
+    private static URL getResource(String res) throws FileNotFoundException {
 	String prefix = "cif-repo/";
-	InputStream s = LocalCifRepo.class.getResourceAsStream(prefix + res);
-	if (s == null) {
-	    s = LocalCifRepo.class.getResourceAsStream("/" + prefix + res);
+	URL url = LocalCifRepo.class.getResource(prefix + res);
+	if (url == null) {
+	    url = LocalCifRepo.class.getResource("/" + prefix + res);
 	}
-	if (s == null) {
+	if (url == null) {
 	    throw new FileNotFoundException("Unable to load file " + res + ".");
 	}
-	return s;
+	return url;
     }
 
     private String getTypeFromCIF(Document cif) {
@@ -123,7 +198,57 @@ public class LocalCifRepo implements GetCardInfoOrACD {
     }
 
     public Set<String> getSupportedCardTypes() {
-	return Collections.unmodifiableSet(cifs.keySet());
+	return cardTypes;
+    }
+
+    /**
+     * Gets the snapshot of the CIF with the given type.
+     * The CIF is deserialized or unmarshalled when its snapshot is requested for the first time.
+     *
+     * @param cardType Card type of the CIF.
+     * @return The snapshot, or {@code null} if the repository contains no CIF for the type.
+     * @throws WSMarshallerException Thrown in case the CIF could not be unmarshalled.
+     */
+    public CifSnapshot getSnapshot(String cardType) throws WSMarshallerException {
+	CifSnapshot snapshot = snapshots.get(cardType);
+	if (snapshot == null) {
+	    synchronized (cifs) {
+		snapshot = snapshots.get(cardType);
+		if (snapshot == null) {
+		    snapshot = createSnapshot(cardType);
+		    if (snapshot != null) {
+			snapshots.put(cardType, snapshot);
+		    }
+		}
+	    }
+	}
+	return snapshot;
+    }
+
+    private CifSnapshot createSnapshot(String cardType) throws WSMarshallerException {
+	SerializedCif serialized = serializedCifs.remove(cardType);
+	if (serialized != null) {
+	    try {
+		return CifSnapshot.fromSerialized(serialized.data, m);
+	    } catch (WSMarshallerException ex) {
+		// the snapshot may be written by an incompatible version of the CIF classes
+		LOG.warn("Failed to read CIF {} from the snapshot, parsing {} instead.", cardType, serialized.fileName, ex);
+		try {
+		    cifs.put(cardType, m.str2doc(getStream(serialized.fileName)));
+		} catch (IOException | SAXException ex2) {
+		    throw new WSMarshallerException("Failed to read CIF document " + serialized.fileName + ".", ex2);
+		}
+	    }
+	}
+
+	Document cif = cifs.get(cardType);
+	if (cif == null) {
+	    return null;
+	}
+	CifSnapshot snapshot = new CifSnapshot((CardInfoType) m.unmarshal(cif), m);
+	// the snapshot replaces the DOM
+	cifs.remove(cardType);
+	return snapshot;
     }
 
     @Override
@@ -137,12 +262,12 @@ public class LocalCifRepo implements GetCardInfoOrACD {
 	    if (ECardConstants.CIF.GET_SPECIFIED.equals(parameters.getAction())) {
 		ArrayList<String> missingTypes = new ArrayList<>();
 		for (String cardType : cardTypes) {
-		    Document cif = cifs.get(cardType);
-		    if (cif == null) {
+		    CifSnapshot snapshot = getSnapshot(cardType);
+		    if (snapshot == null) {
 			missingTypes.add(cardType);
 		    } else {
-			// marshal here to receive a copy of the CIF
-			cifsResult.add((CardInfoType) m.unmarshal(cif));
+			// hand out a copy, so the snapshot stays untouched
+			cifsResult.add(snapshot.copy());
 		    }
 		}
 
@@ -154,14 +279,10 @@ public class LocalCifRepo implements GetCardInfoOrACD {
 		    result = WSHelper.makeResultError(ECardConstants.Minor.SAL.UNKNOWN_CARDTYPE, error.toString());
 		}
 	    } else if (ECardConstants.CIF.GET_OTHER.equals(parameters.getAction())) {
-		HashMap<String, Document> cifsTmp = new HashMap<>();
-		cifsTmp.putAll(cifs);
-		for (String cardType : cardTypes) {
-		    cifsTmp.remove(cardType);
-		}
-		for (Map.Entry<String, Document> e : cifsTmp.entrySet()) {
-		    Document next = e.getValue();
-		    cifsResult.add((CardInfoType) m.unmarshal(next));
+		HashSet<String> typesTmp = new HashSet<>(this.cardTypes);
+		typesTmp.removeAll(cardTypes);
+		for (String cardType : typesTmp) {
+		    cifsResult.add(getSnapshot(cardType).copy());
 		}
 	    } else {
 		result = WSHelper.makeResultError(ECardConstants.Minor.App.INT_ERROR, "Given action is unsupported.");
@@ -180,4 +301,18 @@ public class LocalCifRepo implements GetCardInfoOrACD {
 	}
     }
 
+    private static class SerializedCif {
+
+	private final String fileName;
+	private final String cardType;
+	private final byte[] data;
+
+	SerializedCif(String fileName, String cardType, byte[] data) {
+	    this.fileName = fileName;
+	    this.cardType = cardType;
+	    this.data = data;
+	}
+
+    }
+
 }
@@ -24,28 +24,86 @@ package org.openecard.recognition.statictree;
 
 import iso.std.iso_iec._24727.tech.schema.GetRecognitionTree;
 import iso.std.iso_iec._24727.tech.schema.GetRecognitionTreeResponse;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
 import org.openecard.common.util.FileUtils;
+import org.openecard.recognition.staticrepo.CifSnapshotKt;
+import org.openecard.recognition.staticrepo.SnapshotInputStream;
 import org.openecard.ws.marshal.WSMarshaller;
 import org.openecard.ws.marshal.WSMarshallerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
 
 /**
+ * Recognition tree loaded from the classpath.
+ * The binary snapshot of the tree created at build time is preferred, the XML document is only parsed when the
+ * snapshot is missing, can not be read or the document is overridden by one from a different classpath location.
  *
  * @author Tobias Wich
  */
 public class LocalFileTree implements org.openecard.ws.GetRecognitionTree {
 
+    private static final Logger LOG = LoggerFactory.getLogger(LocalFileTree.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x4F454354; // OECT
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_FILE = "/StaticTree.bin";
+    private static final String TREE_FILE = "/StaticTree.xml";
+
     private final WSMarshaller marshaller;
     private final GetRecognitionTreeResponse response;
 
     public LocalFileTree(WSMarshaller marshaller) throws WSMarshallerException, SAXException, IOException {
 	this.marshaller = marshaller;
-	// load file
-	InputStream in = FileUtils.resolveResourceAsStream(LocalFileTree.class, "/StaticTree.xml");
-	response = (GetRecognitionTreeResponse) marshaller.unmarshal(marshaller.str2doc(in));
+	GetRecognitionTreeResponse snapshot = loadSnapshot();
+	if (snapshot != null) {
+	    response = snapshot;
+	} else {
+	    // load file
+	    InputStream in = FileUtils.resolveResourceAsStream(LocalFileTree.class, TREE_FILE);
+	    response = (GetRecognitionTreeResponse) marshaller.unmarshal(marshaller.str2doc(in));
+	}
+    }
+
+    private static GetRecognitionTreeResponse loadSnapshot() {
+	try {
+	    URL url = FileUtils.resolveResourceAsURL(LocalFileTree.class, SNAPSHOT_FILE);
+	    if (url == null) {
+		LOG.info("No recognition tree snapshot available, parsing the tree document.");
+		return null;
+	    }
+	    URL treeUrl = FileUtils.resolveResourceAsURL(LocalFileTree.class, TREE_FILE);
+	    if (treeUrl != null && ! CifSnapshotKt.resourceRoot(url, SNAPSHOT_FILE)
+		    .equals(CifSnapshotKt.resourceRoot(treeUrl, TREE_FILE))) {
+		LOG.info("Recognition tree document is overridden, parsing the tree document.");
+		return null;
+	    }
+	    return readSnapshot(url.openStream());
+	} catch (IOException | ClassNotFoundException | ClassCastException ex) {
+	    LOG.warn("Failed to read recognition tree snapshot, parsing the tree document.", ex);
+	    return null;
+	}
+    }
+
+    private static GetRecognitionTreeResponse readSnapshot(InputStream in) throws IOException,
+	    ClassNotFoundException {
+	try (DataInputStream din = new DataInputStream(new BufferedInputStream(in))) {
+	    if (din.readInt() != SNAPSHOT_MAGIC || din.readInt() != SNAPSHOT_VERSION) {
+		LOG.warn("Recognition tree snapshot has an unsupported format, parsing the tree document.");
+		return null;
+	    }
+	    byte[] data = new byte[din.readInt()];
+	    din.readFully(data);
+	    try (SnapshotInputStream oin = new SnapshotInputStream(new ByteArrayInputStream(data))) {
+		return (GetRecognitionTreeResponse) oin.readObject();
+	    }
+	}
     }
 
 
@@ -26,21 +26,19 @@ import dev.icerock.moko.resources.format
 import io.github.oshai.kotlinlogging.KotlinLogging
 import iso.std.iso_iec._24727.tech.schema.BeginTransaction
 import iso.std.iso_iec._24727.tech.schema.BeginTransactionResponse
-import iso.std.iso_iec._24727.tech.schema.CardCall
 import iso.std.iso_iec._24727.tech.schema.CardInfoType
 import iso.std.iso_iec._24727.tech.schema.Connect
 import iso.std.iso_iec._24727.tech.schema.ConnectResponse
 import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType
-import iso.std.iso_iec._24727.tech.schema.DataMaskType
 import iso.std.iso_iec._24727.tech.schema.Disconnect
 import iso.std.iso_iec._24727.tech.schema.DisconnectResponse
 import iso.std.iso_iec._24727.tech.schema.EndTransaction
 import iso.std.iso_iec._24727.tech.schema.EndTransactionResponse
 import iso.std.iso_iec._24727.tech.schema.GetCardInfoOrACDResponse
+import iso.std.iso_iec._24727.tech.schema.GetStatus
+import iso.std.iso_iec._24727.tech.schema.GetStatusResponse
 import iso.std.iso_iec._24727.tech.schema.InputAPDUInfoType
-import iso.std.iso_iec._24727.tech.schema.MatchingDataType
 import iso.std.iso_iec._24727.tech.schema.RecognitionTree
-import iso.std.iso_iec._24727.tech.schema.ResponseAPDUType
 import iso.std.iso_iec._24727.tech.schema.Transmit
 import iso.std.iso_iec._24727.tech.schema.TransmitResponse
 import jdk.internal.joptsimple.internal.Messages.message
@@ -50,16 +48,13 @@ import org.openecard.common.ECardConstants
 import org.openecard.common.WSHelper
 import org.openecard.common.WSHelper.checkResult
 import org.openecard.common.WSHelper.minorIsOneOf
-import org.openecard.common.apdu.common.CardResponseAPDU
+import org.openecard.common.interfaces.CIFProvider
 import org.openecard.common.interfaces.CardRecognition
 import org.openecard.common.interfaces.Environment
 import org.openecard.common.interfaces.RecognitionException
-import org.openecard.common.tlv.TLV
-import org.openecard.common.tlv.TLVException
-import org.openecard.common.util.ByteUtils
+import org.openecard.common.util.FileUtils.homeConfigDir
 import org.openecard.common.util.FileUtils.readLinesFromConfig
 import org.openecard.common.util.FileUtils.resolveResourceAsStream
-import org.openecard.common.util.IntegerUtils
 import org.openecard.gui.message.DialogType
 import org.openecard.i18n.I18N
 import org.openecard.recognition.RecognitionProperties.action
@@ -68,11 +63,13 @@ import org.openecard.recognition.statictree.LocalFileTree
 import org.openecard.ws.GetCardInfoOrACD
 import org.openecard.ws.GetRecognitionTree
 import org.openecard.ws.marshal.WSMarshallerFactory.Companion.createInstance
+import java.io.File
 import java.io.IOException
 import java.io.InputStream
 import java.math.BigInteger
 import java.util.Locale
 import java.util.Properties
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.concurrent.thread
 
 private val LOG = KotlinLogging.logger { }
@@ -109,6 +106,13 @@ class CardRecognitionImpl
 			resp.getRecognitionTree()
 		}
 
+		/**
+		 * Recognition tree compiled into a decision graph.
+		 */
+		private val program: RecognitionProgram by lazy {
+			RecognitionProgram.compile(tree)
+		}
+
 		private val cifRepo: GetCardInfoOrACD by lazy {
 			LOG.info { "Initializing CIF Repo." }
 			val cifMarshaller = createInstance()
@@ -152,6 +156,29 @@ class CardRecognitionImpl
 			}
 		}
 
+		/**
+		 * Recognition results of previously seen cards, or `null` if the cache is disabled.
+		 */
+		private val recognitionCache: RecognitionCache? by lazy {
+			val size = RecognitionProperties.getProperty(CACHE_SIZE_KEY)?.trim()?.toIntOrNull() ?: 0
+			if (size <= 0) {
+				null
+			} else {
+				val file =
+					if (RecognitionProperties.getProperty(CACHE_PERSISTENT_KEY)?.trim().toBoolean()) {
+						try {
+							File(homeConfigDir, CACHE_FILE)
+						} catch (ex: IOException) {
+							LOG.warn(ex) { "Failed to determine config directory, recognition cache is not persisted." }
+							null
+						}
+					} else {
+						null
+					}
+				RecognitionCache(file, size, recognitionVersion(tree, supportedCards))
+			}
+		}
+
 		private val cardImagesMap = Properties()
 
 		/**
@@ -164,7 +191,7 @@ class CardRecognitionImpl
 			cardImagesMap.load(resolveResourceAsStream(CardRecognitionImpl::class.java, IMAGE_PROPERTIES))
 
 			thread {
-				tree
+				program
 				LOG.debug { "Done determining loading tree." }
 				// request all cifs to fill list of supported cards
 				supportedCards
@@ -195,24 +222,38 @@ class CardRecognitionImpl
 			return oids
 		}
 
-		override val cardInfos: List<CardInfoType>
-			get() {
-				// TODO: add caching
+		/**
+		 * All CIFs of the repository, the list and its elements are shared between all callers.
+		 */
+		private val cardInfoViews: List<CardInfoType> by lazy {
+			val repo = this.cifRepo
+			if (repo is LocalCifRepo) {
+				// use the snapshots directly instead of copying every CIF
+				repo.supportedCardTypes.mapNotNull { repo.getSnapshot(it)?.view() }
+			} else {
 				val req =
 					iso.std.iso_iec._24727.tech.schema
 						.GetCardInfoOrACD()
 				req.setAction(ECardConstants.CIF.GET_OTHER)
-				val res = cifRepo.getCardInfoOrACD(req)
+				val res = repo.getCardInfoOrACD(req)
 				// checkout response if it contains our cardinfo
-				val cifs = res.getCardInfoOrCapabilityInfo()
-				val result = ArrayList<CardInfoType>()
-				for (next in cifs) {
-					if (next is CardInfoType) {
-						result.add(next)
-					}
-				}
-				return result
+				res.getCardInfoOrCapabilityInfo().filterIsInstance<CardInfoType>()
 			}
+		}
+
+		override val cardInfos: List<CardInfoType>
+			get() = cardInfoViews
+
+		/**
+		 * Translated card names keyed by card type and language.
+		 */
+		private val cardNames = ConcurrentHashMap<String, String>()
+
+		/**
+		 * CIF provider the entries of [cardNames] have been resolved with.
+		 */
+		@Volatile
+		private var cardNamesProvider: CIFProvider? = null
 
 		override fun getCardInfo(type: String): CardInfoType? {
 			var cif = env.cifProvider?.getCardInfo(type)
@@ -253,17 +294,41 @@ class CardRecognitionImpl
 		 * string `Unknown card type` is returned.
 		 */
 		override fun getTranslatedCardName(cardType: String): String {
-			val info = getCardInfo(cardType)
-
 			val userLocale = Locale.getDefault()
 			val langCode = userLocale.language
-			var enFallback = "Unknown card type."
+			val key = "$langCode $cardType"
+			val provider = env.cifProvider
+			if (provider !== cardNamesProvider) {
+				// names resolved with a different provider may be outdated
+				synchronized(cardNames) {
+					if (provider !== cardNamesProvider) {
+						cardNames.clear()
+						cardNamesProvider = provider
+					}
+				}
+			}
+			cardNames[key]?.let { return it }
+
+			val info = getCardInfo(cardType)
+			val unknownName = "Unknown card type."
 
 			if (info == null) {
 				// we can identify the card but do not have a card info file for it
-				return enFallback
+				return unknownName
 			}
 
+			val name = translateCardName(info, langCode, unknownName)
+			cardNames[key] = name
+			return name
+		}
+
+		private fun translateCardName(
+			info: CardInfoType,
+			langCode: String,
+			unknownName: String,
+		): String {
+			var enFallback = unknownName
+
 			for (typ in info.getCardType().getCardTypeName()) {
 				if (typ.getLang().equals("en", ignoreCase = true)) {
 					enFallback = typ.getValue()
@@ -341,7 +406,7 @@ class CardRecognitionImpl
 			val slotHandle = connect(ctx, ifdName, slot)
 			try {
 				// recognise card
-				val type = treeCalls(slotHandle, tree.getCardCall())
+				val type = recognizeWithCache(ctx, ifdName, slot, slotHandle)
 				// build result or throw exception if it is null or unsupported
 				if (type == null || !isSupportedCard(type)) {
 					return null
@@ -354,6 +419,69 @@ class CardRecognitionImpl
 			}
 		}
 
+		/**
+		 * Recognizes the card by confirming a cached result.
+		 * The whole tree is evaluated if no result for the ATR of the card is known, or the cached result could not be
+		 * confirmed.
+		 */
+		@Throws(RecognitionException::class)
+		private fun recognizeWithCache(
+			ctx: ByteArray,
+			ifdName: String,
+			slot: BigInteger,
+			slotHandle: ByteArray,
+		): String? {
+			val run = RecognitionRun { transmit(slotHandle, it.apdu, it.acceptableTrailers) }
+			val cache = recognitionCache
+			val atr = if (cache != null) getAtr(ctx, ifdName, slot) else null
+			if (cache == null || atr == null) {
+				return program.recognize(run, null)
+			}
+
+			val cached = cache.get(atr)
+			if (cached != null) {
+				if (program.confirm(run, cached)) {
+					LOG.debug { "Recognized card type ${cached.cardType} from recognition cache." }
+					return cached.cardType
+				}
+				LOG.debug { "Cached card type ${cached.cardType} could not be confirmed, evaluating whole tree." }
+				cache.remove(atr)
+			}
+
+			val path = mutableListOf<RecognitionStep>()
+			val type = program.recognize(run, path)
+			LOG.debug { "Recognition finished after ${run.numTransmitted} APDUs." }
+			if (type != null) {
+				cache.put(atr, RecognitionCacheEntry(type, path))
+			}
+			return type
+		}
+
+		/**
+		 * Gets the ATR of the card in the given slot.
+		 *
+		 * @return The ATR or `null` if it could not be determined.
+		 */
+		private fun getAtr(
+			ctx: ByteArray,
+			ifdName: String,
+			slot: BigInteger,
+		): ByteArray? {
+			val req = GetStatus()
+			req.setContextHandle(ctx)
+			req.setIFDName(ifdName)
+			val res = env.dispatcher!!.safeDeliver(req) as GetStatusResponse
+			if (res.getResult().getResultMajor() != ECardConstants.Major.OK) {
+				return null
+			}
+			return res
+				.getIFDStatus()
+				.firstOrNull { it.getIFDName() == ifdName }
+				?.getSlotStatus()
+				?.firstOrNull { it.getIndex() == slot }
+				?.getATRorATS()
+		}
+
 		@Throws(RecognitionException::class)
 		private fun checkResult(r: Result) {
 			if (r.getResultMajor() == ECardConstants.Major.ERROR) {
@@ -487,15 +615,13 @@ class CardRecognitionImpl
 		private fun transmit(
 			slotHandle: ByteArray,
 			input: ByteArray,
-			results: List<ResponseAPDUType>,
+			acceptableTrailers: List<ByteArray>,
 		): ByteArray? {
 			val t = Transmit()
 			t.setSlotHandle(slotHandle)
 			val apdu = InputAPDUInfoType()
 			apdu.setInputAPDU(input)
-			for (result in results) {
-				apdu.getAcceptableStatusCode().add(result.getTrailer())
-			}
+			apdu.getAcceptableStatusCode().addAll(acceptableTrailers)
 			t.getInputAPDUInfo().add(apdu)
 
 			val r = env.dispatcher!!.safeDeliver(t) as TransmitResponse
@@ -505,163 +631,12 @@ class CardRecognitionImpl
 				null
 			}
 		}
-
-		private fun branch2list(first: CardCall): List<CardCall> {
-			val calls = mutableListOf<CardCall>()
-			calls.add(first)
-
-			var next = first
-			// while next is a select call
-			while (next.getResponseAPDU()[0].getBody() == null) {
-				// a select only has one call in its conclusion
-				next = next.getResponseAPDU()[0].getConclusion().getCardCall()[0]
-				calls.add(next)
-			}
-
-			return calls
-		}
-
-		@Throws(RecognitionException::class)
-		private fun treeCalls(
-			slotHandle: ByteArray,
-			calls: List<CardCall>,
-		): String? {
-			for (c in calls) {
-				// make list of next feature (aka branch)
-				val branch = branch2list(c)
-				// execute selects and then matcher, matcher decides over success
-				for (next in branch) {
-					val matcher = if (next.getResponseAPDU()[0].getBody() != null) true else false
-					val resultBytes = transmit(slotHandle, next.getCommandAPDU(), next.getResponseAPDU())
-					// break when outcome is wrong
-					if (resultBytes == null) {
-						break
-					}
-					// get command bytes and trailer
-					val result = CardResponseAPDU.getData(resultBytes)
-					val trailer = CardResponseAPDU.getTrailer(resultBytes)
-					// if select, only one response exists
-					if (!matcher && !next.getResponseAPDU()[0].getTrailer().contentEquals(trailer)) {
-						// break when outcome is wrong
-						break
-					} else if (!matcher) {
-						// trailer matches expected response from select, continue
-						continue
-					} else {
-						// matcher command, loop through responses
-						for (r in next.getResponseAPDU()) {
-							// next response, when outcome is wrong
-							if (!r.getTrailer().contentEquals(trailer)) {
-								continue
-							}
-							// check internals for match
-							if (checkDataObject(r.getBody(), result)) {
-								if (r.getConclusion().getRecognizedCardType() != null) {
-									// type recognised
-									return r.getConclusion().getRecognizedCardType()
-								} else {
-									// type dependent on subtree
-									return treeCalls(slotHandle, r.getConclusion().getCardCall())
-								}
-							}
-						}
-					}
-				}
-			}
-
-			return null
-		}
-
-		private fun checkDataObject(
-			matcher: DataMaskType,
-			result: ByteArray,
-		): Boolean {
-			if (matcher.getTag() != null) {
-				try {
-					val tlv = TLV.fromBER(result)
-					val tagNum = ByteUtils.toLong(matcher.getTag())
-					val nextTlvs = tlv.findNextTags(tagNum)
-					for (next in nextTlvs) {
-						if (matcher.getDataObject() != null) {
-							val outcome = checkDataObject(matcher.getDataObject(), next.value)
-							if (outcome) {
-								return true
-							}
-						} else if (matcher.getMatchingData() != null) {
-							val outcome = checkMatchingData(matcher.getMatchingData(), next.value)
-							if (outcome) {
-								return true
-							}
-						} else {
-							error { "No data object or matching data found in DataMaskType." }
-							return false
-						}
-					}
-				} catch (ex: TLVException) {
-					// no TLV, hence no tag to match
-					return false
-				}
-			}
-
-			if (matcher.getDataObject() != null) {
-				return checkDataObject(matcher.getDataObject(), result)
-			} else if (matcher.getMatchingData() != null) {
-				return checkMatchingData(matcher.getMatchingData(), result)
-			} else {
-				error { "No data object or matching data found in DataMaskType." }
-				return false
-			}
-		}
-
-		private fun checkMatchingData(
-			matcher: MatchingDataType,
-			result: ByteArray,
-		): Boolean {
-			// get values
-			var offsetBytes = matcher.getOffset()
-			var lengthBytes = matcher.getLength()
-			val valueBytes = matcher.getMatchingValue()
-			var maskBytes = matcher.getMask()
-
-			// convert values for convenience
-			if (offsetBytes == null) {
-				offsetBytes = byteArrayOf(0x00.toByte(), 0x00.toByte())
-			}
-			val offset = ByteUtils.toInteger(offsetBytes)
-			if (lengthBytes == null) {
-				lengthBytes = IntegerUtils.toByteArray(valueBytes.size)
-			}
-			val length = ByteUtils.toInteger(lengthBytes)
-			if (maskBytes == null) {
-				maskBytes = ByteArray(valueBytes.size)
-				for (i in maskBytes.indices) {
-					maskBytes[i] = 0xFF.toByte()
-				}
-			}
-
-			// some basic integrity checks
-			if (maskBytes.size != valueBytes.size) {
-				return false
-			}
-			if (valueBytes.size != length) {
-				return false
-			}
-			if (result.size < length + offset) {
-				return false
-			}
-
-			// check
-			for (i in offset..<length + offset) {
-				if ((maskBytes[i - offset].toInt() and result[i].toInt()) != valueBytes[i - offset].toInt()) {
-					return false
-				}
-			}
-
-			return true
-		}
 	}
 
 private const val IMAGE_PROPERTIES = "/card-images/card-images.properties"
+private const val CACHE_SIZE_KEY = "org.openecard.recognition.cache.size"
+private const val CACHE_PERSISTENT_KEY = "org.openecard.recognition.cache.persistent"
+private const val CACHE_FILE = "recognition-cache.properties"
 
 /**
  * Gets stream of the given image in the directory card-images.
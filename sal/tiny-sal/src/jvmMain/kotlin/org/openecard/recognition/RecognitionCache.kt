@@ -0,0 +1,236 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.recognition
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import iso.std.iso_iec._24727.tech.schema.CardCall
+import iso.std.iso_iec._24727.tech.schema.DataMaskType
+import iso.std.iso_iec._24727.tech.schema.RecognitionTree
+import org.openecard.common.util.ByteUtils
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.Properties
+
+private val LOG = KotlinLogging.logger { }
+
+/**
+ * One step of a recognition path.
+ * The step references the branch in the list of card calls of the current tree level and the response of the
+ * matcher call of that branch which lead to the next level.
+ *
+ * @property call Index of the card call in the current tree level.
+ * @property response Index of the matching response of the matcher call of the branch.
+ */
+internal data class RecognitionStep(
+	val call: Int,
+	val response: Int,
+)
+
+/**
+ * Recognised card type together with the path through the recognition tree which confirmed it.
+ */
+internal class RecognitionCacheEntry(
+	val cardType: String,
+	val path: List<RecognitionStep>,
+) {
+	fun encode(): String = cardType + TYPE_SEP + path.joinToString(STEP_SEP) { "${it.call}$IDX_SEP${it.response}" }
+
+	companion object {
+		fun decode(value: String): RecognitionCacheEntry? {
+			val typeEnd = value.lastIndexOf(TYPE_SEP)
+			if (typeEnd <= 0 || typeEnd == value.length - 1) {
+				return null
+			}
+			val path =
+				value.substring(typeEnd + 1).split(STEP_SEP).map { step ->
+					val idx = step.split(IDX_SEP)
+					if (idx.size != 2) {
+						return null
+					}
+					val call = idx[0].toIntOrNull() ?: return null
+					val response = idx[1].toIntOrNull() ?: return null
+					RecognitionStep(call, response)
+				}
+			return RecognitionCacheEntry(value.substring(0, typeEnd), path)
+		}
+	}
+}
+
+/**
+ * Bounded cache of recognition results keyed by the ATR of the card.
+ *
+ * The entries are only hints, each hit must be confirmed by replaying the stored path on the card. The cache is bound
+ * to a version string identifying the recognition tree and the set of supported card types. When the version
+ * differs, the persisted entries are discarded.
+ *
+ * @param file File the entries are persisted in, or `null` if the cache is only held in memory.
+ * @param maxEntries Maximum number of entries, the least recently used entry is evicted first.
+ * @param version Version of the recognition tree and CIF repository the entries are valid for.
+ */
+internal class RecognitionCache(
+	private val file: File?,
+	private val maxEntries: Int,
+	private val version: String,
+) {
+	private val entries =
+		object : LinkedHashMap<String, RecognitionCacheEntry>(16, 0.75f, true) {
+			override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, RecognitionCacheEntry>?): Boolean =
+				size > maxEntries
+		}
+
+	init {
+		load()
+	}
+
+	@Synchronized
+	fun get(atr: ByteArray): RecognitionCacheEntry? = entries[ByteUtils.toHexString(atr)]
+
+	@Synchronized
+	fun put(
+		atr: ByteArray,
+		entry: RecognitionCacheEntry,
+	) {
+		val key = ByteUtils.toHexString(atr)!!
+		val old = entries.put(key, entry)
+		if (old == null || old.encode() != entry.encode()) {
+			store()
+		}
+	}
+
+	@Synchronized
+	fun remove(atr: ByteArray) {
+		if (entries.remove(ByteUtils.toHexString(atr)) != null) {
+			store()
+		}
+	}
+
+	private fun load() {
+		if (file == null || !file.isFile) {
+			return
+		}
+		try {
+			val p = Properties()
+			FileInputStream(file).use { p.load(it) }
+			if (p.getProperty(VERSION_KEY) != version) {
+				LOG.info { "Recognition tree or CIF repository changed, discarding recognition cache." }
+				return
+			}
+			for (key in p.stringPropertyNames()) {
+				if (key != VERSION_KEY) {
+					RecognitionCacheEntry.decode(p.getProperty(key))?.let { entries[key] = it }
+				}
+			}
+			LOG.debug { "Loaded ${entries.size} entries from the recognition cache." }
+		} catch (ex: IOException) {
+			LOG.warn(ex) { "Failed to load recognition cache from '$file'." }
+		}
+	}
+
+	private fun store() {
+		if (file == null) {
+			return
+		}
+		try {
+			val p = Properties()
+			p.setProperty(VERSION_KEY, version)
+			for ((key, entry) in entries) {
+				p.setProperty(key, entry.encode())
+			}
+			val tmp = File(file.parentFile, file.name + ".tmp")
+			FileOutputStream(tmp).use { p.store(it, "Open eCard recognition cache") }
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+		} catch (ex: IOException) {
+			LOG.warn(ex) { "Failed to store recognition cache in '$file'." }
+		}
+	}
+}
+
+/**
+ * Calculates a version string for the given recognition tree and card types.
+ * The version changes whenever a command, response or conclusion in the tree changes, or a card type is added to or
+ * removed from the supported types.
+ *
+ * @param tree Recognition tree.
+ * @param cardTypes Supported card types.
+ * @return Hex encoded digest of the tree and card types.
+ */
+internal fun recognitionVersion(
+	tree: RecognitionTree,
+	cardTypes: Set<String>,
+): String {
+	val md = MessageDigest.getInstance("SHA-256")
+	fun updateBytes(data: ByteArray?) {
+		if (data == null) {
+			md.update(0)
+		} else {
+			md.update(1)
+			md.update(data)
+		}
+	}
+
+	fun updateString(str: String?) = updateBytes(str?.toByteArray(Charsets.UTF_8))
+
+	fun updateMask(mask: DataMaskType?) {
+		if (mask == null) {
+			updateBytes(null)
+			return
+		}
+		updateBytes(mask.tag)
+		val data = mask.matchingData
+		if (data != null) {
+			updateBytes(data.offset)
+			updateBytes(data.length)
+			updateBytes(data.mask)
+			updateBytes(data.matchingValue)
+		}
+		updateMask(mask.dataObject)
+	}
+
+	fun updateCalls(calls: List<CardCall>) {
+		md.update(ByteBuffer.allocate(Int.SIZE_BYTES).putInt(calls.size).array())
+		for (call in calls) {
+			updateBytes(call.commandAPDU)
+			for (r in call.responseAPDU) {
+				updateBytes(r.trailer)
+				updateMask(r.body)
+				updateString(r.conclusion?.recognizedCardType)
+				updateCalls(r.conclusion?.cardCall ?: listOf())
+			}
+		}
+	}
+
+	updateCalls(tree.cardCall)
+	cardTypes.sorted().forEach { updateString(it) }
+	return ByteUtils.toHexString(md.digest())!!
+}
+
+private const val VERSION_KEY = "version"
+private const val TYPE_SEP = '|'
+private const val STEP_SEP = ","
+private const val IDX_SEP = ":"
@@ -0,0 +1,446 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.recognition
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import iso.std.iso_iec._24727.tech.schema.CardCall
+import iso.std.iso_iec._24727.tech.schema.DataMaskType
+import iso.std.iso_iec._24727.tech.schema.MatchingDataType
+import iso.std.iso_iec._24727.tech.schema.RecognitionTree
+import org.openecard.common.interfaces.RecognitionException
+import org.openecard.common.tlv.TLV
+import org.openecard.common.tlv.TLVException
+import org.openecard.common.util.ByteUtils
+
+private val LOG = KotlinLogging.logger { }
+
+/**
+ * Recognition tree compiled into an immutable decision graph.
+ *
+ * Each level of the tree consists of branches. A branch is made of the select calls leading to a matcher call, and
+ * the outcomes of the matcher. The data masks of the outcomes are decoded once into byte matchers, and identical
+ * commands are shared between all branches, so that a [RecognitionRun] can reuse their responses.
+ *
+ * @property branches Branches of the top level of the tree.
+ */
+internal class RecognitionProgram private constructor(
+	val branches: List<RecognitionBranch>,
+) {
+	/**
+	 * Evaluates the program on the card of the given run.
+	 *
+	 * @param run Recognition run transmitting the commands to the card.
+	 * @param path List receiving the steps leading to the recognized type, or `null` if not needed.
+	 * @return The recognized card type, or `null` if the card is unknown.
+	 */
+	@Throws(RecognitionException::class)
+	fun recognize(
+		run: RecognitionRun,
+		path: MutableList<RecognitionStep>?,
+	): String? = evaluate(run, branches, path)
+
+	/**
+	 * Replays the path of a previous recognition.
+	 * At each level the branches before the one on the path are executed as well, as a match in one of them would take
+	 * precedence in a full evaluation. Branches after the path are skipped.
+	 *
+	 * @param run Recognition run transmitting the commands to the card.
+	 * @param entry Previous recognition result.
+	 * @return `true` if the card yields the same outcomes as recorded in the path, `false` otherwise.
+	 */
+	@Throws(RecognitionException::class)
+	fun confirm(
+		run: RecognitionRun,
+		entry: RecognitionCacheEntry,
+	): Boolean {
+		var level = branches
+		for ((i, step) in entry.path.withIndex()) {
+			val branch = level.getOrNull(step.call) ?: return false
+			for (idx in 0 until step.call) {
+				if (level[idx].evaluate(run) >= 0) {
+					return false
+				}
+			}
+			if (branch.evaluate(run) != step.response) {
+				return false
+			}
+
+			val outcome = branch.outcomes[step.response]
+			if (i == entry.path.size - 1) {
+				return outcome.cardType == entry.cardType
+			}
+			level = outcome.next
+		}
+		return false
+	}
+
+	private fun evaluate(
+		run: RecognitionRun,
+		level: List<RecognitionBranch>,
+		path: MutableList<RecognitionStep>?,
+	): String? {
+		for ((idx, branch) in level.withIndex()) {
+			val outcomeIdx = branch.evaluate(run)
+			if (outcomeIdx >= 0) {
+				path?.add(RecognitionStep(idx, outcomeIdx))
+				val outcome = branch.outcomes[outcomeIdx]
+				// either the type is recognised, or it depends on the subtree
+				return outcome.cardType ?: evaluate(run, outcome.next, path)
+			}
+		}
+		return null
+	}
+
+	companion object {
+		/**
+		 * Compiles the given recognition tree.
+		 *
+		 * @param tree Recognition tree to compile.
+		 * @return The compiled program.
+		 */
+		fun compile(tree: RecognitionTree): RecognitionProgram =
+			RecognitionProgram(Compiler().compileLevel(tree.cardCall))
+	}
+}
+
+/**
+ * Branch of the recognition tree consisting of select calls and a matcher call.
+ *
+ * @property selects Select calls which must yield the expected trailer before the matcher is executed.
+ * @property matcher Matcher call, or `null` if the branch is malformed and never matches.
+ * @property outcomes Possible outcomes of the matcher, in the order they are evaluated.
+ */
+internal class RecognitionBranch(
+	val selects: List<RecognitionSelect>,
+	val matcher: RecognitionCommand?,
+	val outcomes: List<RecognitionOutcome>,
+) {
+	/**
+	 * Executes the branch on the card.
+	 *
+	 * @return Index of the first matching outcome, or -1 if no outcome matches.
+	 */
+	@Throws(RecognitionException::class)
+	fun evaluate(run: RecognitionRun): Int {
+		val m = matcher ?: return -1
+		for (select in selects) {
+			val response = run.execute(select.command) ?: return -1
+			if (!select.matchesTrailer(response)) {
+				return -1
+			}
+		}
+
+		val response = run.execute(m) ?: return -1
+		val data = run.responseData(response)
+		for ((idx, outcome) in outcomes.withIndex()) {
+			if (outcome.matchesTrailer(response) && outcome.body.matches(data)) {
+				return idx
+			}
+		}
+		return -1
+	}
+}
+
+/**
+ * Select call of a branch.
+ *
+ * @property command Command to transmit.
+ * @property trailer Trailer indicating a successful selection.
+ */
+internal class RecognitionSelect(
+	val command: RecognitionCommand,
+	private val trailer: ByteArray,
+) {
+	fun matchesTrailer(response: ByteArray): Boolean = trailerEquals(trailer, response)
+}
+
+/**
+ * Possible outcome of a matcher call.
+ *
+ * @property body Matcher for the response data.
+ * @property cardType Recognized card type, or `null` if the type depends on the following branches.
+ * @property next Branches evaluated when this outcome matches and no type is recognized.
+ */
+internal class RecognitionOutcome(
+	private val trailer: ByteArray,
+	val body: ResponseMatcher,
+	val cardType: String?,
+	val next: List<RecognitionBranch>,
+) {
+	fun matchesTrailer(response: ByteArray): Boolean = trailerEquals(trailer, response)
+}
+
+/**
+ * Command APDU of the recognition tree.
+ * Instances are shared for all occurrences of the same command with the same acceptable status codes.
+ *
+ * @property apdu Command APDU.
+ * @property acceptableTrailers Status codes accepted by the IFD when transmitting the command.
+ * @property kind Effect of the command on the selection state of the card.
+ */
+internal class RecognitionCommand(
+	val apdu: ByteArray,
+	val acceptableTrailers: List<ByteArray>,
+	val kind: CommandKind,
+) {
+	/**
+	 * Hex representation of the command, used to identify equal commands.
+	 */
+	val id: String = ByteUtils.toHexString(apdu)!!
+
+	override fun equals(other: Any?): Boolean = other is RecognitionCommand && other.id == id
+
+	override fun hashCode(): Int = id.hashCode()
+}
+
+/**
+ * Effect of a command on the selection state of the card.
+ */
+internal enum class CommandKind {
+	/**
+	 * Command selecting a file independent of the current state, e.g. selection of the MF or by DF name.
+	 */
+	ABSOLUTE_SELECT,
+
+	/**
+	 * Command only reading data, without changing the current selection.
+	 * Reading with a short EF identifier implicitly selects the EF and is therefore no read command in this sense.
+	 */
+	READ,
+
+	/**
+	 * Any other command which may change the state of the card.
+	 */
+	OTHER,
+	;
+
+	companion object {
+		fun of(apdu: ByteArray): CommandKind {
+			if (apdu.size < 4 || apdu[0] != 0x00.toByte()) {
+				return OTHER
+			}
+			val ins = apdu[1].toInt() and 0xFF
+			val p1 = apdu[2].toInt() and 0xFF
+			val p2 = apdu[3].toInt() and 0xFF
+			return when (ins) {
+				0xA4 -> {
+					val lc = if (apdu.size > 5) apdu[4].toInt() and 0xFF else 0
+					val data = apdu.copyOfRange(minOf(apdu.size, 5), minOf(apdu.size, 5 + lc))
+					if (p1 == 0x04 || p1 == 0x08 || (p1 == 0x00 && (data.isEmpty() || data.contentEquals(MF_FID)))) {
+						ABSOLUTE_SELECT
+					} else {
+						OTHER
+					}
+				}
+				// bit 8 of P1 indicates a short EF identifier
+				0xB0 -> if ((p1 and 0x80) == 0) READ else OTHER
+				0xCA -> READ
+				// P1-P2 identify the EF unless they refer to the current EF or DF
+				0xB1, 0xCB -> if ((p1 == 0x00 && p2 == 0x00) || (p1 == 0x3F && p2 == 0xFF)) READ else OTHER
+				// bits 8 to 4 of P2 encode a short EF identifier, and only absolute record numbers leave the record
+				// pointer untouched
+				0xB2, 0xB3 -> if ((p2 and 0xF8) == 0 && (p2 and 0x07) == 0x04) READ else OTHER
+				else -> OTHER
+			}
+		}
+	}
+}
+
+/**
+ * View on the data of a response, with a lazily parsed TLV structure.
+ */
+internal class ResponseData(
+	private val source: ByteArray,
+	private val offset: Int,
+	val length: Int,
+) {
+	private var parsed = false
+	private var tlvValue: TLV? = null
+
+	operator fun get(idx: Int): Byte = source[offset + idx]
+
+	/**
+	 * The data parsed as TLV sequence, or `null` if the data is no valid TLV sequence.
+	 */
+	val tlv: TLV?
+		get() {
+			if (!parsed) {
+				parsed = true
+				tlvValue =
+					try {
+						TLV.fromBER(source.copyOfRange(offset, offset + length))
+					} catch (ex: TLVException) {
+						null
+					}
+			}
+			return tlvValue
+		}
+}
+
+/**
+ * Precompiled matcher for the body of a response.
+ */
+internal sealed interface ResponseMatcher {
+	fun matches(data: ResponseData): Boolean
+
+	/**
+	 * Matcher for malformed data masks which never matches.
+	 */
+	object Never : ResponseMatcher {
+		override fun matches(data: ResponseData): Boolean = false
+	}
+
+	/**
+	 * Compares the masked bytes at the given offset with the expected value.
+	 */
+	class Bytes(
+		private val offset: Int,
+		private val value: ByteArray,
+		private val mask: ByteArray,
+	) : ResponseMatcher {
+		override fun matches(data: ResponseData): Boolean {
+			if (data.length < value.size + offset) {
+				return false
+			}
+			for (i in value.indices) {
+				if ((mask[i].toInt() and data[offset + i].toInt()) != value[i].toInt()) {
+					return false
+				}
+			}
+			return true
+		}
+	}
+
+	/**
+	 * Evaluates the inner matcher on the values of all TLV objects with the given tag on the top level of the data.
+	 * If none of them matches, the inner matcher is evaluated on the complete data.
+	 */
+	class Tag(
+		private val tag: Long,
+		private val inner: ResponseMatcher,
+	) : ResponseMatcher {
+		override fun matches(data: ResponseData): Boolean {
+			// no TLV, hence no tag to match
+			var next = data.tlv ?: return false
+			while (true) {
+				if (next.tagNumWithClass == tag) {
+					val value = next.value
+					if (inner.matches(ResponseData(value, 0, value.size))) {
+						return true
+					}
+				}
+				next = next.next ?: break
+			}
+			return inner.matches(data)
+		}
+	}
+}
+
+/**
+ * Compiler translating the JAXB representation of the recognition tree.
+ */
+private class Compiler {
+	private val commands = HashMap<String, RecognitionCommand>()
+
+	fun compileLevel(calls: List<CardCall>): List<RecognitionBranch> = calls.map { compileBranch(it) }
+
+	private fun compileBranch(first: CardCall): RecognitionBranch {
+		val selects = mutableListOf<RecognitionSelect>()
+		var next = first
+		// while next is a select call, a select only has one call in its conclusion
+		while (next.responseAPDU[0].body == null) {
+			val response = next.responseAPDU[0]
+			val following = response.conclusion?.cardCall?.firstOrNull()
+			if (following == null) {
+				LOG.error { "Select call ${ByteUtils.toHexString(next.commandAPDU)} is not followed by a matcher." }
+				return RecognitionBranch(listOf(), null, listOf())
+			}
+			selects.add(RecognitionSelect(command(next), response.trailer))
+			next = following
+		}
+
+		val outcomes =
+			next.responseAPDU.map { r ->
+				val conclusion = r.conclusion
+				RecognitionOutcome(
+					r.trailer,
+					compileMask(r.body),
+					conclusion?.recognizedCardType,
+					conclusion?.cardCall?.let { compileLevel(it) } ?: listOf(),
+				)
+			}
+		return RecognitionBranch(selects, command(next), outcomes)
+	}
+
+	private fun command(call: CardCall): RecognitionCommand {
+		val acceptable = call.responseAPDU.map { it.trailer }
+		val key = ByteUtils.toHexString(call.commandAPDU) + acceptable.joinToString("") { ByteUtils.toHexString(it)!! }
+		return commands.getOrPut(key) {
+			RecognitionCommand(call.commandAPDU, acceptable, CommandKind.of(call.commandAPDU))
+		}
+	}
+
+	private fun compileMask(mask: DataMaskType?): ResponseMatcher {
+		if (mask == null) {
+			return ResponseMatcher.Never
+		}
+		val inner =
+			if (mask.dataObject != null) {
+				compileMask(mask.dataObject)
+			} else if (mask.matchingData != null) {
+				compileMatchingData(mask.matchingData)
+			} else {
+				LOG.error { "No data object or matching data found in DataMaskType." }
+				return ResponseMatcher.Never
+			}
+
+		return if (mask.tag != null) {
+			ResponseMatcher.Tag(ByteUtils.toLong(mask.tag), inner)
+		} else {
+			inner
+		}
+	}
+
+	private fun compileMatchingData(matcher: MatchingDataType): ResponseMatcher {
+		val valueBytes = matcher.matchingValue
+		val offset = ByteUtils.toInteger(matcher.offset ?: byteArrayOf(0x00, 0x00))
+		val length = matcher.length?.let { ByteUtils.toInteger(it) } ?: valueBytes.size
+		val maskBytes = matcher.mask ?: ByteArray(valueBytes.size) { 0xFF.toByte() }
+
+		// some basic integrity checks
+		if (maskBytes.size != valueBytes.size || valueBytes.size != length) {
+			return ResponseMatcher.Never
+		}
+		return ResponseMatcher.Bytes(offset, valueBytes, maskBytes)
+	}
+}
+
+private fun trailerEquals(
+	trailer: ByteArray,
+	response: ByteArray,
+): Boolean =
+	trailer.size == 2 &&
+		trailer[0] == response[response.size - 2] &&
+		trailer[1] == response[response.size - 1]
+
+private val MF_FID = byteArrayOf(0x3F, 0x00)
@@ -0,0 +1,179 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.recognition
+
+import org.openecard.common.interfaces.RecognitionException
+import java.util.IdentityHashMap
+
+/**
+ * Function transmitting a command of the recognition tree to the card.
+ * The function returns the response APDU, or `null` if no response could be obtained.
+ */
+internal fun interface RecognitionTransmitter {
+	@Throws(RecognitionException::class)
+	fun transmit(command: RecognitionCommand): ByteArray?
+}
+
+/**
+ * State of a single recognition of a card.
+ *
+ * The run memoises the responses of the card, keyed by the command and the commands which lead to the current
+ * selection state. A command is only transmitted if its response is unknown. In that case the card is first brought
+ * into the expected selection state, which is achieved by repeating the commands since the last absolute select.
+ * That way, branches of the tree sharing the same select prefixes or reading the same data do not cause further
+ * APDUs.
+ *
+ * @param transmitter Function sending the commands to the card.
+ */
+internal class RecognitionRun(
+	private val transmitter: RecognitionTransmitter,
+) {
+	private val responses = HashMap<String, ByteArray?>()
+
+	// memoised responses are the same instances, so their data is only parsed once
+	private val responseData = IdentityHashMap<ByteArray, ResponseData>()
+
+	/**
+	 * Selection state of the tree evaluation, this is the list of state changing commands since the last absolute
+	 * select.
+	 */
+	private var state: List<RecognitionCommand> = listOf()
+
+	/**
+	 * Actual selection state of the card.
+	 */
+	private var cardState: List<RecognitionCommand> = listOf()
+
+	/**
+	 * Number of APDUs transmitted to the card in this run.
+	 */
+	var numTransmitted: Int = 0
+		private set
+
+	/**
+	 * Executes the command in the current selection state.
+	 *
+	 * @param command Command to execute.
+	 * @return The response APDU, or `null` if no response could be obtained.
+	 * @throws RecognitionException Thrown in case the card is not accessible anymore.
+	 */
+	@Throws(RecognitionException::class)
+	fun execute(command: RecognitionCommand): ByteArray? {
+		val absolute = command.kind == CommandKind.ABSOLUTE_SELECT
+		val key = makeKey(if (absolute) listOf() else state, command)
+
+		val response =
+			if (responses.containsKey(key)) {
+				responses[key]
+			} else {
+				val synced = absolute || restoreState()
+				val response = send(command)
+				cardState = nextState(cardState, command, response)
+				// a response obtained in an unknown state must not be reused
+				if (synced) {
+					responses[key] = response
+				}
+				response
+			}
+
+		state = nextState(state, command, response)
+		return response
+	}
+
+	/**
+	 * Gets the data of the given response, without the status bytes.
+	 * The view is shared between all matchers evaluating the same response, so that its TLV structure is only parsed
+	 * once.
+	 *
+	 * @param response Response returned by [execute].
+	 * @return View on the response data.
+	 */
+	fun responseData(response: ByteArray): ResponseData =
+		responseData.getOrPut(response) { ResponseData(response, 0, response.size - 2) }
+
+	/**
+	 * Brings the card into the selection state expected by the tree evaluation.
+	 *
+	 * @return `true` if the card is in the expected state, `false` if the state could not be restored.
+	 */
+	@Throws(RecognitionException::class)
+	private fun restoreState(): Boolean {
+		if (cardState == state) {
+			return true
+		}
+
+		val start =
+			if (cardState.size < state.size && state.subList(0, cardState.size) == cardState) {
+				// card is behind the expected state
+				cardState.size
+			} else if (state.isNotEmpty() && state[0].kind == CommandKind.ABSOLUTE_SELECT) {
+				0
+			} else {
+				// initial state of the card can not be restored
+				return false
+			}
+
+		for (next in state.subList(start, state.size)) {
+			send(next)
+		}
+		cardState = state
+		return true
+	}
+
+	@Throws(RecognitionException::class)
+	private fun send(command: RecognitionCommand): ByteArray? {
+		numTransmitted++
+		return transmitter.transmit(command)
+	}
+}
+
+private fun makeKey(
+	state: List<RecognitionCommand>,
+	command: RecognitionCommand,
+): String {
+	val b = StringBuilder()
+	for (next in state) {
+		b.append(next.id).append('/')
+	}
+	return b.append(command.id).toString()
+}
+
+private fun nextState(
+	state: List<RecognitionCommand>,
+	command: RecognitionCommand,
+	response: ByteArray?,
+): List<RecognitionCommand> =
+	when (command.kind) {
+		CommandKind.READ -> state
+		// a failed select leaves the current selection untouched, so it only extends the history
+		CommandKind.ABSOLUTE_SELECT -> if (isSuccess(response)) listOf(command) else state + command
+		CommandKind.OTHER -> state + command
+	}
+
+private fun isSuccess(response: ByteArray?): Boolean {
+	if (response == null || response.size < 2) {
+		return false
+	}
+	val sw1 = response[response.size - 2].toInt() and 0xFF
+	return sw1 == 0x90 || sw1 == 0x61 || sw1 == 0x62 || sw1 == 0x63
+}
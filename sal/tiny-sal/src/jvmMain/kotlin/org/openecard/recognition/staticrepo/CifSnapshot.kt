@@ -0,0 +1,217 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.recognition.staticrepo
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import iso.std.iso_iec._24727.tech.schema.CardInfoType
+import org.openecard.ws.marshal.WSMarshaller
+import org.openecard.ws.marshal.WSMarshallerException
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.ObjectInputFilter
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.io.ObjectStreamClass
+import java.net.URL
+import java.util.Locale
+
+private val LOG = KotlinLogging.logger { }
+
+/**
+ * Immutable snapshot of a CardInfo document.
+ *
+ * The document is unmarshalled only once. Copies handed out to callers which may modify the CIF are created from a
+ * serialized form of the snapshot, which is considerably cheaper than unmarshalling the DOM again. Frequently used
+ * values are indexed when the snapshot is created.
+ */
+class CifSnapshot private constructor(
+	private val cif: CardInfoType,
+	private val serialized: ByteArray?,
+	private val marshaller: WSMarshaller,
+) {
+	/**
+	 * Creates a snapshot of an unmarshalled CIF.
+	 *
+	 * @param cif Unmarshalled CIF, which is owned by the snapshot from now on.
+	 * @param marshaller Marshaller used to copy the CIF in case it can not be serialized.
+	 */
+	constructor(cif: CardInfoType, marshaller: WSMarshaller) : this(cif, serialize(cif), marshaller)
+
+	/**
+	 * Card type identifier of the CIF.
+	 */
+	val cardType: String = cif.cardType.objectIdentifier
+
+	/**
+	 * Card names of this type, keyed by the lower case language code.
+	 */
+	val cardNames: Map<String, String> =
+		cif.cardType.cardTypeName
+			.filter { it.lang != null && it.value != null }
+			.associate { it.lang.lowercase(Locale.ROOT) to it.value }
+
+	/**
+	 * Names of all DIDs in all card applications of the CIF.
+	 */
+	val didNames: Set<String> =
+		cif.applicationCapabilities
+			?.cardApplication
+			?.flatMap { app -> app.didInfo.map { it.differentialIdentity.didName } }
+			?.toSet() ?: setOf()
+
+	/**
+	 * Names of all data sets in all card applications of the CIF.
+	 */
+	val dataSetNames: Set<String> =
+		cif.applicationCapabilities
+			?.cardApplication
+			?.flatMap { app -> app.dataSetInfo.map { it.dataSetName } }
+			?.toSet() ?: setOf()
+
+	/**
+	 * Gets the shared instance of the CIF.
+	 * The returned object is a read-only view, it must not be modified. Use [copy] if modifications are needed.
+	 *
+	 * @return The CIF of this snapshot.
+	 */
+	fun view(): CardInfoType = cif
+
+	/**
+	 * Creates an independent copy of the CIF.
+	 *
+	 * @return A copy of the CIF which may be modified freely.
+	 * @throws WSMarshallerException Thrown in case the copy could not be created.
+	 */
+	@Throws(WSMarshallerException::class)
+	fun copy(): CardInfoType {
+		if (serialized != null) {
+			try {
+				SnapshotInputStream(ByteArrayInputStream(serialized)).use {
+					return it.readObject() as CardInfoType
+				}
+			} catch (ex: IOException) {
+				LOG.warn(ex) { "Failed to read serialized CIF $cardType, falling back to marshaller." }
+			} catch (ex: ClassNotFoundException) {
+				LOG.warn(ex) { "Failed to read serialized CIF $cardType, falling back to marshaller." }
+			}
+		}
+		return marshaller.unmarshal(marshaller.marshal(cif)) as CardInfoType
+	}
+
+	companion object {
+		/**
+		 * Creates a snapshot from a serialized CIF, such as the entries of the snapshot written at build time.
+		 *
+		 * @param serialized Java serialized form of the CIF.
+		 * @param marshaller Marshaller used to copy the CIF in case the serialized form can not be read again.
+		 * @return The snapshot of the CIF.
+		 * @throws WSMarshallerException Thrown in case the data does not contain a readable CIF.
+		 */
+		@JvmStatic
+		@Throws(WSMarshallerException::class)
+		fun fromSerialized(
+			serialized: ByteArray,
+			marshaller: WSMarshaller,
+		): CifSnapshot {
+			val cif =
+				try {
+					SnapshotInputStream(ByteArrayInputStream(serialized)).use { it.readObject() }
+				} catch (ex: IOException) {
+					throw WSMarshallerException("Failed to read serialized CIF.", ex)
+				} catch (ex: ClassNotFoundException) {
+					throw WSMarshallerException("Failed to read serialized CIF.", ex)
+				}
+			if (cif !is CardInfoType) {
+				throw WSMarshallerException("Serialized object is not a CIF.")
+			}
+			return CifSnapshot(cif, serialized, marshaller)
+		}
+	}
+}
+
+private fun serialize(cif: CardInfoType): ByteArray? =
+	try {
+		val out = ByteArrayOutputStream()
+		ObjectOutputStream(out).use { it.writeObject(cif) }
+		out.toByteArray()
+	} catch (ex: IOException) {
+		LOG.info(ex) { "CIF ${cif.cardType.objectIdentifier} is not serializable, copying it with the marshaller." }
+		null
+	}
+
+/**
+ * Gets the classpath location a resource has been loaded from.
+ * Snapshots are only valid for the documents located next to them, documents with the same name from another
+ * location override the snapshot.
+ *
+ * @param url URL of the resource.
+ * @param name Name of the resource relative to the classpath location.
+ * @return The URL of the resource without the resource name.
+ */
+internal fun resourceRoot(
+	url: URL,
+	name: String,
+): String = url.toString().removeSuffix(name.removePrefix("/"))
+
+/**
+ * Classes which may occur in serialized CIFs and recognition trees.
+ * Besides the generated JAXB packages, only the types used by JAXB for collections, values and wrapped elements are
+ * allowed, everything else is rejected.
+ */
+private val SNAPSHOT_FILTER: ObjectInputFilter =
+	ObjectInputFilter.Config.createFilter(
+		listOf(
+			"iso.std.iso_iec.**",
+			"oasis.names.**",
+			"org.w3.**",
+			"de.bund.bsi.**",
+			"jakarta.xml.bind.JAXBElement",
+			"javax.xml.namespace.QName",
+			"java.lang.*",
+			"java.math.*",
+			"java.util.*",
+			"!*",
+		).joinToString(";"),
+	)
+
+/**
+ * Object stream resolving the classes with the class loader of the CIF classes, which is not necessarily the
+ * loader of the caller.
+ * Only classes of the CIF and recognition tree data model are accepted, see [SNAPSHOT_FILTER].
+ */
+internal class SnapshotInputStream(
+	input: InputStream,
+) : ObjectInputStream(input) {
+	init {
+		setObjectInputFilter(SNAPSHOT_FILTER)
+	}
+
+	override fun resolveClass(desc: ObjectStreamClass): Class<*> =
+		try {
+			Class.forName(desc.name, false, CardInfoType::class.java.classLoader)
+		} catch (ex: ClassNotFoundException) {
+			super.resolveClass(desc)
+		}
+}
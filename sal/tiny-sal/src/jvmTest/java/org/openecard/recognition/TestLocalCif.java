@@ -22,12 +22,14 @@
 
 package org.openecard.recognition;
 
+import iso.std.iso_iec._24727.tech.schema.CardInfoType;
 import iso.std.iso_iec._24727.tech.schema.GetCardInfoOrACD;
 import iso.std.iso_iec._24727.tech.schema.GetCardInfoOrACDResponse;
 import java.io.IOException;
 import org.openecard.common.ECardConstants;
 import org.openecard.common.WSHelper;
 import org.openecard.common.WSHelper.WSException;
+import org.openecard.recognition.staticrepo.CifSnapshot;
 import org.openecard.recognition.staticrepo.LocalCifRepo;
 import org.openecard.ws.jaxb.JAXBMarshaller;
 import org.openecard.ws.marshal.WSMarshallerException;
@@ -58,4 +60,22 @@ public class TestLocalCif {
 	Assert.assertEquals(1, res.getCardInfoOrCapabilityInfo().size());
     }
 
+    @Test
+    public void testSnapshotCopies() throws WSMarshallerException, IOException, SAXException {
+	LocalCifRepo repo = new LocalCifRepo(new JAXBMarshaller());
+	CifSnapshot snapshot = repo.getSnapshot("http://ws.gematik.de/egk/1.0.0");
+	Assert.assertNotNull(snapshot);
+	Assert.assertSame(snapshot, repo.getSnapshot("http://ws.gematik.de/egk/1.0.0"));
+	Assert.assertFalse(snapshot.getDidNames().isEmpty());
+	Assert.assertFalse(snapshot.getDataSetNames().isEmpty());
+
+	// modifying a copy must not change the snapshot
+	CardInfoType copy = snapshot.copy();
+	Assert.assertNotSame(copy, snapshot.view());
+	int numApps = snapshot.view().getApplicationCapabilities().getCardApplication().size();
+	copy.getApplicationCapabilities().getCardApplication().clear();
+	Assert.assertEquals(numApps, snapshot.view().getApplicationCapabilities().getCardApplication().size());
+	Assert.assertEquals(numApps, snapshot.copy().getApplicationCapabilities().getCardApplication().size());
+    }
+
 }
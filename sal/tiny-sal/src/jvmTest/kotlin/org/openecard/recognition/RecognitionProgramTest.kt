@@ -0,0 +1,207 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.recognition
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import iso.std.iso_iec._24727.tech.schema.GetRecognitionTree
+import org.openecard.common.util.ByteUtils
+import org.openecard.common.util.StringUtils
+import org.openecard.recognition.statictree.LocalFileTree
+import org.openecard.ws.jaxb.JAXBMarshaller
+import org.testng.Assert
+import org.testng.annotations.Test
+
+private val LOG = KotlinLogging.logger { }
+
+private const val NPA_TYPE = "http://bsi.bund.de/cif/npa.xml"
+private const val EGK_TYPE = "http://ws.gematik.de/egk/1.0.0"
+
+/**
+ * Evaluates the compiled static recognition tree against simulated cards.
+ */
+class RecognitionProgramTest {
+	private val program: RecognitionProgram by lazy {
+		val tree = LocalFileTree(JAXBMarshaller()).getRecognitionTree(GetRecognitionTree()).recognitionTree
+		RecognitionProgram.compile(tree)
+	}
+
+	@Test
+	fun testRecognizeNpa() {
+		val card = npaCard()
+		val path = mutableListOf<RecognitionStep>()
+		val run = RecognitionRun(card)
+
+		Assert.assertEquals(program.recognize(run, path), NPA_TYPE)
+		Assert.assertEquals(run.numTransmitted, card.numCommands)
+		LOG.info { "Recognized nPA with ${run.numTransmitted} APDUs." }
+
+		// confirming the result never needs more APDUs than the recognition
+		val confirmCard = npaCard()
+		val confirmRun = RecognitionRun(confirmCard)
+		Assert.assertTrue(program.confirm(confirmRun, RecognitionCacheEntry(NPA_TYPE, path)))
+		Assert.assertTrue(confirmRun.numTransmitted <= run.numTransmitted)
+	}
+
+	@Test
+	fun testConfirmChecksPrecedingBranches() {
+		val npaPath = mutableListOf<RecognitionStep>()
+		Assert.assertEquals(program.recognize(RecognitionRun(npaCard()), npaPath), NPA_TYPE)
+		val egkPath = mutableListOf<RecognitionStep>()
+		Assert.assertEquals(program.recognize(RecognitionRun(egkCard()), egkPath), EGK_TYPE)
+
+		// a card matching both branches is recognized as the type of the first one, the other must not be confirmed
+		val bothFiles = npaCard().files + egkCard().files
+		val type = program.recognize(RecognitionRun(SimulatedCard(bothFiles)), null)
+		val other =
+			if (type == NPA_TYPE) {
+				RecognitionCacheEntry(EGK_TYPE, egkPath)
+			} else {
+				RecognitionCacheEntry(NPA_TYPE, npaPath)
+			}
+		Assert.assertFalse(program.confirm(RecognitionRun(SimulatedCard(bothFiles)), other))
+	}
+
+	@Test
+	fun testRecognizeTlvMatcher() {
+		Assert.assertEquals(program.recognize(RecognitionRun(egkCard()), null), EGK_TYPE)
+	}
+
+	@Test
+	fun testUnknownCard() {
+		val card = SimulatedCard(mapOf("3F00/2F00" to StringUtils.toByteArray("6100")))
+		val path = mutableListOf<RecognitionStep>()
+		Assert.assertNull(program.recognize(RecognitionRun(card), path))
+
+		// a cached result for another card must not be confirmed
+		Assert.assertFalse(program.confirm(RecognitionRun(npaCard()), RecognitionCacheEntry(EGK_TYPE, listOf())))
+	}
+
+	@Test
+	fun testCommandKinds() {
+		fun kind(apdu: String) = CommandKind.of(StringUtils.toByteArray(apdu))
+
+		Assert.assertEquals(kind("00A4000C023F00"), CommandKind.ABSOLUTE_SELECT)
+		Assert.assertEquals(kind("00B0000000"), CommandKind.READ)
+		Assert.assertEquals(kind("00B2010400"), CommandKind.READ)
+		// reading with a short EF identifier selects the EF
+		Assert.assertEquals(kind("00B0810000"), CommandKind.OTHER)
+		Assert.assertEquals(kind("00B2010C00"), CommandKind.OTHER)
+		Assert.assertEquals(kind("00B1011E0454020100"), CommandKind.OTHER)
+		Assert.assertEquals(kind("00B100000454020100"), CommandKind.READ)
+	}
+
+	@Test(enabled = false)
+	fun measureRecognition() {
+		val warmup = 2_000
+		val iterations = 20_000
+		var apdus = 0L
+
+		val start = System.nanoTime()
+		for (i in 0 until warmup + iterations) {
+			if (i == warmup) {
+				LOG.info { "Warmup finished." }
+			}
+			val run = RecognitionRun(npaCard())
+			Assert.assertEquals(program.recognize(run, null), NPA_TYPE)
+			apdus += run.numTransmitted
+		}
+		val duration = System.nanoTime() - start
+
+		val usPerRun = duration / 1000.0 / (warmup + iterations)
+		val apdusPerRun = apdus.toDouble() / (warmup + iterations)
+		LOG.info { "Recognition of simulated nPA: %.1f µs and %.1f APDUs per run".format(usPerRun, apdusPerRun) }
+	}
+
+	private fun egkCard(): SimulatedCard =
+		SimulatedCard(mapOf("3F00/2F11" to StringUtils.toByteArray("EF05C703010000")))
+
+	private fun npaCard(): SimulatedCard {
+		val efDir =
+			StringUtils.toByteArray(
+				"61324F0FE828BD080FA000000167455349474E500F434941207A752044462E655369676E51007" +
+					"30C4F0AA000000167455349474E61094F07A0000002471001610B4F09E80704007F00070302610C4F0AA00000016745" +
+					"5349474E",
+			)
+		return SimulatedCard(mapOf("3F00/2F00" to efDir))
+	}
+}
+
+/**
+ * Card with transparent elementary files in a file system below the MF.
+ * Only the commands needed for the recognition are supported.
+ *
+ * @param files Content of the files, keyed by the path of FIDs starting with the MF, e.g. `3F00/2F00`.
+ */
+private class SimulatedCard(
+	val files: Map<String, ByteArray>,
+) : RecognitionTransmitter {
+	private var currentDf: String? = null
+	private var currentEf: ByteArray? = null
+
+	var numCommands: Int = 0
+		private set
+
+	override fun transmit(command: RecognitionCommand): ByteArray {
+		numCommands++
+		val apdu = command.apdu
+		val p1 = apdu[2].toInt() and 0xFF
+		return when (apdu[1].toInt() and 0xFF) {
+			0xA4 -> select(p1, apdu.copyOfRange(5, 5 + (apdu[4].toInt() and 0xFF)))
+			0xB0 -> readBinary(((p1 shl 8) or (apdu[3].toInt() and 0xFF)), apdu.last().toInt() and 0xFF)
+			// only transparent files exist
+			0xB2 -> if (currentEf != null) sw(0x6981) else sw(0x6986)
+			else -> sw(0x6D00)
+		}
+	}
+
+	private fun select(
+		p1: Int,
+		data: ByteArray,
+	): ByteArray {
+		val fid = ByteUtils.toHexString(data)
+		if (p1 == 0x00 && fid == "3F00") {
+			currentDf = "3F00"
+			currentEf = null
+			return sw(0x9000)
+		}
+		val df = currentDf
+		if (p1 == 0x02 && df != null) {
+			val ef = files["$df/$fid"] ?: return sw(0x6A82)
+			currentEf = ef
+			return sw(0x9000)
+		}
+		return sw(0x6A82)
+	}
+
+	private fun readBinary(
+		offset: Int,
+		le: Int,
+	): ByteArray {
+		val ef = currentEf ?: return sw(0x6986)
+		val end = minOf(ef.size, offset + le)
+		val data = ef.copyOfRange(minOf(offset, end), end)
+		return data + if (data.size < le) sw(0x6282) else sw(0x9000)
+	}
+
+	private fun sw(sw: Int): ByteArray = byteArrayOf((sw shr 8).toByte(), sw.toByte())
+}
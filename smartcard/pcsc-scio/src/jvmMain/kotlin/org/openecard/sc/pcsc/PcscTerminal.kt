@@ -1,18 +1,14 @@
 package org.openecard.sc.pcsc
 
-import kotlinx.coroutines.coroutineScope
-import kotlinx.coroutines.isActive
+import kotlinx.coroutines.flow.first
 import org.openecard.sc.iface.PreferredCardProtocol
 import org.openecard.sc.iface.ReaderUnavailable
 import org.openecard.sc.iface.ShareMode
 import org.openecard.sc.iface.Terminal
 import org.openecard.sc.iface.TerminalConnection
 import org.openecard.sc.iface.TerminalStateType
-import java.util.concurrent.CancellationException
 import javax.smartcardio.CardTerminal
 
-private const val WAIT_INTERVAL = 500L
-
 class PcscTerminal internal constructor(
 	override val terminals: PcscTerminals,
 	override val name: String,
@@ -54,19 +50,33 @@ class PcscTerminal internal constructor(
 	): TerminalConnection = PcscTerminalConnection(this, connectInternal(protocol, shareMode))
 
 	override suspend fun waitForCardPresent() {
-		val t = getScioTerminal()
-		waitForCard {
-			mapScioError {
-				t.waitForCardPresent(WAIT_INTERVAL)
-			}
-		}
+		waitForState { it == TerminalStateType.PRESENT }
 	}
 
 	override suspend fun waitForCardAbsent() {
-		val t = getScioTerminal()
-		waitForCard {
-			mapScioError {
-				t.waitForCardAbsent(WAIT_INTERVAL)
+		waitForState { it == TerminalStateType.ABSENT }
+	}
+
+	/**
+	 * Waits until the state of this terminal published by the terminal monitor matches the predicate.
+	 *
+	 * A terminal which is not yet known to the monitor is waited for, a terminal which disappears while waiting
+	 * results in a [ReaderUnavailable] error.
+	 */
+	private suspend fun waitForState(predicate: (TerminalStateType) -> Boolean) {
+		// fail early for terminals which do not exist
+		getScioTerminal()
+		var seen = false
+		terminals.getMonitor().states.first { states ->
+			val state = states[name]
+			if (state == null) {
+				if (seen) {
+					throw ReaderUnavailable()
+				}
+				false
+			} else {
+				seen = true
+				predicate(state)
 			}
 		}
 	}
@@ -91,17 +101,3 @@ internal fun PreferredCardProtocol.toScioProtocol(): String =
 		PreferredCardProtocol.RAW -> throw IllegalArgumentException("RAW mode is not supported")
 		PreferredCardProtocol.ANY -> "*"
 	}
-
-private suspend inline fun waitForCard(crossinline waitFun: suspend () -> Boolean) =
-	coroutineScope {
-		while (true) {
-			if (!isActive) {
-				// job has been cancelled, stop loop
-				throw CancellationException("Waiting for a card event has been cancelled.")
-			}
-			if (waitFun()) {
-				// change detected
-				break
-			}
-		}
-	}
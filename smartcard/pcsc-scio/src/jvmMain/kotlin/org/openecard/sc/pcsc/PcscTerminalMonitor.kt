@@ -0,0 +1,129 @@
+package org.openecard.sc.pcsc
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import jnasmartcardio.Smartcardio
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import org.openecard.sc.iface.TerminalStateType
+import javax.smartcardio.CardException
+import javax.smartcardio.CardTerminals
+
+private val LOG = KotlinLogging.logger { }
+
+// upper bound of a single blocking wait, after which the reader list is compared and the stop flag is checked
+private const val WAIT_SLICE = 2000L
+
+// delay when the PC/SC stack reports a change which is not visible in the states, prevents busy waiting
+private const val SPURIOUS_CHANGE_DELAY = 100L
+
+/**
+ * Watches the terminals of the PC/SC system and publishes their states.
+ *
+ * The monitor uses a PC/SC context of its own and blocks in `SCardGetStatusChange` on all readers including the
+ * `\\?PnP?\Notification` pseudo reader, so that inserted cards and new readers are noticed as soon as PC/SC reports
+ * them and no requests are made while nothing happens. After each slice of [WAIT_SLICE] the reader list is compared as
+ * well, in case the PC/SC stack does not support the PnP notification.
+ */
+internal class PcscTerminalMonitor(
+	private val scio: javax.smartcardio.TerminalFactory,
+) {
+	private val mutableStates = MutableStateFlow<Map<String, TerminalStateType>>(emptyMap())
+	val states: StateFlow<Map<String, TerminalStateType>> = mutableStates.asStateFlow()
+
+	@Volatile
+	private var running = false
+	private var thread: Thread? = null
+
+	/**
+	 * Reads the initial states and starts the monitor thread.
+	 */
+	@Synchronized
+	fun start() {
+		check(thread == null) { "Monitor has already been started." }
+		running = true
+		val t =
+			Thread({ watch() }, "PCSC Terminal Monitor").apply {
+				isDaemon = true
+			}
+		thread = t
+		t.start()
+	}
+
+	/**
+	 * Stops the monitor thread. The thread terminates at the latest after the current wait slice.
+	 */
+	@Synchronized
+	fun stop() {
+		running = false
+		thread?.interrupt()
+		thread = null
+	}
+
+	private fun watch() {
+		var terminals: Smartcardio.JnaCardTerminals? = null
+		try {
+			while (running) {
+				try {
+					val t = terminals ?: openTerminals().also { terminals = it }
+					val changed = t.waitForChange(WAIT_SLICE)
+					if (!running) {
+						break
+					}
+					val current = mutableStates.value
+					if (!changed && t.list().map { it.name }.toSet() == current.keys) {
+						// nothing happened in this slice
+						continue
+					}
+					val next = readStates(t)
+					if (next != current) {
+						LOG.debug { "Terminal states changed to $next." }
+						mutableStates.value = next
+					} else if (changed) {
+						Thread.sleep(SPURIOUS_CHANGE_DELAY)
+					}
+				} catch (ex: CardException) {
+					// PC/SC service stopped or no readers available, start over with a fresh context
+					LOG.debug(ex) { "Failed to wait for terminal changes, reopening PC/SC context." }
+					closeTerminals(terminals)
+					terminals = null
+					mutableStates.value = emptyMap()
+					Thread.sleep(WAIT_SLICE)
+				} catch (ex: IllegalStateException) {
+					LOG.debug(ex) { "PC/SC context is not usable, reopening it." }
+					closeTerminals(terminals)
+					terminals = null
+					mutableStates.value = emptyMap()
+					Thread.sleep(WAIT_SLICE)
+				}
+			}
+		} catch (ex: InterruptedException) {
+			LOG.debug { "Terminal monitor has been interrupted." }
+		} finally {
+			closeTerminals(terminals)
+		}
+		LOG.debug { "Terminal monitor stopped." }
+	}
+
+	private fun openTerminals(): Smartcardio.JnaCardTerminals {
+		val t = scio.terminals() as Smartcardio.JnaCardTerminals
+		// publish the current state before waiting, the first wait only covers changes after this point
+		mutableStates.value = readStates(t)
+		return t
+	}
+
+	private fun readStates(terminals: CardTerminals): Map<String, TerminalStateType> {
+		val present = terminals.list(CardTerminals.State.CARD_PRESENT).map { it.name }.toSet()
+		return terminals.list(CardTerminals.State.ALL).associate {
+			it.name to if (it.name in present) TerminalStateType.PRESENT else TerminalStateType.ABSENT
+		}
+	}
+
+	private fun closeTerminals(terminals: Smartcardio.JnaCardTerminals?) {
+		try {
+			terminals?.close()
+		} catch (ex: CardException) {
+			LOG.debug(ex) { "Failed to release PC/SC context of the terminal monitor." }
+		}
+	}
+}
@@ -1,8 +1,10 @@
 package org.openecard.sc.pcsc
 
 import jnasmartcardio.Smartcardio
+import kotlinx.coroutines.flow.StateFlow
 import org.openecard.sc.iface.InvalidHandle
 import org.openecard.sc.iface.Terminal
+import org.openecard.sc.iface.TerminalStateType
 import org.openecard.sc.iface.Terminals
 import javax.smartcardio.CardTerminal
 
@@ -12,6 +14,7 @@ class PcscTerminals internal constructor(
 ) : Terminals {
 	// using the implementation allows us to call close
 	private var scioTerminals: Smartcardio.JnaCardTerminals? = null
+	private var monitor: PcscTerminalMonitor? = null
 
 	override val isEstablished: Boolean
 		get() = scioTerminals != null
@@ -24,6 +27,10 @@ class PcscTerminals internal constructor(
 
 	override fun releaseContext() =
 		mapScioError {
+			synchronized(this) {
+				monitor?.stop()
+				monitor = null
+			}
 			scioTerminals?.close()
 			scioTerminals = null
 		}
@@ -48,6 +55,24 @@ class PcscTerminals internal constructor(
 			}
 		}
 
+	/**
+	 * The states are provided by a monitor which is started on first use and stopped when the context is released.
+	 */
+	@get:Throws(InvalidHandle::class)
+	override val terminalStates: StateFlow<Map<String, TerminalStateType>>
+		get() = getMonitor().states
+
+	@Throws(InvalidHandle::class)
+	internal fun getMonitor(): PcscTerminalMonitor {
+		assertInitialized()
+		return synchronized(this) {
+			monitor ?: PcscTerminalMonitor(scio).also {
+				it.start()
+				monitor = it
+			}
+		}
+	}
+
 	@Throws(InvalidHandle::class)
 	internal fun getScioTerminal(name: String): CardTerminal? =
 		mapScioError {
@@ -0,0 +1,42 @@
+package org.openecard.sc.iface
+
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+
+/**
+ * Change of the state of a single terminal.
+ *
+ * @property terminal Name of the terminal.
+ * @property oldState State before the change, or `null` if the terminal has been added.
+ * @property newState State after the change, or `null` if the terminal has been removed.
+ */
+data class TerminalStateChange(
+	val terminal: String,
+	val oldState: TerminalStateType?,
+	val newState: TerminalStateType?,
+)
+
+/**
+ * Converts the [Terminals.terminalStates] into the changes of the single terminals.
+ *
+ * The first changes report all terminals present at the time of collection as added.
+ */
+fun Terminals.terminalStateChanges(): Flow<TerminalStateChange> =
+	flow {
+		var last = emptyMap<String, TerminalStateType>()
+		terminalStates.collect { next ->
+			// report removed terminals before the other changes
+			for ((name, oldState) in last) {
+				if (name !in next) {
+					emit(TerminalStateChange(name, oldState, null))
+				}
+			}
+			for ((name, newState) in next) {
+				val oldState = last[name]
+				if (oldState != newState) {
+					emit(TerminalStateChange(name, oldState, newState))
+				}
+			}
+			last = next
+		}
+	}
@@ -1,5 +1,6 @@
 package org.openecard.sc.iface
 
+import kotlinx.coroutines.flow.StateFlow
 import kotlin.coroutines.cancellation.CancellationException
 
 interface Terminals {
@@ -54,7 +55,15 @@ interface Terminals {
 	)
 	fun getTerminal(name: String): Terminal?
 
-// 	fun terminalWatcher(): TerminalWatcher
+	/**
+	 * State of all terminals of this context, keyed by the terminal name.
+	 *
+	 * The value is updated whenever a terminal is added or removed, or a card is inserted or removed. The changes of
+	 * single terminals can be obtained with [terminalStateChanges]. The flow is only updated while the context is
+	 * established.
+	 */
+	@get:Throws(InvalidHandle::class)
+	val terminalStates: StateFlow<Map<String, TerminalStateType>>
 }
 
 @Throws(
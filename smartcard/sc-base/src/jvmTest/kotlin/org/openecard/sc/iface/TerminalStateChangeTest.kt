@@ -0,0 +1,58 @@
+package org.openecard.sc.iface
+
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+class TerminalStateChangeTest {
+	private class FakeTerminals(
+		override val terminalStates: StateFlow<Map<String, TerminalStateType>>,
+	) : Terminals {
+		override val factory: TerminalFactory
+			get() = throw UnsupportedOperationException()
+		override val isEstablished: Boolean = true
+		override val supportsControlCommand: Boolean = false
+
+		override fun establishContext() {}
+
+		override fun releaseContext() {}
+
+		override fun list(): List<Terminal> = emptyList()
+
+		override fun getTerminal(name: String): Terminal? = null
+	}
+
+	@Test
+	fun `changes of single terminals`() {
+		val states = MutableStateFlow(mapOf("A" to TerminalStateType.ABSENT))
+		val terminals = FakeTerminals(states)
+
+		val changes =
+			runBlocking {
+				val collected = mutableListOf<TerminalStateChange>()
+				val job = launch { terminals.terminalStateChanges().take(4).toList(collected) }
+				yield()
+				states.value = mapOf("A" to TerminalStateType.PRESENT, "B" to TerminalStateType.ABSENT)
+				yield()
+				states.value = mapOf("B" to TerminalStateType.ABSENT)
+				job.join()
+				collected
+			}
+
+		assertEquals(
+			listOf(
+				TerminalStateChange("A", null, TerminalStateType.ABSENT),
+				TerminalStateChange("A", TerminalStateType.ABSENT, TerminalStateType.PRESENT),
+				TerminalStateChange("B", null, TerminalStateType.ABSENT),
+				TerminalStateChange("A", TerminalStateType.PRESENT, null),
+			),
+			changes,
+		)
+	}
+}
@@ -0,0 +1,73 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.ws.jaxb
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Pool of objects which are not thread safe, such as parsers and JAXB marshallers.
+ *
+ * Each caller gets an instance exclusively for the duration of its operation. When no idle instance is available, a
+ * new one is created, so callers never wait for each other. Only up to [maxIdle] instances are kept after use, the
+ * remaining ones are left to the garbage collector.
+ *
+ * @param maxIdle Maximum number of idle instances kept in the pool.
+ * @param reset Function restoring the initial state of an instance before it is returned to the pool.
+ * @param factory Function creating new instances.
+ */
+internal class InstancePool<T : Any>(
+	private val maxIdle: Int = Runtime.getRuntime().availableProcessors(),
+	private val reset: (T) -> Unit = {},
+	private val factory: () -> T,
+) {
+	private val idle = ConcurrentLinkedQueue<T>()
+	private val numIdle = AtomicInteger()
+
+	fun borrow(): T {
+		val instance = idle.poll()
+		if (instance != null) {
+			numIdle.decrementAndGet()
+			return instance
+		}
+		return factory()
+	}
+
+	fun release(instance: T) {
+		reset(instance)
+		if (numIdle.incrementAndGet() <= maxIdle) {
+			idle.offer(instance)
+		} else {
+			numIdle.decrementAndGet()
+		}
+	}
+
+	inline fun <R> use(block: (T) -> R): R {
+		val instance = borrow()
+		try {
+			return block(instance)
+		} finally {
+			release(instance)
+		}
+	}
+}
@@ -25,6 +25,8 @@ package org.openecard.ws.jaxb
 import io.github.oshai.kotlinlogging.KotlinLogging
 import jakarta.xml.bind.JAXBElement
 import jakarta.xml.bind.JAXBException
+import jakarta.xml.bind.Marshaller
+import jakarta.xml.bind.ValidationEventHandler
 import org.openecard.ws.marshal.MarshallingTypeException
 import org.openecard.ws.marshal.WSMarshaller
 import org.openecard.ws.marshal.WSMarshallerException
@@ -46,6 +48,8 @@ import javax.xml.XMLConstants
 import javax.xml.parsers.DocumentBuilder
 import javax.xml.parsers.DocumentBuilderFactory
 import javax.xml.parsers.ParserConfigurationException
+import javax.xml.stream.XMLStreamReader
+import javax.xml.stream.XMLStreamWriter
 import javax.xml.transform.OutputKeys
 import javax.xml.transform.Transformer
 import javax.xml.transform.TransformerConfigurationException
@@ -53,6 +57,7 @@ import javax.xml.transform.TransformerException
 import javax.xml.transform.TransformerFactory
 import javax.xml.transform.dom.DOMSource
 import javax.xml.transform.stream.StreamResult
+import javax.xml.validation.Schema
 import kotlin.system.exitProcess
 
 private val LOG = KotlinLogging.logger {}
@@ -60,6 +65,9 @@ private val LOG = KotlinLogging.logger {}
 /**
  * Implementation of a WSMarshaller utilizing JAXB and Javas default XML facilities.
  *
+ * The instance can be used by multiple threads concurrently. The underlying parsers, transformers and JAXB
+ * marshallers are not thread safe, so each operation takes its own instance from a pool.
+ *
  * @author Tobias Wich
  */
 class JAXBMarshaller : WSMarshaller {
@@ -68,11 +76,9 @@ class JAXBMarshaller : WSMarshaller {
 
 	// w3 factory
 	private val w3Factory: DocumentBuilderFactory
-	private val w3Builder: DocumentBuilder
-	private val serializer: Transformer
-
-	// soap
-	private val soapFactory: MessageFactory
+	private val tfactory: TransformerFactory
+	private val w3Builders: InstancePool<DocumentBuilder>
+	private val serializers: InstancePool<Transformer>
 
 	/**
 	 * Creates a JAXBMarshaller capable of marshalling und unmarshalling all JAXB element types found in the classpath
@@ -82,8 +88,8 @@ class JAXBMarshaller : WSMarshaller {
 		val tmpMarshaller: MarshallerImpl
 		val tmpW3Factory: DocumentBuilderFactory
 		val tmpW3Builder: DocumentBuilder
+		val tmpTFactory: TransformerFactory
 		val tmpSerializer: Transformer
-		val tmpSoapFactory: MessageFactory
 
 		try {
 			tmpMarshaller = MarshallerImpl()
@@ -123,41 +129,30 @@ class JAXBMarshaller : WSMarshaller {
 
 			tmpW3Builder = tmpW3Factory.newDocumentBuilder()
 
-			val tfactory = TransformerFactory.newInstance()
+			tmpTFactory = TransformerFactory.newInstance()
 			try {
-				tfactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true)
+				tmpTFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true)
 			} catch (ex: TransformerConfigurationException) {
 				// LOG.warn { "Failed to enable secure processing for XML Transformer." }
 			}
 			// XXE countermeasures
 			try {
-				tfactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "")
+				tmpTFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "")
 			} catch (ex: IllegalArgumentException) {
 				// LOG.warn { "Failed to disallow external DTD access." }
 			}
 			try {
-				tfactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "")
+				tmpTFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "")
 			} catch (ex: IllegalArgumentException) {
 				// LOG.warn { "Failed to disallow external stylesheet access." }
 			}
 			try {
-				tfactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true)
+				tmpTFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true)
 			} catch (ex: TransformerConfigurationException) {
 				// LOG.debug("Failed to disallow DTDs entirely.");
 			}
 
-			tmpSerializer = tfactory.newTransformer()
-			try {
-				tmpSerializer.setOutputProperty(OutputKeys.INDENT, "yes")
-				tmpSerializer.setOutputProperty(OutputKeys.STANDALONE, "yes")
-				tmpSerializer.setOutputProperty(OutputKeys.ENCODING, "UTF-8")
-				tmpSerializer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2")
-			} catch (ex: IllegalArgumentException) {
-				// LOG.warn { "Failed to configure output formatting." }
-			}
-
-			// instantiate soap stuff
-			tmpSoapFactory = MessageFactory.newInstance()
+			tmpSerializer = createSerializer(tmpTFactory)
 		} catch (ex: ParserConfigurationException) {
 			LOG.error(ex) { "Failed to initialize XML components." }
 			exitProcess(1) // non recoverable
@@ -167,16 +162,36 @@ class JAXBMarshaller : WSMarshaller {
 		} catch (ex: IllegalArgumentException) {
 			LOG.error(ex) { "Failed to initialize XML components." }
 			exitProcess(1)
-		} catch (ex: SOAPException) {
-			LOG.error(ex) { "Failed to initialize XML components." }
-			exitProcess(1)
 		}
 
 		marshaller = tmpMarshaller
 		w3Factory = tmpW3Factory
-		w3Builder = tmpW3Builder
-		serializer = tmpSerializer
-		soapFactory = tmpSoapFactory
+		tfactory = tmpTFactory
+		// the factories are not guaranteed to be thread safe
+		w3Builders =
+			InstancePool(reset = { it.reset() }) {
+				synchronized(w3Factory) { w3Factory.newDocumentBuilder() }
+			}
+		serializers =
+			InstancePool {
+				synchronized(tfactory) { createSerializer(tfactory) }
+			}
+		// the instances created to check the configuration are the first ones in the pools
+		w3Builders.release(tmpW3Builder)
+		serializers.release(tmpSerializer)
+	}
+
+	private fun createSerializer(factory: TransformerFactory): Transformer {
+		val serializer = factory.newTransformer()
+		try {
+			serializer.setOutputProperty(OutputKeys.INDENT, "yes")
+			serializer.setOutputProperty(OutputKeys.STANDALONE, "yes")
+			serializer.setOutputProperty(OutputKeys.ENCODING, "UTF-8")
+			serializer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2")
+		} catch (ex: IllegalArgumentException) {
+			// LOG.warn { "Failed to configure output formatting." }
+		}
+		return serializer
 	}
 
 	// //////////////////////////////////////////////////////////////////////////
@@ -191,14 +206,13 @@ class JAXBMarshaller : WSMarshaller {
 		marshaller.removeAllClasses()
 	}
 
-	@kotlin.jvm.Synchronized
 	@kotlin.Throws(SAXException::class)
 	override fun str2doc(docStr: String): Document {
 		try {
 			// read dom as w3
 			val strReader = StringReader(docStr)
 			val inSrc = InputSource(strReader)
-			val doc = w3Builder.parse(inSrc)
+			val doc = w3Builders.use { it.parse(inSrc) }
 
 			WhitespaceFilter.filter(doc)
 
@@ -208,22 +222,20 @@ class JAXBMarshaller : WSMarshaller {
 		}
 	}
 
-	@kotlin.jvm.Synchronized
 	@kotlin.Throws(SAXException::class, IOException::class)
 	override fun str2doc(docStr: InputStream): Document {
 		// read dom as w3
-		val doc: Document = w3Builder.parse(docStr)
+		val doc: Document = w3Builders.use { it.parse(docStr) }
 
 		WhitespaceFilter.filter(doc)
 
 		return doc
 	}
 
-	@kotlin.jvm.Synchronized
 	@kotlin.Throws(TransformerException::class)
 	override fun doc2str(doc: Node): String {
 		val out = ByteArrayOutputStream()
-		serializer.transform(DOMSource(doc), StreamResult(out))
+		serializers.use { it.transform(DOMSource(doc), StreamResult(out)) }
 		val result: String
 		try {
 			result = out.toString("UTF-8")
@@ -233,20 +245,18 @@ class JAXBMarshaller : WSMarshaller {
 		return result
 	}
 
-	@kotlin.jvm.Synchronized
 	@kotlin.Throws(MarshallingTypeException::class, WSMarshallerException::class)
 	override fun unmarshal(n: Node): Any {
 		val newDoc = createDoc(n)
 		val result: Any
 		try {
-			result = marshaller.getUnmarshaller().unmarshal(newDoc) // NOI18N
+			result = marshaller.withUnmarshaller { it.unmarshal(newDoc) } // NOI18N
 		} catch (ex: JAXBException) {
 			throw MarshallingTypeException(ex)
 		}
 		return result
 	}
 
-	@kotlin.jvm.Synchronized
 	@kotlin.Throws(MarshallingTypeException::class, WSMarshallerException::class)
 	override fun <T> unmarshal(
 		n: Node,
@@ -255,7 +265,7 @@ class JAXBMarshaller : WSMarshaller {
 		val newDoc = createDoc(n)
 		val result: JAXBElement<T>
 		try {
-			result = marshaller.getUnmarshaller().unmarshal(newDoc, c) // NOI18N
+			result = marshaller.withUnmarshaller { it.unmarshal(newDoc, c) } // NOI18N
 		} catch (ex: JAXBException) {
 			throw MarshallingTypeException(ex)
 		}
@@ -270,7 +280,7 @@ class JAXBMarshaller : WSMarshaller {
 			}
 
 			is Element -> {
-				val newDoc = w3Builder.newDocument()
+				val newDoc = w3Builders.use { it.newDocument() }
 				val root: Node = newDoc.importNode(n, true)
 				newDoc.appendChild(root)
 				newDoc
@@ -281,29 +291,76 @@ class JAXBMarshaller : WSMarshaller {
 			}
 		}
 
-	@kotlin.jvm.Synchronized
 	@kotlin.Throws(MarshallingTypeException::class)
 	override fun marshal(o: Any): Document {
 		try {
-			val d: Document = w3Builder.newDocument()
-			marshaller.getMarshaller().marshal(o, d)
+			val d: Document = w3Builders.use { it.newDocument() }
+			marshaller.withMarshaller { it.marshal(o, d) }
 			return d
 		} catch (ex: JAXBException) {
 			throw MarshallingTypeException(ex)
 		}
 	}
 
-	@kotlin.jvm.Synchronized
+	@kotlin.Throws(MarshallingTypeException::class)
+	override fun marshal(
+		o: Any,
+		writer: XMLStreamWriter,
+		schema: Schema?,
+	) {
+		try {
+			marshaller.withMarshaller { m ->
+				m.setProperty(Marshaller.JAXB_FRAGMENT, true)
+				m.schema = schema
+				if (schema != null) {
+					m.eventHandler =
+						ValidationEventHandler { event ->
+							LOG.warn { "Schema validation of marshalled object failed: ${event.message}" }
+							true
+						}
+				}
+				try {
+					m.marshal(o, writer)
+				} finally {
+					// restore the state of the pooled instance
+					m.setProperty(Marshaller.JAXB_FRAGMENT, false)
+					m.schema = null
+					m.eventHandler = null
+				}
+			}
+		} catch (ex: JAXBException) {
+			throw MarshallingTypeException(ex)
+		}
+	}
+
+	@kotlin.Throws(MarshallingTypeException::class)
+	override fun unmarshal(
+		reader: XMLStreamReader,
+		schema: Schema?,
+	): Any {
+		try {
+			return marshaller.withUnmarshaller { u ->
+				u.schema = schema
+				try {
+					u.unmarshal(reader)
+				} finally {
+					u.schema = null
+				}
+			}
+		} catch (ex: JAXBException) {
+			throw MarshallingTypeException(ex)
+		}
+	}
+
 	@kotlin.Throws(SOAPException::class)
 	override fun doc2soap(envDoc: Document): SOAPMessage {
-		val msg = soapFactory.createMessage(envDoc)
+		val msg = w3Builders.use { MessageFactory.newInstance(it).createMessage(envDoc) }
 		return msg
 	}
 
-	@kotlin.jvm.Synchronized
 	@kotlin.Throws(SOAPException::class)
 	override fun add2soap(content: Document): SOAPMessage {
-		val msg = soapFactory.createMessage()
+		val msg = w3Builders.use { MessageFactory.newInstance(it).createMessage() }
 		val body = msg.soapBody
 		body.addDocument(content)
 
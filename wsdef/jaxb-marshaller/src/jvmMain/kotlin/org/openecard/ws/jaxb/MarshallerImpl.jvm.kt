@@ -37,6 +37,7 @@ import java.security.MessageDigest
 import java.security.NoSuchAlgorithmException
 import java.util.TreeSet
 import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutionException
 import java.util.concurrent.FutureTask
 
@@ -45,14 +46,17 @@ private val LOG = KotlinLogging.logger {}
 /**
  * Wrapper for JAXB marshaller and unmarshaller capable of modifying the supported JAXB types on the fly.
  *
+ * JAXB marshallers and unmarshallers are not thread safe, so the wrapper keeps a pool of them. Each operation gets its
+ * own instance and independent threads can marshal in parallel.
+ *
  * @author Tobias Wich
  */
 class MarshallerImpl {
 	private var userOverride = false
 	private val userClasses: TreeSet<Class<*>> = TreeSet(ClassComparator())
 
-	private var marshaller: Marshaller? = null
-	private var unmarshaller: Unmarshaller? = null
+	@Volatile
+	private var instances: JaxbInstances? = null
 
 	/**
 	 * Adds the specified JAXB element types class to the list of supported JAXB types.
@@ -91,55 +95,49 @@ class MarshallerImpl {
 	}
 
 	/**
-	 * Gets the wrapped JAXB marshaller instance.
+	 * Executes the given function with a JAXB marshaller instance.
+	 * The instance is used exclusively by the function and must not be used after the function returns.
 	 *
-	 * @return The wrapped JAXB marshaller instance.
+	 * @param block Function using the marshaller.
+	 * @return The result of the function.
 	 * @throws JAXBException If the marshaller could not be created.
 	 */
 	@kotlin.Throws(JAXBException::class)
-	fun getMarshaller(): Marshaller {
-		if (marshaller == null) {
-			loadInstances()
-		}
-		return marshaller!!
-	}
+	fun <T> withMarshaller(block: (Marshaller) -> T): T = loadInstances().marshallers.use(block)
 
 	/**
-	 * Gets the wrapped JAXB unmarshaller instance.
+	 * Executes the given function with a JAXB unmarshaller instance.
+	 * The instance is used exclusively by the function and must not be used after the function returns.
 	 *
-	 * @return The wrapped JAXB unmarshaller instance.
+	 * @param block Function using the unmarshaller.
+	 * @return The result of the function.
 	 * @throws JAXBException If the unmarshaller could not be created.
 	 */
 	@kotlin.Throws(JAXBException::class)
-	fun getUnmarshaller(): Unmarshaller {
-		if (unmarshaller == null) {
-			loadInstances()
-		}
-		return unmarshaller!!
-	}
+	fun <T> withUnmarshaller(block: (Unmarshaller) -> T): T = loadInstances().unmarshallers.use(block)
 
 	private fun resetMarshaller() {
-		marshaller = null
-		unmarshaller = null
+		instances = null
 	}
 
-	@Synchronized
 	@kotlin.Throws(JAXBException::class)
-	private fun loadInstances() {
-		var jaxbCtx: JAXBContext
+	private fun loadInstances(): JaxbInstances {
+		instances?.let { return it }
+		synchronized(this) {
+			return instances ?: JaxbInstances(loadContext()).also { instances = it }
+		}
+	}
+
+	@kotlin.Throws(JAXBException::class)
+	private fun loadContext(): JAXBContext {
 		if (userOverride) {
 			val classHash = calculateClassesHash()
-			synchronized(specificContexts) {
-				if (!specificContexts.containsKey(classHash)) {
-					jaxbCtx = JAXBContext.newInstance(*userClasses.toArray(arrayOfNulls<Class<*>>(userClasses.size)))
-					specificContexts.put(classHash, jaxbCtx)
-				} else {
-					jaxbCtx = specificContexts[classHash]!!
-				}
+			return specificContexts.computeIfAbsent(classHash) {
+				JAXBContext.newInstance(*userClasses.toArray(arrayOfNulls<Class<*>>(userClasses.size)))
 			}
 		} else {
 			try {
-				jaxbCtx = baseJaxbContext.get()
+				return baseJaxbContext.get()
 			} catch (ex: ExecutionException) {
 				LOG.error(ex) { "Failed to create JAXBContext instance." }
 				throw RuntimeException("Failed to create JAXBContext.")
@@ -148,8 +146,6 @@ class MarshallerImpl {
 				throw RuntimeException("Thread interrupted during waiting on the creation of the JAXBContext.")
 			}
 		}
-		marshaller = jaxbCtx.createMarshaller()
-		unmarshaller = jaxbCtx.createUnmarshaller()
 	}
 
 	private fun calculateClassesHash(): String {
@@ -168,7 +164,7 @@ class MarshallerImpl {
 	companion object {
 		private val baseXmlElementClasses = arrayListOf<Class<*>>()
 		private val baseJaxbContext: FutureTask<JAXBContext>
-		private val specificContexts: HashMap<String, JAXBContext>
+		private val specificContexts: ConcurrentHashMap<String, JAXBContext>
 
 		init {
 			// load predefined classes
@@ -190,7 +186,7 @@ class MarshallerImpl {
 				)
 			Thread(baseJaxbContext, "JAXB-Classload").start()
 
-			specificContexts = HashMap()
+			specificContexts = ConcurrentHashMap()
 		}
 
 		private val jaxbClasses: Array<Class<*>>
@@ -243,3 +239,14 @@ class MarshallerImpl {
 		}
 	}
 }
+
+/**
+ * Marshaller and unmarshaller instances of one JAXB context.
+ * The instances are replaced as a whole when the supported types change.
+ */
+private class JaxbInstances(
+	ctx: JAXBContext,
+) {
+	val marshallers = InstancePool { ctx.createMarshaller() }
+	val unmarshallers = InstancePool { ctx.createUnmarshaller() }
+}
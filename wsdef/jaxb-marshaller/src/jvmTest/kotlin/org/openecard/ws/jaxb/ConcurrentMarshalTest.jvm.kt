@@ -0,0 +1,141 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.ws.jaxb
+
+import io.github.oshai.kotlinlogging.KotlinLogging
+import org.testng.Assert
+import org.testng.annotations.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+private val LOG = KotlinLogging.logger { }
+
+private const val PAOS_HEADER = """<?xml version="1.0" encoding="UTF-8"?>
+<soap11:Envelope xmlns:soap11="http://schemas.xmlsoap.org/soap/envelope/" xmlns:paos20="urn:liberty:paos:2006-08">
+  <soap11:Header>
+    <paos20:PAOS soap11:actor="http://schemas.xmlsoap.org/soap/actor/next" soap11:mustUnderstand="1">
+      <paos20:Version>urn:liberty:paos:2006-08</paos20:Version>
+    </paos20:PAOS>
+    <MessageID xmlns="http://www.w3.org/2005/03/addressing">urn:uuid:00dcda36-bc0b-11df-b497-0a0027000000</MessageID>
+  </soap11:Header>
+  <soap11:Body>"""
+
+private const val PAOS_FOOTER = """
+  </soap11:Body>
+</soap11:Envelope>"""
+
+private val INITIALIZE_FRAMEWORK = """$PAOS_HEADER
+    <InitializeFramework xmlns="http://www.bsi.bund.de/ecard/api/1.1"/>$PAOS_FOOTER"""
+
+private val DID_AUTHENTICATE = """$PAOS_HEADER
+    <iso:DIDAuthenticate xmlns:iso="urn:iso:std:iso-iec:24727:tech:schema"
+                         xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance">
+      <iso:ConnectionHandle>
+        <iso:SlotHandle>E5E08F8AA3421592CADE749CFB4B7424</iso:SlotHandle>
+      </iso:ConnectionHandle>
+      <iso:DIDName>PIN</iso:DIDName>
+      <iso:AuthenticationProtocolData xsi:type="iso:EAC2InputType" Protocol="urn:oid:1.3.162.15480.3.0.14">
+        <iso:Certificate>7F2181E77F4E81A05F290100420E44455445535465494430303030347F494F060A04007F000702020202038641048CA9D7206B36E19B1D78F7831E22F2457696380ACF1751C7E9C7275AFE37716D31C1B9E32EAD128B4BB203047E9FC1FF57F27CDFE9D19D4D21F1BA718597B1B75F2010444544565449444454523130313231387F4C12060904007F0007030102025305400513FF875F25060104010002035F24060105000102015F37403EE8B0E9158966577592A47EE24D20480D630B39A609A9A1169391A1211851732B5A3C17183F9390040C8AFA9D051EE1B789C2535F8404C2569130BCAEC9087E</iso:Certificate>
+        <iso:EphemeralPublicKey>67B757C3C287FB11EEFE8199BE0228D00DB478B0636451F8155C59B3C1B0D33B3CCA63921892CD20B2EF8FDF45DC3658C7D2F6F5C01BA266FC23908FF3869B70</iso:EphemeralPublicKey>
+        <iso:Signature>A4436072F294C6A25E92AD4D8F9DDBE4722E3B195B3152A19629EC191DBB26908E5443F2CD31991F326927297A5BF1AE494C5B9C2C63292AD566F259F43DAB72</iso:Signature>
+      </iso:AuthenticationProtocolData>
+    </iso:DIDAuthenticate>$PAOS_FOOTER"""
+
+private val TRANSMIT = """$PAOS_HEADER
+    <iso:Transmit xmlns:iso="urn:iso:std:iso-iec:24727:tech:schema">
+      <iso:SlotHandle>E5E08F8AA3421592CADE749CFB4B7424</iso:SlotHandle>
+      <iso:InputAPDUInfo>
+        <iso:InputAPDU>0CA4040C1D871101D9E1AA9F1F3C8D5D2A6A1A6F1B76E3D38E08A5E4A3C2E9E9F1AD00</iso:InputAPDU>
+        <iso:AcceptableStatusCode>9000</iso:AcceptableStatusCode>
+      </iso:InputAPDUInfo>
+      <iso:InputAPDUInfo>
+        <iso:InputAPDU>0CB0000000000E970200008E0858B8D3A2F3C1B6D30000</iso:InputAPDU>
+        <iso:AcceptableStatusCode>9000</iso:AcceptableStatusCode>
+        <iso:AcceptableStatusCode>6282</iso:AcceptableStatusCode>
+      </iso:InputAPDUInfo>
+    </iso:Transmit>$PAOS_FOOTER"""
+
+private val MESSAGES = listOf(INITIALIZE_FRAMEWORK, DID_AUTHENTICATE, TRANSMIT)
+
+/**
+ * Uses one marshaller instance from several threads at once, as done by parallel eID sessions.
+ */
+class ConcurrentMarshalTest {
+	@Test
+	fun testConcurrentRoundTrips() {
+		val m = JAXBMarshaller()
+		val expected = MESSAGES.map { roundTrip(m, it) }
+
+		val executor = Executors.newFixedThreadPool(8)
+		try {
+			val tasks =
+				(0 until 64).map { i ->
+					Callable {
+						val idx = i % MESSAGES.size
+						Assert.assertEquals(roundTrip(m, MESSAGES[idx]), expected[idx])
+					}
+				}
+			executor.invokeAll(tasks).forEach { it.get() }
+		} finally {
+			executor.shutdown()
+		}
+	}
+
+	@Test(enabled = false)
+	fun measureThroughput() {
+		val m = JAXBMarshaller()
+		val iterations = 20_000
+		for (numThreads in listOf(1, 2, 4, 8)) {
+			val executor = Executors.newFixedThreadPool(numThreads)
+			try {
+				// warm up the pools of the marshaller and the JIT
+				executor.invokeAll((0 until 2_000).map { i -> Callable { roundTrip(m, MESSAGES[i % MESSAGES.size]) } })
+
+				val start = System.nanoTime()
+				executor
+					.invokeAll((0 until iterations).map { i -> Callable { roundTrip(m, MESSAGES[i % MESSAGES.size]) } })
+					.forEach { it.get() }
+				val duration = System.nanoTime() - start
+
+				val msgPerSec = iterations / (duration / 1_000_000_000.0)
+				LOG.info { "$numThreads threads: %.0f PAOS messages per second".format(msgPerSec) }
+			} finally {
+				executor.shutdown()
+			}
+		}
+	}
+
+	/**
+	 * Processes a message like the PAOS binding: parse and unmarshal the request, then marshal it again and wrap it
+	 * into a new SOAP message.
+	 */
+	private fun roundTrip(
+		m: JAXBMarshaller,
+		msg: String,
+	): String {
+		val request = m.doc2soap(m.str2doc(msg))
+		val content = m.unmarshal(request.soapBody.childElements[0])
+		val response = m.add2soap(m.marshal(content))
+		return m.doc2str(response.document)
+	}
+}
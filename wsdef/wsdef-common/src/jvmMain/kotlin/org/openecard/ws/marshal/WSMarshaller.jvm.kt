@@ -29,7 +29,10 @@ import org.w3c.dom.Node
 import org.xml.sax.SAXException
 import java.io.IOException
 import java.io.InputStream
+import javax.xml.stream.XMLStreamReader
+import javax.xml.stream.XMLStreamWriter
 import javax.xml.transform.TransformerException
+import javax.xml.validation.Schema
 
 /**
  * Interface for a JAXB type based marshaller and unmarshaller, as well as XML document converters and SOAP helpers.
@@ -129,6 +132,40 @@ interface WSMarshaller {
 	@Throws(MarshallingTypeException::class)
 	fun marshal(o: Any): Document
 
+	/**
+	 * Marshal the given JAXB object into a stream writer.
+	 * The object is written as a fragment, so that the writer may already contain the surrounding document, such as a
+	 * SOAP envelope. Violations of the schema are only logged and do not stop the marshalling.
+	 *
+	 * @param o JAXB object to marshal.
+	 * @param writer Writer receiving the element representing the given JAXB object.
+	 * @param schema Schema the written element is validated against, or `null` if no validation shall be performed.
+	 * @throws MarshallingTypeException If the given object is an unsupported JAXB type.
+	 */
+	@Throws(MarshallingTypeException::class)
+	fun marshal(
+		o: Any,
+		writer: XMLStreamWriter,
+		schema: Schema? = null,
+	)
+
+	/**
+	 * Unmarshal the element at the current position of the stream reader.
+	 * After this method returns, the reader is positioned after the end of the element.
+	 *
+	 * @param reader Reader positioned at the start of the element to unmarshal.
+	 * @param schema Schema the element is validated against while reading, or `null` if no validation shall be
+	 * performed.
+	 * @return The JAXB object representing the element.
+	 * @throws MarshallingTypeException If the element represents an unsupported JAXB type, can not be read, or violates
+	 * the schema.
+	 */
+	@Throws(MarshallingTypeException::class)
+	fun unmarshal(
+		reader: XMLStreamReader,
+		schema: Schema? = null,
+	): Any
+
 	/**
 	 * Converts a DOM document representing a SOAP message to a SOAPMessage instance.
 	 * The SOAPMessage type is similar to the one in [SAAJ](http://saaj.java.net/).